@@ -0,0 +1,13 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * 非同步配置
+ * 啟用 @Async（使用 Spring Boot 預設的 applicationTaskExecutor，例如：訂單讀取模型投影）
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
@@ -13,7 +13,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import com.example.demo.security.BoundedPasswordEncoder;
 import com.example.demo.security.JwtAuthenticationFilter;
+import com.example.demo.security.PasswordHashingPool;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -93,6 +95,9 @@ public class BasicSecurityConfig {
                     // 測試端點（開發時期）
                     .requestMatchers("/api/test/public").permitAll()
                     
+                    // 管理 API（訂單查詢、匯出、財務報表）只限 ADMIN
+                    .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                    
                     // 其他所有請求需要認證
                     .anyRequest().authenticated();
             })
@@ -134,9 +139,9 @@ public class BasicSecurityConfig {
      * 使用 BCrypt 進行密碼加密
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        log.info("🔐 配置密碼編碼器: BCrypt");
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(PasswordHashingPool passwordHashingPool) {
+        log.info("🔐 配置密碼編碼器: BCrypt，於專用執行緒池執行");
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(12), passwordHashingPool);
     }
 
     /**
@@ -21,8 +21,10 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.example.demo.security.BoundedPasswordEncoder;
 import com.example.demo.security.EnhancedJwtAuthenticationFilter;
 import com.example.demo.security.JwtAuthenticationEntryPoint;
+import com.example.demo.security.PasswordHashingPool;
 import com.example.demo.security.SessionAuthenticationFilter;
 
 import lombok.RequiredArgsConstructor;
@@ -116,7 +118,7 @@ public class EnhancedSecurityConfig {
                     .requestMatchers("/carts/**", "/mycarts").authenticated()
                     
                     // 管理相關（需要 ADMIN 角色）
-                    .requestMatchers("/admin/**").hasRole("ADMIN")
+                    .requestMatchers("/admin/**", "/api/admin/**").hasRole("ADMIN")
                     
                     // 其他所有請求需要認證
                     .anyRequest().authenticated();
@@ -227,9 +229,9 @@ public class EnhancedSecurityConfig {
      * 密碼編碼器
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        log.info("🔐 配置密碼編碼器: BCrypt (強度: 12)");
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(PasswordHashingPool passwordHashingPool) {
+        log.info("🔐 配置密碼編碼器: BCrypt，於專用執行緒池執行 (強度: 12)");
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(12), passwordHashingPool);
     }
 
     /**
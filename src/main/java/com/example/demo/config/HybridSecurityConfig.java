@@ -19,8 +19,10 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.example.demo.security.BoundedPasswordEncoder;
 import com.example.demo.security.JwtAuthenticationEntryPoint;
 import com.example.demo.security.JwtAuthenticationFilter;
+import com.example.demo.security.PasswordHashingPool;
 
 import lombok.RequiredArgsConstructor;
 
@@ -147,8 +149,8 @@ public class HybridSecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(PasswordHashingPool passwordHashingPool) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(12), passwordHashingPool);
     }
 
     @Bean
@@ -15,6 +15,9 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.example.demo.security.BoundedPasswordEncoder;
+import com.example.demo.security.PasswordHashingPool;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -97,7 +100,7 @@ public class ImprovedSecurityConfig {
                     .requestMatchers("/api/test/protected", "/api/simple/protected/**").authenticated()
                     
                     // 管理員專用
-                    .requestMatchers("/actuator/**").hasRole("ADMIN")
+                    .requestMatchers("/actuator/**", "/api/admin/**").hasRole("ADMIN")
                     
                     // 其他所有請求需要認證
                     .anyRequest().authenticated();
@@ -179,8 +182,8 @@ public class ImprovedSecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        log.info("🔐 配置密碼編碼器: BCrypt (強度 12)");
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(PasswordHashingPool passwordHashingPool) {
+        log.info("🔐 配置密碼編碼器: BCrypt，於專用執行緒池執行 (強度 12)");
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(12), passwordHashingPool);
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.example.demo.config;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.service.OrderExportRequest;
+import com.example.demo.service.OrderExportService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 命令列訂單匯出
+ * 指定 order-export.file 時啟動後匯出訂單到檔案，完成後結束程式
+ *
+ * 範例：
+ * java -jar demo.jar --spring.main.web-application-type=none \
+ *   --order-export.file=/tmp/orders-2025-01.csv.gz --order-export.from=2025-01-01 --order-export.to=2025-02-01
+ *
+ * 其他參數：order-export.format(csv/ndjson)、order-export.content(orders/lines)、
+ * order-export.status、order-export.archived(預設 true)；副檔名為 .gz 時自動壓縮
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "order-export.file")
+public class OrderExportRunner implements ApplicationRunner {
+
+    private final OrderExportService orderExportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${order-export.file}")
+    private String file;
+
+    @Value("${order-export.from:}")
+    private String from;
+
+    @Value("${order-export.to:}")
+    private String to;
+
+    @Value("${order-export.status:}")
+    private String status;
+
+    @Value("${order-export.format:csv}")
+    private String format;
+
+    @Value("${order-export.content:orders}")
+    private String content;
+
+    @Value("${order-export.archived:true}")
+    private boolean archived;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            Path path = Paths.get(file);
+            OrderExportRequest request = new OrderExportRequest(
+                    OrderExportRequest.Format.of(format),
+                    OrderExportRequest.Content.of(content),
+                    from.isBlank() ? null : LocalDate.parse(from),
+                    to.isBlank() ? null : LocalDate.parse(to),
+                    status.isBlank() ? null : status,
+                    archived,
+                    file.endsWith(".gz"));
+            if (path.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+            }
+            long rows;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+                rows = orderExportService.export(request, out);
+            }
+            log.info("訂單匯出完成：{}，{} 筆，{} bytes", path, rows, Files.size(path));
+        } catch (Exception e) {
+            log.error("訂單匯出失敗：{}", e.getMessage(), e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
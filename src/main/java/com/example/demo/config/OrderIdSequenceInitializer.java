@@ -0,0 +1,48 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 訂單主鍵序列初始化
+ * 訂單與明細主鍵由 IDENTITY 改為序列(MySQL 以 *_seq 資料表模擬)後，
+ * 新建立的序列會從 1 開始，與舊資料的自增長主鍵衝突
+ *
+ * 功能包括：
+ * - 啟動時把序列推進到現有最大主鍵之後（只會往前推，不會倒退）
+ * - 在所有單例(含 EntityManagerFactory 建立序列資料表)初始化完成後、Web 伺服器開始接受請求前執行，
+ *   避免第一筆訂單在對齊前取得重複的主鍵
+ * - 保留一整段 allocationSize 的間隔，避免與 pooled 最佳化取號的範圍重疊
+ * - 序列資料表不存在時（例如 ddl-auto=none）只記錄警告
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderIdSequenceInitializer implements SmartInitializingSingleton {
+
+    private static final int ALLOCATION_SIZE = 50; // 與實體 @SequenceGenerator 一致
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        align("orderdata_seq", "orderdata");
+        align("orderlistdata_seq", "orderlistdata");
+    }
+
+    private void align(String sequenceTable, String table) {
+        try {
+            int updated = jdbcTemplate.update(
+                    "UPDATE " + sequenceTable + " SET next_val = GREATEST(next_val, "
+                            + "(SELECT COALESCE(MAX(id), 0) + ? FROM " + table + "))",
+                    ALLOCATION_SIZE + 1);
+            log.info("序列 {} 已對齊 {} 最大主鍵（{} 筆）", sequenceTable, table, updated);
+        } catch (Exception e) {
+            log.warn("無法對齊序列 {}：{}", sequenceTable, e.getMessage());
+        }
+    }
+}
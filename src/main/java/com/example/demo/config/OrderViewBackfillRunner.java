@@ -0,0 +1,102 @@
+package com.example.demo.config;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.entity.Order;
+import com.example.demo.repository.OrderViewRepository;
+import com.example.demo.service.OrderViewProjector;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 訂單讀取模型補建(一次性)
+ * order_view 上線前的訂單、或非同步投影失敗的訂單沒有文件，訂單歷史與後台狀態查詢都查不到
+ *
+ * 範例：
+ * java -jar demo.jar --order-view.backfill.enabled=true
+ *
+ * 功能包括：
+ * - 依主鍵 keyset 分頁掃描 orderdata，再掃描 orderdata_archive
+ * - 每頁只重建還沒有文件的訂單(可中斷後重新執行)；order-view.backfill.rebuild-all=true 時全部重建
+ * - 在背景執行，不影響應用程式啟動
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "order-view.backfill.enabled", havingValue = "true")
+public class OrderViewBackfillRunner implements ApplicationRunner {
+
+    private final OrderArchiveDao orderArchiveDao;
+    private final OrderViewRepository orderViewRepository;
+    private final OrderViewProjector orderViewProjector;
+
+    @Value("${order-view.backfill.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order-view.backfill.rebuild-all:false}")
+    private boolean rebuildAll;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread thread = new Thread(this::backfill, "order-view-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 補建所有訂單的讀取模型
+     * @return 重建的訂單數
+     */
+    public long backfill() {
+        long start = System.nanoTime();
+        long rebuilt = backfill(false);
+        if (orderArchiveDao.IsReady()) {
+            rebuilt += backfill(true);
+        }
+        log.info("訂單讀取模型補建完成：重建 {} 筆，耗時 {} ms", rebuilt, (System.nanoTime() - start) / 1_000_000);
+        return rebuilt;
+    }
+
+    private long backfill(boolean archived) {
+        long rebuilt = 0;
+        int afterId = 0;
+        while (true) {
+            List<Order> page;
+            try {
+                page = orderArchiveDao.ScanOrderNos(archived, afterId, batchSize);
+            } catch (Exception e) {
+                log.error("訂單讀取模型補建中斷(已重建 {} 筆，下次從 id {} 之後繼續)：{}", rebuilt, afterId, e.getMessage());
+                return rebuilt;
+            }
+            if (page.isEmpty()) {
+                return rebuilt;
+            }
+            afterId = page.get(page.size() - 1).getOid();
+
+            List<String> merchantOrderNos = page.stream().map(Order::getMerchantorderno).toList();
+            Set<String> existing = rebuildAll ? Set.of() : new HashSet<>(orderViewRepository.findExistingIds(merchantOrderNos));
+            for (String merchantOrderNo : merchantOrderNos) {
+                if (existing.contains(merchantOrderNo)) {
+                    continue;
+                }
+                try {
+                    orderViewProjector.rebuild(merchantOrderNo);
+                    rebuilt++;
+                } catch (Exception e) {
+                    log.error("重建訂單讀取模型 {} 失敗：{}", merchantOrderNo, e.getMessage());
+                }
+            }
+            log.debug("訂單讀取模型補建{}：至 id {}，累計 {} 筆", archived ? "(歸檔)" : "", afterId, rebuilt);
+        }
+    }
+}
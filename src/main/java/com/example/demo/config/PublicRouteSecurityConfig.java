@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.web.SecurityFilterChain;
+
+import com.example.demo.security.PublicRouteMatcher;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 公開路由的輕量安全鏈（所有 profile 共用）
+ * 排在各 profile 的安全鏈之前，只處理 PublicRouteMatcher 符合的匿名唯讀請求
+ *
+ * 功能包括：
+ * - 不建立、不讀取 HTTP Session（無 SecurityContext 存取、無 RequestCache、無 CSRF Token）
+ * - 不設定匿名身分、不包裝 Servlet API，只保留安全性回應標頭
+ * - JWT / Session 認證過濾器對這些路由直接跳過（shouldNotFilter）
+ */
+@Slf4j
+@Configuration
+public class PublicRouteSecurityConfig {
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public SecurityFilterChain publicRouteFilterChain(HttpSecurity http, PublicRouteMatcher publicRouteMatcher) throws Exception {
+        log.info("🔧 正在配置公開路由輕量安全鏈...");
+
+        http
+            .securityMatcher(publicRouteMatcher)
+            .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+            .csrf(AbstractHttpConfigurer::disable)
+            .securityContext(AbstractHttpConfigurer::disable)
+            .sessionManagement(AbstractHttpConfigurer::disable)
+            .requestCache(AbstractHttpConfigurer::disable)
+            .anonymous(AbstractHttpConfigurer::disable)
+            .servletApi(AbstractHttpConfigurer::disable)
+            .exceptionHandling(AbstractHttpConfigurer::disable)
+            .logout(AbstractHttpConfigurer::disable);
+
+        return http.build();
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -19,6 +20,7 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
  * - RedisTemplate 設定
  * - 序列化器配置
  * - 連線池設定
+ * - Pub/Sub 訊息監聽容器（跨節點事件廣播）
  */
 @Configuration
 public class RedisConfig {
@@ -76,4 +78,17 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * Redis Pub/Sub 訊息監聽容器
+     * 各服務自行註冊要監聽的頻道（例如：付款狀態推播）
+     * @param connectionFactory Redis 連線工廠
+     * @return RedisMessageListenerContainer
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
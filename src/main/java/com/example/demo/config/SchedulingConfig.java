@@ -0,0 +1,13 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 排程配置
+ * 啟用 @Scheduled 背景任務（例如：付款對帳排程）
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -2,9 +2,12 @@ package com.example.demo.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.example.demo.interceptor.AsyncTimeoutInterceptor;
+import com.example.demo.interceptor.IdempotencyInterceptor;
 import com.example.demo.interceptor.RateLimitInterceptor;
 
 import lombok.RequiredArgsConstructor;
@@ -22,6 +25,10 @@ public class WebConfig implements WebMvcConfigurer {
     
     private final RateLimitInterceptor rateLimitInterceptor;
 
+    private final IdempotencyInterceptor idempotencyInterceptor;
+
+    private final AsyncTimeoutInterceptor asyncTimeoutInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
 
@@ -39,5 +46,16 @@ public class WebConfig implements WebMvcConfigurer {
                     "/swagger-ui/**",
                     "/v3/api-docs/**"
                 );
+
+        // 註冊冪等請求攔截器 - 會建立資料的請求(帶 Idempotency-Key 的重送直接重播第一次的回應)
+        registry.addInterceptor(idempotencyInterceptor)
+                .addPathPatterns("/api/pay")
+                .addPathPatterns("/carts/addcart");
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // 個別請求的非同步逾時（例如：訂單匯出下載）
+        configurer.registerCallableInterceptors(asyncTimeoutInterceptor);
     }
 }
\ No newline at end of file
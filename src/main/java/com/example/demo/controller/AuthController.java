@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.security.JwtService;
+import com.example.demo.security.LoginRejectedException;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -81,6 +82,17 @@ public class AuthController {
             log.info("使用者登入成功: {}", loginRequest.getUsername());
             return ResponseEntity.ok(response);
 
+        } catch (LoginRejectedException e) {
+            // 失敗次數過多或密碼雜湊忙碌，沒有進行密碼比對
+            log.warn("登入被拒絕: {} - {}", loginRequest.getUsername(), e.getMessage());
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+
+            return ResponseEntity.status(e.getStatus())
+                    .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                    .body(errorResponse);
         } catch (Exception e) {
             log.error("登入失敗: {} - {}", loginRequest.getUsername(), e.getMessage());
             
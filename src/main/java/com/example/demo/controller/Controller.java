@@ -4,7 +4,6 @@ package com.example.demo.controller;
 import org.springframework.web.bind.annotation.GetMapping;
 
 import org.springframework.ui.Model;
-import jakarta.servlet.http.HttpSession;
 
 @org.springframework.stereotype.Controller
 public class Controller {
@@ -21,7 +20,7 @@ public class Controller {
 
     //首頁
     @GetMapping("/")
-    public String index(Model model, HttpSession session){
+    public String index(Model model){
         return "index";
     }
 
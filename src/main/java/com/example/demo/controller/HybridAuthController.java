@@ -6,6 +6,7 @@ import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -18,6 +19,8 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.security.JwtRedisTokenService;
 import com.example.demo.security.JwtService;
+import com.example.demo.security.LoginRejectedException;
+import com.example.demo.security.VerifiedToken;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -101,8 +104,8 @@ public class HybridAuthController {
             if (jwtRedisTokenService != null) {
                 long expiration = jwtService.getExpirationTime(accessToken);
                 jwtRedisTokenService.storeUserToken(request.getUsername(), jwtId, expiration);
-                jwtRedisTokenService.storeRefreshToken(refreshToken, request.getUsername(), 
-                    System.currentTimeMillis() + 604800000L); // 7天
+                jwtRedisTokenService.storeRefreshToken(refreshToken, request.getUsername(),
+                    jwtService.getExpirationTime(refreshToken));
             }
 
             // 5. 建立響應
@@ -120,6 +123,12 @@ public class HybridAuthController {
             log.info("JWT 登入成功，用戶: {}", request.getUsername());
             return ResponseEntity.ok(response);
 
+        } catch (LoginRejectedException e) {
+            // 失敗次數過多或密碼雜湊忙碌，沒有進行密碼比對
+            log.warn("JWT 登入被拒絕，用戶名: {}, 原因: {}", request.getUsername(), e.getMessage());
+            return ResponseEntity.status(e.getStatus())
+                    .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("error", "登入失敗", "message", e.getMessage()));
         } catch (Exception e) {
             log.error("JWT 登入失敗，用戶名: {}, 錯誤: {}", request.getUsername(), e.getMessage());
             
@@ -133,25 +142,37 @@ public class HybridAuthController {
 
     /**
      * JWT Token 刷新
+     * Refresh Token 一次性使用：每次刷新都會換發同一家族的新 Refresh Token，舊的立即作廢
      */
     @PostMapping("/refresh")
     public ResponseEntity<?> refreshToken(@RequestBody RefreshTokenRequest request) {
         try {
             log.info("Token 刷新請求");
 
-            // 1. 驗證 Refresh Token
-            String username = null;
-            if (jwtRedisTokenService != null) {
-                username = jwtRedisTokenService.validateRefreshToken(request.getRefreshToken());
-            }
-
-            if (username == null) {
+            if (jwtRedisTokenService == null) {
                 return ResponseEntity.badRequest().body(Map.of("error", "無效的 Refresh Token"));
             }
 
-            // 2. 載入用戶資訊
+            // 1. 驗證 Refresh Token 簽章，並載入用戶資訊
+            VerifiedToken presented = jwtService.verify(request.getRefreshToken());
+            String username = presented.subject();
             UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
+            // 2. 輪替 Refresh Token（舊版沒有家族的 Refresh Token 改發新家族）
+            String family = presented.refreshFamily() != null ? presented.refreshFamily() : JwtService.newRefreshFamily();
+            String newRefreshToken = jwtService.generateRefreshToken(userDetails, family);
+            switch (jwtRedisTokenService.rotateRefreshToken(request.getRefreshToken(), newRefreshToken)) {
+                case ROTATED -> { }
+                case REUSED -> {
+                    log.warn("Refresh Token 重放，已作廢該登入的所有 Refresh Token，用戶: {}", username);
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(Map.of("error", "Refresh Token 已被使用，請重新登入"));
+                }
+                case INVALID -> {
+                    return ResponseEntity.badRequest().body(Map.of("error", "無效的 Refresh Token"));
+                }
+            }
+
             // 3. 生成新的 Access Token
             String newJwtId = UUID.randomUUID().toString();
             String newAccessToken = jwtService.generateTokenWithJti(new HashMap<>(), userDetails, newJwtId);
@@ -164,6 +185,7 @@ public class HybridAuthController {
 
             Map<String, Object> response = new HashMap<>();
             response.put("accessToken", newAccessToken);
+            response.put("refreshToken", newRefreshToken);
             response.put("tokenType", "Bearer");
             response.put("expiresIn", 86400);
 
@@ -187,7 +209,9 @@ public class HybridAuthController {
                 token = token.substring(7);
             }
 
-            String username = jwtService.extractUsername(token);
+            // 驗證一次，之後直接使用聲明
+            VerifiedToken verified = jwtService.verify(token);
+            String username = verified.subject();
             log.info("JWT 登出請求，用戶: {}", username);
 
             // 1. 將 Token 加入黑名單
@@ -195,8 +219,7 @@ public class HybridAuthController {
                 jwtRedisTokenService.blacklistToken(token);
                 
                 // 2. 從用戶 Token 集合中移除
-                String jti = jwtService.getJwtId(token);
-                jwtRedisTokenService.removeUserToken(username, jti);
+                jwtRedisTokenService.removeUserToken(username, verified.jwtId());
                 
                 // 3. 移除 Refresh Token（如果提供）
                 if (request.getRefreshToken() != null) {
@@ -230,7 +253,7 @@ public class HybridAuthController {
                 token = token.substring(7);
             }
 
-            String username = jwtService.extractUsername(token);
+            String username = jwtService.verify(token).subject();
             log.info("登出所有設備請求，用戶: {}", username);
 
             // 撤銷用戶的所有 Token
@@ -257,7 +280,7 @@ public class HybridAuthController {
                 token = token.substring(7);
             }
 
-            String username = jwtService.extractUsername(token);
+            String username = jwtService.verify(token).subject();
             
             Long activeCount = 0L;
             if (jwtRedisTokenService != null) {
@@ -0,0 +1,121 @@
+//訂單查詢(訂單歷史)
+package com.example.demo.controller;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.demo.interceptor.AsyncTimeoutInterceptor;
+import com.example.demo.service.OrderExportRequest;
+import com.example.demo.service.OrderExportService;
+import com.example.demo.service.OrderHistoryPage;
+import com.example.demo.service.OrderHistoryService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+@RestController
+@RequestMapping("/api")
+public class OrderController {
+
+    @Autowired //自動注入 訂單歷史查詢
+    private OrderHistoryService orderHistoryService;
+
+    @Autowired //自動注入 訂單匯出
+    private OrderExportService orderExportService;
+
+    //匯出下載的非同步逾時(預設的 30 秒不足以匯出大量訂單；0 表示不逾時)
+    @Value("${order-export.timeout:PT1H}")
+    private Duration exportTimeout;
+
+    /**
+     * 訂單歷史(由新到舊)
+     * GET http://localhost:8080/api/orders?size=20
+     * GET http://localhost:8080/api/orders?cursor=[上一頁的 nextCursor]&size=20
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<OrderHistoryPage> history(@RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "" + OrderHistoryService.DEFAULT_PAGE_SIZE) int size,
+                                                    HttpSession session) {
+        //從session查詢uid數值
+        Integer uid = (Integer) session.getAttribute("uid");
+
+        if (uid == null) {
+            throw new IllegalArgumentException("用戶未登入");
+        }
+        return ResponseEntity.ok(orderHistoryService.getHistory(uid, cursor, size));
+    }
+
+    /**
+     * 單筆訂單(含明細與付款狀態)
+     * GET http://localhost:8080/api/orders/[merchantOrderNo]
+     */
+    @GetMapping("/orders/{merchantOrderNo}")
+    public ResponseEntity<OrderHistoryPage.Entry> order(@PathVariable String merchantOrderNo, HttpSession session) {
+        //從session查詢uid數值
+        Integer uid = (Integer) session.getAttribute("uid");
+
+        if (uid == null) {
+            throw new IllegalArgumentException("用戶未登入");
+        }
+        //只能查詢自己的訂單
+        return orderHistoryService.getOrder(merchantOrderNo)
+            .filter(view -> uid.equals(view.getUid()))
+            .map(view -> ResponseEntity.ok(orderHistoryService.toEntry(view)))
+            .orElseThrow(() -> new IllegalArgumentException("找不到訂單：" + merchantOrderNo));
+    }
+
+    /**
+     * 後台依訂單狀態查詢(由新到舊)
+     * GET http://localhost:8080/api/admin/orders?status=1&size=20
+     */
+    @GetMapping("/admin/orders")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<OrderHistoryPage> adminOrders(@RequestParam String status,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "" + OrderHistoryService.DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(orderHistoryService.getByStatus(status, cursor, size));
+    }
+
+    /**
+     * 後台匯出訂單(串流輸出，不會一次載入全部訂單)
+     * GET http://localhost:8080/api/admin/orders/export?from=2025-01-01&to=2025-02-01&format=csv&content=orders&gzip=true
+     * content=lines 時每筆明細一列(含所屬訂單欄位)
+     */
+    @GetMapping("/admin/orders/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                        @RequestParam(required = false) String status,
+                                                        @RequestParam(defaultValue = "csv") String format,
+                                                        @RequestParam(defaultValue = "orders") String content,
+                                                        @RequestParam(defaultValue = "true") boolean archived,
+                                                        @RequestParam(defaultValue = "true") boolean gzip,
+                                                        HttpServletRequest httpRequest) {
+        OrderExportRequest request = new OrderExportRequest(
+                OrderExportRequest.Format.of(format),
+                OrderExportRequest.Content.of(content),
+                from, to, status, archived, gzip);
+
+        httpRequest.setAttribute(AsyncTimeoutInterceptor.TIMEOUT_ATTRIBUTE, exportTimeout);
+        StreamingResponseBody body = out -> orderExportService.export(request, out);
+        return ResponseEntity.ok()
+            .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType(request.format().contentType() + ";charset=UTF-8"))
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(request.fileName()).build().toString())
+            .body(body);
+    }
+}
\ No newline at end of file
@@ -1,22 +1,27 @@
 //負責接收前端或第三方（藍新）的請求，並呼叫 PayService
 package com.example.demo.controller;
 
-import java.util.List;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import com.example.demo.entity.CartVO;
+import com.example.demo.entity.OrderView;
 import com.example.demo.newwebpay.bean.PayResponse;
 import com.example.demo.newwebpay.bean.PaymentResponse;
-import com.example.demo.service.CartService;
+import com.example.demo.service.CheckoutService;
+import com.example.demo.service.OrderHistoryService;
 import com.example.demo.service.PayService;
+import com.example.demo.service.PaymentStatusStreamService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,8 +36,14 @@ public class PayController {
 
     private final PayService payService;
 
-    @Autowired //自動注入 購物車服務介面
-    private CartService cartService;
+    @Autowired //自動注入 結帳流程
+    private CheckoutService checkoutService;
+
+    @Autowired //自動注入 訂單查詢(讀取模型)
+    private OrderHistoryService orderHistoryService;
+
+    @Autowired //自動注入 付款狀態推播服務
+    private PaymentStatusStreamService paymentStatusStreamService;
 
     /**
      * 送出訂單
@@ -40,7 +51,7 @@ public class PayController {
      */
 
     @PostMapping("/pay")
-    public ResponseEntity<PayResponse> pay(@RequestParam int totalAmount, HttpSession session) {
+    public ResponseEntity<PayResponse> pay(@RequestParam int totalAmount, HttpSession session, HttpServletRequest request) {
         //從session查詢uid數值、用戶名稱
         Integer uid = (Integer) session.getAttribute("uid");
         String username = (String) session.getAttribute("username");
@@ -49,26 +60,8 @@ public class PayController {
             throw new IllegalArgumentException("用戶未登入");
         }
 
-        List<CartVO> cartItems = cartService.GetByUid(uid);
-        
-        if (cartItems == null || cartItems.isEmpty()) {
-            throw new IllegalArgumentException("購物車是空的");
-        }
-
-        //計算實際總金額(防止前端篡改)
-        //stream() 將集合轉換為流
-        //mapToInt 將每個CartVO物件映射為其價格乘以數量的整數值
-        int actualTotal = cartItems.stream()
-            .mapToInt(item -> item.getPrice() * item.getNum())
-            .sum();
-            
-        if (actualTotal != totalAmount) {
-            throw new IllegalArgumentException("金額驗證失敗：前端金額=" + totalAmount + ", 實際金額=" + actualTotal);
-        }
-
-        //建立商品描述
-        String itemDescription = "購物車商品 - 用戶: " + username + " (" + cartItems.size() + "件商品)";
-        PayResponse response = payService.pay(actualTotal, itemDescription, uid);  // 使用驗證後的金額
+        //讀取購物車與即時價格、驗證金額、建立訂單與預留庫存(單一流程)
+        PayResponse response = checkoutService.checkout(uid, username, request.getRemoteAddr(), totalAmount);
         return ResponseEntity.ok(response);
     }
 
@@ -89,10 +82,34 @@ public class PayController {
             throw new IllegalArgumentException("用戶未登入");
         }
 
-        PaymentResponse.QueryTradeInfoResponse response = payService.queryTradeInfo(merchantOrderNo, amt);
+        PaymentResponse.QueryTradeInfoResponse response = payService.queryTradeInfoCached(merchantOrderNo, amt);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 訂閱付款狀態(Server-Sent Events)，狀態變更時主動推送，不需輪詢 query_info
+     * GET http://localhost:8080/api/pay/stream/[merchantOrderNo]
+     *     Accept: text/event-stream
+     */
+    @GetMapping(value = "/pay/stream/{merchantOrderNo}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPaymentStatus(@PathVariable String merchantOrderNo, HttpSession session) {
+        //從session查詢uid數值
+        Integer uid = (Integer) session.getAttribute("uid");
+
+        if (uid == null) {
+            throw new IllegalArgumentException("用戶未登入");
+        }
+
+        //只能訂閱自己的訂單
+        OrderView order = orderHistoryService.getOrder(merchantOrderNo)
+            .filter(o -> uid.equals(o.getUid()))
+            .orElseThrow(() -> new IllegalArgumentException("找不到訂單：" + merchantOrderNo));
+
+        //先登記訂閱再讀取目前狀態(讀取 orderdata，讀取模型為非同步更新可能落後)
+        return paymentStatusStreamService.subscribe(order.getMerchantOrderNo(),
+            () -> orderHistoryService.currentStatus(order.getMerchantOrderNo()));
+    }
+
     /**
      * 請退款
      * POST http://localhost:8080/api/close_trade?
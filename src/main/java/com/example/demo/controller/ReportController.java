@@ -0,0 +1,60 @@
+//後台財務報表(訂單明細欄式檔案)
+package com.example.demo.controller;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.service.OrderLineReport;
+import com.example.demo.service.OrderLineReportService;
+
+@RestController
+@RequestMapping("/api/admin/reports")
+@PreAuthorize("hasRole('ADMIN')")
+public class ReportController {
+
+    @Autowired //自動注入 訂單明細報表
+    private OrderLineReportService orderLineReportService;
+
+    /**
+     * 依商品彙總(預設只計算付款成功)
+     * GET http://localhost:8080/api/admin/reports/products?from=2025-01-01&to=2025-04-01&status=1
+     */
+    @GetMapping("/products")
+    public ResponseEntity<OrderLineReport> products(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                    @RequestParam(defaultValue = "1") List<String> status) {
+        return ResponseEntity.ok(orderLineReportService.productTotals(from, to, status));
+    }
+
+    /**
+     * 依日彙總
+     * GET http://localhost:8080/api/admin/reports/daily?from=2025-01-01&to=2025-02-01&status=1,6
+     */
+    @GetMapping("/daily")
+    public ResponseEntity<OrderLineReport> daily(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                 @RequestParam(defaultValue = "1") List<String> status) {
+        return ResponseEntity.ok(orderLineReportService.dailyTotals(from, to, status));
+    }
+
+    /**
+     * 重新匯出指定月份
+     * POST http://localhost:8080/api/admin/reports/order-lines/2025-01
+     */
+    @PostMapping("/order-lines/{month}")
+    public ResponseEntity<OrderLineReport.Export> export(@PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return ResponseEntity.ok(orderLineReportService.export(month));
+    }
+}
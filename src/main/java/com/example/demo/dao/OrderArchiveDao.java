@@ -0,0 +1,42 @@
+//建立訂單歸檔介面
+package com.example.demo.dao;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderList;
+
+public interface OrderArchiveDao {
+    //建立歸檔資料表(結構與 orderdata、orderlistdata 相同)，並補上熱資料表新增的欄位
+    void CreateArchiveTables();
+
+    //歸檔資料表是否可用
+    boolean IsReady();
+
+    //依 (建立時間, 主鍵) 順序掃描熱資料表中建立時間早於 before 的訂單(只含 id、訂單編號、狀態、建立時間)
+    //afterCreated 為 null 時從頭開始，否則從 (afterCreated, afterId) 之後繼續
+    List<Order> ScanOrders(LocalDateTime before, LocalDateTime afterCreated, Integer afterId, int limit);
+
+    //依主鍵順序掃描熱資料表或歸檔資料表的訂單編號(只含 id、訂單編號)
+    List<Order> ScanOrderNos(boolean archived, Integer afterId, int limit);
+
+    //將指定訂單(仍為指定狀態者)與其明細搬到歸檔資料表，回傳搬移的訂單數
+    int ArchiveOrders(Collection<Integer> ids, Collection<String> tradeStatuses);
+
+    //將歸檔訂單與其明細搬回熱資料表，回傳搬回的訂單數
+    int RestoreOrder(String merchantOrderNo);
+
+    //查詢歸檔訂單
+    List<Order> FindArchivedOrder(String merchantOrderNo);
+
+    //查詢歸檔訂單明細
+    List<OrderList> FindArchivedOrderLists(String merchantOrderNo);
+
+    //逐筆讀取訂單建立時間在 [from, to) 且為指定狀態的明細(熱資料表 + 歸檔資料表)
+    //欄位：Pid、Num、Amt、Tradestatus、Paymenttype、Paytime、Created_time
+    void StreamOrderLines(LocalDateTime from, LocalDateTime to, Collection<String> tradeStatuses, RowCallbackHandler handler);
+}
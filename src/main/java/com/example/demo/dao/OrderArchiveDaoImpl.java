@@ -0,0 +1,190 @@
+//定義訂單歸檔介面
+package com.example.demo.dao;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderList;
+import com.example.demo.mapper.OrderListRowMapper;
+import com.example.demo.mapper.OrderRowMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Component//將此類別註冊為Spring容器的Bean
+//訂單歸檔(熱資料表 orderdata、orderlistdata <-> 歸檔資料表 *_archive)
+public class OrderArchiveDaoImpl implements OrderArchiveDao {
+
+    private static final String ORDER_TABLE = "orderdata";
+    private static final String ORDER_LIST_TABLE = "orderlistdata";
+    private static final String ARCHIVE_SUFFIX = "_archive";
+
+    @Autowired //自動注入 NamedParameterJdbcTemplate可進行數據庫操作，執行SQL語句
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    //搬移時使用的欄位清單(以熱資料表為準，建表時決定)
+    private volatile String orderColumns;
+    private volatile String orderListColumns;
+
+    @Override
+    public void CreateArchiveTables() {
+        orderColumns = prepare(ORDER_TABLE);
+        orderListColumns = prepare(ORDER_LIST_TABLE);
+    }
+
+    @Override
+    public boolean IsReady() {
+        return orderColumns != null && orderListColumns != null;
+    }
+
+    //建立歸檔資料表(含索引)，並補上熱資料表之後新增的欄位(ddl-auto=update 只會更新熱資料表)
+    private String prepare(String table) {
+        String archive = table + ARCHIVE_SUFFIX;
+        namedParameterJdbcTemplate.getJdbcTemplate().execute("CREATE TABLE IF NOT EXISTS " + archive + " LIKE " + table);
+
+        String sql = "SELECT COLUMN_NAME, COLUMN_TYPE FROM information_schema.COLUMNS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = :table ORDER BY ORDINAL_POSITION";
+        List<Map<String, Object>> hotColumns = namedParameterJdbcTemplate.queryForList(sql, Map.of("table", table));
+        Set<String> archiveColumns = namedParameterJdbcTemplate.queryForList(sql, Map.of("table", archive)).stream()
+                .map(column -> String.valueOf(column.get("COLUMN_NAME")).toLowerCase())
+                .collect(Collectors.toSet());
+
+        List<String> columns = new ArrayList<>(hotColumns.size());
+        for (Map<String, Object> column : hotColumns) {
+            String name = String.valueOf(column.get("COLUMN_NAME"));
+            if (!archiveColumns.contains(name.toLowerCase())) {
+                //新欄位一律允許 NULL，既有歸檔資料不必補值
+                namedParameterJdbcTemplate.getJdbcTemplate().execute(
+                        "ALTER TABLE " + archive + " ADD COLUMN `" + name + "` " + column.get("COLUMN_TYPE") + " NULL");
+                log.info("歸檔資料表 {} 新增欄位 {}", archive, name);
+            }
+            columns.add("`" + name + "`");
+        }
+        return String.join(", ", columns);
+    }
+
+    @Override
+    public List<Order> ScanOrders(LocalDateTime before, LocalDateTime afterCreated, Integer afterId, int limit) {
+        //idx_orderdata_created 範圍掃描(序列一次配發一段 id，多節點時主鍵順序與建立時間不一致，不能以主鍵判斷截止)
+        //Created_time 為 NULL 的訂單不符合 < :before，不會被歸檔
+        String sql = "SELECT id, Merchantorderno, Tradestatus, Created_time FROM orderdata WHERE Created_time < :before "
+                + (afterCreated == null ? "" : "AND (Created_time > :afterCreated OR (Created_time = :afterCreated AND id > :afterId)) ")
+                + "ORDER BY Created_time, id LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("before", before)
+                .addValue("afterCreated", afterCreated)
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return namedParameterJdbcTemplate.query(sql, params, (resultSet, i) -> {
+            Order order = new Order();
+            order.setOid(resultSet.getInt("id"));
+            order.setMerchantorderno(resultSet.getString("Merchantorderno"));
+            order.setTradestatus(resultSet.getString("Tradestatus"));
+            Timestamp createdTime = resultSet.getTimestamp("Created_time");
+            order.setCreatedTime(createdTime != null ? createdTime.toLocalDateTime() : null);
+            return order;
+        });
+    }
+
+    @Override
+    public List<Order> ScanOrderNos(boolean archived, Integer afterId, int limit) {
+        String sql = "SELECT id, Merchantorderno FROM " + (archived ? ORDER_TABLE + ARCHIVE_SUFFIX : ORDER_TABLE)
+                + " WHERE id > :afterId ORDER BY id LIMIT :limit";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("afterId", afterId)
+                .addValue("limit", limit);
+        return namedParameterJdbcTemplate.query(sql, params, (resultSet, i) -> {
+            Order order = new Order();
+            order.setOid(resultSet.getInt("id"));
+            order.setMerchantorderno(resultSet.getString("Merchantorderno"));
+            return order;
+        });
+    }
+
+    @Override
+    public int ArchiveOrders(Collection<Integer> ids, Collection<String> tradeStatuses) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        //先鎖定仍為結案狀態的訂單，避免搬移途中被付款通知改成其他狀態
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("tradeStatuses", tradeStatuses);
+        List<Map<String, Object>> locked = namedParameterJdbcTemplate.queryForList(
+                "SELECT id, Merchantorderno FROM orderdata WHERE id IN (:ids) AND Tradestatus IN (:tradeStatuses) FOR UPDATE", params);
+        if (locked.isEmpty()) {
+            return 0;
+        }
+        List<Object> lockedIds = locked.stream().map(row -> row.get("id")).toList();
+        List<Object> merchantOrderNos = locked.stream().map(row -> row.get("Merchantorderno")).toList();
+        MapSqlParameterSource move = new MapSqlParameterSource()
+                .addValue("ids", lockedIds)
+                .addValue("merchantOrderNos", merchantOrderNos);
+
+        namedParameterJdbcTemplate.update("INSERT INTO orderlistdata_archive (" + orderListColumns + ") SELECT " + orderListColumns
+                + " FROM orderlistdata WHERE Merchantorderno IN (:merchantOrderNos)", move);
+        int moved = namedParameterJdbcTemplate.update("INSERT INTO orderdata_archive (" + orderColumns + ") SELECT " + orderColumns
+                + " FROM orderdata WHERE id IN (:ids)", move);
+        namedParameterJdbcTemplate.update("DELETE FROM orderlistdata WHERE Merchantorderno IN (:merchantOrderNos)", move);
+        namedParameterJdbcTemplate.update("DELETE FROM orderdata WHERE id IN (:ids)", move);
+        return moved;
+    }
+
+    @Override
+    public int RestoreOrder(String merchantOrderNo) {
+        Map<String, Object> params = Map.of("merchantOrderNo", merchantOrderNo);
+        //鎖定歸檔訂單，同時搬回同一筆時只有一個會成功，另一個等待後直接讀熱資料表
+        List<Integer> locked = namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM orderdata_archive WHERE Merchantorderno = :merchantOrderNo FOR UPDATE", params, Integer.class);
+        if (locked.isEmpty()) {
+            return 0;
+        }
+        namedParameterJdbcTemplate.update("INSERT INTO orderdata (" + orderColumns + ") SELECT " + orderColumns
+                + " FROM orderdata_archive WHERE Merchantorderno = :merchantOrderNo", params);
+        namedParameterJdbcTemplate.update("INSERT INTO orderlistdata (" + orderListColumns + ") SELECT " + orderListColumns
+                + " FROM orderlistdata_archive WHERE Merchantorderno = :merchantOrderNo", params);
+        namedParameterJdbcTemplate.update("DELETE FROM orderlistdata_archive WHERE Merchantorderno = :merchantOrderNo", params);
+        return namedParameterJdbcTemplate.update("DELETE FROM orderdata_archive WHERE Merchantorderno = :merchantOrderNo", params);
+    }
+
+    @Override
+    public List<Order> FindArchivedOrder(String merchantOrderNo) {
+        String sql = "SELECT * FROM orderdata_archive WHERE Merchantorderno = :merchantOrderNo";
+        return namedParameterJdbcTemplate.query(sql, Map.of("merchantOrderNo", merchantOrderNo), new OrderRowMapper());
+    }
+
+    @Override
+    public List<OrderList> FindArchivedOrderLists(String merchantOrderNo) {
+        String sql = "SELECT * FROM orderlistdata_archive WHERE Merchantorderno = :merchantOrderNo";
+        return namedParameterJdbcTemplate.query(sql, Map.of("merchantOrderNo", merchantOrderNo), new OrderListRowMapper());
+    }
+
+    @Override
+    public void StreamOrderLines(LocalDateTime from, LocalDateTime to, Collection<String> tradeStatuses, RowCallbackHandler handler) {
+        String select = "SELECT l.Pid, l.Num, l.Amt, l.Tradestatus, l.Paymenttype, l.Paytime, o.Created_time FROM %s l "
+                + "JOIN %s o ON o.Merchantorderno = l.Merchantorderno "
+                + "WHERE o.Created_time >= :from AND o.Created_time < :to AND l.Tradestatus IN (:tradeStatuses)";
+        String sql = String.format(select, ORDER_LIST_TABLE, ORDER_TABLE);
+        if (IsReady()) {
+            sql += " UNION ALL " + String.format(select, ORDER_LIST_TABLE + ARCHIVE_SUFFIX, ORDER_TABLE + ARCHIVE_SUFFIX);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("tradeStatuses", tradeStatuses);
+        namedParameterJdbcTemplate.query(sql, params, handler);
+    }
+}
@@ -0,0 +1,15 @@
+//建立訂單匯出介面
+package com.example.demo.dao;
+
+import java.time.LocalDateTime;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+public interface OrderExportDao {
+    //逐筆讀取訂單(MySQL 串流結果集，不會把整個結果載入記憶體)
+    //archived=true 時讀取歸檔資料表；tradeStatus 為 null 時不篩選
+    void StreamOrders(LocalDateTime from, LocalDateTime to, String tradeStatus, boolean archived, RowCallbackHandler handler);
+
+    //逐筆讀取訂單明細(含所屬訂單欄位)
+    void StreamOrderLines(LocalDateTime from, LocalDateTime to, String tradeStatus, boolean archived, RowCallbackHandler handler);
+}
@@ -0,0 +1,78 @@
+//定義訂單匯出介面
+package com.example.demo.dao;
+
+import java.time.LocalDateTime;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component//將此類別註冊為Spring容器的Bean
+//訂單匯出(唯讀、只能往前讀的串流查詢)
+public class OrderExportDaoImpl implements OrderExportDao {
+
+    private static final String ORDER_COLUMNS = "o.id AS order_id, o.Merchantorderno AS merchant_order_no, o.Uid AS uid, "
+            + "o.Totalamt AS total_amt, o.Tradestatus AS trade_status, o.Paymenttype AS payment_type, o.Tradeno AS trade_no, "
+            + "o.Paytime AS pay_time, o.Itemdescription AS item_description, o.Created_time AS created_time, "
+            + "o.Updated_time AS updated_time";
+
+    private static final String LINE_COLUMNS = "o.Merchantorderno AS merchant_order_no, o.Uid AS uid, "
+            + "o.Tradestatus AS trade_status, o.Paymenttype AS payment_type, o.Tradeno AS trade_no, o.Paytime AS pay_time, "
+            + "o.Created_time AS created_time, l.id AS line_id, l.Pid AS pid, l.Num AS num, l.Amt AS amt";
+
+    //專用的 JdbcTemplate：fetchSize = Integer.MIN_VALUE 讓 MySQL Connector/J 逐列串流
+    //(預設會把整個結果集讀進記憶體)
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    public OrderExportDaoImpl(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public void StreamOrders(LocalDateTime from, LocalDateTime to, String tradeStatus, boolean archived, RowCallbackHandler handler) {
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM " + table("orderdata", archived) + " o WHERE " + conditions(from, to, tradeStatus)
+                + " ORDER BY o.id";
+        streamingJdbcTemplate.query(sql, params(from, to, tradeStatus), handler);
+    }
+
+    @Override
+    public void StreamOrderLines(LocalDateTime from, LocalDateTime to, String tradeStatus, boolean archived, RowCallbackHandler handler) {
+        //依訂單主鍵順序掃描，明細以 Merchantorderno 索引查詢(不需要排序整個結果)
+        String sql = "SELECT " + LINE_COLUMNS + " FROM " + table("orderdata", archived) + " o JOIN "
+                + table("orderlistdata", archived) + " l ON l.Merchantorderno = o.Merchantorderno WHERE " + conditions(from, to, tradeStatus)
+                + " ORDER BY o.id";
+        streamingJdbcTemplate.query(sql, params(from, to, tradeStatus), handler);
+    }
+
+    private static String table(String table, boolean archived) {
+        return archived ? table + "_archive" : table;
+    }
+
+    //只加入有指定的條件
+    private static String conditions(LocalDateTime from, LocalDateTime to, String tradeStatus) {
+        StringBuilder where = new StringBuilder("1 = 1");
+        if (from != null) {
+            where.append(" AND o.Created_time >= :from");
+        }
+        if (to != null) {
+            where.append(" AND o.Created_time < :to");
+        }
+        if (tradeStatus != null) {
+            where.append(" AND o.Tradestatus = :tradeStatus");
+        }
+        return where.toString();
+    }
+
+    private static MapSqlParameterSource params(LocalDateTime from, LocalDateTime to, String tradeStatus) {
+        return new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("tradeStatus", tradeStatus);
+    }
+}
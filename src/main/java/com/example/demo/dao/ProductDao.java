@@ -1,7 +1,9 @@
 //建立商品介面
 package com.example.demo.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.example.demo.entity.Product;
 
@@ -17,4 +19,16 @@ public interface ProductDao {
     
     //更新商品庫存
     Integer UpdateNum(Integer id, Integer num);
+
+    //查詢使用者購物車內所有商品的即時狀態(上架狀態、價格、庫存；不含圖片)
+    List<Product> FindStatesByCartUid(Integer uid);
+
+    //批次查詢商品名稱(只含 id、title)
+    List<Product> FindTitlesByIds(Collection<Integer> ids);
+
+    //批次調整商品庫存(商品id -> 增減數量，負數為扣庫存)
+    int[] AdjustNums(Map<Integer, Integer> deltas);
+
+    //批次預留商品庫存(庫存足夠才扣除)，回傳值與依商品id排序後的順序對應
+    int[] ReserveNums(Map<Integer, Integer> quantities);
 }
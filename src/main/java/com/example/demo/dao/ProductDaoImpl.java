@@ -1,12 +1,16 @@
 //定義商品介面
 package com.example.demo.dao;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Component;
 
 import com.example.demo.entity.Product;
@@ -102,4 +106,72 @@ public class ProductDaoImpl implements ProductDao {
         int rows = namedParameterJdbcTemplate.update(sql, map); //回傳1代表更新一筆資料0代表沒有
         return rows;
     }
+
+    @Override //覆寫
+    //查詢使用者購物車內所有商品的即時狀態
+    public List<Product> FindStatesByCartUid(Integer uid) {
+        //只取結帳驗證需要的欄位，避免讀取圖片 BLOB
+        String sql = "SELECT DISTINCT p.id, p.title, p.price, p.num, p.status FROM productdata p " +
+                "JOIN Cartdata c ON c.pid = p.id WHERE c.uid = :uid";
+        Map<String, Object> map = new HashMap<>();
+        map.put("uid", uid);
+        return namedParameterJdbcTemplate.query(sql, map, (resultSet, i) -> {
+            Product product = new Product();
+            product.setId(resultSet.getInt("id"));
+            product.setTitle(resultSet.getString("title"));
+            product.setPrice(resultSet.getInt("price"));
+            product.setNum(resultSet.getInt("num"));
+            product.setStatus(resultSet.getInt("status"));
+            return product;
+        });
+    }
+
+    @Override //覆寫
+    //批次查詢商品名稱
+    public List<Product> FindTitlesByIds(Collection<Integer> ids) {
+        String sql = "SELECT id, title FROM productdata WHERE id IN (:ids)";
+        Map<String, Object> map = new HashMap<>();
+        map.put("ids", ids);
+        return namedParameterJdbcTemplate.query(sql, map, (resultSet, i) -> {
+            Product product = new Product();
+            product.setId(resultSet.getInt("id"));
+            product.setTitle(resultSet.getString("title"));
+            return product;
+        });
+    }
+
+    @Override //覆寫
+    //批次調整商品庫存
+    public int[] AdjustNums(Map<Integer, Integer> deltas) {
+        //以相對值更新(num = num + 增減量)，不必先查詢原始庫存，也不會覆蓋其他交易的更新
+        String sql = "UPDATE productdata SET num = num + :delta WHERE id = :id";
+        //依商品id排序，多筆訂單同時更新時以相同順序上鎖，避免死結
+        Map<Integer, Integer> sorted = new TreeMap<>(deltas);
+        SqlParameterSource[] batch = new SqlParameterSource[sorted.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : sorted.entrySet()) {
+            batch[i++] = new MapSqlParameterSource()
+                    .addValue("id", entry.getKey())
+                    .addValue("delta", entry.getValue());
+        }
+        //整批一次送出(搭配 rewriteBatchedStatements 只需一次往返)
+        return namedParameterJdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    @Override //覆寫
+    //批次預留商品庫存
+    public int[] ReserveNums(Map<Integer, Integer> quantities) {
+        //條件式扣庫存，庫存不足時該筆更新 0 筆
+        String sql = "UPDATE productdata SET num = num - :num WHERE id = :id AND num >= :num";
+        //依商品id排序，避免死結
+        Map<Integer, Integer> sorted = new TreeMap<>(quantities);
+        SqlParameterSource[] batch = new SqlParameterSource[sorted.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : sorted.entrySet()) {
+            batch[i++] = new MapSqlParameterSource()
+                    .addValue("id", entry.getKey())
+                    .addValue("num", entry.getValue());
+        }
+        return namedParameterJdbcTemplate.batchUpdate(sql, batch);
+    }
 }
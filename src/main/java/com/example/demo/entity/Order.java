@@ -10,11 +10,18 @@ import lombok.EqualsAndHashCode;
 @Data
 @EqualsAndHashCode(callSuper = true)
 @Entity
-@Table(name = "orderdata")
+//依使用者查詢訂單歷史(Uid, Created_time, id 排序)，並涵蓋摘要欄位，列表查詢不必回表
+//歸檔排程依 (Created_time, id) 掃描早於截止時間的訂單
+@Table(name = "orderdata", indexes = {
+    @Index(name = "idx_orderdata_uid_created", columnList = "Uid, Created_time, id, Merchantorderno, Totalamt, Tradestatus, Paymenttype, Paytime"),
+    @Index(name = "idx_orderdata_created", columnList = "Created_time, id, Tradestatus")
+})
 public class Order extends BaseEntity implements Serializable{
     
     @Id //主鍵
-    @GeneratedValue(strategy = GenerationType.IDENTITY) //自增長
+    //序列(MySQL 以資料表模擬)一次取 50 個 id，批次新增時不必逐筆等待資料庫回傳自增長主鍵
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "orderdata_seq", allocationSize = 50)
     @Column(name = "id")
     private Integer oid;
 
@@ -45,5 +52,9 @@ public class Order extends BaseEntity implements Serializable{
     
     @Column(name = "Paytime")
     private String paytime; // 付款時間
+
+    //結帳時是否已預留庫存(上線前建立的舊訂單為 NULL：狀態變動時不補回、不扣除庫存)
+    @Column(name = "Stock_reserved")
+    private Boolean stockReserved;
     
 }
\ No newline at end of file
@@ -10,12 +10,16 @@ import lombok.Data;
 @Entity
 @Data
 //@EqualsAndHashCode(callSuper = true)
-@Table(name = "orderlistdata")
+@Table(name = "orderlistdata", indexes = {
+    @Index(name = "idx_orderlistdata_merchantorderno", columnList = "Merchantorderno") //依訂單編號查詢明細
+})
 
 public class OrderList implements Serializable{
 
     @Id //主鍵
-    @GeneratedValue(strategy = GenerationType.IDENTITY) //自增長
+    //序列(MySQL 以資料表模擬)一次取 50 個 id，批次新增時不必逐筆等待資料庫回傳自增長主鍵
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_list_seq")
+    @SequenceGenerator(name = "order_list_seq", sequenceName = "orderlistdata_seq", allocationSize = 50)
     @Column(name = "id")
     private Integer lid;
 
@@ -0,0 +1,54 @@
+//訂單讀取模型(每張訂單一筆文件，查詢時不必再 JOIN 訂單、明細與商品)
+package com.example.demo.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "order_view", indexes = {
+    @Index(name = "idx_order_view_uid_created", columnList = "uid, created_time, merchant_order_no"), //使用者訂單歷史
+    @Index(name = "idx_order_view_status_created", columnList = "trade_status, created_time, merchant_order_no") //後台依狀態查詢
+})
+public class OrderView implements Serializable {
+
+    @Id //主鍵(與 orderdata 的商店訂單編號相同)
+    @Column(name = "merchant_order_no", length = 30)
+    private String merchantOrderNo;
+
+    @Column(name = "uid")
+    private Integer uid; //使用者id
+
+    @Column(name = "total_amt")
+    private Integer totalAmt; // 訂單金額
+
+    @Column(name = "item_description", length = 500)
+    private String itemDescription; // 商品描述
+
+    @Column(name = "trade_status", length = 10)
+    private String tradeStatus; // 訂單狀態 (0=未付款, 1=已付款, 2=訂單失敗, 3=訂單取消, 6=已退款)
+
+    @Column(name = "payment_type", length = 20)
+    private String paymentType; // 付款方式
+
+    @Column(name = "trade_no", length = 30)
+    private String tradeNo; // 藍新金流交易序號
+
+    @Column(name = "pay_time", length = 30)
+    private String payTime; // 付款時間
+
+    @Column(name = "created_time")
+    private LocalDateTime createdTime; // 訂單建立時間
+
+    @Column(name = "updated_time")
+    private LocalDateTime updatedTime; // 讀取模型最後更新時間
+
+    @Column(name = "source_updated_time")
+    private LocalDateTime sourceUpdatedTime; // 來源訂單的 Updated_time(較舊的投影不覆蓋較新的文件)
+
+    @Column(name = "items", columnDefinition = "TEXT")
+    private String items; // 明細(JSON：商品id、名稱、金額、數量)
+}
@@ -0,0 +1,54 @@
+//交易外寄箱(Transactional Outbox)：與訂單、明細、庫存異動在同一個交易寫入，再由轉送排程發佈
+package com.example.demo.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "outbox_event", indexes = {
+    @Index(name = "idx_outbox_event_published", columnList = "published_time, parked_time, id"), //轉送排程掃描未發佈事件
+    @Index(name = "idx_outbox_event_aggregate", columnList = "aggregate_type, aggregate_id, id") //認領時檢查同一聚合較早的事件
+})
+public class OutboxEvent {
+
+    @Id //主鍵(自動遞增，依寫入順序遞增，轉送時依此排序以維持同一聚合的事件順序)
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "aggregate_type", length = 30, nullable = false)
+    private String aggregateType; // 聚合類型(例如：order)
+
+    @Column(name = "aggregate_id", length = 50, nullable = false)
+    private String aggregateId; // 聚合id(訂單為商店訂單編號，亦作為 Kafka 訊息 key)
+
+    @Column(name = "event_type", length = 50, nullable = false)
+    private String eventType; // 事件類型(OrderCreated、PaymentStatusChanged、StockAdjusted)
+
+    @Column(name = "payload", columnDefinition = "TEXT", nullable = false)
+    private String payload; // 事件內容(JSON)
+
+    @Column(name = "created_time", nullable = false)
+    private LocalDateTime createdTime; // 寫入時間
+
+    @Column(name = "published_time")
+    private LocalDateTime publishedTime; // 發佈完成時間(null=尚未發佈)
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts; // 發佈失敗次數
+
+    @Column(name = "last_error", length = 500)
+    private String lastError; // 最後一次發佈失敗原因
+
+    @Column(name = "parked_time")
+    private LocalDateTime parkedTime; // 失敗次數達上限、停止重送的時間(null=仍會重送；人工排除後清除即可重新發佈)
+
+    @Column(name = "claimed_by", length = 36)
+    private String claimedBy; // 認領此事件的轉送節點
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil; // 認領期限(發佈期間其他節點不會取得；節點中斷時到期後由其他節點接手)
+}
@@ -9,9 +9,11 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.example.demo.entity.base.AuditableEntity;
+import com.example.demo.security.SecureUserChangeListener;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
@@ -32,9 +34,11 @@ import lombok.Setter;
  * - 賬戶狀態管理
  * - 角色和權限管理
  * - 敏感資料加密
+ * - 異動後清除使用者認證快取
  */
 @Entity
 @Table(name = "secure_users")
+@EntityListeners(SecureUserChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,13 @@
+package com.example.demo.event;
+
+/**
+ * 訂單建立事件
+ * 結帳交易內發佈，交易提交後由監聽者處理（例如：建立訂單讀取模型）
+ *
+ * @param merchantOrderNo 商店訂單編號
+ * @param uid 使用者 id
+ */
+public record OrderCreatedEvent(
+        String merchantOrderNo,
+        Integer uid) {
+}
@@ -0,0 +1,20 @@
+package com.example.demo.event;
+
+/**
+ * 交易外寄箱事件
+ * 由 OutboxRelay 在交易提交後依序發佈（outbox.relay=local 時以 Spring 事件發佈給本機監聽者）
+ * 至少發佈一次：監聽者需以 id 自行去重
+ *
+ * @param id 外寄箱事件 id（同一聚合內遞增）
+ * @param aggregateType 聚合類型（例如：order）
+ * @param aggregateId 聚合 id（訂單為商店訂單編號）
+ * @param eventType 事件類型（OrderCreated、PaymentStatusChanged、StockAdjusted）
+ * @param payload 事件內容（JSON）
+ */
+public record OutboxMessage(
+        Long id,
+        String aggregateType,
+        String aggregateId,
+        String eventType,
+        String payload) {
+}
@@ -0,0 +1,23 @@
+package com.example.demo.event;
+
+/**
+ * 付款狀態變更事件
+ * 訂單依藍新查詢結果更新後發佈（付款通知、對帳排程皆會觸發）
+ *
+ * @param merchantOrderNo 商店訂單編號
+ * @param uid 使用者 id
+ * @param previousTradeStatus 更新前的交易狀態
+ * @param tradeStatus 更新後的交易狀態 (0=未付款, 1=付款成功, 2=付款失敗, 3=取消付款, 6=退款)
+ * @param paymentType 付款方式
+ * @param tradeNo 藍新金流交易序號
+ * @param payTime 付款時間
+ */
+public record PaymentStatusChangedEvent(
+        String merchantOrderNo,
+        Integer uid,
+        String previousTradeStatus,
+        String tradeStatus,
+        String paymentType,
+        String tradeNo,
+        String payTime) {
+}
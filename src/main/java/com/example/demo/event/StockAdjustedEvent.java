@@ -0,0 +1,17 @@
+package com.example.demo.event;
+
+import java.util.Map;
+
+/**
+ * 庫存異動事件
+ * 結帳預留庫存、付款失敗/取消/退款補回庫存時寫入交易外寄箱
+ *
+ * @param merchantOrderNo 造成異動的商店訂單編號
+ * @param tradeStatus 異動當下的交易狀態
+ * @param deltas 商品id -> 庫存增減數量（負數為扣除）
+ */
+public record StockAdjustedEvent(
+        String merchantOrderNo,
+        String tradeStatus,
+        Map<Integer, Integer> deltas) {
+}
@@ -0,0 +1,34 @@
+package com.example.demo.interceptor;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+/**
+ * 個別請求的非同步逾時
+ * StreamingResponseBody 等非同步回應預設套用容器的逾時（Tomcat 為 30 秒），長時間的下載會被中斷
+ *
+ * 功能包括：
+ * - 控制器在請求屬性 TIMEOUT_ATTRIBUTE 放入 Duration 時，開始非同步處理前改用該逾時
+ * - Duration.ZERO 或負值表示不逾時
+ * - 沒有設定時維持全域預設（spring.mvc.async.request-timeout）
+ */
+@Component
+public class AsyncTimeoutInterceptor implements CallableProcessingInterceptor {
+
+    public static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutInterceptor.class.getName() + ".timeout";
+
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        Object timeout = request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (timeout instanceof Duration duration && request instanceof AsyncWebRequest asyncWebRequest) {
+            //Servlet 規格：0 或負值表示不逾時
+            asyncWebRequest.setTimeout(duration.isNegative() || duration.isZero() ? -1L : duration.toMillis());
+        }
+    }
+}
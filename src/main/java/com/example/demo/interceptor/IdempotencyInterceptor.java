@@ -0,0 +1,189 @@
+package com.example.demo.interceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 冪等請求攔截器(Idempotency-Key)
+ * 手機網路不穩時前端會重送 /api/pay，每次重送都會建立新訂單；帶相同 Idempotency-Key 的重送改為重播第一次的回應
+ *
+ * 功能包括：
+ * - 第一個請求以 SET NX 建立 IN_FLIGHT 紀錄後才執行控制器
+ * - 成功(2xx)後把回應狀態、Content-Type 與內容寫回紀錄，之後的重送直接重播，不再執行
+ * - 同時到達的重送等待第一個請求完成後重播，等待逾時回應 409
+ * - 第一個請求失敗時刪除紀錄，讓下一次重送可以重新執行
+ * - 紀錄帶有持有者 ID：處理時間超過 in-flight-ttl、紀錄已被其他請求取得時，不覆寫也不刪除對方的紀錄
+ * - 同一個 Key 用於不同請求(路徑或參數不同)時回應 422
+ * - Key 依使用者(或 session)區分，不同使用者的 Key 互不影響
+ * - 沒有帶 Idempotency-Key 的請求照原本流程處理
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyInterceptor implements HandlerInterceptor {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    //請求屬性：本次請求持有的冪等 Key 與回應內容(由 IdempotencyResponseBodyAdvice 寫入)
+    static final String KEY_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".key";
+    static final String OWNER_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".owner";
+    static final String BODY_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".body";
+    static final String CONTENT_TYPE_ATTRIBUTE = IdempotencyInterceptor.class.getName() + ".contentType";
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${idempotency.ttl:PT24H}")
+    private Duration ttl; //完成的回應保留時間
+
+    @Value("${idempotency.in-flight-ttl:PT1M}")
+    private Duration inFlightTtl; //處理中紀錄的保留時間(節點當機時自動釋放)
+
+    @Value("${idempotency.wait-timeout:PT10S}")
+    private Duration waitTimeout; //重送等待第一個請求完成的時間
+
+    @Value("${idempotency.poll-interval:PT0.05S}")
+    private Duration pollInterval;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return true;
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Idempotency-Key 過長");
+            return false;
+        }
+
+        String key = KEY_PREFIX + scope(request) + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+        String owner = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while (true) {
+            if (store.tryBegin(key, IdempotencyRecord.inFlight(owner, fingerprint), inFlightTtl)) {
+                request.setAttribute(KEY_ATTRIBUTE, key);
+                request.setAttribute(OWNER_ATTRIBUTE, owner);
+                return true;
+            }
+
+            IdempotencyRecord record = store.find(key);
+            if (record == null) {
+                //第一個請求失敗已刪除紀錄，重新爭取執行權
+                continue;
+            }
+            if (!fingerprint.equals(record.fingerprint())) {
+                writeError(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key 已用於其他請求");
+                return false;
+            }
+            if (record.isCompleted()) {
+                replay(response, record);
+                log.info("重播冪等請求：{}", key);
+                return false;
+            }
+            if (System.nanoTime() > deadline) {
+                writeError(response, HttpStatus.CONFLICT, "相同請求處理中，請稍後再試");
+                return false;
+            }
+            Thread.sleep(pollInterval.toMillis());
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        String key = (String) request.getAttribute(KEY_ATTRIBUTE);
+        if (key == null) {
+            return;
+        }
+        String owner = (String) request.getAttribute(OWNER_ATTRIBUTE);
+        try {
+            int status = response.getStatus();
+            //只保存成功的回應；失敗時刪除紀錄讓重送可以重新執行
+            if (ex != null || status < 200 || status >= 300) {
+                store.remove(key, owner);
+                return;
+            }
+            boolean completed = store.complete(key, owner, new IdempotencyRecord(IdempotencyRecord.COMPLETED, owner,
+                    fingerprint(request), status, (String) request.getAttribute(CONTENT_TYPE_ATTRIBUTE),
+                    encodeBody(request.getAttribute(BODY_ATTRIBUTE))), ttl);
+            if (!completed) {
+                log.warn("冪等請求處理時間超過 in-flight-ttl，紀錄已過期或由其他請求取得，不保存回應：{}", key);
+            }
+        } catch (Exception e) {
+            log.error("儲存冪等回應失敗：{}，{}", key, e.getMessage());
+            store.remove(key, owner);
+        }
+    }
+
+    //依使用者區分 Key
+    private String scope(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            Object uid = session.getAttribute("uid");
+            return uid != null ? "uid:" + uid : "session:" + session.getId();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    //請求特徵：方法 + 路徑 + 排序後的參數
+    private String fingerprint(HttpServletRequest request) {
+        StringBuilder sb = new StringBuilder(request.getMethod()).append(' ').append(request.getRequestURI());
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        for (Map.Entry<String, String[]> entry : parameters.entrySet()) {
+            sb.append('&').append(entry.getKey()).append('=').append(String.join(",", entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private String encodeBody(Object body) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        byte[] bytes = body instanceof String text
+                ? text.getBytes(StandardCharsets.UTF_8)
+                : objectMapper.writeValueAsBytes(body);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyRecord record) throws IOException {
+        response.setStatus(record.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (record.contentType() != null) {
+            response.setContentType(record.contentType());
+        }
+        if (record.body() != null) {
+            response.getOutputStream().write(Base64.getDecoder().decode(record.body()));
+        }
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(objectMapper.writeValueAsString(Map.of("error", message)));
+    }
+}
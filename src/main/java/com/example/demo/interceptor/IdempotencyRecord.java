@@ -0,0 +1,25 @@
+package com.example.demo.interceptor;
+
+/**
+ * 冪等請求紀錄
+ *
+ * @param state       IN_FLIGHT(第一個請求處理中) 或 COMPLETED(已完成，可重播)
+ * @param owner       建立紀錄的請求(隨機 ID)，只有持有者可以完成或刪除紀錄
+ * @param fingerprint 請求特徵(方法 + 路徑 + 參數)，同一個 Idempotency-Key 不可用於不同請求
+ * @param status      回應狀態碼
+ * @param contentType 回應 Content-Type
+ * @param body        回應內容(Base64)
+ */
+public record IdempotencyRecord(String state, String owner, String fingerprint, int status, String contentType, String body) {
+
+    public static final String IN_FLIGHT = "IN_FLIGHT";
+    public static final String COMPLETED = "COMPLETED";
+
+    public static IdempotencyRecord inFlight(String owner, String fingerprint) {
+        return new IdempotencyRecord(IN_FLIGHT, owner, fingerprint, 0, null, null);
+    }
+
+    public boolean isCompleted() {
+        return COMPLETED.equals(state);
+    }
+}
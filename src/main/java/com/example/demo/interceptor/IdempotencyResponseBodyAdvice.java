@@ -0,0 +1,39 @@
+package com.example.demo.interceptor;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * 記下帶有 Idempotency-Key 請求的回應內容，交給 IdempotencyInterceptor 在請求完成後保存
+ */
+@ControllerAdvice
+public class IdempotencyResponseBodyAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            HttpServletRequest httpRequest = servletRequest.getServletRequest();
+            if (httpRequest.getAttribute(IdempotencyInterceptor.KEY_ATTRIBUTE) != null) {
+                httpRequest.setAttribute(IdempotencyInterceptor.BODY_ATTRIBUTE, body);
+                httpRequest.setAttribute(IdempotencyInterceptor.CONTENT_TYPE_ATTRIBUTE,
+                        selectedContentType != null ? selectedContentType.toString() : null);
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.interceptor;
+
+import java.time.Duration;
+
+/**
+ * 冪等紀錄儲存
+ * 正式環境使用 Redis(多節點共用)，測試或單機可使用記憶體版本(idempotency.store=memory)
+ */
+public interface IdempotencyStore {
+
+    /**
+     * 原子性地建立 IN_FLIGHT 紀錄
+     * @return 成功建立(此請求是第一個)回傳 true；已有紀錄回傳 false
+     */
+    boolean tryBegin(String key, IdempotencyRecord record, Duration ttl);
+
+    /**
+     * 讀取紀錄，不存在回傳 null
+     */
+    IdempotencyRecord find(String key);
+
+    /**
+     * 寫入完成的回應(紀錄仍由 owner 持有時)
+     * @return 紀錄已過期或已被其他請求取得時不寫入，回傳 false
+     */
+    boolean complete(String key, String owner, IdempotencyRecord record, Duration ttl);
+
+    /**
+     * 刪除紀錄(處理失敗時，讓重試可以重新執行；只刪除 owner 持有的紀錄)
+     */
+    void remove(String key, String owner);
+}
@@ -0,0 +1,65 @@
+package com.example.demo.interceptor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 記憶體冪等紀錄儲存(idempotency.store=memory)
+ * 只在單一節點有效，供測試或沒有 Redis 的本機開發使用
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.store", havingValue = "memory")
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Map<String, Entry> records = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryBegin(String key, IdempotencyRecord record, Duration ttl) {
+        Entry created = new Entry(record, expiresAt(ttl));
+        //已過期的紀錄視為不存在
+        Entry result = records.compute(key, (k, existing) ->
+                existing == null || existing.isExpired() ? created : existing);
+        return result == created;
+    }
+
+    @Override
+    public IdempotencyRecord find(String key) {
+        Entry entry = records.get(key);
+        if (entry == null || entry.isExpired()) {
+            return null;
+        }
+        return entry.record();
+    }
+
+    @Override
+    public boolean complete(String key, String owner, IdempotencyRecord record, Duration ttl) {
+        Entry completed = new Entry(record, expiresAt(ttl));
+        Entry result = records.computeIfPresent(key, (k, existing) -> existing.isHeldBy(owner) ? completed : existing);
+        //順便清除過期紀錄，避免無限成長
+        records.values().removeIf(Entry::isExpired);
+        return result == completed;
+    }
+
+    @Override
+    public void remove(String key, String owner) {
+        records.computeIfPresent(key, (k, existing) -> existing.isHeldBy(owner) ? null : existing);
+    }
+
+    private static long expiresAt(Duration ttl) {
+        return System.currentTimeMillis() + ttl.toMillis();
+    }
+
+    private record Entry(IdempotencyRecord record, long expiresAt) {
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+
+        boolean isHeldBy(String owner) {
+            return !isExpired() && owner.equals(record.owner());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.interceptor;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Redis 冪等紀錄儲存(預設)
+ * 以 SET NX 建立 IN_FLIGHT 紀錄，完成後覆寫為含回應內容的 COMPLETED 紀錄
+ * 完成與刪除以 Lua 腳本比對持有者，處理超過 in-flight-ttl 時不會覆寫或刪除其他請求的紀錄
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "idempotency.store", havingValue = "redis", matchIfMissing = true)
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final RedisScript<Long> COMPLETE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current and cjson.decode(current).owner == ARGV[1] then
+                redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    private static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current and cjson.decode(current).owner == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public boolean tryBegin(String key, IdempotencyRecord record, Duration ttl) {
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, write(record), ttl));
+    }
+
+    @Override
+    public IdempotencyRecord find(String key) {
+        String json = stringRedisTemplate.opsForValue().get(key);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, IdempotencyRecord.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法解析冪等紀錄：" + key, e);
+        }
+    }
+
+    @Override
+    public boolean complete(String key, String owner, IdempotencyRecord record, Duration ttl) {
+        Long completed = stringRedisTemplate.execute(COMPLETE_SCRIPT, List.of(key), owner, write(record),
+                String.valueOf(ttl.toMillis()));
+        return completed != null && completed == 1L;
+    }
+
+    @Override
+    public void remove(String key, String owner) {
+        stringRedisTemplate.execute(REMOVE_SCRIPT, List.of(key), owner);
+    }
+
+    private String write(IdempotencyRecord record) {
+        try {
+            return objectMapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法序列化冪等紀錄", e);
+        }
+    }
+}
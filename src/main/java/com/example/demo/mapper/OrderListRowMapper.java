@@ -0,0 +1,28 @@
+//將訂單明細資料庫的值轉換成Java物件(歸檔資料表查詢使用)
+package com.example.demo.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.example.demo.entity.OrderList;
+
+public class OrderListRowMapper implements RowMapper<OrderList> {
+    @Override //覆蓋
+    public OrderList mapRow(ResultSet resultSet, int i) throws SQLException {
+
+        OrderList orderList = new OrderList();
+        orderList.setLid(resultSet.getInt("id"));
+        orderList.setUid(resultSet.getObject("Uid", Integer.class));
+        orderList.setPid(resultSet.getObject("Pid", Integer.class));
+        orderList.setMerchantorderno(resultSet.getString("Merchantorderno"));
+        orderList.setAmt(resultSet.getInt("Amt"));
+        orderList.setNum(resultSet.getObject("Num", Integer.class));
+        orderList.setTradestatus(resultSet.getString("Tradestatus"));
+        orderList.setPaymenttype(resultSet.getString("Paymenttype"));
+        orderList.setTradeno(resultSet.getString("Tradeno"));
+        orderList.setPaytime(resultSet.getString("Paytime"));
+        return orderList;
+    }
+}
@@ -0,0 +1,37 @@
+//將訂單資料庫的值轉換成Java物件(歸檔資料表查詢使用)
+package com.example.demo.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.example.demo.entity.Order;
+
+public class OrderRowMapper implements RowMapper<Order> {
+    @Override //覆蓋
+    public Order mapRow(ResultSet resultSet, int i) throws SQLException {
+
+        Order order = new Order();
+        order.setOid(resultSet.getInt("id"));
+        order.setUid(resultSet.getObject("Uid", Integer.class));
+        order.setStatus(resultSet.getString("Status"));
+        order.setMerchantorderno(resultSet.getString("Merchantorderno"));
+        order.setTotalamt(resultSet.getInt("Totalamt"));
+        order.setItemdescription(resultSet.getString("Itemdescription"));
+        order.setTradestatus(resultSet.getString("Tradestatus"));
+        order.setPaymenttype(resultSet.getString("Paymenttype"));
+        order.setTradeno(resultSet.getString("Tradeno"));
+        order.setPaytime(resultSet.getString("Paytime"));
+
+        order.setCreatedBy(resultSet.getString("Created_by"));
+        //Timestamp時間轉LocalDateTime(他不能直接轉)
+        Timestamp createdTime = resultSet.getTimestamp("Created_time");
+        order.setCreatedTime(createdTime != null ? createdTime.toLocalDateTime() : null);
+        order.setUpdatedBy(resultSet.getString("Updated_by"));
+        Timestamp updatedTime = resultSet.getTimestamp("Updated_time");
+        order.setUpdatedTime(updatedTime != null ? updatedTime.toLocalDateTime() : null);
+        return order;
+    }
+}
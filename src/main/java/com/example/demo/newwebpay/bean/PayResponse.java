@@ -17,6 +17,8 @@ public class PayResponse {
     private String tradeInfo; //交易資料 AES 加密
     @JsonProperty("tradeSha")
     private String tradeSha; //交易資料 SHA256 加密
+    @JsonProperty("merchantOrderNo")
+    private String merchantOrderNo; //商店訂單編號(前端用來訂閱付款狀態)
 
     //將 PaymentRequest 的資料轉成 PayResponse 格式，方便前端送出表單
     public static PayResponse of(PaymentRequest request, String action) {
@@ -26,6 +28,7 @@ public class PayResponse {
         response.setVersion(request.getVersion());
         response.setTradeInfo(request.getTradeInfo());
         response.setTradeSha(request.getTradeSha());
+        response.setMerchantOrderNo(request.getMerchantOrderNo());
         return response;
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+//訂單查詢(熱資料表找不到時查詢歸檔資料表)
+package com.example.demo.repository;
+
+import java.util.Optional;
+
+import com.example.demo.entity.Order;
+
+public interface OrderArchiveRepository {
+
+    //findByMerchantorderno 查詢訂單編號
+    //熱資料表找不到時改查歸檔資料表，歸檔訂單以非受管理(detached)物件回傳，只供讀取
+    Optional<Order> findByMerchantorderno(String merchantorderno);
+
+    //查詢要更新的訂單：歸檔訂單會先搬回熱資料表(含明細)，回傳受管理的物件(需在交易內呼叫)
+    Optional<Order> findHotOrRestore(String merchantorderno);
+}
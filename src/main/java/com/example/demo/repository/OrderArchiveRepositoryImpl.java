@@ -0,0 +1,64 @@
+//實作訂單查詢(熱資料表 -> 歸檔資料表)
+package com.example.demo.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.entity.Order;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class OrderArchiveRepositoryImpl implements OrderArchiveRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final OrderArchiveDao orderArchiveDao;
+
+    public OrderArchiveRepositoryImpl(OrderArchiveDao orderArchiveDao) {
+        this.orderArchiveDao = orderArchiveDao;
+    }
+
+    @Override
+    public Optional<Order> findByMerchantorderno(String merchantorderno) {
+        Optional<Order> hot = findHot(merchantorderno);
+        if (hot.isPresent() || !orderArchiveDao.IsReady()) {
+            return hot;
+        }
+        try {
+            List<Order> archived = orderArchiveDao.FindArchivedOrder(merchantorderno);
+            return archived.stream().findFirst();
+        } catch (DataAccessException e) {
+            log.warn("查詢歸檔訂單 {} 失敗：{}", merchantorderno, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Order> findHotOrRestore(String merchantorderno) {
+        Optional<Order> hot = findHot(merchantorderno);
+        if (hot.isPresent() || !orderArchiveDao.IsReady()) {
+            return hot;
+        }
+        if (orderArchiveDao.RestoreOrder(merchantorderno) > 0) {
+            log.info("歸檔訂單 {} 有狀態異動，已搬回熱資料表", merchantorderno);
+        }
+        return findHot(merchantorderno);
+    }
+
+    private Optional<Order> findHot(String merchantorderno) {
+        return entityManager.createQuery("SELECT o FROM Order o WHERE o.merchantorderno = :merchantorderno", Order.class)
+                .setParameter("merchantorderno", merchantorderno)
+                .getResultStream()
+                .findFirst();
+    }
+}
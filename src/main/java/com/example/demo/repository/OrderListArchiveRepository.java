@@ -0,0 +1,12 @@
+//訂單明細查詢(熱資料表找不到時查詢歸檔資料表)
+package com.example.demo.repository;
+
+import java.util.List;
+
+import com.example.demo.entity.OrderList;
+
+public interface OrderListArchiveRepository {
+
+    //依訂單編號查詢明細，熱資料表沒有時改查歸檔資料表(非受管理物件，只供讀取)
+    List<OrderList> findAllByMerchantorderno(String merchantOrderNo);
+}
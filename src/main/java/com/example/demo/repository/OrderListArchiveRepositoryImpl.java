@@ -0,0 +1,43 @@
+//實作訂單明細查詢(熱資料表 -> 歸檔資料表)
+package com.example.demo.repository;
+
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.entity.OrderList;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class OrderListArchiveRepositoryImpl implements OrderListArchiveRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final OrderArchiveDao orderArchiveDao;
+
+    public OrderListArchiveRepositoryImpl(OrderArchiveDao orderArchiveDao) {
+        this.orderArchiveDao = orderArchiveDao;
+    }
+
+    @Override
+    public List<OrderList> findAllByMerchantorderno(String merchantOrderNo) {
+        List<OrderList> hot = entityManager
+                .createQuery("SELECT o FROM OrderList o WHERE o.merchantorderno = :merchantorderno", OrderList.class)
+                .setParameter("merchantorderno", merchantOrderNo)
+                .getResultList();
+        if (!hot.isEmpty() || !orderArchiveDao.IsReady()) {
+            return hot;
+        }
+        try {
+            return orderArchiveDao.FindArchivedOrderLists(merchantOrderNo);
+        } catch (DataAccessException e) {
+            log.warn("查詢歸檔訂單明細 {} 失敗：{}", merchantOrderNo, e.getMessage());
+            return hot;
+        }
+    }
+}
@@ -7,12 +7,36 @@ import java.util.List;
 //import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 //可在此自定義查詢條件
 @Repository //能利用此註解操作資料庫
 //interface代表介面(也就是這個介面繼承JpaRepository的規格，只要照規格走)
 //JpaRepository<類, 類主鍵>
-public interface OrderListRepository extends JpaRepository<OrderList, Integer> {
-    List<OrderList> findAllByMerchantorderno(String merchantOrderNo);
+public interface OrderListRepository extends JpaRepository<OrderList, Integer>, OrderListArchiveRepository {
+    //findAllByMerchantorderno 由 OrderListArchiveRepository 提供(熱資料表找不到時查詢歸檔資料表)
+
+    //一次更新整張訂單所有明細的交易狀態(取代逐筆 save)
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE OrderList o SET o.tradestatus = :tradestatus, o.paymenttype = :paymenttype, "
+            + "o.tradeno = :tradeno, o.paytime = :paytime WHERE o.merchantorderno = :merchantorderno")
+    int updateTradeResult(@Param("merchantorderno") String merchantOrderNo,
+                          @Param("tradestatus") String tradeStatus,
+                          @Param("paymenttype") String paymentType,
+                          @Param("tradeno") String tradeNo,
+                          @Param("paytime") String payTime);
+
+    //依商品彙總訂單明細數量(同一商品多筆明細合併成一筆庫存異動)
+    @Query("SELECT o.pid AS pid, SUM(o.num) AS num FROM OrderList o "
+            + "WHERE o.merchantorderno = :merchantorderno GROUP BY o.pid")
+    List<ProductQuantity> sumNumByPid(@Param("merchantorderno") String merchantOrderNo);
+
+    //商品數量彙總結果
+    interface ProductQuantity {
+        Integer getPid();
+        Long getNum();
+    }
 }
@@ -2,21 +2,58 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 //可在此自定義查詢條件
 @Repository //能利用此註解操作資料庫
 //interface代表介面(也就是這個介面繼承JpaRepository的規格，只要照規格走)
 //JpaRepository<類, 類主鍵>
-public interface OrderRepository extends JpaRepository<Order, Integer> {
+public interface OrderRepository extends JpaRepository<Order, Integer>, OrderArchiveRepository {
 
-    //findByMerchantorderno 查詢訂單編號
-    Optional<Order> findByMerchantorderno(String merchantorderno);
+    //findByMerchantorderno 查詢訂單編號(由 OrderArchiveRepository 提供，熱資料表找不到時查詢歸檔資料表)
     /*    
     //existsByMerchantorderno 是否存在
     boolean existsByMerchantorderno(String merchantorderno);
     */
+
+    //鎖定熱資料表的訂單(SELECT ... FOR UPDATE)：付款通知、對帳與逾期取消同時更新同一筆訂單時依序執行
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.merchantorderno = :merchantorderno")
+    Optional<Order> findForUpdate(@Param("merchantorderno") String merchantorderno);
+
+    //逾期取消排程用：建立時間早於 createdBefore 且仍為指定狀態的訂單(主鍵 keyset 分頁)
+    @Query("SELECT o FROM Order o WHERE o.tradestatus = :tradestatus AND o.createdTime < :createdBefore " +
+           "AND o.oid > :afterId ORDER BY o.oid ASC")
+    List<Order> findExpiredPage(@Param("tradestatus") String tradestatus,
+                                @Param("createdBefore") LocalDateTime createdBefore,
+                                @Param("afterId") Integer afterId,
+                                Pageable pageable);
+
+    //對帳排程用：以主鍵做 keyset 分頁，找出建立時間介於 createdAfter ~ createdBefore 且仍為指定狀態的訂單
+    //(id > afterId 取代 OFFSET，避免越翻越慢)
+    @Query("SELECT o FROM Order o WHERE o.tradestatus = :tradestatus " +
+           "AND o.createdTime > :createdAfter AND o.createdTime < :createdBefore " +
+           "AND o.oid > :afterId ORDER BY o.oid ASC")
+    List<Order> findStalePage(@Param("tradestatus") String tradestatus,
+                              @Param("createdAfter") LocalDateTime createdAfter,
+                              @Param("createdBefore") LocalDateTime createdBefore,
+                              @Param("afterId") Integer afterId,
+                              Pageable pageable);
+
+    //訂單歷史第一頁(依建立時間、主鍵由新到舊)
+    @Query("SELECT new com.example.demo.repository.OrderSummary(o.oid, o.merchantorderno, o.totalamt, o.tradestatus, " +
+           "o.paymenttype, o.paytime, o.createdTime) FROM Order o WHERE o.uid = :uid " +
+           "ORDER BY o.createdTime DESC, o.oid DESC")
+    List<OrderSummary> findHistory(@Param("uid") Integer uid, Pageable pageable);
 }
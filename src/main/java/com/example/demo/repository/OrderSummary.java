@@ -0,0 +1,10 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 訂單摘要(訂單歷史查詢投影，欄位皆在 idx_orderdata_uid_created 索引內)
+ */
+public record OrderSummary(Integer oid, String merchantOrderNo, Integer totalAmt, String tradeStatus,
+                           String paymentType, String payTime, LocalDateTime createdTime) {
+}
@@ -0,0 +1,57 @@
+//建立訂單讀取模型資料庫操作介面
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.OrderView;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface OrderViewRepository extends JpaRepository<OrderView, String> {
+
+    //鎖定文件(SELECT ... FOR UPDATE)：同一張訂單的投影依序寫入，再比對來源更新時間
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM OrderView v WHERE v.merchantOrderNo = :merchantOrderNo")
+    Optional<OrderView> findForUpdate(@Param("merchantOrderNo") String merchantOrderNo);
+
+    //使用者訂單歷史第一頁(由新到舊)
+    @Query("SELECT v FROM OrderView v WHERE v.uid = :uid ORDER BY v.createdTime DESC, v.merchantOrderNo DESC")
+    List<OrderView> findHistory(@Param("uid") Integer uid, Pageable pageable);
+
+    //使用者訂單歷史下一頁：(created_time, merchant_order_no) keyset
+    @Query("SELECT v FROM OrderView v WHERE v.uid = :uid " +
+           "AND (v.createdTime < :createdTime OR (v.createdTime = :createdTime AND v.merchantOrderNo < :merchantOrderNo)) " +
+           "ORDER BY v.createdTime DESC, v.merchantOrderNo DESC")
+    List<OrderView> findHistoryAfter(@Param("uid") Integer uid,
+                                     @Param("createdTime") LocalDateTime createdTime,
+                                     @Param("merchantOrderNo") String merchantOrderNo,
+                                     Pageable pageable);
+
+    //後台依狀態查詢第一頁
+    @Query("SELECT v FROM OrderView v WHERE v.tradeStatus = :tradeStatus ORDER BY v.createdTime DESC, v.merchantOrderNo DESC")
+    List<OrderView> findByStatus(@Param("tradeStatus") String tradeStatus, Pageable pageable);
+
+    //後台依狀態查詢下一頁
+    @Query("SELECT v FROM OrderView v WHERE v.tradeStatus = :tradeStatus " +
+           "AND (v.createdTime < :createdTime OR (v.createdTime = :createdTime AND v.merchantOrderNo < :merchantOrderNo)) " +
+           "ORDER BY v.createdTime DESC, v.merchantOrderNo DESC")
+    List<OrderView> findByStatusAfter(@Param("tradeStatus") String tradeStatus,
+                                      @Param("createdTime") LocalDateTime createdTime,
+                                      @Param("merchantOrderNo") String merchantOrderNo,
+                                      Pageable pageable);
+
+    //已有讀取模型的訂單編號(補建時略過)
+    @Query("SELECT v.merchantOrderNo FROM OrderView v WHERE v.merchantOrderNo IN :merchantOrderNos")
+    List<String> findExistingIds(@Param("merchantOrderNos") Collection<String> merchantOrderNos);
+}
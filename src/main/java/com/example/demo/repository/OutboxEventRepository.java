@@ -0,0 +1,70 @@
+//建立交易外寄箱資料庫操作介面
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.OutboxEvent;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    //鎖定最舊的一批可認領事件(FOR UPDATE，不跳過已鎖定的資料列：認領交易很短，等待即可維持 id 順序)
+    //同一聚合還有較早的事件被其他節點認領中時，該聚合後續事件不會被取得，避免兩個節點打亂聚合內順序
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            SELECT e FROM OutboxEvent e
+            WHERE e.publishedTime IS NULL AND e.parkedTime IS NULL
+              AND (e.claimedUntil IS NULL OR e.claimedUntil < :now)
+              AND NOT EXISTS (
+                SELECT p.id FROM OutboxEvent p
+                WHERE p.aggregateType = e.aggregateType AND p.aggregateId = e.aggregateId AND p.id < e.id
+                  AND p.publishedTime IS NULL AND p.parkedTime IS NULL AND p.claimedUntil >= :now)
+            ORDER BY e.id""")
+    List<OutboxEvent> lockClaimable(@Param("now") LocalDateTime now, Pageable pageable);
+
+    //認領事件(發佈期間其他轉送節點不會取得)
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedBy = :owner, e.claimedUntil = :claimedUntil WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("claimedUntil") LocalDateTime claimedUntil);
+
+    //釋放仍屬於自己的認領(發佈失敗或未確認的事件下次重新認領)
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedBy = NULL, e.claimedUntil = NULL WHERE e.id IN :ids AND e.claimedBy = :owner")
+    int releaseClaims(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    //標記為已發佈
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.publishedTime = :publishedTime WHERE e.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("publishedTime") LocalDateTime publishedTime);
+
+    //記錄發佈失敗
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = :lastError WHERE e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("lastError") String lastError);
+
+    //記錄發佈失敗並停止重送(失敗次數達上限)
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = :lastError, e.parkedTime = :parkedTime WHERE e.id = :id")
+    int markParked(@Param("id") Long id, @Param("lastError") String lastError, @Param("parkedTime") LocalDateTime parkedTime);
+
+    //停止重送的事件筆數
+    @Query("SELECT COUNT(e) FROM OutboxEvent e WHERE e.parkedTime IS NOT NULL AND e.publishedTime IS NULL")
+    long countParked();
+
+    //分批刪除已發佈且超過保留時間的事件
+    @Modifying
+    @Query(value = "DELETE FROM outbox_event WHERE published_time < :before LIMIT :limit", nativeQuery = true)
+    int deletePublishedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
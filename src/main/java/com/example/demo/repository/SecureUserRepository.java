@@ -0,0 +1,31 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.SecureUser;
+
+@Repository
+public interface SecureUserRepository extends JpaRepository<SecureUser, Long> {
+
+    Optional<SecureUser> findByUsername(String username);
+
+    //登入失敗次數回寫(以 Redis 計數為準，不觸發實體監聽器)
+    @Modifying
+    @Query("UPDATE SecureUser u SET u.failedLoginAttempts = :attempts, u.lockedUntil = :lockedUntil WHERE u.username = :username")
+    int updateLoginFailures(@Param("username") String username, @Param("attempts") int attempts,
+                            @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    //登入成功回寫
+    @Modifying
+    @Query("UPDATE SecureUser u SET u.lastLoginDate = :loginTime, u.lastLoginIp = :clientIp, "
+            + "u.failedLoginAttempts = 0, u.lockedUntil = NULL WHERE u.username = :username")
+    int updateLoginSuccess(@Param("username") String username, @Param("loginTime") LocalDateTime loginTime,
+                           @Param("clientIp") String clientIp);
+}
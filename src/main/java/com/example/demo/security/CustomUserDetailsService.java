@@ -1,8 +1,18 @@
 package com.example.demo.security;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -10,36 +20,131 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import lombok.RequiredArgsConstructor;
+import com.example.demo.entity.SecureUser;
+import com.example.demo.repository.SecureUserRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * 自定義使用者詳細資訊服務
- * 暫時使用記憶體中的使用者資料，實際專案中應連接資料庫
- * 
+ * 由 secure_users 資料表載入使用者，並在本機快取不可變的 UserDetails 快照
+ *
  * 功能包括：
- * - 根據使用者名稱載入使用者資訊
- * - 提供使用者權限和角色資訊
- * - 整合未來的使用者資料庫查詢
+ * - 根據使用者名稱載入使用者資訊（快取命中時不查詢資料庫，JWT 過濾器每個請求都會呼叫）
+ * - 快取有數量上限與存活時間（user-details.cache-size / cache-ttl）
+ * - 密碼、角色或帳號狀態變更時（SecureUserChangeListener）清除快取，並經 Redis Pub/Sub 通知其他節點
+ * - 自動鎖定以 Redis 計數為準（LoginLockoutService），快照只反映管理者設定的 accountNonLocked
+ * - 開發環境可啟用內建測試使用者（user-details.demo-users.enabled），資料庫查無此人時使用
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, MessageListener {
+
+    // Redis 廣播頻道(訊息內容為 username)
+    public static final String CHANNEL = "auth:user-details:events";
+
+    private final SecureUserRepository secureUserRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final boolean demoUsersEnabled;
+
+    // username -> UserDetails 快照
+    private final Cache<String, UserDetails> users;
+
+    public CustomUserDetailsService(SecureUserRepository secureUserRepository,
+                                    StringRedisTemplate stringRedisTemplate,
+                                    RedisMessageListenerContainer listenerContainer,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${user-details.cache-size:10000}") long cacheSize,
+                                    @Value("${user-details.cache-ttl:PT5M}") Duration cacheTtl,
+                                    @Value("${user-details.demo-users.enabled:false}") boolean demoUsersEnabled) {
+        this.secureUserRepository = secureUserRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.demoUsersEnabled = demoUsersEnabled;
+        this.users = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, users, "user-details");
+    }
+
+    @PostConstruct
+    void listen() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserDetails cached;
+        try {
+            //查無此人時不快取，避免註冊後仍然登入不了
+            cached = users.get(username, () -> load(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("使用者不存在: " + username)));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof UsernameNotFoundException notFound) {
+                log.warn("找不到使用者: {}", username);
+                throw notFound;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        //認證成功後 ProviderManager 會清除 principal 的密碼，回傳複本以免清到快取內的快照
+        return User.withUserDetails(cached).build();
+    }
+
+    /**
+     * 清除使用者快取（本機與其他節點）
+     */
+    public void evict(String username) {
+        users.invalidate(username);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, username);
+        } catch (Exception e) {
+            log.warn("使用者快取清除廣播失敗，其他節點將在快取到期後同步：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 收到 Redis 廣播（包含自己發出的）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        users.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private Optional<UserDetails> load(String username) {
         log.debug("載入使用者詳細資訊: {}", username);
-        
-        // TODO: 這裡應該從資料庫查詢使用者資訊
-        // 暫時使用硬編碼的測試使用者
-        return createTestUser(username);
+        Optional<UserDetails> user = secureUserRepository.findByUsername(username).map(CustomUserDetailsService::snapshot);
+        if (user.isEmpty() && demoUsersEnabled) {
+            return Optional.ofNullable(createTestUser(username));
+        }
+        return user;
+    }
+
+    //只保留認證需要的欄位，不持有 JPA 實體
+    private static UserDetails snapshot(SecureUser user) {
+        return User.builder()
+                .username(user.getUsername())
+                .password(user.getPasswordHash())
+                .authorities(user.getAuthorities())
+                .accountExpired(!user.isAccountNonExpired())
+                .accountLocked(Boolean.FALSE.equals(user.getAccountNonLocked()))
+                .credentialsExpired(!user.isCredentialsNonExpired())
+                .disabled(!user.isEnabled())
+                .build();
     }
 
     /**
      * 建立測試使用者（開發階段使用）
      * @param username 使用者名稱
-     * @return UserDetails 物件
+     * @return UserDetails 物件，不是測試使用者時為 null
      */
     private UserDetails createTestUser(String username) {
         switch (username.toLowerCase()) {
@@ -53,7 +158,7 @@ public class CustomUserDetailsService implements UserDetailsService {
                         .credentialsExpired(false)
                         .disabled(false)
                         .build();
-                        
+
             case "user":
                 return User.builder()
                         .username("user")
@@ -64,7 +169,7 @@ public class CustomUserDetailsService implements UserDetailsService {
                         .credentialsExpired(false)
                         .disabled(false)
                         .build();
-                        
+
             case "test@example.com":
                 return User.builder()
                         .username("test@example.com")
@@ -75,10 +180,9 @@ public class CustomUserDetailsService implements UserDetailsService {
                         .credentialsExpired(false)
                         .disabled(false)
                         .build();
-                        
+
             default:
-                log.warn("找不到使用者: {}", username);
-                throw new UsernameNotFoundException("使用者不存在: " + username);
+                return null;
         }
     }
 
@@ -106,4 +210,4 @@ public class CustomUserDetailsService implements UserDetailsService {
                 new SimpleGrantedAuthority("READ_PRIVILEGE")
         );
     }
-}
\ No newline at end of file
+}
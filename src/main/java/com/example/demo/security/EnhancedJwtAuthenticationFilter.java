@@ -37,10 +37,14 @@ public class EnhancedJwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final PublicRouteMatcher publicRouteMatcher;
     
     @Autowired(required = false)
     private JwtRedisTokenService jwtRedisTokenService;
 
+    @Autowired(required = false)
+    private UserActivityRecorder userActivityRecorder;
+
     @Override
     protected void doFilterInternal(
             @NonNull HttpServletRequest request,
@@ -61,9 +65,10 @@ public class EnhancedJwtAuthenticationFilter extends OncePerRequestFilter {
                 return;
             }
 
-            // 2. 提取 JWT Token
+            // 2. 提取並驗證 JWT Token（每個請求只解析一次）
             final String jwt = authHeader.substring(7);
-            final String userEmail = jwtService.extractUsername(jwt);
+            final VerifiedToken token = jwtService.verify(jwt);
+            final String userEmail = token.subject();
 
             if (userEmail == null) {
                 log.warn("從 JWT Token 中無法提取用戶名，IP: {}, Path: {}", clientIp, requestPath);
@@ -78,7 +83,7 @@ public class EnhancedJwtAuthenticationFilter extends OncePerRequestFilter {
             }
 
             // 4. Redis 黑名單檢查（如果 Redis 服務可用）
-            if (jwtRedisTokenService != null && jwtRedisTokenService.isTokenBlacklisted(jwt)) {
+            if (jwtRedisTokenService != null && jwtRedisTokenService.isTokenBlacklisted(token)) {
                 log.warn("檢測到黑名單 Token 訪問，用戶: {}, IP: {}, Path: {}", userEmail, clientIp, requestPath);
                 handleBlacklistedToken(response);
                 return;
@@ -95,14 +100,14 @@ public class EnhancedJwtAuthenticationFilter extends OncePerRequestFilter {
             }
 
             // 6. 驗證 Token
-            if (!jwtService.isTokenValid(jwt, userDetails)) {
+            if (!jwtService.isTokenValid(token, userDetails)) {
                 log.warn("無效的 JWT Token，用戶: {}, IP: {}, Path: {}", userEmail, clientIp, requestPath);
                 filterChain.doFilter(request, response);
                 return;
             }
 
             // 7. Token 即將過期警告
-            if (jwtService.isTokenAboutToExpire(jwt)) {
+            if (jwtService.isTokenAboutToExpire(token)) {
                 log.info("Token 即將過期，建議刷新，用戶: {}", userEmail);
                 response.setHeader("X-Token-Expiring", "true");
             }
@@ -121,7 +126,7 @@ public class EnhancedJwtAuthenticationFilter extends OncePerRequestFilter {
             SecurityContextHolder.getContext().setAuthentication(authToken);
 
             // 11. 更新 Redis 中的用戶活動記錄（可選）
-            updateUserActivity(userEmail, jwt, clientIp);
+            updateUserActivity(userEmail, token, clientIp);
 
             log.debug("JWT 認證成功，用戶: {}, IP: {}, Path: {}", userEmail, clientIp, requestPath);
 
@@ -161,14 +166,13 @@ public class EnhancedJwtAuthenticationFilter extends OncePerRequestFilter {
 
     /**
      * 更新用戶活動記錄
+     * 只寫入記憶體緩衝，由 UserActivityRecorder 定期批次寫入 Redis
      */
-    private void updateUserActivity(String username, String jwt, String clientIp) {
+    private void updateUserActivity(String username, VerifiedToken token, String clientIp) {
         try {
-            if (jwtRedisTokenService != null) {
+            if (userActivityRecorder != null) {
                 // 記錄用戶最後活動時間和 IP
-                String jti = jwtService.getJwtId(jwt);
-                long expiration = jwtService.getExpirationTime(jwt);
-                jwtRedisTokenService.storeUserToken(username, jti, expiration);
+                userActivityRecorder.record(username, token.jwtId(), token.expirationMillis());
             }
         } catch (Exception e) {
             log.warn("更新用戶活動記錄時發生錯誤: {}", e.getMessage());
@@ -180,6 +184,11 @@ public class EnhancedJwtAuthenticationFilter extends OncePerRequestFilter {
      */
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
+        // 公開路由（首頁、商品目錄、靜態資源）不解析 JWT
+        if (publicRouteMatcher.matches(request)) {
+            return true;
+        }
+
         String path = request.getRequestURI();
         
         // 跳過靜態資源和公開端點
@@ -0,0 +1,77 @@
+package com.example.demo.security;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 帳號密碼認證提供者
+ * 取代預設的 DaoAuthenticationProvider（表單登入與 /api/auth/login 共用）
+ *
+ * 功能包括：
+ * - 密碼雜湊之前先經過 LoginAttemptGuard 檢查 IP 失敗次數，再由 LoginLockoutService 檢查帳號是否鎖定
+ * - 密碼錯誤時在 Redis 遞增失敗次數，成功時清除；兩者都非同步回寫 SecureUser
+ * - 密碼比對透過各安全配置提供的 BoundedPasswordEncoder，在專用執行緒池執行
+ */
+@Component
+public class GuardedAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final LoginAttemptGuard loginAttemptGuard;
+    private final LoginLockoutService loginLockoutService;
+
+    public GuardedAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+                                         LoginAttemptGuard loginAttemptGuard, LoginLockoutService loginLockoutService) {
+        super(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+        this.loginAttemptGuard = loginAttemptGuard;
+        this.loginLockoutService = loginLockoutService;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        String clientIp = clientIp(authentication);
+        loginAttemptGuard.check(clientIp);
+        Duration lockedFor = loginLockoutService.lockedFor(username);
+        if (!lockedFor.isZero()) {
+            throw new LoginRejectedException("帳號已暫時鎖定，請稍後再試", HttpStatus.TOO_MANY_REQUESTS,
+                    Math.max(1, lockedFor.toSeconds()));
+        }
+        try {
+            Authentication result = super.authenticate(authentication);
+            loginLockoutService.recordSuccess(username);
+            loginLockoutService.writeBackSuccess(username, clientIp);
+            return result;
+        } catch (BadCredentialsException e) {
+            loginAttemptGuard.recordFailure(clientIp);
+            long failures = loginLockoutService.recordFailure(username);
+            if (failures > 0) {
+                loginLockoutService.writeBackFailure(username, failures);
+            }
+            throw e;
+        }
+    }
+
+    //表單登入時由 details 取得；控制器自行呼叫 authenticate 時由目前的請求取得
+    //不直接讀取 X-Forwarded-For(用戶端可任意偽造，每次換一個 IP 即可繞過失敗次數檢查)；
+    //經反向代理部署時由 server.forward-headers-strategy 在可信任的代理後改寫 remoteAddr
+    private static String clientIp(Authentication authentication) {
+        if (authentication.getDetails() instanceof WebAuthenticationDetails details) {
+            return details.getRemoteAddress();
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
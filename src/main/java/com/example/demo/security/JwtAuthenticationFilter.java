@@ -35,6 +35,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final PublicRouteMatcher publicRouteMatcher;
 
     @Override
     protected void doFilterInternal(
@@ -50,6 +51,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
+        final VerifiedToken token;
         final String userEmail;
 
         // 檢查 Authorization 標頭格式
@@ -61,14 +63,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             // 提取 JWT Token（移除 "Bearer " 前綴）
             jwt = authHeader.substring(7);
-            userEmail = jwtService.extractUsername(jwt);
+            // 每個請求只解析、驗證一次
+            token = jwtService.verify(jwt);
+            userEmail = token.subject();
 
             // 如果用戶名存在且未認證
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
 
                 // 驗證 Token 有效性
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (jwtService.isTokenValid(token, userDetails)) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
@@ -80,7 +84,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     SecurityContextHolder.getContext().setAuthentication(authToken);
 
                     // 檢查 Token 是否即將過期，記錄日誌以便提醒更新
-                    if (jwtService.isTokenAboutToExpire(jwt)) {
+                    if (jwtService.isTokenAboutToExpire(token)) {
                         log.warn("JWT Token 即將過期，使用者: {}", userEmail);
                     }
                 } else {
@@ -102,6 +106,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      * @return 是否跳過
      */
     private boolean shouldSkipFilter(HttpServletRequest request) {
+        // 公開路由（首頁、商品目錄、靜態資源）不解析 JWT
+        if (publicRouteMatcher.matches(request)) {
+            return true;
+        }
+
         String path = request.getRequestURI();
         
         // 跳過這些路徑的 JWT 認證檢查（使用 Session 認證）
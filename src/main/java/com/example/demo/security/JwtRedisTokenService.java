@@ -1,12 +1,30 @@
 package com.example.demo.security;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.example.demo.config.JwtProperties;
+import com.google.common.hash.Hashing;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -17,6 +35,10 @@ import lombok.extern.slf4j.Slf4j;
  * 2. Token 刷新機制
  * 3. 多設備登入控制
  * 4. Token 撤銷功能
+ * 5. 黑名單檢查先查本機近端快取（TokenBlacklistNearCache），命中時才查 Redis
+ * 6. 登出所有設備只寫入使用者撤銷紀元（TokenRevocationEpochService），不逐一黑名單 JTI
+ * 7. 使用者裝置清單以 Sorted Set 保存（score 為過期時間），讀取與定期掃描時移除已過期的 JTI
+ * 8. Refresh Token 以家族保存固定長度摘要，每次刷新輪替，舊 Token 重放時整個家族作廢
  */
 @Slf4j
 @Service
@@ -28,24 +50,58 @@ public class JwtRedisTokenService {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private TokenBlacklistNearCache blacklistNearCache;
+
+    @Autowired
+    private TokenRevocationEpochService revocationEpochService;
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    @Value("${jwt.devices.max-per-user:20}")
+    private int maxDevicesPerUser; //每個使用者最多保留的 JTI 數(超過時移除最早過期的)
+
+    @Value("${jwt.devices.cleanup-batch-size:200}")
+    private int cleanupBatchSize; //背景清理每個 pipeline 處理的使用者數
+
     // Redis Key 前綴
-    private static final String TOKEN_BLACKLIST_PREFIX = "jwt:blacklist:";
-    private static final String USER_TOKENS_PREFIX = "jwt:user:";
-    private static final String REFRESH_TOKEN_PREFIX = "jwt:refresh:";
+    static final String TOKEN_BLACKLIST_PREFIX = "jwt:blacklist:";
+    // 使用者裝置清單(Sorted Set：member 為 JTI，score 為過期時間戳)；舊版 jwt:user: Set 會依 TTL 自然消失
+    static final String USER_TOKENS_PREFIX = "jwt:devices:";
+    private static final String REFRESH_TOKEN_PREFIX = "jwt:refresh:"; //舊版(整個 Refresh Token 當 key)
+    private static final String REFRESH_FAMILY_PREFIX = "jwt:rfam:";
+
+    // 比對家族目前的 Refresh Token 摘要：相同則換成新摘要；不同(舊 Token 重放)則刪除整個家族
+    // 回傳 1 = 已輪替，-1 = 重放已作廢，0 = 家族不存在(已過期或已登出)
+    private static final RedisScript<Long> ROTATE_REFRESH_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if not current then
+                return 0
+            end
+            if current ~= ARGV[1] then
+                redis.call('DEL', KEYS[1])
+                return -1
+            end
+            redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+            return 1
+            """, Long.class);
 
     /**
      * 將 Token 加入黑名單
      */
     public void blacklistToken(String token) {
         try {
-            String jti = jwtService.getJwtId(token);
-            long expiration = jwtService.getExpirationTime(token);
+            VerifiedToken verified = jwtService.verify(token);
+            String jti = verified.jwtId();
+            long expiration = verified.expirationMillis();
             long currentTime = System.currentTimeMillis();
             
             if (expiration > currentTime) {
                 long ttl = expiration - currentTime;
                 String key = TOKEN_BLACKLIST_PREFIX + jti;
                 redisTemplate.opsForValue().set(key, "blacklisted", ttl, TimeUnit.MILLISECONDS);
+                blacklistNearCache.publish(List.of(jti));
                 log.info("Token {} 已加入黑名單，TTL: {} ms", jti, ttl);
             }
         } catch (Exception e) {
@@ -58,8 +114,27 @@ public class JwtRedisTokenService {
      */
     public boolean isTokenBlacklisted(String token) {
         try {
-            String jti = jwtService.getJwtId(token);
-            String key = TOKEN_BLACKLIST_PREFIX + jti;
+            return isTokenBlacklisted(jwtService.verify(token));
+        } catch (Exception e) {
+            log.error("檢查 Token 黑名單狀態時發生錯誤", e);
+            return true; // 安全起見，出錯時視為已黑名單
+        }
+    }
+
+    /**
+     * 檢查已解析的 Token 是否已撤銷或在黑名單中（不必再解析 Token）
+     * 先比對使用者撤銷紀元，再檢查單一 JTI 黑名單
+     */
+    public boolean isTokenBlacklisted(VerifiedToken token) {
+        if (revocationEpochService.isRevoked(token)) {
+            return true;
+        }
+        // 本機 Bloom Filter 判定一定不在黑名單時不必查 Redis
+        if (!blacklistNearCache.mightBeBlacklisted(token.jwtId())) {
+            return false;
+        }
+        try {
+            String key = TOKEN_BLACKLIST_PREFIX + token.jwtId();
             return Boolean.TRUE.equals(redisTemplate.hasKey(key));
         } catch (Exception e) {
             log.error("檢查 Token 黑名單狀態時發生錯誤", e);
@@ -72,26 +147,51 @@ public class JwtRedisTokenService {
      */
     public void storeUserToken(String username, String jti, long expiration) {
         try {
-            String key = USER_TOKENS_PREFIX + username;
-            long ttl = expiration - System.currentTimeMillis();
-            
-            // 使用 Set 結構儲存用戶的多個 token
-            redisTemplate.opsForSet().add(key, jti);
-            redisTemplate.expire(key, Duration.ofMillis(ttl));
-            
+            storeUserTokens(List.of(new ActiveToken(username, jti, expiration)));
             log.debug("為用戶 {} 儲存 Token: {}", username, jti);
         } catch (Exception e) {
             log.error("儲存用戶 Token 時發生錯誤", e);
         }
     }
 
+    /**
+     * 批次儲存多個用戶的 Active Tokens
+     * 以 pipeline 一次送出；每個用戶的清單同時移除已過期的 JTI，並只保留最晚過期的 max-per-user 個
+     */
+    public void storeUserTokens(Collection<ActiveToken> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // key 的 TTL 取 Access Token 的最長有效期，清單中任何 JTI 都不會比 key 晚過期
+        Duration keyTtl = Duration.ofMillis(jwtProperties.getExpiration());
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (ActiveToken token : tokens) {
+                    ops.opsForZSet().add(USER_TOKENS_PREFIX + token.username(), token.jti(), token.expiration());
+                }
+                tokens.stream().map(ActiveToken::username).distinct().forEach(username -> {
+                    String key = USER_TOKENS_PREFIX + username;
+                    ops.opsForZSet().removeRangeByScore(key, Double.NEGATIVE_INFINITY, now);
+                    ops.opsForZSet().removeRange(key, 0, -(maxDevicesPerUser + 1L));
+                    ops.expire(key, keyTtl);
+                });
+                return null;
+            }
+        });
+    }
+
     /**
      * 移除用戶的 Token
      */
     public void removeUserToken(String username, String jti) {
         try {
             String key = USER_TOKENS_PREFIX + username;
-            redisTemplate.opsForSet().remove(key, jti);
+            redisTemplate.opsForZSet().remove(key, jti);
             log.debug("為用戶 {} 移除 Token: {}", username, jti);
         } catch (Exception e) {
             log.error("移除用戶 Token 時發生錯誤", e);
@@ -100,24 +200,16 @@ public class JwtRedisTokenService {
 
     /**
      * 撤銷用戶的所有 Token（登出所有設備）
+     * 寫入撤銷紀元，在此之前簽發的 Token 全部失效
      */
     public void revokeAllUserTokens(String username) {
         try {
-            String key = USER_TOKENS_PREFIX + username;
-            var tokens = redisTemplate.opsForSet().members(key);
-            
-            if (tokens != null) {
-                // 將所有 token 加入黑名單
-                for (String jti : tokens) {
-                    String blacklistKey = TOKEN_BLACKLIST_PREFIX + jti;
-                    redisTemplate.opsForValue().set(blacklistKey, "revoked", 24, TimeUnit.HOURS);
-                }
-                
-                // 清空用戶 token 集合
-                redisTemplate.delete(key);
-                
-                log.info("已撤銷用戶 {} 的所有 Token，共 {} 個", username, tokens.size());
-            }
+            var epoch = revocationEpochService.revokeAll(username);
+
+            // 清空用戶 token 集合
+            redisTemplate.delete(USER_TOKENS_PREFIX + username);
+
+            log.info("已撤銷用戶 {} 在 {} 之前簽發的所有 Token", username, epoch);
         } catch (Exception e) {
             log.error("撤銷用戶所有 Token 時發生錯誤", e);
         }
@@ -125,13 +217,18 @@ public class JwtRedisTokenService {
 
     /**
      * 儲存 Refresh Token
+     * 只以家族 ID 為 key 保存目前有效 Token 的摘要（jwt:rfam:{family} -> 128 位元摘要），不保存整個 JWT
      */
     public void storeRefreshToken(String refreshToken, String username, long expiration) {
         try {
-            String key = REFRESH_TOKEN_PREFIX + refreshToken;
+            String family = jwtService.verify(refreshToken).refreshFamily();
             long ttl = expiration - System.currentTimeMillis();
-            
-            redisTemplate.opsForValue().set(key, username, ttl, TimeUnit.MILLISECONDS);
+            if (family == null) {
+                //舊版 Refresh Token（沒有家族）
+                redisTemplate.opsForValue().set(REFRESH_TOKEN_PREFIX + refreshToken, username, ttl, TimeUnit.MILLISECONDS);
+            } else {
+                redisTemplate.opsForValue().set(REFRESH_FAMILY_PREFIX + family, digest(refreshToken), ttl, TimeUnit.MILLISECONDS);
+            }
             log.debug("為用戶 {} 儲存 Refresh Token", username);
         } catch (Exception e) {
             log.error("儲存 Refresh Token 時發生錯誤", e);
@@ -139,12 +236,18 @@ public class JwtRedisTokenService {
     }
 
     /**
-     * 驗證並獲取 Refresh Token 對應的用戶名
+     * 驗證並獲取 Refresh Token 對應的用戶名（不輪替）
+     * 只有家族中目前有效的那一個 Token 才算有效
      */
     public String validateRefreshToken(String refreshToken) {
         try {
-            String key = REFRESH_TOKEN_PREFIX + refreshToken;
-            return redisTemplate.opsForValue().get(key);
+            VerifiedToken verified = jwtService.verify(refreshToken);
+            if (verified.refreshFamily() == null) {
+                return redisTemplate.opsForValue().get(REFRESH_TOKEN_PREFIX + refreshToken);
+            }
+            String current = redisTemplate.opsForValue().get(REFRESH_FAMILY_PREFIX + verified.refreshFamily());
+            return digest(refreshToken).equals(current) && !revocationEpochService.isRevoked(verified)
+                    ? verified.subject() : null;
         } catch (Exception e) {
             log.error("驗證 Refresh Token 時發生錯誤", e);
             return null;
@@ -152,25 +255,94 @@ public class JwtRedisTokenService {
     }
 
     /**
-     * 移除 Refresh Token
+     * 輪替 Refresh Token：舊的作廢，由同一家族的新 Token 取代（一次性使用）
+     * 已被輪替掉的舊 Token 再次出現時視為外洩重放，整個家族立即作廢
+     * @param refreshToken 用戶端送來的 Refresh Token
+     * @param replacement 同一家族的新 Refresh Token
+     * @return 輪替結果
+     */
+    public RefreshRotation rotateRefreshToken(String refreshToken, String replacement) {
+        VerifiedToken presented = jwtService.verify(refreshToken);
+        VerifiedToken next = jwtService.verify(replacement);
+        if (!presented.subject().equals(next.subject())) {
+            throw new IllegalArgumentException("新舊 Refresh Token 不屬於同一個使用者");
+        }
+        if (presented.refreshFamily() != null && !presented.refreshFamily().equals(next.refreshFamily())) {
+            throw new IllegalArgumentException("新舊 Refresh Token 不屬於同一個家族");
+        }
+        try {
+            if (revocationEpochService.isRevoked(presented)) {
+                return RefreshRotation.INVALID;
+            }
+            long ttl = next.expirationMillis() - System.currentTimeMillis();
+
+            if (presented.refreshFamily() == null) {
+                //舊版 Refresh Token：一次性取出後改存為新家族
+                String username = redisTemplate.opsForValue().getAndDelete(REFRESH_TOKEN_PREFIX + refreshToken);
+                if (!presented.subject().equals(username)) {
+                    return RefreshRotation.INVALID;
+                }
+                redisTemplate.opsForValue().set(REFRESH_FAMILY_PREFIX + next.refreshFamily(), digest(replacement),
+                        ttl, TimeUnit.MILLISECONDS);
+                return RefreshRotation.ROTATED;
+            }
+
+            Long result = redisTemplate.execute(ROTATE_REFRESH_SCRIPT,
+                    List.of(REFRESH_FAMILY_PREFIX + presented.refreshFamily()),
+                    digest(refreshToken), digest(replacement), Long.toString(ttl));
+            if (result != null && result == 1L) {
+                return RefreshRotation.ROTATED;
+            }
+            if (result != null && result == -1L) {
+                log.warn("偵測到重放的 Refresh Token，已作廢用戶 {} 的 Token 家族 {}",
+                        presented.subject(), presented.refreshFamily());
+                return RefreshRotation.REUSED;
+            }
+            return RefreshRotation.INVALID;
+        } catch (Exception e) {
+            log.error("輪替 Refresh Token 時發生錯誤: {}", e.getMessage());
+            return RefreshRotation.INVALID;
+        }
+    }
+
+    /**
+     * 移除 Refresh Token（整個家族作廢）
      */
     public void removeRefreshToken(String refreshToken) {
         try {
-            String key = REFRESH_TOKEN_PREFIX + refreshToken;
-            redisTemplate.delete(key);
+            String family = jwtService.verify(refreshToken).refreshFamily();
+            redisTemplate.delete(family != null ? REFRESH_FAMILY_PREFIX + family : REFRESH_TOKEN_PREFIX + refreshToken);
             log.debug("已移除 Refresh Token");
         } catch (Exception e) {
             log.error("移除 Refresh Token 時發生錯誤", e);
         }
     }
 
+    //Refresh Token 的 SHA-256 摘要取前 128 位元（Base64URL 22 字元）
+    private static String digest(String refreshToken) {
+        byte[] hash = Hashing.sha256().hashString(refreshToken, StandardCharsets.UTF_8).asBytes();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+    }
+
     /**
      * 獲取用戶的活躍 Token 數量
+     * 先移除已過期的 JTI 再計數，同一個 pipeline 送出
      */
     public Long getUserActiveTokenCount(String username) {
         try {
             String key = USER_TOKENS_PREFIX + username;
-            return redisTemplate.opsForSet().size(key);
+            long now = System.currentTimeMillis();
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    ops.opsForZSet().removeRangeByScore(key, Double.NEGATIVE_INFINITY, now);
+                    ops.opsForZSet().zCard(key);
+                    return null;
+                }
+            });
+            return results.size() == 2 && results.get(1) instanceof Long count ? count : 0L;
         } catch (Exception e) {
             log.error("獲取用戶活躍 Token 數量時發生錯誤", e);
             return 0L;
@@ -178,10 +350,71 @@ public class JwtRedisTokenService {
     }
 
     /**
-     * 清理過期的黑名單 Token（可選，Redis 會自動清理）
+     * 清理各使用者裝置清單中已過期的 JTI
+     * 以 SCAN 分批掃描 jwt:devices:*，每批以 pipeline 移除；清單清空時 Redis 會自動刪除 key
+     * （黑名單、撤銷紀元由 Redis TTL 自動清理）
      */
+    @Scheduled(initialDelayString = "${jwt.devices.cleanup-interval:PT10M}",
+               fixedDelayString = "${jwt.devices.cleanup-interval:PT10M}")
     public void cleanupExpiredTokens() {
-        // Redis TTL 會自動清理，這個方法主要用於監控和日誌
-        log.info("Token 清理任務執行完成");
+        try {
+            ScanOptions options = ScanOptions.scanOptions()
+                    .match(USER_TOKENS_PREFIX + "*")
+                    .count(cleanupBatchSize)
+                    .build();
+            long scanned = 0;
+            long removed = 0;
+            List<String> batch = new ArrayList<>(cleanupBatchSize);
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() >= cleanupBatchSize) {
+                        removed += removeExpired(batch);
+                        scanned += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                removed += removeExpired(batch);
+                scanned += batch.size();
+            }
+            log.info("Token 清理任務執行完成，掃描 {} 個使用者，移除 {} 個過期 Token", scanned, removed);
+        } catch (Exception e) {
+            log.error("Token 清理任務發生錯誤: {}", e.getMessage());
+        }
+    }
+
+    //以 pipeline 移除一批使用者清單中已過期的 JTI，回傳移除數量
+    private long removeExpired(List<String> keys) {
+        long now = System.currentTimeMillis();
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                keys.forEach(key -> ops.opsForZSet().removeRangeByScore(key, Double.NEGATIVE_INFINITY, now));
+                return null;
+            }
+        });
+        return results.stream().mapToLong(r -> r instanceof Long n ? n : 0L).sum();
+    }
+
+    /**
+     * 用戶目前使用中的 Token
+     * @param username 使用者名稱
+     * @param jti JWT ID
+     * @param expiration 過期時間戳（毫秒）
+     */
+    public record ActiveToken(String username, String jti, long expiration) {
+    }
+
+    /**
+     * Refresh Token 輪替結果
+     */
+    public enum RefreshRotation {
+        ROTATED, // 已輪替，可以發放新的 Token
+        INVALID, // 不存在、已過期、已登出或已撤銷
+        REUSED   // 已被輪替掉的舊 Token 再次使用，整個家族已作廢
     }
-}
\ No newline at end of file
+}
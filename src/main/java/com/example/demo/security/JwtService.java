@@ -1,21 +1,34 @@
 package com.example.demo.security;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 import javax.crypto.SecretKey;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.config.JwtProperties;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -27,12 +40,18 @@ import lombok.extern.slf4j.Slf4j;
  * - 驗證 Token 的有效性和完整性
  * - 解析 Token 中的使用者資訊
  * - Token 過期時間管理
+ * - 簽名金鑰與解析器只建立一次；最近驗證過的 Token 以 SHA-256 摘要為 key 快取到過期為止，
+ *   重複的請求不必再驗證簽章
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class JwtService {
 
+    private static final Duration ABOUT_TO_EXPIRE = Duration.ofMinutes(15);
+
+    // Refresh Token 所屬家族（同一次登入輪替出來的 Refresh Token 共用）
+    public static final String REFRESH_FAMILY_CLAIM = "fam";
+
     /**
      * 步驟說明：
      * 1. 注入 JWT 配置屬性
@@ -41,6 +60,49 @@ public class JwtService {
      */
     private final JwtProperties jwtProperties;
 
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    // Token 摘要 -> 已驗證的 Token（命中時再檢查是否過期，不會回傳過期的 Token）
+    private final Cache<HashCode, VerifiedToken> verifiedTokens;
+
+    public JwtService(JwtProperties jwtProperties, MeterRegistry meterRegistry,
+                      @Value("${jwt.verify-cache.max-size:10000}") long maxSize,
+                      @Value("${jwt.verify-cache.ttl:PT10M}") Duration ttl) {
+        this.jwtProperties = jwtProperties;
+        this.signingKey = Keys.hmacShaKeyFor(jwtProperties.getStandardizedSecret().getBytes());
+        this.parser = Jwts.parser().verifyWith(signingKey).build();
+        this.verifiedTokens = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified-tokens");
+    }
+
+    /**
+     * 驗證 Token 簽章並解析全部聲明
+     * 最近驗證過的同一個 Token 直接取自快取，不再驗證簽章
+     * @param token JWT Token
+     * @return 已驗證的 Token
+     * @throws io.jsonwebtoken.JwtException 簽章錯誤、格式錯誤或已過期
+     */
+    public VerifiedToken verify(String token) {
+        HashCode digest = Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                return cached;
+            }
+            verifiedTokens.invalidate(digest);
+            throw new ExpiredJwtException(null, cached.claims(), "JWT expired at " + cached.expiration());
+        }
+
+        VerifiedToken verified = VerifiedToken.of(parser.parseSignedClaims(token).getPayload());
+        verifiedTokens.put(digest, verified);
+        return verified;
+    }
+
     /**
      * 生成 JWT Token
      * @param userDetails 使用者詳細資訊
@@ -66,7 +128,37 @@ public class JwtService {
      * @return Refresh Token 字符串
      */
     public String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(new HashMap<>(), userDetails, jwtProperties.getRefreshExpiration());
+        return generateRefreshToken(userDetails, newRefreshFamily());
+    }
+
+    /**
+     * 生成屬於指定家族的 Refresh Token（輪替時沿用原本的家族）
+     * 每個 Refresh Token 都有自己的 JTI，同一秒內輪替也不會產生相同的 Token
+     * @param userDetails 使用者詳細資訊
+     * @param familyId 家族 ID
+     * @return Refresh Token 字符串
+     */
+    public String generateRefreshToken(UserDetails userDetails, String familyId) {
+        Date now = new Date();
+        return Jwts.builder()
+                .claim(REFRESH_FAMILY_CLAIM, familyId)
+                .subject(userDetails.getUsername())
+                .id(UUID.randomUUID().toString())
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + jwtProperties.getRefreshExpiration()))
+                .signWith(getSignInKey())
+                .compact();
+    }
+
+    /**
+     * 產生新的 Refresh Token 家族 ID（128 位元亂數，Base64URL 22 字元）
+     */
+    public static String newRefreshFamily() {
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer buffer = ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
     }
 
     /**
@@ -118,8 +210,7 @@ public class JwtService {
      * @return 聲明值
      */
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(verify(token).claims());
     }
 
     /**
@@ -130,8 +221,7 @@ public class JwtService {
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
         try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+            return isTokenValid(verify(token), userDetails);
         } catch (Exception e) {
             log.error("Token 驗證失敗: {}", e.getMessage());
             return false;
@@ -139,42 +229,33 @@ public class JwtService {
     }
 
     /**
-     * 檢查 Token 是否過期
-     * @param token JWT Token
-     * @return 是否過期
+     * 驗證已解析的 Token 是否屬於該使用者且未過期
+     * @param token 已驗證的 Token
+     * @param userDetails 使用者詳細資訊
+     * @return 是否有效
      */
-    public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public boolean isTokenValid(VerifiedToken token, UserDetails userDetails) {
+        return userDetails.getUsername().equals(token.subject()) && !token.isExpired();
     }
 
     /**
-     * 提取 Token 中的所有聲明
+     * 檢查 Token 是否過期
      * @param token JWT Token
-     * @return 聲明集合
+     * @return 是否過期
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    public boolean isTokenExpired(String token) {
+        return verify(token).isExpired();
     }
 
-    /**
-     * 獲取簽名金鑰
-     * @return 簽名金鑰
-     */
     /**
      * 獲取簽名金鑰
      * 步驟說明：
-     * 1. 從配置類別獲取標準化密鑰
+     * 1. 建構時從配置類別獲取標準化密鑰
      * 2. 確保密鑰長度符合 HMAC-SHA256 要求
-     * 3. 生成 SecretKey 物件
+     * 3. 生成 SecretKey 物件並重複使用
      */
     private SecretKey getSignInKey() {
-        String secret = jwtProperties.getStandardizedSecret();
-        byte[] keyBytes = secret.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signingKey;
     }
 
     /**
@@ -183,10 +264,16 @@ public class JwtService {
      * @return 是否即將過期
      */
     public boolean isTokenAboutToExpire(String token) {
-        Date expiration = extractExpiration(token);
-        Date now = new Date();
-        long timeUntilExpiry = expiration.getTime() - now.getTime();
-        return timeUntilExpiry < 900000; // 15 分鐘 = 900000 毫秒
+        return isTokenAboutToExpire(verify(token));
+    }
+
+    /**
+     * 檢查已解析的 Token 是否即將過期（15分鐘內）
+     * @param token 已驗證的 Token
+     * @return 是否即將過期
+     */
+    public boolean isTokenAboutToExpire(VerifiedToken token) {
+        return token.isAboutToExpire(ABOUT_TO_EXPIRE);
     }
 
     /**
@@ -195,10 +282,7 @@ public class JwtService {
      * @return 使用者 ID
      */
     public Long extractUserId(String token) {
-        return extractClaim(token, claims -> {
-            Object userId = claims.get("userId");
-            return userId != null ? Long.valueOf(userId.toString()) : null;
-        });
+        return verify(token).userId();
     }
 
     /**
@@ -217,7 +301,7 @@ public class JwtService {
      * @return JWT ID
      */
     public String getJwtId(String token) {
-        return extractClaim(token, Claims::getId);
+        return verify(token).jwtId();
     }
 
     /**
@@ -226,8 +310,7 @@ public class JwtService {
      * @return 過期時間戳（毫秒）
      */
     public long getExpirationTime(String token) {
-        Date expiration = extractExpiration(token);
-        return expiration.getTime();
+        return verify(token).expirationMillis();
     }
 
     /**
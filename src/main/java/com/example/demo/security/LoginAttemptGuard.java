@@ -0,0 +1,81 @@
+package com.example.demo.security;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 登入嘗試預先檢查
+ * 在進行密碼雜湊之前，先擋下短時間內失敗太多次的 IP（撞庫、暴力破解）
+ *
+ * 功能包括：
+ * - 以固定時間窗（window）計算每個 IP 的失敗次數（本機計數，不需要 Redis）
+ * - 超過上限時直接拒絕（HTTP 429），不進行雜湊運算
+ * - 帳號層級的失敗次數與鎖定由 LoginLockoutService 在 Redis 統一計算
+ */
+@Slf4j
+@Component
+public class LoginAttemptGuard {
+
+    private final int maxFailuresPerIp;
+    private final long retryAfterSeconds;
+
+    private final Cache<String, AtomicInteger> ipFailures;
+
+    private final Counter ipRejectedCounter;
+
+    public LoginAttemptGuard(MeterRegistry meterRegistry,
+                             @Value("${login-guard.window:PT15M}") Duration window,
+                             @Value("${login-guard.max-failures-per-ip:50}") int maxFailuresPerIp,
+                             @Value("${login-guard.max-tracked:100000}") long maxTracked) {
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.retryAfterSeconds = window.toSeconds();
+        this.ipFailures = CacheBuilder.newBuilder().maximumSize(maxTracked).expireAfterWrite(window).build();
+        this.ipRejectedCounter = meterRegistry.counter("login.guard.rejected", "reason", "ip");
+    }
+
+    /**
+     * 檢查是否允許進行密碼驗證
+     * @throws LoginRejectedException 失敗次數過多
+     */
+    public void check(String clientIp) {
+        if (clientIp != null && count(ipFailures, clientIp) >= maxFailuresPerIp) {
+            ipRejectedCounter.increment();
+            log.warn("IP {} 登入失敗次數過多，暫時拒絕", clientIp);
+            throw new LoginRejectedException("登入失敗次數過多，請稍後再試", HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+        }
+    }
+
+    /**
+     * 記錄一次密碼錯誤
+     */
+    public void recordFailure(String clientIp) {
+        if (clientIp != null) {
+            increment(ipFailures, clientIp);
+        }
+    }
+
+    private static int count(Cache<String, AtomicInteger> failures, String key) {
+        AtomicInteger count = failures.getIfPresent(key);
+        return count != null ? count.get() : 0;
+    }
+
+    private static void increment(Cache<String, AtomicInteger> failures, String key) {
+        try {
+            failures.get(key, AtomicInteger::new).incrementAndGet();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.demo.security;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.repository.SecureUserRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 帳號登入失敗計數與鎖定（Redis）
+ * 取代每次登入嘗試都 SELECT + UPDATE secure_users
+ *
+ * 功能包括：
+ * - 失敗次數以 Redis 原子遞增計數（auth:fail:{username}），時間窗內達到上限即鎖定（auth:lock:{username}）
+ * - 認證前只讀取鎖定 key 的剩餘 TTL，鎖定中直接拒絕（HTTP 429），不進行密碼雜湊
+ * - 失敗次數、鎖定時間與最後登入資訊非同步回寫 SecureUser，不在請求執行緒上更新資料表
+ * - Redis 無法使用時不鎖定（IP 層級的 LoginAttemptGuard 仍然有效）
+ */
+@Slf4j
+@Service
+public class LoginLockoutService {
+
+    private static final String FAILURE_PREFIX = "auth:fail:";
+    private static final String LOCK_PREFIX = "auth:lock:";
+
+    // 失敗次數 +1，第一次失敗時設定時間窗；達到上限時寫入鎖定 key。回傳目前失敗次數
+    private static final RedisScript<Long> RECORD_FAILURE_SCRIPT = new DefaultRedisScript<>("""
+            local count = redis.call('INCR', KEYS[1])
+            if count == 1 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            end
+            if count >= tonumber(ARGV[2]) then
+                redis.call('SET', KEYS[2], count, 'PX', ARGV[3])
+            end
+            return count
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SecureUserRepository secureUserRepository;
+
+    private final Duration window;
+    private final int maxFailures;
+    private final Duration lockDuration;
+
+    public LoginLockoutService(StringRedisTemplate stringRedisTemplate, SecureUserRepository secureUserRepository,
+                               @Value("${login-lockout.window:PT30M}") Duration window,
+                               @Value("${login-lockout.max-failures:5}") int maxFailures,
+                               @Value("${login-lockout.lock-duration:PT30M}") Duration lockDuration) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.secureUserRepository = secureUserRepository;
+        this.window = window;
+        this.maxFailures = maxFailures;
+        this.lockDuration = lockDuration;
+    }
+
+    /**
+     * 帳號剩餘的鎖定時間
+     * @return 未鎖定（或 Redis 無法使用）時為 Duration.ZERO
+     */
+    public Duration lockedFor(String username) {
+        try {
+            Long millis = stringRedisTemplate.getExpire(LOCK_PREFIX + normalize(username), TimeUnit.MILLISECONDS);
+            //-2：key 不存在；-1：沒有 TTL（不應發生，視為完整鎖定時間）
+            if (millis == null || millis == -2) {
+                return Duration.ZERO;
+            }
+            return millis < 0 ? lockDuration : Duration.ofMillis(millis);
+        } catch (Exception e) {
+            log.warn("檢查帳號 {} 鎖定狀態失敗：{}", username, e.getMessage());
+            return Duration.ZERO;
+        }
+    }
+
+    /**
+     * 記錄一次密碼錯誤
+     * @return 時間窗內的失敗次數（Redis 無法使用時為 0）
+     */
+    public long recordFailure(String username) {
+        String key = normalize(username);
+        try {
+            Long count = stringRedisTemplate.execute(RECORD_FAILURE_SCRIPT, List.of(FAILURE_PREFIX + key, LOCK_PREFIX + key),
+                    Long.toString(window.toMillis()), Integer.toString(maxFailures), Long.toString(lockDuration.toMillis()));
+            return count != null ? count : 0L;
+        } catch (Exception e) {
+            log.warn("記錄帳號 {} 登入失敗次數失敗：{}", username, e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 登入成功，清除失敗次數與鎖定
+     */
+    public void recordSuccess(String username) {
+        String key = normalize(username);
+        try {
+            stringRedisTemplate.delete(List.of(FAILURE_PREFIX + key, LOCK_PREFIX + key));
+        } catch (Exception e) {
+            log.warn("清除帳號 {} 登入失敗次數失敗：{}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * 是否已達鎖定門檻
+     */
+    public boolean reachesLock(long failures) {
+        return failures >= maxFailures;
+    }
+
+    /**
+     * 非同步回寫登入失敗次數（達到門檻時一併寫入鎖定到期時間）
+     */
+    @Async
+    @Transactional
+    public void writeBackFailure(String username, long failures) {
+        try {
+            LocalDateTime lockedUntil = reachesLock(failures) ? LocalDateTime.now().plus(lockDuration) : null;
+            secureUserRepository.updateLoginFailures(username, (int) failures, lockedUntil);
+        } catch (Exception e) {
+            log.warn("回寫帳號 {} 登入失敗次數失敗：{}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * 非同步回寫最後登入時間與 IP（同時清除失敗次數）
+     */
+    @Async
+    @Transactional
+    public void writeBackSuccess(String username, String clientIp) {
+        try {
+            secureUserRepository.updateLoginSuccess(username, LocalDateTime.now(), clientIp);
+        } catch (Exception e) {
+            log.warn("回寫帳號 {} 最後登入資訊失敗：{}", username, e.getMessage());
+        }
+    }
+
+    private static String normalize(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+}
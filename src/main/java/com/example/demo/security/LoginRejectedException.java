@@ -0,0 +1,33 @@
+package com.example.demo.security;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * 登入請求在密碼雜湊之前就被拒絕
+ * - 雜湊執行緒池忙碌：503
+ * - 同一 IP 失敗次數過多或帳號鎖定中：429
+ */
+public class LoginRejectedException extends AuthenticationServiceException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public LoginRejectedException(String message, HttpStatus status, long retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    static LoginRejectedException busy() {
+        return new LoginRejectedException("登入服務忙碌中，請稍後再試", HttpStatus.SERVICE_UNAVAILABLE, 5);
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.security;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * 匿名可讀的公開路由（首頁、商品目錄、靜態資源）
+ * 符合的請求走 PublicRouteSecurityConfig 的輕量安全鏈，JWT / Session 認證過濾器直接跳過
+ *
+ * 功能包括：
+ * - 啟動時把 security.public-routes 預先編譯成完整路徑集合與前綴清單（/** 結尾），比對時不做樣式解析
+ * - 只接受 GET / HEAD
+ * - 路徑含 ..、;、%、\ 或 // 時一律不視為公開，交給一般安全鏈（防火牆）處理
+ */
+@Component
+public class PublicRouteMatcher implements RequestMatcher {
+
+    private final Set<String> exactPaths = new HashSet<>();
+    private final String[] prefixes;
+
+    public PublicRouteMatcher(@Value("${security.public-routes:/,/index,/product,/products/**,/static/**,/css/**,/js/**,/images/**,/favicon.ico}")
+                              String[] routes) {
+        List<String> prefixList = new ArrayList<>();
+        for (String route : routes) {
+            String pattern = route.trim();
+            if (pattern.endsWith("/**")) {
+                String base = pattern.substring(0, pattern.length() - 3);
+                exactPaths.add(base.isEmpty() ? "/" : base);
+                prefixList.add(base + "/");
+            } else if (!pattern.isEmpty()) {
+                exactPaths.add(pattern);
+            }
+        }
+        this.prefixes = prefixList.toArray(new String[0]);
+    }
+
+    @Override
+    public boolean matches(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        String path = path(request);
+        if (path.contains("..") || path.contains("//") || path.indexOf(';') >= 0
+                || path.indexOf('%') >= 0 || path.indexOf('\\') >= 0) {
+            return false;
+        }
+        if (exactPaths.contains(path)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String path(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        return contextPath.isEmpty() ? uri : uri.substring(contextPath.length());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.security;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.entity.SecureUser;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * SecureUser 實體監聽器
+ * 使用者資料（密碼、角色、帳號狀態）異動後清除 CustomUserDetailsService 的快取
+ *
+ * 功能包括：
+ * - 交易提交後才清除，避免其他請求在提交前重新載入舊資料
+ * - 登入次數回寫使用批次 UPDATE（SecureUserRepository），不會觸發此監聽器
+ */
+@Component
+public class SecureUserChangeListener {
+
+    // 延遲取得：CustomUserDetailsService 依賴 Repository，而 Repository 依賴 EntityManagerFactory
+    private final ObjectProvider<CustomUserDetailsService> userDetailsService;
+
+    public SecureUserChangeListener(ObjectProvider<CustomUserDetailsService> userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @PostUpdate
+    @PostRemove
+    void onChange(SecureUser user) {
+        String username = user.getUsername();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(username);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(username);
+            }
+        });
+    }
+
+    private void evict(String username) {
+        userDetailsService.ifAvailable(service -> service.evict(username));
+    }
+}
@@ -12,16 +12,26 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Session 認證恢復過濾器
  * 從 HTTP Session 中恢復 Spring Security 認證上下文
+ * 公開路由（PublicRouteMatcher）不讀取 Session
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class SessionAuthenticationFilter extends OncePerRequestFilter {
 
+    private final PublicRouteMatcher publicRouteMatcher;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return publicRouteMatcher.matches(request);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                   FilterChain filterChain) throws ServletException, IOException {
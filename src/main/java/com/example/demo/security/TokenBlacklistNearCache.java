@@ -0,0 +1,200 @@
+package com.example.demo.security;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JWT 黑名單本機近端快取
+ * 被撤銷的 Token 只佔極少數，大部分請求不需要為了黑名單檢查到 Redis 走一趟
+ *
+ * 功能包括：
+ * - 以 Bloom Filter 記錄已撤銷的 JTI，判定「一定不在黑名單」時直接放行，只有命中時才回 Redis 確認
+ * - 加入黑名單後經 Redis Pub/Sub 廣播，所有節點立即更新本機 Bloom Filter
+ * - 定期以 SCAN 掃描 jwt:blacklist:* 重建 Bloom Filter，補回遺漏的廣播並移除已過期的 JTI
+ * - 超過 max-staleness 沒有成功重建時（Redis 中斷、啟動時無法連線），每次都回 Redis 檢查
+ */
+@Slf4j
+@Component
+public class TokenBlacklistNearCache implements MessageListener {
+
+    // Redis 廣播頻道(訊息內容為以換行分隔的 JTI)
+    public static final String CHANNEL = "jwt:blacklist:events";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final int expectedInsertions; //Bloom Filter 預期筆數(實際筆數較多時依實際筆數擴大)
+    private final double falsePositiveRate; //Bloom Filter 誤判率
+    private final long maxStalenessMillis; //本機資料最久可以落後多久
+
+    private final Object lock = new Object();
+    private volatile BloomFilter<CharSequence> filter;
+    private List<String> pendingDuringRebuild; //重建期間收到的 JTI，切換前補進新的 Bloom Filter
+
+    private final AtomicLong lastSyncMillis = new AtomicLong(0);
+    private final AtomicLong approximateSize = new AtomicLong(0);
+
+    public TokenBlacklistNearCache(StringRedisTemplate stringRedisTemplate,
+                                   RedisMessageListenerContainer listenerContainer,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${jwt.blacklist.bloom.expected-insertions:100000}") int expectedInsertions,
+                                   @Value("${jwt.blacklist.bloom.fpp:0.001}") double falsePositiveRate,
+                                   @Value("${jwt.blacklist.max-staleness:PT2M}") Duration maxStaleness) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.filter = newFilter(expectedInsertions);
+
+        Gauge.builder("jwt.blacklist.near-cache.size", approximateSize, AtomicLong::get)
+                .description("本機 Bloom Filter 中的 JTI 數量")
+                .register(meterRegistry);
+        Gauge.builder("jwt.blacklist.near-cache.staleness.seconds", this,
+                        c -> (System.currentTimeMillis() - c.lastSyncMillis.get()) / 1000.0)
+                .description("距離上次成功與 Redis 同步的秒數")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void listen() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        resync();
+    }
+
+    /**
+     * JTI 是否可能在黑名單中
+     * 回傳 false 表示一定不在黑名單，可以不查 Redis；回傳 true 時必須回 Redis 確認
+     */
+    public boolean mightBeBlacklisted(String jti) {
+        if (!isFresh()) {
+            return true;
+        }
+        return jti == null || filter.mightContain(jti);
+    }
+
+    /**
+     * 本機資料是否在允許的落後時間內
+     */
+    public boolean isFresh() {
+        return System.currentTimeMillis() - lastSyncMillis.get() <= maxStalenessMillis;
+    }
+
+    /**
+     * 通知所有節點(包含本機)這些 JTI 已加入黑名單
+     * 必須在寫入 Redis 之後呼叫，避免其他節點收到廣播時 Redis 還查不到
+     */
+    public void publish(Collection<String> jtis) {
+        if (jtis.isEmpty()) {
+            return;
+        }
+        //先更新本機，廣播失敗也不影響本節點
+        addAll(jtis);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, String.join("\n", jtis));
+        } catch (Exception e) {
+            log.warn("黑名單廣播失敗，其他節點將在下次重建時同步：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 收到 Redis 廣播（包含自己發出的）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        List<String> jtis = new ArrayList<>();
+        for (String jti : body.split("\n")) {
+            if (!jti.isBlank()) {
+                jtis.add(jti);
+            }
+        }
+        addAll(jtis);
+    }
+
+    /**
+     * 以 SCAN 掃描 Redis 中的黑名單重建 Bloom Filter
+     * 已過期的 JTI 由 Redis 自動刪除，重建後也會從 Bloom Filter 消失
+     */
+    @Scheduled(initialDelayString = "${jwt.blacklist.resync-interval:PT30S}",
+               fixedDelayString = "${jwt.blacklist.resync-interval:PT30S}")
+    public void resync() {
+        long started = System.currentTimeMillis();
+        synchronized (lock) {
+            pendingDuringRebuild = new ArrayList<>();
+        }
+        try {
+            List<String> jtis = scanBlacklist();
+            BloomFilter<CharSequence> rebuilt = newFilter(Math.max(expectedInsertions, jtis.size() * 2));
+            jtis.forEach(rebuilt::put);
+            synchronized (lock) {
+                pendingDuringRebuild.forEach(rebuilt::put);
+                approximateSize.set(jtis.size() + pendingDuringRebuild.size());
+                filter = rebuilt;
+            }
+            //以開始掃描的時間計算落後時間，掃描期間寫入的 JTI 由廣播補上
+            lastSyncMillis.set(started);
+            log.debug("JWT 黑名單近端快取已重建，共 {} 筆", jtis.size());
+        } catch (Exception e) {
+            log.warn("JWT 黑名單近端快取重建失敗，超過容許落後時間後改為每次查詢 Redis：{}", e.getMessage());
+        } finally {
+            synchronized (lock) {
+                pendingDuringRebuild = null;
+            }
+        }
+    }
+
+    private List<String> scanBlacklist() {
+        int prefixLength = JwtRedisTokenService.TOKEN_BLACKLIST_PREFIX.length();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(JwtRedisTokenService.TOKEN_BLACKLIST_PREFIX + "*")
+                .count(1000)
+                .build();
+        List<String> jtis = new ArrayList<>();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                jtis.add(cursor.next().substring(prefixLength));
+            }
+        }
+        return jtis;
+    }
+
+    private void addAll(Collection<String> jtis) {
+        synchronized (lock) {
+            for (String jti : jtis) {
+                filter.put(jti);
+                if (pendingDuringRebuild != null) {
+                    pendingDuringRebuild.add(jti);
+                }
+            }
+            approximateSize.addAndGet(jtis.size());
+        }
+    }
+
+    private BloomFilter<CharSequence> newFilter(int expected) {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expected, falsePositiveRate);
+    }
+}
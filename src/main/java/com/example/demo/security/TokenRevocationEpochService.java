@@ -0,0 +1,127 @@
+package com.example.demo.security;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.JwtProperties;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 使用者 Token 撤銷紀元（revocation epoch）
+ * 「登出所有設備」只寫入一個時間點：在此時間（含同一秒）之前簽發的 Token 全部失效
+ *
+ * 功能包括：
+ * - Redis 以 jwt:epoch:{username} 保存紀元（epoch 秒），TTL 為 Token 最長有效期，過後舊 Token 早已自然過期
+ * - 本機快取各使用者的紀元，驗證時比對 Token 的 iat，不需要逐一查詢 JTI
+ * - 寫入後經 Redis Pub/Sub 廣播，所有節點立即更新本機快取；廣播遺失時快取最多落後 cache-ttl
+ */
+@Slf4j
+@Component
+public class TokenRevocationEpochService implements MessageListener {
+
+    // Redis 廣播頻道(訊息內容為 username + 換行 + 紀元秒數)
+    public static final String CHANNEL = "jwt:epoch:events";
+    static final String EPOCH_PREFIX = "jwt:epoch:";
+
+    private static final long NONE = 0L; //沒有撤銷紀錄
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Duration epochTtl;
+
+    // username -> 紀元秒數
+    private final Cache<String, Long> epochs;
+
+    public TokenRevocationEpochService(StringRedisTemplate stringRedisTemplate,
+                                       RedisMessageListenerContainer listenerContainer,
+                                       JwtProperties jwtProperties,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${jwt.epoch.cache-size:50000}") long cacheSize,
+                                       @Value("${jwt.epoch.cache-ttl:PT1M}") Duration cacheTtl) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.epochTtl = Duration.ofMillis(Math.max(jwtProperties.getExpiration(), jwtProperties.getRefreshExpiration()));
+        this.epochs = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, epochs, "jwt.revocation-epochs");
+    }
+
+    @PostConstruct
+    void listen() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 撤銷使用者目前為止簽發的所有 Token
+     * @return 新的紀元
+     */
+    public Instant revokeAll(String username) {
+        long epoch = Instant.now().getEpochSecond();
+        String value = Long.toString(epoch);
+        stringRedisTemplate.opsForValue().set(EPOCH_PREFIX + username, value, epochTtl);
+        epochs.asMap().merge(username, epoch, Math::max);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, username + "\n" + value);
+        } catch (Exception e) {
+            log.warn("撤銷紀元廣播失敗，其他節點將在快取到期後同步：{}", e.getMessage());
+        }
+        return Instant.ofEpochSecond(epoch);
+    }
+
+    /**
+     * Token 是否在使用者的撤銷紀元之前簽發
+     * 取不到紀元（Redis 無法使用）時視為已撤銷，與黑名單檢查一致
+     */
+    public boolean isRevoked(VerifiedToken token) {
+        long epoch;
+        try {
+            epoch = epochs.get(token.subject(), () -> load(token.subject()));
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("讀取使用者 {} 的撤銷紀元時發生錯誤：{}", token.subject(), e.getMessage());
+            return true;
+        }
+        if (epoch == NONE) {
+            return false;
+        }
+        //JWT 的 iat 只到秒，同一秒簽發的 Token 也一併撤銷
+        return token.issuedAt() == null || token.issuedAt().getEpochSecond() <= epoch;
+    }
+
+    /**
+     * 收到 Redis 廣播（包含自己發出的）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n");
+        if (parts.length != 2) {
+            log.warn("無法解析撤銷紀元廣播：{}", String.join("|", parts));
+            return;
+        }
+        //廣播可能晚於較新的紀元送達，只往後推進
+        epochs.asMap().merge(parts[0], Long.parseLong(parts[1]), Math::max);
+    }
+
+    private long load(String username) {
+        String value = stringRedisTemplate.opsForValue().get(EPOCH_PREFIX + username);
+        return value != null ? Long.parseLong(value) : NONE;
+    }
+}
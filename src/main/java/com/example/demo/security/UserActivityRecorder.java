@@ -0,0 +1,147 @@
+package com.example.demo.security;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.security.JwtRedisTokenService.ActiveToken;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 使用者活動記錄緩衝
+ * 取代每個已認證請求都同步寫入 Redis（SADD + EXPIRE）的做法
+ *
+ * 功能包括：
+ * - 請求執行緒只寫入記憶體緩衝，不等待 Redis
+ * - 同一個使用者 / JTI 在 min-interval 內只記錄一次
+ * - 排程以 pipeline 批次寫入 Redis，失敗時保留到下一次
+ * - 緩衝上限 max-pending，滿了就丟棄並計數（活動記錄只是輔助資訊）
+ * - 關閉程式時送出剩餘的緩衝
+ */
+@Slf4j
+@Component
+public class UserActivityRecorder {
+
+    private final JwtRedisTokenService jwtRedisTokenService;
+    private final int maxPending;
+    private final int flushBatchSize;
+
+    // username + JTI -> 待寫入的活動
+    private final Map<String, ActiveToken> pending = new ConcurrentHashMap<>();
+    // 最近已記錄過的 username + JTI（min-interval 內不再記錄）
+    private final Cache<String, Boolean> recentlyRecorded;
+
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    private final Counter bufferedCounter;
+    private final Counter skippedCounter;
+    private final Counter droppedCounter;
+    private final Timer flushTimer;
+
+    public UserActivityRecorder(JwtRedisTokenService jwtRedisTokenService, MeterRegistry meterRegistry,
+                                @Value("${jwt.activity.min-interval:PT1M}") Duration minInterval,
+                                @Value("${jwt.activity.max-pending:100000}") int maxPending,
+                                @Value("${jwt.activity.flush-batch-size:500}") int flushBatchSize) {
+        this.jwtRedisTokenService = jwtRedisTokenService;
+        this.maxPending = maxPending;
+        this.flushBatchSize = flushBatchSize;
+        this.recentlyRecorded = CacheBuilder.newBuilder()
+                .maximumSize(maxPending)
+                .expireAfterWrite(minInterval)
+                .build();
+
+        this.bufferedCounter = meterRegistry.counter("jwt.activity.records", "result", "buffered");
+        this.skippedCounter = meterRegistry.counter("jwt.activity.records", "result", "skipped");
+        this.droppedCounter = meterRegistry.counter("jwt.activity.records", "result", "dropped");
+        this.flushTimer = Timer.builder("jwt.activity.flush")
+                .description("活動記錄批次寫入 Redis 耗時")
+                .register(meterRegistry);
+        Gauge.builder("jwt.activity.pending", pending, Map::size)
+                .description("尚未寫入 Redis 的活動記錄數")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 記錄使用者活動（不會阻塞呼叫端）
+     */
+    public void record(String username, String jti, long expiration) {
+        String key = username + '\n' + jti;
+        if (recentlyRecorded.getIfPresent(key) != null) {
+            skippedCounter.increment();
+            return;
+        }
+        if (pending.size() >= maxPending) {
+            droppedCounter.increment();
+            return;
+        }
+        recentlyRecorded.put(key, Boolean.TRUE);
+        pending.put(key, new ActiveToken(username, jti, expiration));
+        bufferedCounter.increment();
+    }
+
+    /**
+     * 定期將緩衝寫入 Redis
+     */
+    @Scheduled(fixedDelayString = "${jwt.activity.flush-interval:PT5S}")
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (!pending.isEmpty()) {
+                List<ActiveToken> batch = drain(flushBatchSize);
+                try {
+                    flushTimer.record(() -> jwtRedisTokenService.storeUserTokens(batch));
+                } catch (Exception e) {
+                    //寫入失敗時放回緩衝，下一次排程重試(期間有新紀錄時以新的為準)
+                    batch.forEach(t -> pending.putIfAbsent(t.username() + '\n' + t.jti(), t));
+                    log.warn("使用者活動記錄寫入 Redis 失敗，{} 筆保留到下一次：{}", batch.size(), e.getMessage());
+                    return;
+                }
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * 關閉程式時送出剩餘的緩衝
+     */
+    @PreDestroy
+    void drainOnShutdown() {
+        int remaining = pending.size();
+        if (remaining > 0) {
+            log.info("關閉前寫入 {} 筆使用者活動記錄", remaining);
+            flush();
+        }
+    }
+
+    private List<ActiveToken> drain(int limit) {
+        List<ActiveToken> batch = new ArrayList<>(Math.min(limit, pending.size()));
+        for (String key : pending.keySet()) {
+            ActiveToken token = pending.remove(key);
+            if (token != null) {
+                batch.add(token);
+            }
+            if (batch.size() >= limit) {
+                break;
+            }
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.security;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * 已驗證簽章的 JWT
+ * 每個 Token 只解析、驗證一次(JwtService.verify 以摘要快取)，過濾器與控制器直接使用其中的聲明
+ *
+ * 功能包括：
+ * - 提供 subject、jti、簽發與過期時間等常用聲明
+ * - 透過 claims() 取得其餘自訂聲明（userId、roles 等）
+ * - 判斷是否已過期或即將過期
+ *
+ * @param subject 使用者名稱
+ * @param jwtId JWT ID（可能為 null）
+ * @param issuedAt 簽發時間（可能為 null）
+ * @param expiration 過期時間
+ * @param claims 全部聲明（唯讀）
+ */
+public record VerifiedToken(String subject, String jwtId, Instant issuedAt, Instant expiration, Claims claims) {
+
+    static VerifiedToken of(Claims claims) {
+        return new VerifiedToken(claims.getSubject(), claims.getId(),
+                toInstant(claims.getIssuedAt()), toInstant(claims.getExpiration()), claims);
+    }
+
+    /**
+     * 是否已過期（沒有 exp 聲明視為不過期）
+     */
+    public boolean isExpired() {
+        return expiration != null && !expiration.isAfter(Instant.now());
+    }
+
+    /**
+     * 是否在指定時間內過期
+     */
+    public boolean isAboutToExpire(Duration within) {
+        return expiration != null && expiration.isBefore(Instant.now().plus(within));
+    }
+
+    /**
+     * 過期時間戳（毫秒），沒有 exp 聲明時為 Long.MAX_VALUE
+     */
+    public long expirationMillis() {
+        return expiration != null ? expiration.toEpochMilli() : Long.MAX_VALUE;
+    }
+
+    /**
+     * 使用者 ID（如果有的話）
+     */
+    public Long userId() {
+        Object userId = claims.get("userId");
+        return userId != null ? Long.valueOf(userId.toString()) : null;
+    }
+
+    /**
+     * 使用者角色，沒有時回傳空清單
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> roles() {
+        Object roles = claims.get("roles");
+        return roles instanceof List<?> list ? (List<String>) list : Collections.emptyList();
+    }
+
+    /**
+     * Refresh Token 所屬家族（Access Token 或舊版 Refresh Token 為 null）
+     */
+    public String refreshFamily() {
+        return claims.get(JwtService.REFRESH_FAMILY_CLAIM, String.class);
+    }
+
+    private static Instant toInstant(Date date) {
+        return date != null ? date.toInstant() : null;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dao.UserDao;
+import com.example.demo.entity.CartVO;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.User;
+import com.example.demo.event.OrderCreatedEvent;
+import com.example.demo.event.StockAdjustedEvent;
+import com.example.demo.newwebpay.bean.PayResponse;
+import com.example.demo.util.FailFastScope;
+import com.example.demo.util.MerchantOrderNoGenerator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 結帳流程
+ * 取代原本 PayController 與 PayService 各讀一次購物車、逐筆建立明細的作法
+ *
+ * 功能包括：
+ * - 載入：購物車、商品即時狀態(上架、價格、庫存)、使用者狀態與異常偵測互不相依，
+ *   以虛擬執行緒平行執行(FailFastScope)，共用一個期限，任一項失敗立即取消其餘查詢
+ * - 驗證：購物車不可為空、商品必須上架且庫存足夠、數量必須大於 0，總金額以即時價格計算並與前端金額比對
+ * - 快照：驗證通過後建立不可變的 CheckoutSnapshot
+ * - 寫入：總訂單、明細(批次)、預留庫存與外寄箱事件在同一個交易內完成，任一商品庫存不足整筆回滾
+ * - 簽章：產生藍新付款資料
+ * - 每個階段以 Micrometer 計時(checkout.stage)
+ */
+@Slf4j
+@Service
+public class CheckoutService {
+
+    private final CartService cartService;
+    private final OrderService orderService;
+    private final OrderListService orderListService;
+    private final ProductService productService;
+    private final PayService payService;
+    private final UserDao userDao;
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final MerchantOrderNoGenerator merchantOrderNoGenerator;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OutboxService outboxService;
+
+    private final Timer loadTimer;
+    private final Timer validateTimer;
+    private final Timer persistTimer;
+    private final Timer signTimer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${checkout.load-timeout:PT3S}")
+    private Duration loadTimeout; //平行載入的共用期限
+
+    @Value("${checkout.anomaly-check.enabled:true}")
+    private boolean anomalyCheckEnabled; //是否在結帳時執行異常行為偵測
+
+    public CheckoutService(CartService cartService, OrderService orderService, OrderListService orderListService,
+                           ProductService productService, PayService payService, UserDao userDao,
+                           AnomalyDetectionService anomalyDetectionService,
+                           MerchantOrderNoGenerator merchantOrderNoGenerator,
+                           PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                           OutboxService outboxService, MeterRegistry meterRegistry) {
+        this.cartService = cartService;
+        this.orderService = orderService;
+        this.orderListService = orderListService;
+        this.productService = productService;
+        this.payService = payService;
+        this.userDao = userDao;
+        this.anomalyDetectionService = anomalyDetectionService;
+        this.merchantOrderNoGenerator = merchantOrderNoGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.outboxService = outboxService;
+        this.meterRegistry = meterRegistry;
+
+        this.loadTimer = stageTimer("load");
+        this.validateTimer = stageTimer("validate");
+        this.persistTimer = stageTimer("persist");
+        this.signTimer = stageTimer("sign");
+    }
+
+    /**
+     * 結帳
+     * @param uid           使用者id
+     * @param username      使用者名稱
+     * @param clientIP      客戶端 IP(異常偵測使用)
+     * @param expectedTotal 前端顯示的總金額
+     * @return 前端送往藍新需要的付款資料
+     */
+    public PayResponse checkout(Integer uid, String username, String clientIP, int expectedTotal) {
+        CheckoutInputs inputs = loadTimer.record(() -> load(uid, username, clientIP));
+
+        CheckoutSnapshot snapshot = validateTimer.record(() -> snapshot(uid, username, expectedTotal, inputs));
+
+        persistTimer.record(() -> transactionTemplate.executeWithoutResult(tx -> persist(snapshot)));
+
+        return signTimer.record(() -> payService.buildPayResponse(
+                snapshot.merchantOrderNo(), snapshot.totalAmount(), snapshot.itemDescription()));
+    }
+
+    //平行載入結帳需要的資料(總耗時接近最慢的一項，而不是全部相加)
+    private CheckoutInputs load(Integer uid, String username, String clientIP) {
+        try (FailFastScope scope = new FailFastScope(loadTimeout)) {
+            Supplier<List<CartVO>> cart = scope.fork(() -> cartService.GetByUid(uid));
+            Supplier<Map<Integer, Product>> products = scope.fork(() -> productService.GetStatesByCartUid(uid));
+            scope.fork(() -> {
+                checkUser(uid);
+                return null;
+            });
+            if (anomalyCheckEnabled) {
+                scope.fork(() -> {
+                    anomalyDetectionService.detectAnomalousUserBehavior(username, "checkout", clientIP);
+                    return null;
+                });
+            }
+
+            scope.join();
+            return new CheckoutInputs(cart.get(), products.get());
+        } catch (ExecutionException e) {
+            //驗證失敗(IllegalArgumentException)原樣拋出，讓例外處理器回應錯誤訊息
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("結帳資料載入失敗", e.getCause());
+        } catch (TimeoutException e) {
+            reject("load_timeout");
+            throw new IllegalArgumentException("結帳處理逾時，請稍後再試");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("結帳資料載入被中斷", e);
+        }
+    }
+
+    //使用者必須存在且未停用
+    private void checkUser(Integer uid) {
+        List<User> users = userDao.ReadByUid(uid);
+        if (users == null || users.isEmpty() || Integer.valueOf(1).equals(users.get(0).getIsDelete())) {
+            reject("invalid_user");
+            throw new IllegalArgumentException("用戶不存在或已停用");
+        }
+    }
+
+    //驗證購物車並建立快照
+    private CheckoutSnapshot snapshot(Integer uid, String username, int expectedTotal, CheckoutInputs inputs) {
+        List<CartVO> cartItems = inputs.cartItems();
+        if (cartItems == null || cartItems.isEmpty()) {
+            reject("empty_cart");
+            throw new IllegalArgumentException("購物車是空的");
+        }
+
+        List<CheckoutSnapshot.Line> lines = new ArrayList<>(cartItems.size());
+        int actualTotal = 0;
+        for (CartVO item : cartItems) {
+            Product product = inputs.products().get(item.getPid());
+            if (product == null || product.getStatus() == null || product.getStatus() != 1 || product.getPrice() <= 0) {
+                reject("product_unavailable");
+                throw new IllegalArgumentException("商品已下架：" + item.getTitle());
+            }
+            if (item.getNum() == null || item.getNum() <= 0) {
+                reject("invalid_quantity");
+                throw new IllegalArgumentException("商品數量錯誤：" + item.getTitle());
+            }
+            //預先檢查庫存(實際扣除仍以寫入階段的條件式更新為準)
+            if (product.getNum() < item.getNum()) {
+                reject("insufficient_stock");
+                throw new IllegalArgumentException("商品庫存不足：" + item.getTitle());
+            }
+            CheckoutSnapshot.Line line = new CheckoutSnapshot.Line(item.getPid(), item.getTitle(), product.getPrice(), item.getNum());
+            lines.add(line);
+            actualTotal += line.amount();
+        }
+
+        //以即時價格計算實際總金額(防止前端篡改或購物車價格過期)
+        if (actualTotal != expectedTotal) {
+            reject("amount_mismatch");
+            throw new IllegalArgumentException("金額驗證失敗：前端金額=" + expectedTotal + ", 實際金額=" + actualTotal);
+        }
+
+        String itemDescription = "購物車商品 - 用戶: " + username + " (" + lines.size() + "件商品)";
+        return new CheckoutSnapshot(uid, merchantOrderNoGenerator.nextId(), actualTotal, itemDescription, lines);
+    }
+
+    //總訂單、明細、預留庫存與外寄箱事件(同一個交易)
+    private void persist(CheckoutSnapshot snapshot) {
+        orderService.createOrder(snapshot.merchantOrderNo(), snapshot.totalAmount(), snapshot.itemDescription(), snapshot.uid());
+        orderListService.createOrderLists(snapshot.merchantOrderNo(), snapshot.uid(), snapshot.lines());
+
+        //同一商品多筆明細合併
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (CheckoutSnapshot.Line line : snapshot.lines()) {
+            quantities.merge(line.pid(), line.num(), Integer::sum);
+        }
+        List<Integer> insufficient = productService.ReserveNums(quantities);
+        if (!insufficient.isEmpty()) {
+            reject("insufficient_stock");
+            //拋出例外讓交易回滾(訂單與已預留的庫存一併取消)
+            throw new IllegalArgumentException("商品庫存不足：" + insufficient);
+        }
+
+        //下游系統的訂單建立與庫存扣除事件(由 OutboxRelay 在提交後發佈)
+        Map<Integer, Integer> deltas = new TreeMap<>();
+        quantities.forEach((pid, num) -> deltas.put(pid, -num));
+        outboxService.append(OutboxService.AGGREGATE_ORDER, snapshot.merchantOrderNo(), OutboxService.ORDER_CREATED, snapshot);
+        outboxService.append(OutboxService.AGGREGATE_ORDER, snapshot.merchantOrderNo(), OutboxService.STOCK_ADJUSTED,
+                new StockAdjustedEvent(snapshot.merchantOrderNo(), "0", deltas));
+        //交易提交後才會建立訂單讀取模型
+        eventPublisher.publishEvent(new OrderCreatedEvent(snapshot.merchantOrderNo(), snapshot.uid()));
+        log.info("結帳完成：{}，明細 {} 筆，金額 {}", snapshot.merchantOrderNo(), snapshot.lines().size(), snapshot.totalAmount());
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("checkout.stage")
+                .description("結帳各階段耗時")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private void reject(String reason) {
+        meterRegistry.counter("checkout.rejected", "reason", reason).increment();
+    }
+
+    /**
+     * 平行載入的結果
+     */
+    private record CheckoutInputs(List<CartVO> cartItems, Map<Integer, Product> products) {
+    }
+}
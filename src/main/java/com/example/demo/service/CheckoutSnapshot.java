@@ -0,0 +1,35 @@
+package com.example.demo.service;
+
+import java.util.List;
+
+/**
+ * 結帳快照（不可變）
+ * 購物車與即時價格只讀一次，驗證通過後建立快照，之後建立訂單、明細與預留庫存都以快照為準
+ *
+ * @param uid             使用者id
+ * @param merchantOrderNo 商店訂單編號
+ * @param totalAmount     訂單總金額(以商品即時價格計算)
+ * @param itemDescription 商品描述
+ * @param lines           訂單明細
+ */
+public record CheckoutSnapshot(Integer uid, String merchantOrderNo, int totalAmount, String itemDescription, List<Line> lines) {
+
+    public CheckoutSnapshot {
+        lines = List.copyOf(lines);
+    }
+
+    /**
+     * 單一明細
+     *
+     * @param pid       商品id
+     * @param title     商品名稱
+     * @param unitPrice 商品即時單價
+     * @param num       數量
+     */
+    public record Line(Integer pid, String title, int unitPrice, int num) {
+
+        public int amount() {
+            return unitPrice * num;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.OutboxEvent;
+
+/**
+ * 以 Kafka 發佈交易外寄箱事件(outbox.relay=kafka)
+ *
+ * 功能包括：
+ * - 主題為 前綴 + 聚合類型(例如：demo.order)
+ * - 以聚合id作為訊息 key，同一訂單的事件落在同一分區，維持順序
+ * - 標頭帶入事件類型與外寄箱 id，消費端可依 id 去重(至少發佈一次)
+ */
+@Service
+@ConditionalOnProperty(name = "outbox.relay", havingValue = "kafka")
+public class KafkaOutboxPublisher implements OutboxPublisher {
+
+    public static final String HEADER_EVENT_ID = "outbox-id";
+    public static final String HEADER_EVENT_TYPE = "event-type";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final String topicPrefix;
+
+    public KafkaOutboxPublisher(KafkaTemplate<String, String> kafkaTemplate,
+                                @Value("${outbox.kafka.topic-prefix:demo.}") String topicPrefix) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.topicPrefix = topicPrefix;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(OutboxEvent event) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(
+                topicPrefix + event.getAggregateType(), event.getAggregateId(), event.getPayload());
+        record.headers().add(HEADER_EVENT_ID, String.valueOf(event.getId()).getBytes(StandardCharsets.UTF_8));
+        record.headers().add(HEADER_EVENT_TYPE, event.getEventType().getBytes(StandardCharsets.UTF_8));
+        return kafkaTemplate.send(record).thenApply(result -> null);
+    }
+}
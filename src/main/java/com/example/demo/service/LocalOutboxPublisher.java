@@ -0,0 +1,36 @@
+package com.example.demo.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.OutboxEvent;
+import com.example.demo.event.OutboxMessage;
+
+/**
+ * 以 Spring 事件發佈交易外寄箱事件給本機監聽者(outbox.relay=local，預設)
+ * 監聽者(@EventListener OutboxMessage)在轉送執行緒上同步執行，拋出例外即視為發佈失敗
+ */
+@Service
+@ConditionalOnProperty(name = "outbox.relay", havingValue = "local", matchIfMissing = true)
+public class LocalOutboxPublisher implements OutboxPublisher {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public LocalOutboxPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(OutboxEvent event) {
+        try {
+            eventPublisher.publishEvent(new OutboxMessage(event.getId(), event.getAggregateType(),
+                    event.getAggregateId(), event.getEventType(), event.getPayload()));
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 藍新付款通知去重服務
+ * 藍新會重送通知(NotifyURL)，重複的通知在查詢藍新、更新訂單與庫存之前就直接丟棄
+ *
+ * 功能包括：
+ * - 以 MerchantOrderNo + 解密後完整通知內容的 SHA-256 作為通知鍵
+ *   （外層 Status 只表示通知本身成功與否，同一筆交易的不同通知內容不會被誤判為重複）
+ * - 第一層：本機有上限的最近通知集合（Guava Cache），O(1) 擋下同一節點的重送
+ * - 第二層：Redis SET NX + TTL，擋下送到其他節點的重送；Redis 無法使用時只依賴本機集合
+ * - 處理失敗或交易回滾時釋放通知鍵，讓藍新下一次重送可以重新處理
+ */
+@Slf4j
+@Service
+public class NotifyDeduplicationService {
+
+    private static final String KEY_PREFIX = "notify:dedup:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration ttl;
+
+    //最近處理過的通知鍵(本機)
+    private final Cache<String, Boolean> recentKeys;
+
+    private final Counter localDuplicateCounter;
+    private final Counter redisDuplicateCounter;
+
+    public NotifyDeduplicationService(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                                      @Value("${notify.dedup.ttl:P1D}") Duration ttl,
+                                      @Value("${notify.dedup.local-max-size:10000}") long localMaxSize) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttl = ttl;
+        this.recentKeys = CacheBuilder.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.localDuplicateCounter = meterRegistry.counter("payment.notify.duplicates", "layer", "local");
+        this.redisDuplicateCounter = meterRegistry.counter("payment.notify.duplicates", "layer", "redis");
+    }
+
+    /**
+     * 取得通知處理權
+     * @param merchantOrderNo 商店訂單編號
+     * @param payload         解密後的完整通知內容
+     * @return 通知鍵；重複通知時回傳 null
+     */
+    public String acquire(String merchantOrderNo, String payload) {
+        String key = KEY_PREFIX + merchantOrderNo + "|" + Hashing.sha256().hashString(payload, StandardCharsets.UTF_8);
+
+        if (recentKeys.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+            localDuplicateCounter.increment();
+            log.info("重複的付款通知(本機)：{}", key);
+            return null;
+        }
+
+        try {
+            Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", ttl);
+            if (Boolean.FALSE.equals(first)) {
+                redisDuplicateCounter.increment();
+                log.info("重複的付款通知(Redis)：{}", key);
+                return null;
+            }
+        } catch (Exception e) {
+            log.warn("Redis 去重失敗，只使用本機記錄：{}", e.getMessage());
+        }
+        return key;
+    }
+
+    /**
+     * 處理失敗時釋放通知鍵
+     */
+    public void release(String key) {
+        recentKeys.invalidate(key);
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("釋放付款通知鍵失敗：{}，{}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 目前交易沒有成功提交時釋放通知鍵
+     */
+    public void releaseUnlessCommitted(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(key);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.entity.Order;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 訂單歸檔服務
+ * 將已結案且超過保留時間的訂單與明細搬到歸檔資料表(orderdata_archive、orderlistdata_archive)，
+ * 讓付款通知與訂單查詢使用的熱資料表與索引維持小而快
+ *
+ * 功能包括：
+ * - 啟動時建立歸檔資料表(結構與熱資料表相同)，熱資料表新增欄位時自動補上
+ * - 只搬移結案狀態(1=付款成功、2=付款失敗、3=取消付款、6=退款)且建立超過 min-age 的訂單
+ * - 以 (建立時間, 主鍵) keyset 掃描早於截止時間的訂單(主鍵由序列分段配發，多節點時與建立時間不同向)，
+ *   每批一個交易，批次之間暫停並限制單次執行時間，避免影響線上交易
+ * - OrderRepository/OrderListRepository 查詢找不到時自動改查歸檔資料表；
+ *   歸檔訂單有新的付款狀態(例如：退款)時由 findHotOrRestore 搬回熱資料表再更新
+ */
+@Slf4j
+@Service
+public class OrderArchiveService implements ApplicationRunner {
+
+    //結案狀態(1=付款成功、2=付款失敗、3=取消付款、6=退款)
+    public static final Set<String> TERMINAL_STATUSES = Set.of("1", "2", "3", "6");
+
+    private final OrderArchiveDao orderArchiveDao;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${order-archive.enabled:true}")
+    private boolean enabled; //是否啟用歸檔排程
+
+    @Value("${order-archive.min-age:P90D}")
+    private Duration minAge; //訂單建立超過多久才歸檔
+
+    @Value("${order-archive.batch-size:500}")
+    private int batchSize; //每批掃描筆數
+
+    @Value("${order-archive.batch-pause:PT0.2S}")
+    private Duration batchPause; //批次之間暫停時間(節流)
+
+    @Value("${order-archive.max-duration:PT1H}")
+    private Duration maxDuration; //單次排程最長執行時間
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final Counter archivedCounter;
+
+    public OrderArchiveService(OrderArchiveDao orderArchiveDao, PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.orderArchiveDao = orderArchiveDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archivedCounter = meterRegistry.counter("order.archive.orders", "action", "archived");
+    }
+
+    /**
+     * 啟動時建立歸檔資料表
+     * 失敗時(例如：非 MySQL 資料庫)停用歸檔，查詢只使用熱資料表
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            orderArchiveDao.CreateArchiveTables();
+            log.info("訂單歸檔資料表已就緒");
+        } catch (Exception e) {
+            log.warn("無法建立訂單歸檔資料表，停用歸檔：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 歸檔排程(預設每天凌晨)
+     */
+    @Scheduled(cron = "${order-archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        if (!enabled || !orderArchiveDao.IsReady() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            archiveOnce();
+        } catch (Exception e) {
+            log.error("訂單歸檔排程發生錯誤：{}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 執行一次歸檔
+     * @return 本次歸檔的訂單數
+     */
+    public int archiveOnce() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        long deadline = System.nanoTime() + maxDuration.toNanos();
+
+        int archived = 0;
+        LocalDateTime afterCreated = null;
+        int afterId = 0;
+        while (System.nanoTime() < deadline) {
+            List<Order> page = orderArchiveDao.ScanOrders(cutoff, afterCreated, afterId, batchSize);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            List<Integer> ids = new ArrayList<>();
+            for (Order order : page) {
+                if (TERMINAL_STATUSES.contains(order.getTradestatus())) {
+                    ids.add(order.getOid());
+                }
+            }
+            Order last = page.get(page.size() - 1);
+            afterCreated = last.getCreatedTime();
+            afterId = last.getOid();
+
+            if (!ids.isEmpty()) {
+                Integer moved = transactionTemplate.execute(tx -> orderArchiveDao.ArchiveOrders(ids, TERMINAL_STATUSES));
+                int count = moved != null ? moved : 0;
+                archived += count;
+                archivedCounter.increment(count);
+            }
+            if (page.size() < batchSize || !pause()) {
+                break;
+            }
+        }
+
+        if (archived > 0) {
+            log.info("訂單歸檔完成，本次歸檔 {} 筆，截止時間：{}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    //批次之間暫停，讓出資料庫給線上交易
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import java.time.LocalDate;
+
+/**
+ * 訂單匯出條件
+ *
+ * @param format          檔案格式
+ * @param content         匯出內容(訂單或明細)
+ * @param from            訂單建立日期起(含)，null 表示不限
+ * @param to              訂單建立日期迄(不含)，null 表示不限
+ * @param tradeStatus     交易狀態篩選，null 表示全部
+ * @param includeArchived 是否包含已歸檔訂單
+ * @param gzip            是否以 gzip 壓縮輸出
+ */
+public record OrderExportRequest(Format format, Content content, LocalDate from, LocalDate to, String tradeStatus,
+                                 boolean includeArchived, boolean gzip) {
+
+    public enum Format {
+        CSV("csv", "text/csv"),
+        NDJSON("ndjson", "application/x-ndjson");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public static Format of(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value) || format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("不支援的匯出格式：" + value);
+        }
+    }
+
+    public enum Content {
+        ORDERS, LINES;
+
+        public static Content of(String value) {
+            for (Content content : values()) {
+                if (content.name().equalsIgnoreCase(value)) {
+                    return content;
+                }
+            }
+            throw new IllegalArgumentException("不支援的匯出內容：" + value);
+        }
+    }
+
+    /**
+     * 下載檔名(例如：orders-2025-01-01_2025-02-01.csv.gz)
+     */
+    public String fileName() {
+        String range = (from != null ? from.toString() : "all") + "_" + (to != null ? to.toString() : "now");
+        return content.name().toLowerCase() + "-" + range + "." + format.extension() + (gzip ? ".gz" : "");
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.demo.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.dao.OrderExportDao;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 訂單匯出(會計對帳用完整資料)
+ * 取代 OrderRepository.findAll()：不建立實體、不經過持久化內容，記憶體用量與資料量無關
+ *
+ * 功能包括：
+ * - MySQL 串流結果集逐列讀取，讀一列寫一列
+ * - CSV(含標題列)或 NDJSON(每行一個 JSON 物件)
+ * - 可選 gzip 即時壓縮
+ * - 依訂單建立日期、交易狀態篩選，可包含已歸檔訂單
+ * - 熱資料表與歸檔資料表在同一個 REPEATABLE READ 唯讀交易內讀取(同一個快照)，
+ *   匯出期間歸檔作業搬移的訂單不會重複或遺漏
+ * - 同時供 HTTP 下載(OrderController)與命令列匯出(OrderExportRunner)使用
+ */
+@Slf4j
+@Service
+public class OrderExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final OrderExportDao orderExportDao;
+    private final OrderArchiveDao orderArchiveDao;
+    private final TransactionTemplate snapshotTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public OrderExportService(OrderExportDao orderExportDao, OrderArchiveDao orderArchiveDao,
+                              PlatformTransactionManager transactionManager) {
+        this.orderExportDao = orderExportDao;
+        this.orderArchiveDao = orderArchiveDao;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 匯出到輸出串流(不會關閉 out)
+     * @return 匯出筆數
+     */
+    public long export(OrderExportRequest request, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        GZIPOutputStream gzip = request.gzip() ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        OutputStream target = gzip != null ? gzip : out;
+
+        RowWriter writer = request.format() == OrderExportRequest.Format.CSV ? new CsvRowWriter(target) : new NdjsonRowWriter(target);
+        try {
+            //兩段查詢共用第一次讀取時建立的快照：熱資料表讀完後才歸檔的訂單，在歸檔資料表的快照中還不存在
+            boolean includeArchived = request.includeArchived() && orderArchiveDao.IsReady();
+            snapshotTemplate.executeWithoutResult(status -> {
+                stream(request, false, writer);
+                if (includeArchived) {
+                    stream(request, true, writer);
+                }
+            });
+            writer.flush();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        } catch (UncheckedIOException e) {
+            //寫出失敗(例如：用戶端中斷下載)
+            throw e.getCause();
+        }
+        log.info("匯出訂單 {}：{} 筆，耗時 {} ms", request.fileName(), writer.rows(), (System.nanoTime() - start) / 1_000_000);
+        return writer.rows();
+    }
+
+    private void stream(OrderExportRequest request, boolean archived, RowWriter writer) {
+        LocalDateTime from = request.from() != null ? request.from().atStartOfDay() : null;
+        LocalDateTime to = request.to() != null ? request.to().atStartOfDay() : null;
+        if (request.content() == OrderExportRequest.Content.LINES) {
+            orderExportDao.StreamOrderLines(from, to, request.tradeStatus(), archived, writer);
+        } else {
+            orderExportDao.StreamOrders(from, to, request.tradeStatus(), archived, writer);
+        }
+    }
+
+    //欄位值轉成字串或數字(時間以 ISO 格式輸出)
+    private static Object value(ResultSet resultSet, int column) throws SQLException {
+        Object value = resultSet.getObject(column);
+        if (value instanceof Timestamp timestamp) {
+            return TIME_FORMAT.format(timestamp.toLocalDateTime());
+        }
+        if (value instanceof TemporalAccessor temporal) {
+            return TIME_FORMAT.format(temporal);
+        }
+        return value;
+    }
+
+    /**
+     * 逐列寫出(第一列時依欄位名稱寫出標題)
+     */
+    private abstract static class RowWriter implements RowCallbackHandler {
+
+        private String[] columns;
+        private long rows;
+
+        @Override
+        public void processRow(ResultSet resultSet) throws SQLException {
+            if (columns == null) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                columns = new String[metaData.getColumnCount()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = metaData.getColumnLabel(i + 1);
+                }
+                try {
+                    header(columns);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            try {
+                row(columns, resultSet);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows++;
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        abstract void header(String[] columns) throws IOException;
+
+        abstract void row(String[] columns, ResultSet resultSet) throws IOException, SQLException;
+
+        abstract void flush() throws IOException;
+    }
+
+    /**
+     * CSV(RFC 4180)
+     */
+    private static final class CsvRowWriter extends RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        @Override
+        void header(String[] columns) throws IOException {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(columns[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        void row(String[] columns, ResultSet resultSet) throws IOException, SQLException {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = value(resultSet, i + 1);
+                if (value instanceof Number) {
+                    writer.write(value.toString());
+                } else if (value != null) {
+                    writeText(value.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeText(String text) throws IOException {
+            //以 = + - @ 開頭的文字在試算表中會被當成公式，前面加上單引號
+            if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+                text = "'" + text;
+            }
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * NDJSON(每行一個 JSON 物件)
+     */
+    private final class NdjsonRowWriter extends RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void header(String[] columns) {
+        }
+
+        @Override
+        void row(String[] columns, ResultSet resultSet) throws IOException, SQLException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                Object value = value(resultSet, i + 1);
+                generator.writeFieldName(columns[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else if (value instanceof Number number) {
+                    generator.writeNumber(number.longValue());
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 訂單歷史分頁結果
+ *
+ * @param orders     本頁訂單(由新到舊)
+ * @param nextCursor 下一頁游標，沒有下一頁時為 null
+ */
+public record OrderHistoryPage(List<Entry> orders, String nextCursor) {
+
+    /**
+     * 單張訂單
+     */
+    public record Entry(String merchantOrderNo, Integer totalAmt, String tradeStatus, String paymentType,
+                        String payTime, LocalDateTime createdTime, List<Item> items) {
+    }
+
+    /**
+     * 訂單明細
+     */
+    public record Item(Integer pid, String title, Integer amt, Integer num) {
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderView;
+import com.example.demo.event.PaymentStatusChangedEvent;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderSummary;
+import com.example.demo.repository.OrderViewRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 訂單查詢(讀取端)
+ * 訂單歷史、單筆訂單狀態與後台查詢都讀 order_view 文件，不再 JOIN 訂單、明細與商品
+ *
+ * 功能包括：
+ * - 以 (created_time, merchant_order_no) keyset 分頁，游標對前端不透明(Base64URL)
+ * - 讀取模型為非同步更新：單筆查詢找不到文件時同步重建；
+ *   使用者歷史第一頁為空但 orderdata 有資料時，同步重建該頁後再讀取
+ * - 上線前的舊訂單(含歸檔訂單)需先以 OrderViewBackfillRunner 完整補建，
+ *   否則歷史的後續頁與後台狀態查詢不會包含這些訂單
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderHistoryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private final OrderViewRepository orderViewRepository;
+    private final OrderRepository orderRepository;
+    private final OrderViewProjector orderViewProjector;
+
+    /**
+     * 查詢使用者訂單歷史
+     * @param uid    使用者id
+     * @param cursor 上一頁回傳的 nextCursor，第一頁傳 null
+     * @param size   每頁筆數
+     */
+    public OrderHistoryPage getHistory(Integer uid, String cursor, int size) {
+        int pageSize = pageSize(size);
+        //多取一筆判斷是否還有下一頁
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<OrderView> views;
+        if (cursor == null || cursor.isBlank()) {
+            views = orderViewRepository.findHistory(uid, limit);
+            if (views.isEmpty() && backfill(uid, limit)) {
+                views = orderViewRepository.findHistory(uid, limit);
+            }
+        } else {
+            Cursor position = Cursor.decode(cursor);
+            views = orderViewRepository.findHistoryAfter(uid, position.createdTime(), position.merchantOrderNo(), limit);
+        }
+        return toPage(views, pageSize);
+    }
+
+    /**
+     * 後台依訂單狀態查詢
+     */
+    public OrderHistoryPage getByStatus(String tradeStatus, String cursor, int size) {
+        int pageSize = pageSize(size);
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<OrderView> views;
+        if (cursor == null || cursor.isBlank()) {
+            views = orderViewRepository.findByStatus(tradeStatus, limit);
+        } else {
+            Cursor position = Cursor.decode(cursor);
+            views = orderViewRepository.findByStatusAfter(tradeStatus, position.createdTime(), position.merchantOrderNo(), limit);
+        }
+        return toPage(views, pageSize);
+    }
+
+    /**
+     * 單筆訂單(含明細與付款狀態)
+     * @return 訂單不存在時回傳 empty
+     */
+    public Optional<OrderView> getOrder(String merchantOrderNo) {
+        Optional<OrderView> view = orderViewRepository.findById(merchantOrderNo);
+        return view.isPresent() ? view : orderViewProjector.rebuild(merchantOrderNo);
+    }
+
+    /**
+     * 訂單目前的付款狀態(直接讀取 orderdata，不經過非同步更新的讀取模型)
+     */
+    public PaymentStatusChangedEvent currentStatus(String merchantOrderNo) {
+        Order order = orderRepository.findByMerchantorderno(merchantOrderNo)
+            .orElseThrow(() -> new IllegalArgumentException("找不到訂單：" + merchantOrderNo));
+        return new PaymentStatusChangedEvent(order.getMerchantorderno(), order.getUid(), null, order.getTradestatus(),
+            order.getPaymenttype(), order.getTradeno(), order.getPaytime());
+    }
+
+    /**
+     * 讀取模型轉為回應格式
+     */
+    public OrderHistoryPage.Entry toEntry(OrderView view) {
+        return new OrderHistoryPage.Entry(view.getMerchantOrderNo(), view.getTotalAmt(), view.getTradeStatus(),
+                view.getPaymentType(), view.getPayTime(), view.getCreatedTime(), orderViewProjector.readItems(view));
+    }
+
+    private OrderHistoryPage toPage(List<OrderView> views, int pageSize) {
+        boolean hasMore = views.size() > pageSize;
+        if (hasMore) {
+            views = views.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            OrderView last = views.get(views.size() - 1);
+            nextCursor = new Cursor(last.getCreatedTime(), last.getMerchantOrderNo()).encode();
+        }
+        return new OrderHistoryPage(views.stream().map(this::toEntry).toList(), nextCursor);
+    }
+
+    //讀取模型尚未建立時，從 orderdata(idx_orderdata_uid_created)找出第一頁並同步重建
+    private boolean backfill(Integer uid, PageRequest limit) {
+        List<OrderSummary> summaries = orderRepository.findHistory(uid, limit);
+        summaries.forEach(summary -> orderViewProjector.rebuild(summary.merchantOrderNo()));
+        return !summaries.isEmpty();
+    }
+
+    private static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * 分頁游標：最後一筆的建立時間與訂單編號
+     */
+    record Cursor(LocalDateTime createdTime, String merchantOrderNo) {
+
+        String encode() {
+            String raw = createdTime + "|" + merchantOrderNo;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("cursor 格式錯誤");
+            }
+        }
+    }
+}
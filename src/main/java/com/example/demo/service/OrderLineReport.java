@@ -0,0 +1,41 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 訂單明細彙總報表
+ *
+ * @param rows          彙總結果(依商品id 或日期排序)
+ * @param scannedRows   掃描的檔案總筆數
+ * @param missingMonths 查詢範圍內尚未匯出欄式檔案的月份(這些月份不包含在結果中)
+ * @param snapshotTimes 各月份檔案的匯出時間(月份 yyyy-MM -> 匯出時間)；
+ *                      檔案只包含匯出當下已結案的明細，之後才結案或變更狀態的明細要等下次重新匯出才會計入
+ * @param snapshotStatuses 檔案收錄的交易狀態(結案狀態)，篩選其他狀態(例如：0=未付款)不會有結果
+ * @param elapsedMillis 掃描耗時(毫秒)
+ */
+public record OrderLineReport(List<Row> rows, long scannedRows, List<String> missingMonths,
+                              Map<String, LocalDateTime> snapshotTimes, List<String> snapshotStatuses, long elapsedMillis) {
+
+    /**
+     * 單一商品或單日的彙總
+     *
+     * @param key      商品id 或日期(yyyy-MM-dd)
+     * @param lines    明細筆數
+     * @param quantity 數量合計
+     * @param revenue  營收合計(單價 × 數量)
+     */
+    public record Row(String key, long lines, long quantity, long revenue) {
+    }
+
+    /**
+     * 匯出結果
+     *
+     * @param month 月份(yyyy-MM)
+     * @param rows  明細筆數
+     * @param bytes 檔案大小
+     */
+    public record Export(String month, int rows, long bytes) {
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.util.OrderLineColumnReader;
+import com.example.demo.util.OrderLineColumnWriter;
+import com.example.demo.util.OrderLineTotals;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 訂單明細財務報表
+ * 已結案的訂單明細每月匯出成欄式檔案(OrderLineColumnWriter)，報表直接掃描記憶體對應的檔案，
+ * 不再經由 JPA 載入數個月的 orderlistdata 實體
+ *
+ * 功能包括：
+ * - 只收錄匯出當下已結案(1、2、3、6)的明細；付款通知、退款可能在月份結束後才到，
+ *   每天重新匯出最近 refresh-months 個已結束的月份，也可手動重新匯出指定月份
+ * - 結果列出各月份檔案的匯出時間與收錄的交易狀態
+ * - 依商品、依日彙總筆數、數量、營收，可依交易狀態篩選
+ * - 已開啟的檔案快取在記憶體，重新匯出時替換
+ * - 查詢範圍內尚未匯出的月份會列在結果中，不會靜默忽略
+ */
+@Slf4j
+@Service
+public class OrderLineReportService {
+
+    private static final DateTimeFormatter PAY_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String FILE_PREFIX = "order-lines-";
+    private static final String FILE_SUFFIX = ".olc";
+
+    private final OrderArchiveDao orderArchiveDao;
+    private final Path directory;
+    private final ZoneId zone;
+    private final int refreshMonths;
+
+    //月份 -> 已開啟的檔案
+    private final Map<YearMonth, OrderLineColumnReader> readers = new ConcurrentHashMap<>();
+
+    public OrderLineReportService(OrderArchiveDao orderArchiveDao,
+                                  @Value("${order-line-report.dir:./data/order-lines}") String directory,
+                                  @Value("${order-line-report.zone:}") String zone,
+                                  @Value("${order-line-report.refresh-months:3}") int refreshMonths) {
+        this.orderArchiveDao = orderArchiveDao;
+        this.directory = Paths.get(directory);
+        this.zone = zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.refreshMonths = Math.max(1, refreshMonths);
+    }
+
+    /**
+     * 每天重新匯出最近幾個已結束的月份(補上月份結束後才結案或變更狀態的明細)
+     */
+    @Scheduled(cron = "${order-line-report.cron:0 0 4 * * *}")
+    public void scheduledExport() {
+        YearMonth current = YearMonth.now(zone);
+        for (int i = refreshMonths; i >= 1; i--) {
+            YearMonth month = current.minusMonths(i);
+            try {
+                export(month);
+            } catch (Exception e) {
+                log.error("訂單明細欄式檔案匯出失敗：{}，{}", month, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 匯出指定月份(覆蓋既有檔案)
+     */
+    public OrderLineReport.Export export(YearMonth month) {
+        OrderLineColumnWriter writer = new OrderLineColumnWriter();
+        orderArchiveDao.StreamOrderLines(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay(),
+                OrderArchiveService.TERMINAL_STATUSES, resultSet -> {
+                    //查詢條件限定 Created_time 區間，仍防禦 NULL(例如：手動修改的資料)
+                    Timestamp createdTime = resultSet.getTimestamp("Created_time");
+                    writer.add(resultSet.getInt("Pid"), resultSet.getInt("Num"), resultSet.getInt("Amt"),
+                            resultSet.getString("Tradestatus"), resultSet.getString("Paymenttype"),
+                            epochSecond(resultSet.getString("Paytime"), createdTime != null ? createdTime.toLocalDateTime() : null, month));
+                });
+
+        try {
+            long bytes = writer.writeTo(pathOf(month));
+            readers.remove(month);
+            log.info("匯出訂單明細欄式檔案：{}，{} 筆，{} bytes", month, writer.size(), bytes);
+            return new OrderLineReport.Export(month.toString(), writer.size(), bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("寫入訂單明細欄式檔案失敗：" + month, e);
+        }
+    }
+
+    /**
+     * 依商品彙總
+     * @param from          起日(含)
+     * @param to            迄日(不含)
+     * @param tradeStatuses 交易狀態篩選，null 或空集合表示不篩選
+     */
+    public OrderLineReport productTotals(LocalDate from, LocalDate to, Collection<String> tradeStatuses) {
+        return report(from, to, tradeStatuses, false);
+    }
+
+    /**
+     * 依日彙總
+     */
+    public OrderLineReport dailyTotals(LocalDate from, LocalDate to, Collection<String> tradeStatuses) {
+        return report(from, to, tradeStatuses, true);
+    }
+
+    private OrderLineReport report(LocalDate from, LocalDate to, Collection<String> tradeStatuses, boolean byDay) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("查詢區間錯誤：" + from + " ~ " + to);
+        }
+        long start = System.nanoTime();
+        long fromEpoch = from.atStartOfDay(zone).toEpochSecond();
+        long toEpoch = to.atStartOfDay(zone).toEpochSecond();
+        Collection<String> statuses = tradeStatuses == null || tradeStatuses.isEmpty() ? null : tradeStatuses;
+        //台灣沒有日光節約時間，整個區間使用同一個時區位移
+        int offsetSeconds = zone.getRules().getOffset(from.atStartOfDay()).getTotalSeconds();
+
+        OrderLineTotals totals = new OrderLineTotals();
+        List<String> missingMonths = new ArrayList<>();
+        Map<String, LocalDateTime> snapshotTimes = new TreeMap<>();
+        long scannedRows = 0;
+        //付款時間可能晚於訂單建立月份，前一個月的檔案也要掃描
+        for (YearMonth month = YearMonth.from(from).minusMonths(1); !month.isAfter(YearMonth.from(to.minusDays(1))); month = month.plusMonths(1)) {
+            OrderLineColumnReader reader = reader(month);
+            if (reader == null) {
+                if (!month.isBefore(YearMonth.from(from))) {
+                    missingMonths.add(month.toString());
+                }
+                continue;
+            }
+            snapshotTimes.put(month.toString(), snapshotTime(month));
+            scannedRows += reader.rowCount();
+            if (byDay) {
+                reader.sumByDay(fromEpoch, toEpoch, statuses, offsetSeconds, totals);
+            } else {
+                reader.sumByProduct(fromEpoch, toEpoch, statuses, totals);
+            }
+        }
+
+        List<OrderLineReport.Row> rows = new ArrayList<>();
+        totals.forEach((key, lines, quantity, revenue) -> rows.add(new OrderLineReport.Row(
+                byDay ? LocalDate.ofEpochDay(key).toString() : String.valueOf(key), lines, quantity, revenue)));
+        return new OrderLineReport(rows, scannedRows, missingMonths, snapshotTimes,
+                OrderArchiveService.TERMINAL_STATUSES.stream().sorted().toList(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    //已開啟的檔案；尚未匯出時回傳 null
+    private OrderLineColumnReader reader(YearMonth month) {
+        OrderLineColumnReader cached = readers.get(month);
+        if (cached != null) {
+            return cached;
+        }
+        Path path = pathOf(month);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            OrderLineColumnReader reader = OrderLineColumnReader.open(path);
+            readers.put(month, reader);
+            return reader;
+        } catch (IOException e) {
+            throw new UncheckedIOException("讀取訂單明細欄式檔案失敗：" + path, e);
+        }
+    }
+
+    //檔案匯出時間(最後修改時間)
+    private LocalDateTime snapshotTime(YearMonth month) {
+        try {
+            return LocalDateTime.ofInstant(Files.getLastModifiedTime(pathOf(month)).toInstant(), zone);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Path pathOf(YearMonth month) {
+        return directory.resolve(FILE_PREFIX + month + FILE_SUFFIX);
+    }
+
+    //優先使用藍新付款時間，沒有(付款失敗、取消)或格式不符時使用訂單建立時間，兩者都沒有時使用該月第一天
+    private long epochSecond(String payTime, LocalDateTime createdTime, YearMonth month) {
+        LocalDateTime time = createdTime != null ? createdTime : month.atDay(1).atStartOfDay();
+        if (payTime != null && !payTime.isBlank()) {
+            try {
+                time = LocalDateTime.parse(payTime.trim(), PAY_TIME_FORMAT);
+            } catch (DateTimeParseException e) {
+                log.debug("無法解析付款時間：{}", payTime);
+            }
+        }
+        return time.atZone(zone).toEpochSecond();
+    }
+}
@@ -2,13 +2,17 @@
 package com.example.demo.service;
 
 import com.example.demo.entity.OrderList;
+import com.example.demo.event.StockAdjustedEvent;
 import com.example.demo.newwebpay.bean.PaymentResponse;
 import com.example.demo.repository.OrderListRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 //import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -29,6 +33,9 @@ public class OrderListService {
     @Autowired //自動注入
     private ProductService productService;
 
+    @Autowired //自動注入 交易外寄箱(庫存異動事件)
+    private OutboxService outboxService;
+
     // 創建新訂單(根據pay加密前的資料先新建)
     public OrderList createOrderLList(String merchantOrderNo, Integer amt, Integer num, Integer pid, Integer uid) {
         OrderList orderList = new OrderList();
@@ -46,51 +53,88 @@ public class OrderListService {
         return savedOrderList;
     }
 
-    public void updateOrderListFromNotify(PaymentResponse.QueryTradeInfoResponse.Result queryResult) {
-        //取出查詢結果中的詳細訊息
-        List<OrderList> orderLists = orderListRepository.findAllByMerchantorderno(queryResult.getMerchantOrderNo());
-
-        // 更新所有該訂單編號的明細訂單
-        if (!orderLists.isEmpty() && queryResult != null) {
-            //一筆一筆更新
-            for (OrderList orderList : orderLists) {
-                // 更新每筆明細訂單
-                orderList.setTradestatus(queryResult.getTradeStatus());
-                orderList.setPaymenttype(queryResult.getPaymentType());
-                orderList.setTradeno(queryResult.getTradeNo());
-                orderList.setPaytime(queryResult.getPayTime());
-                
-                //利用資料庫介面將更新後的資料儲存到資料庫
-                orderListRepository.save(orderList);
-
-            /**
-             * 0=未付款
-             * 1=付款成功
-             * 2=付款失敗
-             * 3=取消付款
-             * 6=退款
-             */    
-            // 如果付款成功（交易狀態為 "1"），更新商品庫存
-                if ("0".equals(queryResult.getTradeStatus()) ||"1".equals(queryResult.getTradeStatus())) {
-                    try {
-                        Integer addresult = productService.AddNum(orderList.getPid(), orderList.getNum());
-                        log.info("付款成功，庫存更新結果：{}", addresult);
-                    } catch (Exception e) {
-                        log.error("更新商品 {} 庫存時發生錯誤：{}", orderList.getPid(), e.getMessage());
-                    }
-                } else if ("3".equals(queryResult.getTradeStatus()) || "6".equals(queryResult.getTradeStatus())) {
-                    try {
-                        Integer subresult = productService.SubNum(orderList.getPid(), orderList.getNum());
-                        log.info("退款(取消)成功，庫存更新結果：{}", subresult);
-                    } catch (Exception e) {
-                        log.error("更新商品 {} 庫存時發生錯誤：{}", orderList.getPid(), e.getMessage());
-                    }
-                }
+    // 一次建立整張訂單的所有明細(依結帳快照，saveAll + JDBC 批次新增)
+    public List<OrderList> createOrderLists(String merchantOrderNo, Integer uid, List<CheckoutSnapshot.Line> lines) {
+        List<OrderList> orderLists = new ArrayList<>(lines.size());
+        for (CheckoutSnapshot.Line line : lines) {
+            OrderList orderList = new OrderList();
+            orderList.setUid(uid);
+            orderList.setMerchantorderno(merchantOrderNo);
+            orderList.setAmt(line.unitPrice());
+            orderList.setNum(line.num());
+            orderList.setPid(line.pid());
+            orderList.setTradestatus("0"); // 初始狀態：未付款
+            orderLists.add(orderList);
+        }
+
+        List<OrderList> savedOrderLists = orderListRepository.saveAll(orderLists);
+        log.info("創建新訂單：{}，明細 {} 筆", merchantOrderNo, savedOrderLists.size());
+        return savedOrderLists;
+    }
+
+    // previousTradeStatus：更新前的總訂單狀態，用來判斷庫存是否需要釋放或重新扣除
+    // stockReserved：總訂單是否在結帳時預留庫存(舊訂單沒有預留，狀態變動時不調整庫存)
+    public void updateOrderListFromNotify(String previousTradeStatus, boolean stockReserved,
+                                          PaymentResponse.QueryTradeInfoResponse.Result queryResult) {
+        if (queryResult == null) {
+            log.warn("查詢交易資訊失敗，無法更新訂單明細");
+            return;
+        }
+        String merchantOrderNo = queryResult.getMerchantOrderNo();
+        String tradeStatus = queryResult.getTradeStatus();
+
+        // 一個 UPDATE 更新該訂單編號的所有明細(不再逐筆載入、逐筆 save)
+        int rows = orderListRepository.updateTradeResult(merchantOrderNo, tradeStatus,
+                queryResult.getPaymentType(), queryResult.getTradeNo(), queryResult.getPayTime());
+        if (rows == 0) {
+            log.warn("找不到訂單明細：{}，無法更新", merchantOrderNo);
+            return;
+        }
+
+        /**
+         * 0=未付款
+         * 1=付款成功
+         * 2=付款失敗
+         * 3=取消付款
+         * 6=退款
+         */
+        // 庫存在結帳時已預留：0/1 持有庫存，2/3/6 釋放庫存，只有狀態跨越兩者時才調整
+        boolean wasHolding = holdsStock(previousTradeStatus);
+        boolean isHolding = holdsStock(tradeStatus);
+        int sign;
+        if (!stockReserved) {
+            sign = 0; // 從未預留過庫存，補回會憑空增加庫存
+            if (wasHolding != isHolding) {
+                log.info("訂單 {} 沒有預留庫存標記，狀態 {} -> {} 不調整庫存", merchantOrderNo, previousTradeStatus, tradeStatus);
             }
-            log.info("更新 {} 筆訂單明細，訂單編號：{}，新狀態：{}", 
-                    orderLists.size(), queryResult.getMerchantOrderNo(), queryResult.getTradeStatus());
+        } else if (wasHolding && !isHolding) {
+            sign = 1; // 付款失敗/取消/退款，補回庫存
+        } else if (!wasHolding && isHolding) {
+            sign = -1; // 由失敗狀態重新變為未付款/已付款，再次扣庫存
         } else {
-            log.warn("找不到訂單明細：{}，或查詢交易資訊失敗，無法更新", queryResult.getMerchantOrderNo());
+            sign = 0;
         }
+
+        if (sign != 0) {
+            // 同一商品的明細先彙總，整批一次更新庫存
+            Map<Integer, Integer> deltas = new HashMap<>();
+            for (OrderListRepository.ProductQuantity quantity : orderListRepository.sumNumByPid(merchantOrderNo)) {
+                deltas.put(quantity.getPid(), sign * quantity.getNum().intValue());
+            }
+            try {
+                int updated = productService.AdjustNums(deltas);
+                outboxService.append(OutboxService.AGGREGATE_ORDER, merchantOrderNo, OutboxService.STOCK_ADJUSTED,
+                        new StockAdjustedEvent(merchantOrderNo, tradeStatus, deltas));
+                log.info("訂單 {} 庫存更新 {} 項商品，狀態：{}", merchantOrderNo, updated, tradeStatus);
+            } catch (Exception e) {
+                log.error("更新訂單 {} 商品庫存時發生錯誤：{}", merchantOrderNo, e.getMessage());
+            }
+        }
+        log.info("更新 {} 筆訂單明細，訂單編號：{}，新狀態：{}", rows, merchantOrderNo, tradeStatus);
+    }
+
+    // 該狀態是否持有庫存(未付款、付款成功)
+    private static boolean holdsStock(String tradeStatus) {
+        return "0".equals(tradeStatus) || "1".equals(tradeStatus);
     }
 }
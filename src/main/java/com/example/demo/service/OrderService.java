@@ -2,12 +2,14 @@
 package com.example.demo.service;
 
 import com.example.demo.entity.Order;
+import com.example.demo.event.PaymentStatusChangedEvent;
 import com.example.demo.newwebpay.bean.PaymentResponse;
 import com.example.demo.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,8 +30,15 @@ public class OrderService {
 
     @Autowired //自動注入
     private OrderListService orderListService;
+
+    @Autowired //自動注入 發佈付款狀態變更事件(SSE 推播等)
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired //自動注入 交易外寄箱(下游系統的付款狀態變更事件)
+    private OutboxService outboxService;
     
     // 創建新訂單(根據pay加密前的資料先新建)
+    // 結帳在同一個交易內預留庫存(預留失敗整筆回滾)，因此新訂單一律標記為已預留
     public Order createOrder(String merchantOrderNo, Integer totalAmount, String itemDescription, Integer uid) {
         Order order = new Order();
         order.setUid(uid);
@@ -37,6 +46,7 @@ public class OrderService {
         order.setTotalamt(totalAmount);
         order.setItemdescription(itemDescription);
         order.setTradestatus("0"); // 初始狀態：未付款
+        order.setStockReserved(Boolean.TRUE);
         order.setCreatedBy("SYSTEM");
         order.setUpdatedBy("SYSTEM");
         order.setCreatedTime(LocalDateTime.now());
@@ -50,7 +60,8 @@ public class OrderService {
     }
 
     //更新訂單
-    public void updateOrderFromNotify(PaymentResponse.NotifyResponse notifyResponse, PayService payService) {
+    //回傳是否有完成處理(查詢藍新失敗或找不到訂單時回傳 false)
+    public boolean updateOrderFromNotify(PaymentResponse.NotifyResponse notifyResponse, PayService payService) {
 
         //取得付款完成通知的結果中的merchantOrderNo(訂單編號)
         PaymentResponse.NotifyResponse.Result result = notifyResponse.getResult();
@@ -60,62 +71,112 @@ public class OrderService {
         //使用 queryTradeInfo 主動查詢即時完整的交易資訊
         PaymentResponse.QueryTradeInfoResponse queryResponse = payService.queryTradeInfo(merchantOrderNo, result.getAmt());
         //取出查詢結果中的詳細訊息
-        PaymentResponse.QueryTradeInfoResponse.Result queryResult = queryResponse.getResult();
-        //利用資料庫介面查詢對應merchantOrderNo(訂單編號)資料
-        Optional<Order> orderOpt = orderRepository.findByMerchantorderno(merchantOrderNo);
+        PaymentResponse.QueryTradeInfoResponse.Result queryResult = queryResponse != null ? queryResponse.getResult() : null;
+
+        if (queryResult == null) {
+            log.warn("查詢交易資訊失敗，無法更新訂單：{}", merchantOrderNo);
+            return false;
+        }
+        return applyTradeResult(merchantOrderNo, notifyResponse.getStatus(), queryResult);
+    }
+
+    //依藍新查詢結果更新訂單(付款通知與對帳排程共用)
+    //回傳是否有找到對應訂單並完成更新
+    public boolean applyTradeResult(String merchantOrderNo, String status, PaymentResponse.QueryTradeInfoResponse.Result queryResult) {
+        //鎖定訂單後再讀取目前狀態，同時到達的更新(付款通知、對帳、逾期取消)不會重複調整庫存
+        Optional<Order> orderOpt = orderRepository.findForUpdate(merchantOrderNo);
+        if (orderOpt.isEmpty()) {
+            //已歸檔的訂單會先搬回熱資料表(例如：付款成功後退款)
+            orderOpt = orderRepository.findHotOrRestore(merchantOrderNo);
+        }
 
         // 更新訂單資訊
         //isPresent判斷是否為空(有對應的訂單編號回傳true)
-        if (orderOpt.isPresent() && queryResult != null) {
-            //取出實際的訂單資料
-            Order order = orderOpt.get();
-
-            // 更新總訂單
-            order.setStatus(notifyResponse.getStatus());
-            order.setTradestatus(queryResult.getTradeStatus());
-            order.setPaymenttype(queryResult.getPaymentType());
-            order.setTradeno(queryResult.getTradeNo());
-            order.setPaytime(queryResult.getPayTime());
-
-            order.setUpdatedBy("SYSTEM");
-            order.setUpdatedTime(LocalDateTime.now());
-
-
-            //利用資料庫介面將更新後的資料儲存到資料庫
-            orderRepository.save(order);            
-            /**
-             * 0=未付款
-             * 1=付款成功
-             * 2=付款失敗
-             * 3=取消付款
-             * 6=退款
-             */    
-            // 如果付款成功（交易狀態為 "1"），清空該用戶的購物車
-            if ("0".equals(queryResult.getTradeStatus()) || "1".equals(queryResult.getTradeStatus()) || "2".equals(queryResult.getTradeStatus())) {
-                try {
-                    String deleteResult = cartService.DeleteUidCart(order.getUid());
-                    log.info("交易完成，購物車清空結果：{}", deleteResult);
-                } catch (Exception e) {
-                    log.error("清空用戶 {} 購物車時發生錯誤：{}", order.getUid(), e.getMessage());
-                }
+        if (orderOpt.isEmpty()) {
+            log.warn("找不到訂單：{}，無法更新", merchantOrderNo);
+            return false;
+        }
+
+        //取出實際的訂單資料
+        Order order = orderOpt.get();
+        String previousTradeStatus = order.getTradestatus();
+
+        //同一筆藍新交易的同一狀態已經套用過(重送的通知或對帳已先處理)，不再重複更新訂單與庫存
+        if (queryResult.getTradeNo() != null && queryResult.getTradeNo().equals(order.getTradeno())
+                && queryResult.getTradeStatus().equals(previousTradeStatus)) {
+            log.info("訂單 {} 已是狀態 {}，略過重複更新", merchantOrderNo, previousTradeStatus);
+            return true;
+        }
+
+        // 更新總訂單
+        order.setStatus(status);
+        order.setTradestatus(queryResult.getTradeStatus());
+        order.setPaymenttype(queryResult.getPaymentType());
+        order.setTradeno(queryResult.getTradeNo());
+        order.setPaytime(queryResult.getPayTime());
+
+        order.setUpdatedBy("SYSTEM");
+        order.setUpdatedTime(LocalDateTime.now());
+
+
+        //利用資料庫介面將更新後的資料儲存到資料庫
+        orderRepository.save(order);            
+
+        PaymentStatusChangedEvent statusChanged = new PaymentStatusChangedEvent(merchantOrderNo, order.getUid(), previousTradeStatus,
+                queryResult.getTradeStatus(), queryResult.getPaymentType(), queryResult.getTradeNo(), queryResult.getPayTime());
+        //與訂單更新同一個交易寫入外寄箱
+        outboxService.append(OutboxService.AGGREGATE_ORDER, merchantOrderNo, OutboxService.PAYMENT_STATUS_CHANGED, statusChanged);
+        /**
+         * 0=未付款
+         * 1=付款成功
+         * 2=付款失敗
+         * 3=取消付款
+         * 6=退款
+         */    
+        // 如果付款成功（交易狀態為 "1"），清空該用戶的購物車
+        if ("0".equals(queryResult.getTradeStatus()) || "1".equals(queryResult.getTradeStatus()) || "2".equals(queryResult.getTradeStatus())) {
+            try {
+                String deleteResult = cartService.DeleteUidCart(order.getUid());
+                log.info("交易完成，購物車清空結果：{}", deleteResult);
+            } catch (Exception e) {
+                log.error("清空用戶 {} 購物車時發生錯誤：{}", order.getUid(), e.getMessage());
             }
+        }
+
+        // 更新明細訂單
+        orderListService.updateOrderListFromNotify(previousTradeStatus, Boolean.TRUE.equals(order.getStockReserved()), queryResult);           
 
-            // 更新明細訂單
-            orderListService.updateOrderListFromNotify(queryResult);           
+        //通知訂閱者(交易提交後才會真正推播)
+        eventPublisher.publishEvent(statusChanged);
 
-            //回傳訊息到控制台
-            log.info("訂單更新成功：{}，新狀態：{}", merchantOrderNo, queryResult.getTradeStatus());
-        } else {
-            log.warn("找不到訂單：{}，或查詢交易資訊失敗，無法更新。訂單存在：{}，查詢回應：{}", 
-                    merchantOrderNo, orderOpt.isPresent(), queryResponse != null);
+        //回傳訊息到控制台
+        log.info("訂單更新成功：{}，新狀態：{}", merchantOrderNo, queryResult.getTradeStatus());
+        return true;
+    }
+    //逾期未付款的訂單改為取消付款並釋放結帳時預留的庫存(沒有預留標記的舊訂單只取消，不補回庫存)
+    //回傳是否有取消(訂單已不是未付款時不處理)
+    public boolean expirePendingOrder(String merchantOrderNo) {
+        Optional<Order> orderOpt = orderRepository.findForUpdate(merchantOrderNo);
+        if (orderOpt.isEmpty() || !"0".equals(orderOpt.get().getTradestatus())) {
+            return false;
         }
+        Order order = orderOpt.get();
+        PaymentResponse.QueryTradeInfoResponse.Result expired = new PaymentResponse.QueryTradeInfoResponse.Result();
+        expired.setMerchantOrderNo(merchantOrderNo);
+        expired.setAmt(order.getTotalamt());
+        expired.setTradeNo(order.getTradeno());
+        expired.setPaymentType(order.getPaymenttype());
+        expired.setPayTime(order.getPaytime());
+        expired.setTradeStatus("3"); // 取消付款
+        return applyTradeResult(merchantOrderNo, "EXPIRED", expired);
     }
-/* 
+
     // 根據訂單編號查詢訂單
+    @Transactional(readOnly = true)
     public Optional<Order> findByMerchantOrderNo(String merchantOrderNo) {
         return orderRepository.findByMerchantorderno(merchantOrderNo);
     }
-   
+/*   
     // 檢查訂單是否存在
     public boolean existsByMerchantOrderNo(String merchantOrderNo) {
         return orderRepository.existsByMerchantorderno(merchantOrderNo);
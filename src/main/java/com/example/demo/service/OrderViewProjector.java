@@ -0,0 +1,186 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderList;
+import com.example.demo.entity.OrderView;
+import com.example.demo.event.OrderCreatedEvent;
+import com.example.demo.event.PaymentStatusChangedEvent;
+import com.example.demo.repository.OrderListRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderViewRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 訂單讀取模型投影
+ * 寫入端(orderdata、orderlistdata)維持正規化，查詢端改讀 order_view 的單一文件
+ *
+ * 功能包括：
+ * - 訂單建立、付款狀態變更的交易提交後，非同步(@Async)更新 order_view
+ * - 每次都從正規化資料表讀取最新狀態重建，事件重複或順序顛倒結果都相同
+ * - 文件記錄來源訂單的 Updated_time，先鎖定文件再讀取訂單，
+ *   讀到的訂單比文件記錄的還舊時(非同步投影交錯執行)不覆蓋
+ * - 付款狀態變更只更新狀態欄位，明細沿用既有文件
+ * - 查詢端找不到文件時可同步重建(rebuild)
+ */
+@Slf4j
+@Service
+public class OrderViewProjector {
+
+    private final OrderRepository orderRepository;
+    private final OrderListRepository orderListRepository;
+    private final OrderViewRepository orderViewRepository;
+    private final ProductService productService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public OrderViewProjector(OrderRepository orderRepository, OrderListRepository orderListRepository,
+                              OrderViewRepository orderViewRepository, ProductService productService,
+                              PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderListRepository = orderListRepository;
+        this.orderViewRepository = orderViewRepository;
+        this.productService = productService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        withRetry(event.merchantOrderNo(), () -> rebuild(event.merchantOrderNo()));
+    }
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentStatusChanged(PaymentStatusChangedEvent event) {
+        withRetry(event.merchantOrderNo(), () -> refreshStatus(event.merchantOrderNo()));
+    }
+
+    /**
+     * 從正規化資料表重建整份文件
+     * @return 訂單不存在時回傳 empty
+     */
+    public Optional<OrderView> rebuild(String merchantOrderNo) {
+        return transactionTemplate.execute(tx -> {
+            Optional<OrderView> existing = orderViewRepository.findForUpdate(merchantOrderNo);
+            Optional<Order> order = orderRepository.findByMerchantorderno(merchantOrderNo);
+            if (order.isEmpty()) {
+                return Optional.<OrderView>empty();
+            }
+            if (existing.isPresent() && isNewer(existing.get(), order.get())) {
+                return existing;
+            }
+            OrderView view = existing.orElseGet(OrderView::new);
+            copyOrder(order.get(), view);
+            view.setItems(writeItems(loadItems(merchantOrderNo)));
+            return Optional.of(orderViewRepository.save(view));
+        });
+    }
+
+    //只更新付款狀態相關欄位，文件不存在時整份重建
+    private void refreshStatus(String merchantOrderNo) {
+        boolean refreshed = Boolean.TRUE.equals(transactionTemplate.execute(tx -> {
+            Optional<OrderView> existing = orderViewRepository.findForUpdate(merchantOrderNo);
+            Optional<Order> order = orderRepository.findByMerchantorderno(merchantOrderNo);
+            if (existing.isEmpty() || order.isEmpty()) {
+                return false;
+            }
+            OrderView view = existing.get();
+            if (isNewer(view, order.get())) {
+                return true;
+            }
+            copyOrder(order.get(), view);
+            orderViewRepository.save(view);
+            return true;
+        }));
+        if (!refreshed) {
+            rebuild(merchantOrderNo);
+        }
+    }
+
+    private void copyOrder(Order order, OrderView view) {
+        view.setMerchantOrderNo(order.getMerchantorderno());
+        view.setUid(order.getUid());
+        view.setTotalAmt(order.getTotalamt());
+        view.setItemDescription(order.getItemdescription());
+        view.setTradeStatus(order.getTradestatus());
+        view.setPaymentType(order.getPaymenttype());
+        view.setTradeNo(order.getTradeno());
+        view.setPayTime(order.getPaytime());
+        view.setCreatedTime(order.getCreatedTime());
+        view.setSourceUpdatedTime(order.getUpdatedTime());
+        view.setUpdatedTime(LocalDateTime.now());
+    }
+
+    //文件已反映比這次讀到的訂單更新的狀態
+    private boolean isNewer(OrderView view, Order order) {
+        if (view.getSourceUpdatedTime() == null || order.getUpdatedTime() == null
+                || !view.getSourceUpdatedTime().isAfter(order.getUpdatedTime())) {
+            return false;
+        }
+        log.debug("訂單讀取模型 {} 已是較新的版本({} > {})，略過", view.getMerchantOrderNo(),
+                view.getSourceUpdatedTime(), order.getUpdatedTime());
+        return true;
+    }
+
+    //明細與商品名稱(一次查詢明細、一次查詢商品名稱)
+    private List<OrderHistoryPage.Item> loadItems(String merchantOrderNo) {
+        List<OrderList> orderLists = orderListRepository.findAllByMerchantorderno(merchantOrderNo);
+        Map<Integer, String> titles = productService.GetTitlesByIds(
+                orderLists.stream().map(OrderList::getPid).distinct().toList());
+        return orderLists.stream()
+                .map(l -> new OrderHistoryPage.Item(l.getPid(), titles.get(l.getPid()), l.getAmt(), l.getNum()))
+                .toList();
+    }
+
+    /**
+     * 解析文件中的明細
+     */
+    public List<OrderHistoryPage.Item> readItems(OrderView view) {
+        if (view.getItems() == null) {
+            return List.of();
+        }
+        try {
+            return List.of(objectMapper.readValue(view.getItems(), OrderHistoryPage.Item[].class));
+        } catch (JsonProcessingException e) {
+            log.error("無法解析訂單 {} 的明細：{}", view.getMerchantOrderNo(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private String writeItems(List<OrderHistoryPage.Item> items) {
+        try {
+            return objectMapper.writeValueAsString(items);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法序列化訂單明細", e);
+        }
+    }
+
+    //兩個事件同時建立同一份文件時，主鍵衝突的一方重試一次
+    private void withRetry(String merchantOrderNo, Runnable projection) {
+        try {
+            projection.run();
+        } catch (DataIntegrityViolationException e) {
+            log.debug("訂單讀取模型 {} 同時更新，重試", merchantOrderNo);
+            projection.run();
+        } catch (Exception e) {
+            log.error("更新訂單讀取模型 {} 失敗：{}", merchantOrderNo, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.example.demo.entity.OutboxEvent;
+
+/**
+ * 交易外寄箱事件的發佈目的地(Kafka 或本機監聽者)
+ * 回傳的 Future 完成才代表事件已確實送達，失敗時 OutboxRelay 會保留事件待下次重送
+ */
+public interface OutboxPublisher {
+
+    CompletableFuture<Void> publish(OutboxEvent event);
+}
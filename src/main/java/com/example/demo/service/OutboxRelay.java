@@ -0,0 +1,329 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.OutboxEvent;
+import com.example.demo.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 交易外寄箱轉送排程
+ * 將已提交的外寄箱事件分批發佈到 Kafka 或本機監聽者(OutboxPublisher)
+ *
+ * 功能包括：
+ * - 至少發佈一次：事件確實送達後才標記為已發佈，失敗或逾時的事件下次重送
+ * - 同一聚合依 id 順序發佈：同一聚合的事件串接成一條鏈，前一筆成功才送下一筆，
+ *   前一筆失敗時該聚合後續事件留到下次；不同聚合之間平行發佈
+ * - 多節點部署時以 Redis 租約選出一個轉送節點，每批之前以 Lua 比對後 PEXPIRE 原子續約；
+ *   Redis 無法使用或租約已被其他節點取得時不轉送(寧可延遲，不讓兩個節點同時發佈)
+ * - 一批事件分三步處理：短交易認領(claimed_by、claimed_until) -> 交易外發佈 -> 另一個交易標記結果，
+ *   等待 Kafka 確認期間不佔用資料庫交易與鎖；同一聚合較早的事件被其他節點認領中時，後續事件不會被取得
+ * - 失敗次數達 outbox.relay.max-attempts 的事件停止重送(parked_time)，
+ *   不再擋住同一聚合的後續事件，需人工排除後清除 parked_time 重新發佈
+ * - 定期刪除超過保留時間的已發佈事件
+ * - 透過 Micrometer 暴露發佈筆數、停止重送筆數與延遲指標
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+
+    private static final String LEASE_KEY = "outbox:relay:leader";
+    private static final int ERROR_MAX_LENGTH = 500;
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+
+    // 仍屬於自己時延長租約，回傳 1；已過期或被其他節點取得時回傳 0
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxPublisher publisher;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    //發佈鏈在虛擬執行緒上接續(不佔用 Kafka producer 的 I/O 執行緒)
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Value("${outbox.relay.enabled:true}")
+    private boolean enabled; //是否啟用轉送排程
+
+    @Value("${outbox.relay.batch-size:200}")
+    private int batchSize; //每批筆數
+
+    @Value("${outbox.relay.max-batches-per-run:20}")
+    private int maxBatchesPerRun; //單次排程最多處理批數
+
+    @Value("${outbox.relay.send-timeout:PT10S}")
+    private Duration sendTimeout; //每批等待送達的期限
+
+    @Value("${outbox.relay.max-attempts:10}")
+    private int maxAttempts; //發佈失敗次數上限(達上限停止重送，0=不限)
+
+    @Value("${outbox.relay.lease-ttl:PT30S}")
+    private Duration leaseTtl; //轉送節點租約時間(亦為事件認領期限)
+
+    @Value("${outbox.retention:P7D}")
+    private Duration retention; //已發佈事件保留時間
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong lagSeconds = new AtomicLong(0); //最舊未發佈事件已等待秒數
+    private final AtomicLong parkedEvents = new AtomicLong(0); //停止重送的事件筆數
+
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final Counter deferredCounter;
+    private final Counter parkedCounter;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxPublisher publisher,
+                       StringRedisTemplate stringRedisTemplate, PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.publisher = publisher;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.publishedCounter = meterRegistry.counter("outbox.events", "result", "published");
+        this.failedCounter = meterRegistry.counter("outbox.events", "result", "failed");
+        this.deferredCounter = meterRegistry.counter("outbox.events", "result", "deferred");
+        this.parkedCounter = meterRegistry.counter("outbox.events", "result", "parked");
+        Gauge.builder("outbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("最舊未發佈外寄箱事件已等待秒數")
+                .register(meterRegistry);
+        Gauge.builder("outbox.parked", parkedEvents, AtomicLong::get)
+                .description("失敗次數達上限、停止重送的外寄箱事件筆數")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 轉送排程
+     * 前一次尚未完成或本節點不是轉送節點時直接略過
+     */
+    @Scheduled(initialDelayString = "${outbox.relay.initial-delay:PT5S}", fixedDelayString = "${outbox.relay.interval:PT1S}")
+    public void scheduledRelay() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            //整批都成功且還有下一批時繼續，消化積壓(每批之前續約，失去租約立即停止)
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                if (!holdLease() || !relayOnce()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("外寄箱轉送排程發生錯誤：{}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 發佈一批事件
+     * 認領在短交易內完成，發佈在交易外進行，結果再以另一個交易標記
+     * @return 是否為完整且全部成功的一批(可能還有下一批)
+     */
+    public boolean relayOnce() {
+        List<OutboxEvent> batch = transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> claimable = outboxEventRepository.lockClaimable(now, PageRequest.of(0, batchSize));
+            if (!claimable.isEmpty()) {
+                outboxEventRepository.claim(claimable.stream().map(OutboxEvent::getId).toList(), instanceId, now.plus(leaseTtl));
+            }
+            return claimable;
+        });
+        if (batch == null || batch.isEmpty()) {
+            lagSeconds.set(0);
+            return false;
+        }
+        updateLag(batch.get(0));
+
+        Set<Long> published = publishBatch(batch);
+        return batch.size() == batchSize && published.size() == batch.size();
+    }
+
+    /**
+     * 依聚合串接發佈(交易外)，再以一個交易標記已發佈、失敗並釋放其餘認領
+     * @return 已確實送達的事件 id
+     */
+    Set<Long> publishBatch(List<OutboxEvent> batch) {
+        Set<Long> published = ConcurrentHashMap.newKeySet();
+        Map<Long, Throwable> failures = new ConcurrentHashMap<>();
+        Map<Long, OutboxEvent> events = new HashMap<>();
+
+        //聚合 -> 該聚合目前最後一筆事件的發佈結果
+        Map<String, CompletableFuture<Void>> chains = new LinkedHashMap<>();
+        for (OutboxEvent event : batch) {
+            events.put(event.getId(), event);
+            String aggregate = event.getAggregateType() + ":" + event.getAggregateId();
+            CompletableFuture<Void> previous = chains.getOrDefault(aggregate, CompletableFuture.completedFuture(null));
+            //前一筆失敗時 thenComposeAsync 不會執行，後續事件自然略過
+            chains.put(aggregate, previous
+                    .thenComposeAsync(v -> publishOne(event, failures), executor)
+                    .thenRun(() -> published.add(event.getId())));
+        }
+
+        try {
+            CompletableFuture.allOf(chains.values().toArray(CompletableFuture[]::new))
+                    .get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            //個別失敗已記錄在 failures
+        } catch (TimeoutException e) {
+            log.warn("外寄箱事件發佈逾時，未確認的事件下次重送");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        //複製一份，逾時後才完成的發佈不影響本次標記
+        Set<Long> confirmed = Set.copyOf(published);
+        Map<Long, Throwable> failed = Map.copyOf(failures);
+        Integer marked = transactionTemplate.execute(tx -> {
+            if (!confirmed.isEmpty()) {
+                outboxEventRepository.markPublished(confirmed, LocalDateTime.now());
+            }
+            int parkedInBatch = 0;
+            for (Map.Entry<Long, Throwable> failure : failed.entrySet()) {
+                Long id = failure.getKey();
+                String message = String.valueOf(failure.getValue().getMessage());
+                String lastError = message.length() > ERROR_MAX_LENGTH ? message.substring(0, ERROR_MAX_LENGTH) : message;
+                int attempts = events.get(id).getAttempts() + 1;
+                if (maxAttempts > 0 && attempts >= maxAttempts) {
+                    log.error("外寄箱事件 {} 已失敗 {} 次，停止重送：{}", id, attempts, message);
+                    outboxEventRepository.markParked(id, lastError, LocalDateTime.now());
+                    parkedInBatch++;
+                } else {
+                    log.warn("外寄箱事件 {} 發佈失敗(第 {} 次)：{}", id, attempts, message);
+                    outboxEventRepository.markFailed(id, lastError);
+                }
+            }
+            //失敗與未確認的事件下次重新認領(同一聚合的順序由認領時的 id 排序維持)
+            List<Long> unconfirmed = events.keySet().stream().filter(id -> !confirmed.contains(id)).sorted().toList();
+            if (!unconfirmed.isEmpty()) {
+                outboxEventRepository.releaseClaims(unconfirmed, instanceId);
+            }
+            return parkedInBatch;
+        });
+        int parked = marked != null ? marked : 0;
+        publishedCounter.increment(confirmed.size());
+        failedCounter.increment(failed.size() - parked);
+        parkedCounter.increment(parked);
+        parkedEvents.addAndGet(parked);
+        deferredCounter.increment(Math.max(0, batch.size() - confirmed.size() - failed.size()));
+        return confirmed;
+    }
+
+    //發佈單筆事件，失敗時記錄原因(同步拋出的例外也視為失敗)
+    private CompletableFuture<Void> publishOne(OutboxEvent event, Map<Long, Throwable> failures) {
+        CompletableFuture<Void> future;
+        try {
+            future = publisher.publish(event);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((v, error) -> {
+            if (error != null) {
+                failures.put(event.getId(), error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+    }
+
+    /**
+     * 刪除已發佈且超過保留時間的事件(分批刪除，避免長時間鎖表)
+     */
+    @Scheduled(initialDelayString = "${outbox.cleanup.initial-delay:PT1M}", fixedDelayString = "${outbox.cleanup.interval:PT1H}")
+    public void cleanup() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        try {
+            parkedEvents.set(outboxEventRepository.countParked());
+            int total = 0;
+            Integer deleted;
+            do {
+                deleted = transactionTemplate.execute(tx -> outboxEventRepository.deletePublishedBefore(before, CLEANUP_BATCH_SIZE));
+                total += deleted != null ? deleted : 0;
+            } while (deleted != null && deleted == CLEANUP_BATCH_SIZE);
+            if (total > 0) {
+                log.info("刪除 {} 筆已發佈外寄箱事件", total);
+            }
+        } catch (Exception e) {
+            log.error("外寄箱清理失敗：{}", e.getMessage());
+        }
+    }
+
+    //取得或延長轉送節點租約(續約以 Lua 比對擁有者後 PEXPIRE，Redis 無法使用時不轉送)
+    boolean holdLease() {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(LEASE_KEY, instanceId, leaseTtl))) {
+                log.info("本節點取得外寄箱轉送租約：{}", instanceId);
+                return true;
+            }
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(LEASE_KEY), instanceId,
+                    String.valueOf(leaseTtl.toMillis()));
+            return renewed != null && renewed == 1L;
+        } catch (Exception e) {
+            log.warn("Redis 無法使用，無法確認外寄箱轉送租約，本次不轉送：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(LEASE_KEY), instanceId);
+        } catch (Exception e) {
+            log.debug("釋放外寄箱轉送租約失敗：{}", e.getMessage());
+        }
+    }
+
+    private void updateLag(OutboxEvent oldest) {
+        ZoneId zone = ZoneId.systemDefault();
+        long now = LocalDateTime.now().atZone(zone).toEpochSecond();
+        lagSeconds.set(Math.max(0, now - oldest.getCreatedTime().atZone(zone).toEpochSecond()));
+    }
+}
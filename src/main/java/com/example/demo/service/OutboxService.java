@@ -0,0 +1,70 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.entity.OutboxEvent;
+import com.example.demo.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 交易外寄箱寫入服務
+ * 下游(分析、搜尋索引、快取失效、通知信)需要的事件與訂單/明細/庫存異動寫在同一個交易
+ *
+ * 功能包括：
+ * - 必須在既有交易內呼叫(MANDATORY)，業務資料回滾時事件一併回滾，不會發出不存在的變更
+ * - 事件內容序列化為 JSON，由 OutboxRelay 在提交後非同步發佈
+ */
+@Slf4j
+@Service
+public class OutboxService {
+
+    public static final String AGGREGATE_ORDER = "order";
+
+    public static final String ORDER_CREATED = "OrderCreated";
+    public static final String PAYMENT_STATUS_CHANGED = "PaymentStatusChanged";
+    public static final String STOCK_ADJUSTED = "StockAdjusted";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public OutboxService(OutboxEventRepository outboxEventRepository) {
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    /**
+     * 寫入一筆事件
+     * @param aggregateType 聚合類型
+     * @param aggregateId   聚合id(同一聚合的事件依寫入順序發佈)
+     * @param eventType     事件類型
+     * @param payload       事件內容(序列化為 JSON)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent append(String aggregateType, String aggregateId, String eventType, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType(aggregateType);
+        event.setAggregateId(aggregateId);
+        event.setEventType(eventType);
+        event.setPayload(toJson(payload));
+        event.setCreatedTime(LocalDateTime.now());
+
+        OutboxEvent saved = outboxEventRepository.save(event);
+        log.debug("寫入外寄箱事件：{} {} {}", eventType, aggregateId, saved.getId());
+        return saved;
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            //無法序列化時拋出例外讓業務交易回滾，避免事件遺失
+            throw new IllegalStateException("外寄箱事件序列化失敗：" + e.getMessage(), e);
+        }
+    }
+}
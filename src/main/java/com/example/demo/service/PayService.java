@@ -1,12 +1,13 @@
 //負責組合請求、呼叫 NewWebUtil、解析回傳、更新訂單。
 package com.example.demo.service;
 
-import com.example.demo.entity.CartVO;
 import com.example.demo.newwebpay.NewWebUtil;
 import com.example.demo.newwebpay.bean.PayResponse;
 import com.example.demo.newwebpay.bean.PaymentRequest;
 import com.example.demo.newwebpay.bean.PaymentResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -15,8 +16,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.Random;
+import java.time.Duration;
 
 @Slf4j
 @Service
@@ -28,14 +28,19 @@ public class PayService {
     //(改)
     
     private final OrderService orderService;
-    private final OrderListService orderListService;
-    private final CartService cartService;
+    private final NotifyDeduplicationService notifyDeduplicationService;
 
+    //查詢交易結果短暫快取(等待付款的前端反覆查詢時，不必每次都打藍新 API)
+    private final Cache<String, CachedTradeInfo> tradeInfoCache;
 
-    public PayService(OrderService orderService, OrderListService orderListService, CartService cartService) {
+    public PayService(OrderService orderService, NotifyDeduplicationService notifyDeduplicationService,
+                      @Value("${new-web-pay.query-cache-ttl:PT5S}") Duration queryCacheTtl) {
         this.orderService = orderService;
-        this.orderListService = orderListService;
-        this.cartService = cartService;
+        this.notifyDeduplicationService = notifyDeduplicationService;
+        this.tradeInfoCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(queryCacheTtl)
+                .maximumSize(10_000)
+                .build();
     }
 
     @Value("${new-web-pay.key}")
@@ -59,36 +64,21 @@ public class PayService {
     @Value("${new-web-pay.notify-url}")
     private String notifyUrl; //付款完成通知網址
 
-    //送出訂單
-    //建立一筆付款請求並回傳前端需要的付款資料(改)
-    public PayResponse pay(int totalAmount, String itemDescription, Integer uid) {
-        String merchantOrderNo = getRandomString(15);
-        
-        // 創建總訂單記錄(改)
-        orderService.createOrder(merchantOrderNo, totalAmount, itemDescription, uid);
-
-        // 創建明細訂單記錄(改)
-        // 取得該用戶購物車所有商品
-        List<CartVO> cartItems = cartService.GetByUid(uid);
-        //一一記錄該資料明細所有商品
-        for (CartVO cart : cartItems) {
-            //先找到第一筆商品
-            orderListService.createOrderLList(merchantOrderNo, cart.getPrice(), cart.getNum(), cart.getPid(), uid);
-        }     
-   
+    //產生前端送往藍新需要的付款資料(訂單已由 CheckoutService 建立)
+    public PayResponse buildPayResponse(String merchantOrderNo, int totalAmount, String itemDescription) {
         PaymentRequest request = new PaymentRequest(mid, key, iv, merchantOrderNo, totalAmount, itemDescription, notifyUrl);
         return PayResponse.of(request, payUrl);
     }
 
 /*
     public PayResponse pay() {
-        PaymentRequest request = new PaymentRequest(mid, key, iv, getRandomString(15), 1000, "Test測試購買", notifyUrl);
+        PaymentRequest request = new PaymentRequest(mid, key, iv, merchantOrderNoGenerator.nextId(), 1000, "Test測試購買", notifyUrl);
         return PayResponse.of(request, payUrl);
     }
 
     //購物車結帳功能 - 使用自定義金額和商品描述(改)
     public PayResponse checkoutCart(int totalAmount, String itemDescription) {
-        String merchantOrderNo = "CART_" + getRandomString(10); // 購物車訂單編號：前綴 + 隨機字串
+        String merchantOrderNo = "CART_" + merchantOrderNoGenerator.nextId(); // 購物車訂單編號：前綴 + 流水編號
         PaymentRequest request = new PaymentRequest(mid, key, iv, merchantOrderNo, totalAmount, itemDescription, notifyUrl);
         return PayResponse.of(request, payUrl);
     }
@@ -102,9 +92,20 @@ public class PayService {
             PaymentResponse.NotifyResponse notifyResponse = NewWebUtil.convertJson(response, PaymentResponse.NotifyResponse.class);
             log.info("notify->{}", notifyResponse.toString());
 
+            //重複的通知直接丟棄(不查詢藍新、不更新訂單與庫存)
+            PaymentResponse.NotifyResponse.Result result = notifyResponse.getResult();
+            String dedupKey = notifyDeduplicationService.acquire(result.getMerchantOrderNo(), response);
+            if (dedupKey == null) {
+                return;
+            }
+            notifyDeduplicationService.releaseUnlessCommitted(dedupKey);
+
             //更新總訂單(改)
             //this代表目前正在執行的 PayService 物件本身
-            orderService.updateOrderFromNotify(notifyResponse, this);
+            if (!orderService.updateOrderFromNotify(notifyResponse, this)) {
+                //查詢藍新失敗或找不到訂單，保留給藍新下一次重送處理
+                notifyDeduplicationService.release(dedupKey);
+            }
             
         } catch (JsonProcessingException e) {
             e.printStackTrace();
@@ -121,6 +122,24 @@ public class PayService {
         return null;
     }
 
+    //查詢交易狀態(有短暫快取，給前端查詢使用；付款通知與對帳仍走即時查詢)
+    public PaymentResponse.QueryTradeInfoResponse queryTradeInfoCached(String merchantOrderNo, Integer amt) {
+        CachedTradeInfo cached = tradeInfoCache.getIfPresent(merchantOrderNo);
+        if (cached != null && cached.amt().equals(amt)) {
+            return cached.response();
+        }
+        PaymentResponse.QueryTradeInfoResponse response = queryTradeInfo(merchantOrderNo, amt);
+        if (response != null) {
+            tradeInfoCache.put(merchantOrderNo, new CachedTradeInfo(amt, response));
+        }
+        return response;
+    }
+
+    //訂單狀態變更時清除快取
+    public void evictTradeInfo(String merchantOrderNo) {
+        tradeInfoCache.invalidate(merchantOrderNo);
+    }
+
     //交易要退款或取消付款
     public PaymentResponse.CloseTradeResponse closeTrade(String merchantOrderNo, Integer amt) {
         try {
@@ -131,15 +150,8 @@ public class PayService {
         return null;
     }
 
-    //產生隨機字串用來生成訂單編號
-    private static String getRandomString(int length) {
-        String base = "abcdefghijklmnopqrstuvwxyz0123456789";
-        Random random = new Random();
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < length; i++) {
-            int number = random.nextInt(base.length());
-            sb.append(base.charAt(number));
-        }
-        return sb.toString();
+    //快取的查詢結果(金額不同視為不同查詢)
+    private record CachedTradeInfo(Integer amt, PaymentResponse.QueryTradeInfoResponse response) {
     }
+
 }
\ No newline at end of file
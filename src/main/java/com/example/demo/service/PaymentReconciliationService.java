@@ -0,0 +1,266 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.Order;
+import com.example.demo.newwebpay.bean.PaymentResponse;
+import com.example.demo.repository.OrderRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 付款對帳服務
+ * 定期找出停留在未付款（Tradestatus = "0"）過久的訂單，主動向藍新查詢並補齊遺失的付款通知
+ *
+ * 功能包括：
+ * - 以主鍵 keyset 分頁掃描過期未付款訂單，游標跨排程延續（輪流掃描，不會每次從頭開始）
+ * - 虛擬執行緒 + Semaphore 限制同時查詢藍新的數量，避免壓垮金流閘道
+ * - 查詢結果分批在同一個交易內套用（沿用 OrderService 的更新邏輯），失敗時退回逐筆處理
+ * - 透過 Micrometer 暴露進度與延遲指標
+ */
+@Slf4j
+@Service
+public class PaymentReconciliationService {
+
+    private static final String PENDING_STATUS = "0"; // 未付款
+
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final PayService payService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${reconcile.enabled:true}")
+    private boolean enabled; //是否啟用對帳排程
+
+    @Value("${reconcile.stale-after:PT15M}")
+    private Duration staleAfter; //訂單建立多久後仍未付款才需要對帳
+
+    @Value("${reconcile.max-age:P7D}")
+    private Duration maxAge; //超過此時間的訂單不再對帳(藍新繳費期限早已過期)
+
+    @Value("${reconcile.page-size:200}")
+    private int pageSize; //每頁筆數
+
+    @Value("${reconcile.apply-batch-size:50}")
+    private int applyBatchSize; //每個交易套用的筆數
+
+    @Value("${reconcile.max-orders-per-run:5000}")
+    private int maxOrdersPerRun; //單次排程最多處理筆數
+
+    private final Semaphore gatewayPermits; //同時查詢藍新的上限
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger cursor = new AtomicInteger(0); //keyset 游標(上一頁最後一筆 id)
+    private final AtomicLong lagSeconds = new AtomicLong(0); //最舊待對帳訂單已等待秒數
+    private final AtomicLong lastRunEpochSecond = new AtomicLong(0);
+
+    private final Counter scannedCounter;
+    private final Counter updatedCounter;
+    private final Counter unchangedCounter;
+    private final Counter failedCounter;
+    private final Timer gatewayTimer;
+
+    public PaymentReconciliationService(OrderRepository orderRepository, OrderService orderService, PayService payService,
+                                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                        @Value("${reconcile.max-concurrency:8}") int maxConcurrency) {
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.payService = payService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.gatewayPermits = new Semaphore(maxConcurrency);
+
+        this.scannedCounter = meterRegistry.counter("payment.reconcile.orders", "result", "scanned");
+        this.updatedCounter = meterRegistry.counter("payment.reconcile.orders", "result", "updated");
+        this.unchangedCounter = meterRegistry.counter("payment.reconcile.orders", "result", "unchanged");
+        this.failedCounter = meterRegistry.counter("payment.reconcile.orders", "result", "failed");
+        this.gatewayTimer = Timer.builder("payment.reconcile.gateway.query")
+                .description("藍新 QueryTradeInfo 查詢耗時")
+                .register(meterRegistry);
+        Gauge.builder("payment.reconcile.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("最舊待對帳訂單已等待秒數")
+                .register(meterRegistry);
+        Gauge.builder("payment.reconcile.cursor", cursor, AtomicInteger::get)
+                .description("對帳 keyset 游標位置")
+                .register(meterRegistry);
+        Gauge.builder("payment.reconcile.last-run.epoch-seconds", lastRunEpochSecond, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 對帳排程
+     * 前一次尚未完成時直接略過，避免重疊執行
+     */
+    @Scheduled(initialDelayString = "${reconcile.initial-delay:PT30S}", fixedDelayString = "${reconcile.interval:PT1M}")
+    public void scheduledReconcile() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            reconcileOnce();
+        } catch (Exception e) {
+            log.error("付款對帳排程發生錯誤：{}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 執行一次對帳
+     * @return 本次掃描的訂單數
+     */
+    public int reconcileOnce() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime createdBefore = now.minus(staleAfter);
+        LocalDateTime createdAfter = now.minus(maxAge);
+
+        int processed = 0;
+        //主鍵與建立時間同向遞增，從頭掃描時第一頁即包含最舊的待對帳訂單
+        boolean firstPage = cursor.get() == 0;
+        while (processed < maxOrdersPerRun) {
+            int limit = Math.min(pageSize, maxOrdersPerRun - processed);
+            List<Order> page = orderRepository.findStalePage(PENDING_STATUS, createdAfter, createdBefore,
+                    cursor.get(), PageRequest.of(0, limit));
+
+            if (page.isEmpty()) {
+                //已掃到尾端，下次排程從頭開始
+                if (firstPage) {
+                    lagSeconds.set(0);
+                }
+                cursor.set(0);
+                break;
+            }
+            if (firstPage) {
+                updateLag(page, now);
+                firstPage = false;
+            }
+
+            List<Outcome> outcomes = queryGateway(page);
+            applyOutcomes(outcomes);
+
+            processed += page.size();
+            scannedCounter.increment(page.size());
+            cursor.set(page.get(page.size() - 1).getOid());
+        }
+
+        lastRunEpochSecond.set(System.currentTimeMillis() / 1000);
+        if (processed > 0) {
+            log.info("付款對帳完成，本次掃描 {} 筆，游標：{}", processed, cursor.get());
+        }
+        return processed;
+    }
+
+    //以虛擬執行緒平行查詢藍新，Semaphore 限制同時進行的請求數
+    private List<Outcome> queryGateway(List<Order> page) {
+        List<Future<Outcome>> futures = new ArrayList<>(page.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Order order : page) {
+                futures.add(executor.submit(() -> query(order)));
+            }
+        } //close() 會等待所有查詢完成
+
+        List<Outcome> outcomes = new ArrayList<>(futures.size());
+        for (Future<Outcome> future : futures) {
+            try {
+                outcomes.add(future.get());
+            } catch (ExecutionException e) {
+                failedCounter.increment();
+                log.warn("對帳查詢失敗：{}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return outcomes;
+    }
+
+    private Outcome query(Order order) throws InterruptedException {
+        gatewayPermits.acquire();
+        try {
+            PaymentResponse.QueryTradeInfoResponse response = gatewayTimer.record(
+                    () -> payService.queryTradeInfo(order.getMerchantorderno(), order.getTotalamt()));
+            return new Outcome(order.getMerchantorderno(), response);
+        } finally {
+            gatewayPermits.release();
+        }
+    }
+
+    //狀態有變動的訂單分批在同一個交易內套用；整批失敗時改為逐筆交易，避免一筆錯誤拖累整批
+    private void applyOutcomes(List<Outcome> outcomes) {
+        List<Outcome> changed = new ArrayList<>();
+        for (Outcome outcome : outcomes) {
+            PaymentResponse.QueryTradeInfoResponse.Result result = outcome.result();
+            if (result == null) {
+                failedCounter.increment();
+            } else if (PENDING_STATUS.equals(result.getTradeStatus())) {
+                unchangedCounter.increment();
+            } else {
+                changed.add(outcome);
+            }
+        }
+
+        for (int from = 0; from < changed.size(); from += applyBatchSize) {
+            List<Outcome> batch = changed.subList(from, Math.min(from + applyBatchSize, changed.size()));
+            try {
+                transactionTemplate.executeWithoutResult(tx -> batch.forEach(this::apply));
+                updatedCounter.increment(batch.size());
+            } catch (Exception e) {
+                log.warn("對帳批次套用失敗，改為逐筆處理：{}", e.getMessage());
+                for (Outcome outcome : batch) {
+                    try {
+                        transactionTemplate.executeWithoutResult(tx -> apply(outcome));
+                        updatedCounter.increment();
+                    } catch (Exception single) {
+                        failedCounter.increment();
+                        log.error("對帳更新訂單 {} 失敗：{}", outcome.merchantOrderNo(), single.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private void apply(Outcome outcome) {
+        orderService.applyTradeResult(outcome.merchantOrderNo(), outcome.response().getStatus(), outcome.result());
+    }
+
+    private void updateLag(List<Order> page, LocalDateTime now) {
+        LocalDateTime oldest = page.stream()
+                .map(Order::getCreatedTime)
+                .filter(t -> t != null)
+                .min(LocalDateTime::compareTo)
+                .orElse(now);
+        ZoneId zone = ZoneId.systemDefault();
+        lagSeconds.set(Math.max(0, now.atZone(zone).toEpochSecond() - oldest.atZone(zone).toEpochSecond()));
+    }
+
+    /**
+     * 單筆訂單的藍新查詢結果
+     */
+    private record Outcome(String merchantOrderNo, PaymentResponse.QueryTradeInfoResponse response) {
+        PaymentResponse.QueryTradeInfoResponse.Result result() {
+            return response != null ? response.getResult() : null;
+        }
+    }
+}
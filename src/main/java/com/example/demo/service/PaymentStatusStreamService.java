@@ -0,0 +1,174 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.event.PaymentStatusChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 付款狀態即時推播服務（Server-Sent Events）
+ * 取代前端反覆呼叫 /api/query_info 輪詢藍新
+ *
+ * 功能包括：
+ * - 以 MerchantOrderNo 為 key 的記憶體訂閱表
+ * - 訂單狀態更新並提交後，經 Redis Pub/Sub 廣播到所有節點，再推送給本機訂閱者
+ * - Redis 無法使用時退回只推送本機訂閱者
+ * - 狀態變更時清除 query_info 查詢快取
+ */
+@Slf4j
+@Service
+public class PaymentStatusStreamService implements MessageListener {
+
+    // Redis 廣播頻道
+    public static final String CHANNEL = "payment:status";
+    // 推送給前端的 SSE 事件名稱
+    private static final String EVENT_NAME = "status";
+    private static final String PENDING_STATUS = "0"; // 未付款
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final PayService payService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // MerchantOrderNo -> 該訂單的所有 SSE 連線
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final long emitterTimeoutMillis;
+
+    public PaymentStatusStreamService(StringRedisTemplate stringRedisTemplate,
+                                      RedisMessageListenerContainer listenerContainer,
+                                      PayService payService,
+                                      @Value("${payment.stream.timeout:PT10M}") Duration emitterTimeout) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.payService = payService;
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+    }
+
+    @PostConstruct
+    void listen() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 訂閱訂單付款狀態
+     * 先登記訂閱再讀取目前狀態：讀取前後發生的狀態變更都會推送，不會遺漏
+     * @param merchantOrderNo 商店訂單編號
+     * @param currentState    讀取訂單目前狀態（立即推送一次，前端不需要再查詢）
+     * @return SSE 連線
+     */
+    public SseEmitter subscribe(String merchantOrderNo, Supplier<PaymentStatusChangedEvent> currentState) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+
+        subscribers.computeIfAbsent(merchantOrderNo, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(merchantOrderNo, emitter));
+        emitter.onTimeout(() -> unsubscribe(merchantOrderNo, emitter));
+        emitter.onError(e -> unsubscribe(merchantOrderNo, emitter));
+
+        PaymentStatusChangedEvent current;
+        try {
+            current = currentState.get();
+        } catch (RuntimeException e) {
+            unsubscribe(merchantOrderNo, emitter);
+            throw e;
+        }
+        // 訂單已結束（非未付款）時，推送一次即關閉
+        if (send(merchantOrderNo, emitter, current) && !PENDING_STATUS.equals(current.tradeStatus())) {
+            complete(merchantOrderNo, emitter);
+            return emitter;
+        }
+        log.debug("新增付款狀態訂閱：{}", merchantOrderNo);
+        return emitter;
+    }
+
+    /**
+     * 訂單狀態更新且交易提交後，廣播給所有節點
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentStatusChanged(PaymentStatusChangedEvent event) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            log.warn("付款狀態廣播失敗，只推送本機訂閱者：{}", e.getMessage());
+            deliver(event);
+        }
+    }
+
+    /**
+     * 收到 Redis 廣播（包含自己發出的）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            deliver(objectMapper.readValue(message.getBody(), PaymentStatusChangedEvent.class));
+        } catch (IOException e) {
+            log.error("無法解析付款狀態廣播：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 目前本機訂閱中的連線數
+     */
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    //推送給本機訂閱者並清除查詢快取
+    private void deliver(PaymentStatusChangedEvent event) {
+        String merchantOrderNo = event.merchantOrderNo();
+        payService.evictTradeInfo(merchantOrderNo);
+
+        Set<SseEmitter> emitters = subscribers.get(merchantOrderNo);
+        if (emitters == null) {
+            return;
+        }
+        boolean finished = !PENDING_STATUS.equals(event.tradeStatus());
+        for (SseEmitter emitter : emitters) {
+            if (send(merchantOrderNo, emitter, event) && finished) {
+                complete(merchantOrderNo, emitter);
+            }
+        }
+    }
+
+    private boolean send(String merchantOrderNo, SseEmitter emitter, PaymentStatusChangedEvent event) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(event));
+            return true;
+        } catch (Exception e) {
+            log.debug("推送付款狀態失敗，移除訂閱：{}，{}", merchantOrderNo, e.getMessage());
+            unsubscribe(merchantOrderNo, emitter);
+            return false;
+        }
+    }
+
+    //完成回呼要等非同步請求結束才會執行，先移出訂閱表
+    private void complete(String merchantOrderNo, SseEmitter emitter) {
+        unsubscribe(merchantOrderNo, emitter);
+        emitter.complete();
+    }
+
+    private void unsubscribe(String merchantOrderNo, SseEmitter emitter) {
+        subscribers.computeIfPresent(merchantOrderNo, (k, set) -> {
+            set.remove(emitter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.Order;
+import com.example.demo.newwebpay.bean.PaymentResponse;
+import com.example.demo.repository.OrderRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 逾期未付款訂單取消服務
+ * 結帳時已預留庫存（CheckoutService），放棄付款的訂單會一直停在未付款、持有庫存；
+ * 付款對帳只處理 reconcile.max-age 以內的訂單，超過期限仍未付款的訂單由此取消
+ *
+ * 功能包括：
+ * - 定期以主鍵 keyset 分頁找出建立超過 order-expiry.after 仍為未付款（Tradestatus = "0"）的訂單
+ * - 取消前最後向藍新查詢一次：已付款或已失敗時套用藍新結果，仍未付款或查無交易時改為取消付款（3）並補回庫存
+ * - 查詢藍新失敗（網路錯誤）時不取消，下次排程再處理
+ * - 每筆訂單一個交易，並鎖定訂單列，與同時到達的付款通知依序執行
+ */
+@Slf4j
+@Service
+public class PendingOrderExpiryService {
+
+    private static final String PENDING_STATUS = "0"; // 未付款
+
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final PayService payService;
+
+    @Value("${order-expiry.enabled:true}")
+    private boolean enabled; //是否啟用逾期取消排程
+
+    @Value("${order-expiry.after:P7D}")
+    private Duration expireAfter; //建立多久後仍未付款即取消(需大於藍新的繳費期限)
+
+    @Value("${order-expiry.page-size:200}")
+    private int pageSize; //每頁筆數
+
+    @Value("${order-expiry.max-orders-per-run:2000}")
+    private int maxOrdersPerRun; //單次排程最多處理筆數
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final Counter expiredCounter;
+    private final Counter settledCounter;
+    private final Counter skippedCounter;
+
+    public PendingOrderExpiryService(OrderRepository orderRepository, OrderService orderService, PayService payService,
+                                     MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.payService = payService;
+        this.expiredCounter = meterRegistry.counter("orders.pending.expiry", "result", "expired");
+        this.settledCounter = meterRegistry.counter("orders.pending.expiry", "result", "settled");
+        this.skippedCounter = meterRegistry.counter("orders.pending.expiry", "result", "skipped");
+    }
+
+    /**
+     * 逾期取消排程
+     * 前一次尚未完成時直接略過，避免重疊執行
+     */
+    @Scheduled(initialDelayString = "${order-expiry.initial-delay:PT1M}", fixedDelayString = "${order-expiry.interval:PT10M}")
+    public void scheduledExpire() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            expireOnce();
+        } catch (Exception e) {
+            log.error("逾期訂單取消排程發生錯誤：{}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 執行一次逾期取消
+     * @return 本次掃描的訂單數
+     */
+    public int expireOnce() {
+        LocalDateTime createdBefore = LocalDateTime.now().minus(expireAfter);
+        int processed = 0;
+        int afterId = 0;
+        while (processed < maxOrdersPerRun) {
+            List<Order> page = orderRepository.findExpiredPage(PENDING_STATUS, createdBefore, afterId,
+                    PageRequest.of(0, Math.min(pageSize, maxOrdersPerRun - processed)));
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(this::expire);
+            processed += page.size();
+            afterId = page.get(page.size() - 1).getOid();
+        }
+        if (processed > 0) {
+            log.info("逾期訂單取消完成，本次掃描 {} 筆", processed);
+        }
+        return processed;
+    }
+
+    private void expire(Order order) {
+        String merchantOrderNo = order.getMerchantorderno();
+        try {
+            PaymentResponse.QueryTradeInfoResponse response = payService.queryTradeInfo(merchantOrderNo, order.getTotalamt());
+            if (response == null) {
+                skippedCounter.increment();
+                log.warn("查詢藍新失敗，暫不取消逾期訂單：{}", merchantOrderNo);
+                return;
+            }
+            PaymentResponse.QueryTradeInfoResponse.Result result = response.getResult();
+            if (result != null && result.getTradeStatus() != null && !PENDING_STATUS.equals(result.getTradeStatus())) {
+                //藍新已有結果(付款通知遺失)：套用藍新的狀態
+                orderService.applyTradeResult(merchantOrderNo, response.getStatus(), result);
+                settledCounter.increment();
+                return;
+            }
+            if (orderService.expirePendingOrder(merchantOrderNo)) {
+                expiredCounter.increment();
+                log.info("訂單 {} 逾期未付款，已取消並補回庫存", merchantOrderNo);
+            }
+        } catch (Exception e) {
+            skippedCounter.increment();
+            log.error("取消逾期訂單 {} 失敗：{}", merchantOrderNo, e.getMessage());
+        }
+    }
+}
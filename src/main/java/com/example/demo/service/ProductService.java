@@ -1,7 +1,9 @@
 //建立商品服務介面
 package com.example.demo.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.example.demo.entity.Product;
 
@@ -21,4 +23,16 @@ public interface ProductService {
     //更新退款後商品庫存
     Integer SubNum(Integer id, Integer num);
 
+    //查詢使用者購物車內所有商品的即時狀態(商品id -> 商品)
+    Map<Integer, Product> GetStatesByCartUid(Integer uid);
+
+    //批次查詢商品名稱(商品id -> 名稱)
+    Map<Integer, String> GetTitlesByIds(Collection<Integer> ids);
+
+    //批次調整商品庫存(商品id -> 增減數量，負數為扣庫存)，回傳更新筆數
+    int AdjustNums(Map<Integer, Integer> deltas);
+
+    //結帳時預留商品庫存(商品id -> 數量)，回傳庫存不足的商品id
+    List<Integer> ReserveNums(Map<Integer, Integer> quantities);
+
 }
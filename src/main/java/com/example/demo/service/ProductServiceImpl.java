@@ -2,7 +2,12 @@
 package com.example.demo.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -73,6 +78,61 @@ public class ProductServiceImpl implements ProductService{
         return rows;
     }
 
+    @Override //覆寫
+    //查詢使用者購物車內所有商品的即時狀態
+    public Map<Integer, Product> GetStatesByCartUid(Integer uid) {
+        Map<Integer, Product> states = new HashMap<>();
+        for (Product product : productDao.FindStatesByCartUid(uid)) {
+            states.put(product.getId(), product);
+        }
+        return states;
+    }
+
+    @Override //覆寫
+    //批次查詢商品名稱
+    public Map<Integer, String> GetTitlesByIds(Collection<Integer> ids) {
+        Map<Integer, String> titles = new HashMap<>();
+        if (ids.isEmpty()) {
+            return titles;
+        }
+        for (Product product : productDao.FindTitlesByIds(ids)) {
+            titles.put(product.getId(), product.getTitle());
+        }
+        return titles;
+    }
+
+    @Override //覆寫
+    //批次調整商品庫存
+    public int AdjustNums(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        int rows = 0;
+        for (int row : productDao.AdjustNums(deltas)) {
+            //rewriteBatchedStatements 下驅動可能回傳 SUCCESS_NO_INFO(-2)
+            rows += row > 0 ? row : 0;
+        }
+        return rows;
+    }
+
+    @Override //覆寫
+    //結帳時預留商品庫存
+    public List<Integer> ReserveNums(Map<Integer, Integer> quantities) {
+        List<Integer> insufficient = new ArrayList<>();
+        if (quantities.isEmpty()) {
+            return insufficient;
+        }
+        //DAO 依商品id排序執行，回傳結果順序與排序後的id相同
+        List<Integer> ids = new ArrayList<>(new TreeMap<>(quantities).keySet());
+        int[] rows = productDao.ReserveNums(quantities);
+        for (int i = 0; i < rows.length; i++) {
+            //0 代表庫存不足或商品不存在(SUCCESS_NO_INFO 視為成功)
+            if (rows[i] == 0) {
+                insufficient.add(ids.get(i));
+            }
+        }
+        return insufficient;
+    }
 
     private List<Product> FindHostList() {
         return productDao.FindHostList();
@@ -0,0 +1,195 @@
+package com.example.demo.session;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * 存放在 Redis Hash 的 HttpSession（每個請求一個實例）
+ *
+ * 功能包括：
+ * - 屬性以編碼後的 byte[] 保存，第一次讀取時才解碼（只讀 uid / username 時不會還原 SecurityContext）
+ * - 記錄本次請求修改或移除的屬性（delta），儲存時只寫入這些欄位
+ * - invalidate() 時立即通知 RedisSessionFilter 刪除 Session 並清除 Cookie
+ */
+final class RedisSession implements HttpSession {
+
+    private String id;
+    private final long creationTime;
+    private long lastAccessedTime;
+    private final long persistedAccessedTime; //Redis 內記錄的最後存取時間（寫入有節流）
+    private int maxInactiveInterval;
+    private boolean maxInactiveIntervalChanged;
+    private final boolean isNew;
+    private boolean invalidated;
+
+    private final Map<String, byte[]> encoded;                  //由 Redis 或本機快取載入，不修改
+    private final Map<String, Object> decoded = new HashMap<>(); //已解碼的屬性
+    private final Map<String, Object> delta = new HashMap<>();   //本次請求的修改（null 表示移除）
+
+    private ServletContext servletContext;
+    private Runnable onInvalidate = () -> { };
+
+    //新建立的 Session
+    RedisSession(String id, long now, int maxInactiveInterval) {
+        this.id = id;
+        this.creationTime = now;
+        this.lastAccessedTime = now;
+        this.persistedAccessedTime = 0L;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.isNew = true;
+        this.encoded = Collections.emptyMap();
+    }
+
+    //由快照還原的既有 Session
+    RedisSession(RedisSessionRepository.SessionSnapshot snapshot, long now) {
+        this.id = snapshot.id();
+        this.creationTime = snapshot.creationTime();
+        this.lastAccessedTime = now;
+        this.persistedAccessedTime = snapshot.persistedAccessedTime();
+        this.maxInactiveInterval = snapshot.maxInactiveInterval();
+        this.isNew = false;
+        this.encoded = snapshot.attributes();
+    }
+
+    void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    void setOnInvalidate(Runnable onInvalidate) {
+        this.onInvalidate = onInvalidate;
+    }
+
+    void setId(String id) {
+        this.id = id;
+    }
+
+    long getPersistedAccessedTime() {
+        return persistedAccessedTime;
+    }
+
+    boolean isMaxInactiveIntervalChanged() {
+        return maxInactiveIntervalChanged;
+    }
+
+    boolean isInvalidated() {
+        return invalidated;
+    }
+
+    Map<String, byte[]> getEncodedAttributes() {
+        return encoded;
+    }
+
+    Map<String, Object> getDelta() {
+        return delta;
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        if (interval != maxInactiveInterval) {
+            maxInactiveInterval = interval;
+            maxInactiveIntervalChanged = true;
+        }
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        if (delta.containsKey(name)) {
+            return delta.get(name);
+        }
+        Object value = decoded.get(name);
+        if (value == null) {
+            byte[] bytes = encoded.get(name);
+            if (bytes != null) {
+                value = SessionAttributeCodec.decode(bytes);
+                decoded.put(name, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        Set<String> names = new LinkedHashSet<>(encoded.keySet());
+        delta.forEach((name, value) -> {
+            if (value != null) {
+                names.add(name);
+            } else {
+                names.remove(name);
+            }
+        });
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(name);
+            return;
+        }
+        delta.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        if (encoded.containsKey(name) || delta.get(name) != null) {
+            delta.put(name, null);
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalidated = true;
+        onInvalidate.run();
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    private void checkValid() {
+        if (invalidated) {
+            throw new IllegalStateException("Session 已失效：" + id);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.demo.session;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 以 RedisSessionRepository 取代容器的 HttpSession
+ * 排在 Spring Security 之前，控制器、攔截器與 SecurityContext 讀寫的都是 Redis Session
+ *
+ * 功能包括：
+ * - 由 Session Cookie 載入 Session，只在第一次呼叫 getSession() 時載入
+ * - 建立、更換 ID（changeSessionId）時立即寫入 Cookie，失效時立即刪除並清除 Cookie
+ * - 回應送出前（sendRedirect / sendError / flushBuffer）或請求結束時儲存變更
+ * - Redis 無法使用時視為沒有 Session（需要登入的頁面會導回登入）
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 50)
+@ConditionalOnProperty(name = "session.redis.enabled", havingValue = "true")
+public class RedisSessionFilter extends OncePerRequestFilter {
+
+    private final RedisSessionRepository sessionRepository;
+    private final String cookieName;
+    private final String cookiePath;
+    private final int cookieMaxAge;
+
+    public RedisSessionFilter(RedisSessionRepository sessionRepository,
+                              @Value("${server.servlet.session.cookie.name:JSESSIONID}") String cookieName,
+                              @Value("${server.servlet.session.cookie.path:/}") String cookiePath,
+                              @Value("${server.servlet.session.cookie.max-age:-1}") int cookieMaxAge) {
+        this.sessionRepository = sessionRepository;
+        this.cookieName = cookieName;
+        this.cookiePath = cookiePath;
+        this.cookieMaxAge = cookieMaxAge;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SessionRequestWrapper wrappedRequest = new SessionRequestWrapper(request, response);
+        SessionResponseWrapper wrappedResponse = new SessionResponseWrapper(response, wrappedRequest);
+        try {
+            filterChain.doFilter(wrappedRequest, wrappedResponse);
+        } finally {
+            wrappedRequest.commitSession();
+        }
+    }
+
+    private void writeCookie(HttpServletRequest request, HttpServletResponse response, String value, Duration maxAge) {
+        ResponseCookie.ResponseCookieBuilder cookie = ResponseCookie.from(cookieName, value)
+                .path(cookiePath)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax");
+        if (maxAge != null) {
+            cookie.maxAge(maxAge);
+        }
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.build().toString());
+    }
+
+    private final class SessionRequestWrapper extends HttpServletRequestWrapper {
+
+        private final HttpServletResponse response;
+        private RedisSession currentSession;
+        private boolean requestedSessionResolved;
+        private String requestedSessionId;
+        private boolean requestedSessionValid;
+        private boolean committed;
+
+        SessionRequestWrapper(HttpServletRequest request, HttpServletResponse response) {
+            super(request);
+            this.response = response;
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (currentSession != null && !currentSession.isInvalidated()) {
+                return currentSession;
+            }
+            if (!requestedSessionResolved) {
+                requestedSessionResolved = true;
+                RedisSession requested = loadRequestedSession();
+                if (requested != null) {
+                    requestedSessionValid = true;
+                    return track(requested);
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            RedisSession created = sessionRepository.createSession();
+            writeCookie(this, response, created.getId(), cookieMaxAge >= 0 ? Duration.ofSeconds(cookieMaxAge) : null);
+            return track(created);
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public String changeSessionId() {
+            HttpSession session = getSession(false);
+            if (session == null) {
+                throw new IllegalStateException("目前請求沒有 Session，無法更換 Session ID");
+            }
+            String newId = sessionRepository.changeSessionId(currentSession);
+            writeCookie(this, response, newId, cookieMaxAge >= 0 ? Duration.ofSeconds(cookieMaxAge) : null);
+            return newId;
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            if (requestedSessionId == null) {
+                requestedSessionId = readCookie();
+            }
+            return requestedSessionId;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            if (!requestedSessionResolved) {
+                getSession(false);
+            }
+            return requestedSessionValid && currentSession != null && !currentSession.isInvalidated();
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return getRequestedSessionId() != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        void commitSession() {
+            if (committed || currentSession == null) {
+                return;
+            }
+            committed = true;
+            try {
+                sessionRepository.save(currentSession);
+            } catch (Exception e) {
+                log.error("儲存 Session 失敗：{}，{}", currentSession.getId(), e.getMessage());
+            }
+        }
+
+        private RedisSession track(RedisSession session) {
+            session.setServletContext(getServletContext());
+            session.setOnInvalidate(() -> {
+                try {
+                    sessionRepository.deleteById(session.getId());
+                } catch (Exception e) {
+                    log.error("刪除 Session 失敗：{}，{}", session.getId(), e.getMessage());
+                }
+                if (!response.isCommitted()) {
+                    writeCookie(this, response, "", Duration.ZERO);
+                }
+            });
+            currentSession = session;
+            return session;
+        }
+
+        private RedisSession loadRequestedSession() {
+            String id = getRequestedSessionId();
+            if (id == null) {
+                return null;
+            }
+            try {
+                return sessionRepository.findById(id);
+            } catch (Exception e) {
+                log.error("載入 Session 失敗：{}，{}", id, e.getMessage());
+                return null;
+            }
+        }
+
+        private String readCookie() {
+            Cookie[] cookies = getCookies();
+            if (cookies == null) {
+                return null;
+            }
+            for (Cookie cookie : cookies) {
+                if (cookieName.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                    return cookie.getValue();
+                }
+            }
+            return null;
+        }
+    }
+
+    //回應送出後客戶端可能立即發出下一個請求，送出前先儲存 Session
+    private static final class SessionResponseWrapper extends HttpServletResponseWrapper {
+
+        private final SessionRequestWrapper request;
+
+        SessionResponseWrapper(HttpServletResponse response, SessionRequestWrapper request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            request.commitSession();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            request.commitSession();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            request.commitSession();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            request.commitSession();
+            super.flushBuffer();
+        }
+    }
+}
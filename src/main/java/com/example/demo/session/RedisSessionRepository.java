@@ -0,0 +1,273 @@
+package com.example.demo.session;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HTTP Session 的 Redis 儲存（取代 Tomcat 記憶體 Session，session.redis.enabled=true 時啟用）
+ * 每個 Session 存成一個 Hash：session:{id}，屬性欄位為 a:{name}，值為 SessionAttributeCodec 的二進位編碼
+ *
+ * 功能包括：
+ * - 本機短時間快取（near cache）已載入的 Session，連續請求不必每次 HGETALL
+ * - 儲存時只寫入本次請求修改的屬性（HSET / HDEL），沒有修改時不寫入屬性
+ * - 最後存取時間每 touch-interval 最多寫入一次，同時延長 Key 的 TTL（閒置逾時 + touch-interval）
+ * - 屬性變更、刪除或更換 Session ID 時經 Redis Pub/Sub 通知其他節點清除本機快取
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "session.redis.enabled", havingValue = "true")
+public class RedisSessionRepository implements MessageListener {
+
+    // Redis 廣播頻道(訊息內容為 節點 ID + 換行 + Session ID)
+    public static final String CHANNEL = "session:events";
+    static final String SESSION_PREFIX = "session:";
+
+    private static final String ATTRIBUTE_PREFIX = "a:";
+    private static final byte[] CREATION_TIME = bytes("#created");
+    private static final byte[] LAST_ACCESSED_TIME = bytes("#accessed");
+    private static final byte[] MAX_INACTIVE_INTERVAL = bytes("#maxInactive");
+
+    /**
+     * 本機快取的 Session 內容（不可變）
+     */
+    record SessionSnapshot(String id, long creationTime, long persistedAccessedTime, int maxInactiveInterval,
+                           Map<String, byte[]> attributes) {
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int defaultMaxInactiveInterval;
+    private final long touchIntervalMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // sessionId -> 快照
+    private final Cache<String, SessionSnapshot> nearCache;
+
+    private final Counter attributeWriteCounter;
+    private final Counter touchWriteCounter;
+    private final Counter skippedWriteCounter;
+
+    public RedisSessionRepository(StringRedisTemplate stringRedisTemplate,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${spring.session.timeout:PT30M}") Duration timeout,
+                                  @Value("${session.touch-interval:PT1M}") Duration touchInterval,
+                                  @Value("${session.near-cache.max-size:10000}") long nearCacheSize,
+                                  @Value("${session.near-cache.ttl:PT5S}") Duration nearCacheTtl) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.defaultMaxInactiveInterval = (int) timeout.toSeconds();
+        this.touchIntervalMillis = touchInterval.toMillis();
+        this.nearCache = CacheBuilder.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterWrite(nearCacheTtl)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, nearCache, "http.sessions.near-cache");
+        this.attributeWriteCounter = meterRegistry.counter("http.sessions.writes", "kind", "attributes");
+        this.touchWriteCounter = meterRegistry.counter("http.sessions.writes", "kind", "touch");
+        this.skippedWriteCounter = meterRegistry.counter("http.sessions.writes", "kind", "skipped");
+    }
+
+    @PostConstruct
+    void listen() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 建立新的 Session（第一次儲存時才寫入 Redis）
+     */
+    RedisSession createSession() {
+        return new RedisSession(UUID.randomUUID().toString(), System.currentTimeMillis(), defaultMaxInactiveInterval);
+    }
+
+    /**
+     * 載入 Session
+     * @return 不存在或已過期時為 null
+     */
+    RedisSession findById(String id) {
+        SessionSnapshot snapshot = nearCache.getIfPresent(id);
+        if (snapshot == null) {
+            snapshot = load(id);
+            if (snapshot == null) {
+                return null;
+            }
+            nearCache.put(id, snapshot);
+        }
+        return new RedisSession(snapshot, System.currentTimeMillis());
+    }
+
+    /**
+     * 請求結束時儲存 Session（只寫入變更）
+     */
+    void save(RedisSession session) {
+        if (session.isInvalidated()) {
+            return;
+        }
+        long now = session.getLastAccessedTime();
+        boolean touchDue = session.isNew() || session.isMaxInactiveIntervalChanged()
+                || now - session.getPersistedAccessedTime() >= touchIntervalMillis;
+
+        Map<byte[], byte[]> changed = new HashMap<>();
+        List<byte[]> removed = new ArrayList<>();
+        session.getDelta().forEach((name, value) -> {
+            if (value != null) {
+                changed.put(bytes(ATTRIBUTE_PREFIX + name), SessionAttributeCodec.encode(value));
+            } else {
+                removed.add(bytes(ATTRIBUTE_PREFIX + name));
+            }
+        });
+        if (!touchDue && changed.isEmpty() && removed.isEmpty()) {
+            skippedWriteCounter.increment();
+            return;
+        }
+
+        //有寫入時一併更新存取時間與 TTL（Key 剛好過期時，也不會留下沒有 TTL 的殘缺 Hash）
+        byte[] key = bytes(SESSION_PREFIX + session.getId());
+        changed.put(LAST_ACCESSED_TIME, SessionAttributeCodec.encodeLong(now));
+        if (session.isNew()) {
+            changed.put(CREATION_TIME, SessionAttributeCodec.encodeLong(session.getCreationTime()));
+        }
+        if (session.isNew() || session.isMaxInactiveIntervalChanged()) {
+            changed.put(MAX_INACTIVE_INTERVAL, SessionAttributeCodec.encodeLong(session.getMaxInactiveInterval()));
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hMSet(key, changed);
+            if (!removed.isEmpty()) {
+                connection.hashCommands().hDel(key, removed.toArray(new byte[0][]));
+            }
+            expire(connection, key, session.getMaxInactiveInterval());
+            return null;
+        });
+
+        if (session.getDelta().isEmpty() && !session.isMaxInactiveIntervalChanged()) {
+            //只更新存取時間：本機快照的屬性不變，其他節點也不需要通知
+            touchWriteCounter.increment();
+            nearCache.asMap().computeIfPresent(session.getId(), (id, old) -> new SessionSnapshot(
+                    id, old.creationTime(), now, old.maxInactiveInterval(), old.attributes()));
+            return;
+        }
+        //屬性有變更：本機與其他節點都重新載入（同一 Session 的並行請求各自只寫入自己的變更）
+        attributeWriteCounter.increment();
+        nearCache.invalidate(session.getId());
+        publish(session.getId());
+    }
+
+    /**
+     * 刪除 Session
+     */
+    void deleteById(String id) {
+        nearCache.invalidate(id);
+        stringRedisTemplate.delete(SESSION_PREFIX + id);
+        publish(id);
+    }
+
+    /**
+     * 更換 Session ID（登入時防止 Session Fixation）
+     * @return 新的 Session ID
+     */
+    String changeSessionId(RedisSession session) {
+        String oldId = session.getId();
+        String newId = UUID.randomUUID().toString();
+        if (!session.isNew()) {
+            try {
+                stringRedisTemplate.rename(SESSION_PREFIX + oldId, SESSION_PREFIX + newId);
+            } catch (Exception e) {
+                //舊的 Key 已過期：儲存時會以新 ID 重新寫入變更的欄位
+                log.warn("更換 Session ID 失敗：{}，{}", oldId, e.getMessage());
+            }
+            nearCache.invalidate(oldId);
+            publish(oldId);
+        }
+        session.setId(newId);
+        return newId;
+    }
+
+    /**
+     * 收到 Redis 廣播（忽略自己發出的）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n");
+        if (parts.length != 2) {
+            log.warn("無法解析 Session 廣播：{}", String.join("|", parts));
+            return;
+        }
+        if (!nodeId.equals(parts[0])) {
+            nearCache.invalidate(parts[1]);
+        }
+    }
+
+    private SessionSnapshot load(String id) {
+        Map<byte[], byte[]> hash = stringRedisTemplate.execute(
+                (RedisCallback<Map<byte[], byte[]>>) connection -> connection.hashCommands().hGetAll(bytes(SESSION_PREFIX + id)));
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+        long creationTime = System.currentTimeMillis();
+        long accessedTime = 0L;
+        int maxInactiveInterval = defaultMaxInactiveInterval;
+        Map<String, byte[]> attributes = new HashMap<>();
+        for (Map.Entry<byte[], byte[]> entry : hash.entrySet()) {
+            String field = new String(entry.getKey(), StandardCharsets.UTF_8);
+            if (field.startsWith(ATTRIBUTE_PREFIX)) {
+                attributes.put(field.substring(ATTRIBUTE_PREFIX.length()), entry.getValue());
+            } else if (field.equals("#created")) {
+                creationTime = SessionAttributeCodec.decodeLong(entry.getValue());
+            } else if (field.equals("#accessed")) {
+                accessedTime = SessionAttributeCodec.decodeLong(entry.getValue());
+            } else if (field.equals("#maxInactive")) {
+                maxInactiveInterval = (int) SessionAttributeCodec.decodeLong(entry.getValue());
+            }
+        }
+        return new SessionSnapshot(id, creationTime, accessedTime, maxInactiveInterval,
+                Collections.unmodifiableMap(attributes));
+    }
+
+    //存取時間的寫入有節流，TTL 多保留一個 touch-interval，避免提早過期
+    private void expire(RedisConnection connection, byte[] key, int maxInactiveInterval) {
+        if (maxInactiveInterval <= 0) {
+            connection.keyCommands().persist(key);
+        } else {
+            connection.keyCommands().pExpire(key, maxInactiveInterval * 1000L + touchIntervalMillis);
+        }
+    }
+
+    private void publish(String id) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "\n" + id);
+        } catch (Exception e) {
+            log.warn("Session 廣播失敗，其他節點將在本機快取到期後同步：{}", e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Session 屬性的二進位編碼
+ * 第一個位元組為型別標記，常用型別（uid、username）不經過 Java 序列化或 JSON
+ *
+ * 格式：
+ * - String：'S' + UTF-8
+ * - Integer：'I' + 4 bytes；Long：'L' + 8 bytes；Boolean：'B' + 1 byte
+ * - 其他 Serializable 物件（例如 SecurityContext）：'J' + Java 序列化
+ */
+final class SessionAttributeCodec {
+
+    private static final byte STRING = 'S';
+    private static final byte INTEGER = 'I';
+    private static final byte LONG = 'L';
+    private static final byte BOOLEAN = 'B';
+    private static final byte SERIALIZED = 'J';
+
+    private SessionAttributeCodec() {
+    }
+
+    static byte[] encode(Object value) {
+        if (value instanceof String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = new byte[utf8.length + 1];
+            bytes[0] = STRING;
+            System.arraycopy(utf8, 0, bytes, 1, utf8.length);
+            return bytes;
+        }
+        if (value instanceof Integer i) {
+            return ByteBuffer.allocate(5).put(INTEGER).putInt(i).array();
+        }
+        if (value instanceof Long l) {
+            return ByteBuffer.allocate(9).put(LONG).putLong(l).array();
+        }
+        if (value instanceof Boolean b) {
+            return new byte[] { BOOLEAN, (byte) (b ? 1 : 0) };
+        }
+        if (value instanceof Serializable) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            out.write(SERIALIZED);
+            try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                oos.writeObject(value);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Session 屬性無法序列化：" + value.getClass().getName(), e);
+            }
+            return out.toByteArray();
+        }
+        throw new IllegalArgumentException("Session 屬性必須可序列化：" + value.getClass().getName());
+    }
+
+    static Object decode(byte[] bytes) {
+        switch (bytes[0]) {
+            case STRING:
+                return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            case INTEGER:
+                return ByteBuffer.wrap(bytes, 1, 4).getInt();
+            case LONG:
+                return ByteBuffer.wrap(bytes, 1, 8).getLong();
+            case BOOLEAN:
+                return bytes[1] != 0;
+            case SERIALIZED:
+                //使用應用程式的 ClassLoader（打包成 jar 執行時，預設的 ClassLoader 找不到應用程式類別）
+                try (ConfigurableObjectInputStream ois = new ConfigurableObjectInputStream(
+                        new ByteArrayInputStream(bytes, 1, bytes.length - 1), ClassUtils.getDefaultClassLoader())) {
+                    return ois.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException("Session 屬性無法還原", e);
+                }
+            default:
+                throw new IllegalStateException("未知的 Session 屬性型別：" + Arrays.toString(Arrays.copyOf(bytes, 1)));
+        }
+    }
+
+    static byte[] encodeLong(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    static long decodeLong(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 有期限、任一失敗即取消的平行任務範圍（功能等同 Java 21 預覽版 StructuredTaskScope.ShutdownOnFailure）
+ * StructuredTaskScope 在 Java 21 仍需 --enable-preview，這裡以虛擬執行緒自行實作相同語意
+ *
+ * 功能包括：
+ * - fork：每個子任務一條虛擬執行緒
+ * - join：等待全部完成、任一失敗或超過期限
+ * - 任一子任務失敗或逾時時立即取消(中斷)其餘子任務
+ * - close：離開 try-with-resources 時保證所有子任務都已結束，不會遺留背景執行緒
+ *
+ * 用法：
+ * <pre>
+ * try (FailFastScope scope = new FailFastScope(Duration.ofSeconds(3))) {
+ *     Supplier&lt;A&gt; a = scope.fork(() -> loadA());
+ *     Supplier&lt;B&gt; b = scope.fork(() -> loadB());
+ *     scope.join();
+ *     use(a.get(), b.get());
+ * }
+ * </pre>
+ */
+public final class FailFastScope implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    //依完成順序取得結果，第一個失敗的子任務不必等前面較慢的子任務
+    private final CompletionService<Object> completionService = new ExecutorCompletionService<>(executor);
+    private final List<Future<Object>> futures = new ArrayList<>();
+    private final long deadlineNanos;
+    private boolean joined;
+
+    public FailFastScope(Duration timeout) {
+        this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+    }
+
+    /**
+     * 啟動子任務
+     * @return join() 成功後才能取得結果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Supplier<T> fork(Callable<T> task) {
+        if (joined) {
+            throw new IllegalStateException("已經 join，不能再 fork");
+        }
+        Future<Object> future = completionService.submit((Callable<Object>) task);
+        futures.add(future);
+        return () -> {
+            if (!joined || future.state() != Future.State.SUCCESS) {
+                throw new IllegalStateException("子任務尚未成功完成");
+            }
+            return (T) future.resultNow();
+        };
+    }
+
+    /**
+     * 等待所有子任務完成
+     * @throws ExecutionException 任一子任務失敗(cause 為第一個失敗的例外，其餘子任務已取消)
+     * @throws TimeoutException   超過期限(其餘子任務已取消)
+     */
+    public void join() throws InterruptedException, ExecutionException, TimeoutException {
+        joined = true;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Object> completed = completionService.poll(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completed == null) {
+                    throw new TimeoutException("平行任務超過期限");
+                }
+                completed.get(); //失敗時拋出 ExecutionException
+            }
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            cancelAll();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        executor.close(); //等待所有子任務(含已中斷的)結束
+    }
+
+    private void cancelAll() {
+        for (Future<Object> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
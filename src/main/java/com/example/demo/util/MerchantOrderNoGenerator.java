@@ -0,0 +1,159 @@
+//產生商店訂單編號(MerchantOrderNo)
+package com.example.demo.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 商店訂單編號產生器（Snowflake 格式）
+ * 取代原本每次 new Random() 產生的隨機字串，編號依時間遞增，新增訂單時索引只會寫在 B-tree 尾端
+ *
+ * 功能包括：
+ * - 63 位元 ID：41 位元毫秒時間戳（自 2024-01-01 起，約可用 69 年）+ 10 位元節點代號 + 12 位元序號
+ * - 無鎖：時間戳與序號放在同一個 AtomicLong，以 CAS 一次更新
+ * - 同一毫秒序號用完或系統時鐘倒退時，借用下一毫秒繼續遞增，不會等待也不會重複
+ * - 編碼為固定 13 碼小寫 base36，字典序等於產生順序，符合藍新 MerchantOrderNo 30 字元限制
+ * - 節點代號由 order-no.node-id 設定（0 ~ 1023），多台部署時每台必須不同
+ * - 未設定時向 Redis 租用未被使用的代號並定期續約；無法租用時啟動失敗，
+ *   租約過期（例如 Redis 長時間無法連線）後停止產生編號，直到續約或重新租用成功
+ */
+@Slf4j
+@Component
+public class MerchantOrderNoGenerator {
+
+    public static final int LENGTH = 13; //編號固定長度
+
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private volatile long nodeId;
+
+    //高位：距 EPOCH 的毫秒數，低 12 位：該毫秒內的序號
+    private final AtomicLong state = new AtomicLong();
+
+    //租用節點代號時的租約（明確設定 order-no.node-id 時為 null）
+    private final NodeIdLease lease;
+    //租約有效期限（距 EPOCH 的毫秒數）
+    private volatile long leaseValidUntil = Long.MAX_VALUE;
+
+    @Autowired
+    public MerchantOrderNoGenerator(@Value("${order-no.node-id:-1}") int nodeId,
+                                    ObjectProvider<StringRedisTemplate> stringRedisTemplate,
+                                    @Value("${order-no.node-lease-ttl:PT30S}") Duration leaseTtl) {
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("order-no.node-id 必須介於 0 ~ " + MAX_NODE_ID);
+        }
+        if (nodeId >= 0) {
+            this.nodeId = nodeId;
+            this.lease = null;
+            return;
+        }
+        StringRedisTemplate redis = stringRedisTemplate.getIfAvailable();
+        if (redis == null) {
+            throw new IllegalStateException("未設定 order-no.node-id，且沒有 Redis 可租用節點代號");
+        }
+        this.lease = new NodeIdLease(redis, leaseTtl, (int) MAX_NODE_ID + 1);
+        long now = System.currentTimeMillis() - EPOCH;
+        this.nodeId = lease.acquire();
+        this.leaseValidUntil = now + leaseTtl.toMillis();
+        log.info("未設定 order-no.node-id，向 Redis 租用節點代號：{}", this.nodeId);
+    }
+
+    /**
+     * 固定節點代號（不租用）
+     */
+    public MerchantOrderNoGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("order-no.node-id 必須介於 0 ~ " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.lease = null;
+    }
+
+    /**
+     * 產生下一個訂單編號
+     */
+    public String nextId() {
+        return encode(nextLong());
+    }
+
+    /**
+     * 產生下一個數值 ID
+     */
+    public long nextLong() {
+        long now = System.currentTimeMillis() - EPOCH;
+        if (now > leaseValidUntil) {
+            throw new IllegalStateException("訂單編號節點代號 " + nodeId + " 的租約已過期，暫停產生編號");
+        }
+        long prev;
+        long next;
+        do {
+            prev = state.get();
+            //時間前進時序號歸零；同一毫秒(或時鐘倒退)則序號 +1，溢位會自然進位到下一毫秒
+            next = now > (prev >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : prev + 1;
+        } while (!state.compareAndSet(prev, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    //固定長度 base36，前面補 0
+    static String encode(long id) {
+        String s = Long.toString(id, 36);
+        return "0".repeat(LENGTH - s.length()) + s;
+    }
+
+    /**
+     * 續約節點代號（order-no.node-lease-renew-interval，需小於 TTL）
+     * 租約已被其他節點取得時改租新的代號；Redis 無法連線時保留現有租約，直到過期
+     */
+    @Scheduled(fixedDelayString = "${order-no.node-lease-renew-interval:PT10S}")
+    public void renewLease() {
+        if (lease == null) {
+            return;
+        }
+        long now = System.currentTimeMillis() - EPOCH;
+        try {
+            int current = (int) nodeId;
+            if (!lease.renew(current)) {
+                int next = lease.acquire();
+                log.warn("訂單編號節點代號 {} 的租約已失效，改用 {}", current, next);
+                nodeId = next;
+            }
+            leaseValidUntil = now + lease.getTtl().toMillis();
+        } catch (Exception e) {
+            log.error("訂單編號節點代號 {} 續約失敗：{}", nodeId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void releaseLease() {
+        if (lease == null) {
+            return;
+        }
+        try {
+            lease.release((int) nodeId);
+        } catch (Exception e) {
+            log.debug("釋放訂單編號節點代號失敗：{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.util;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * 以 Redis 租用節點代號（未設定 order-no.node-id 時使用）
+ * 每個節點代號一個 Key：order-no:node:{id}，值為本程序的擁有者 ID，TTL 到期前需續約
+ *
+ * 功能包括：
+ * - 從隨機位置開始以 SET NX PX 依序嘗試，取得第一個未被使用的代號
+ * - 續約與釋放只在 Key 仍屬於自己時執行（Lua 原子比對）
+ */
+class NodeIdLease {
+
+    static final String KEY_PREFIX = "order-no:node:";
+
+    // 仍屬於自己時延長 TTL，回傳 1；已過期或被其他節點取得時回傳 0
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration ttl;
+    private final int nodeCount;
+    private final String owner = UUID.randomUUID().toString();
+
+    NodeIdLease(StringRedisTemplate stringRedisTemplate, Duration ttl, int nodeCount) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttl = ttl;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * 租用一個未被使用的節點代號
+     * @throws IllegalStateException 所有代號都已被使用
+     */
+    int acquire() {
+        int start = ThreadLocalRandom.current().nextInt(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            int nodeId = (start + i) % nodeCount;
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + nodeId, owner, ttl))) {
+                return nodeId;
+            }
+        }
+        throw new IllegalStateException("沒有可租用的訂單編號節點代號（0 ~ " + (nodeCount - 1) + " 皆已使用）");
+    }
+
+    /**
+     * 續約
+     * @return 租約已過期或已被其他節點取得時為 false
+     */
+    boolean renew(int nodeId) {
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(KEY_PREFIX + nodeId), owner,
+                String.valueOf(ttl.toMillis()));
+        return renewed != null && renewed == 1L;
+    }
+
+    void release(int nodeId) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + nodeId), owner);
+    }
+
+    Duration getTtl() {
+        return ttl;
+    }
+}
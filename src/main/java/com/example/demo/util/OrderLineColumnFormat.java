@@ -0,0 +1,46 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 訂單明細欄式檔案格式(.olc)
+ *
+ * 檔案結構(big-endian)：
+ * - 檔頭：magic "OLC1"、筆數、最小/最大時間(epoch 秒)、最大商品id、欄位數、欄位目錄(每欄位移與長度)
+ * - 字典：交易狀態、付款方式(每個值 short 長度 + UTF-8，null 以空字串表示)
+ * - 欄位資料(各自對齊 8 bytes)：
+ *   商品id、數量、金額：int 陣列(可直接對應 IntBuffer)
+ *   交易狀態、付款方式：字典代碼(1 byte)
+ *   時間：資料依時間排序，存與前一筆的差值(無號 varint)，第一筆相對於最小時間
+ *   時間索引：每 TIME_BLOCK 筆一個索引(該筆絕對時間 long + 下一筆差值在時間欄位中的位移 int)，查詢可跳過時間範圍外的區塊
+ */
+final class OrderLineColumnFormat {
+
+    static final byte[] MAGIC = "OLC1".getBytes(StandardCharsets.US_ASCII);
+
+    static final int COLUMN_PID = 0;
+    static final int COLUMN_NUM = 1;
+    static final int COLUMN_AMT = 2;
+    static final int COLUMN_STATUS = 3;
+    static final int COLUMN_PAYMENT_TYPE = 4;
+    static final int COLUMN_TIME = 5;
+    static final int COLUMN_TIME_INDEX = 6;
+    static final int COLUMN_COUNT = 7;
+
+    // magic(4) + 筆數(4) + 最小時間(8) + 最大時間(8) + 最大商品id(4) + 欄位數(4)
+    static final int FIXED_HEADER_SIZE = 32;
+    // 每個欄位：位移(long) + 長度(int)
+    static final int DIRECTORY_ENTRY_SIZE = 12;
+
+    static final int TIME_BLOCK = 4096;
+    static final int TIME_INDEX_ENTRY_SIZE = 12;
+
+    static final int MAX_DICTIONARY_SIZE = 256;
+
+    private OrderLineColumnFormat() {
+    }
+
+    static int align(long position) {
+        return (int) ((position + 7) & ~7L);
+    }
+}
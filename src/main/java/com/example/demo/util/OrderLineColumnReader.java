@@ -0,0 +1,245 @@
+package com.example.demo.util;
+
+import static com.example.demo.util.OrderLineColumnFormat.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 訂單明細欄式檔案讀取(記憶體對應)
+ *
+ * 功能包括：
+ * - 以 FileChannel.map 唯讀對應整個檔案，欄位直接以 IntBuffer/ByteBuffer 讀取，不建立每筆物件
+ * - 交易狀態篩選先轉成字典代碼的布林表，掃描時只比對 1 byte
+ * - 時間索引跳過查詢範圍之前的區塊，超過範圍即停止(資料依時間排序)
+ * - 依商品、依日彙總筆數、數量、營收
+ * 執行緒安全：每次掃描使用各自的 buffer 副本
+ */
+public class OrderLineColumnReader {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final int rowCount;
+    private final long minTime;
+    private final long maxTime;
+    private final int maxPid;
+    private final String[] statuses;
+    private final String[] paymentTypes;
+
+    private final IntBuffer pids;
+    private final IntBuffer nums;
+    private final IntBuffer amts;
+    private final ByteBuffer statusCodes;
+    private final ByteBuffer paymentTypeCodes;
+    private final ByteBuffer times;
+    private final ByteBuffer timeIndex;
+
+    private OrderLineColumnReader(MappedByteBuffer buffer) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("不是訂單明細欄式檔案");
+        }
+        rowCount = buffer.getInt();
+        minTime = buffer.getLong();
+        maxTime = buffer.getLong();
+        maxPid = buffer.getInt();
+        int columnCount = buffer.getInt();
+        if (columnCount != COLUMN_COUNT) {
+            throw new IOException("不支援的欄位數：" + columnCount);
+        }
+        long[] offsets = new long[columnCount];
+        int[] lengths = new int[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            offsets[c] = buffer.getLong();
+            lengths[c] = buffer.getInt();
+        }
+        statuses = readDictionary(buffer);
+        paymentTypes = readDictionary(buffer);
+
+        pids = slice(buffer, offsets, lengths, COLUMN_PID).asIntBuffer();
+        nums = slice(buffer, offsets, lengths, COLUMN_NUM).asIntBuffer();
+        amts = slice(buffer, offsets, lengths, COLUMN_AMT).asIntBuffer();
+        statusCodes = slice(buffer, offsets, lengths, COLUMN_STATUS);
+        paymentTypeCodes = slice(buffer, offsets, lengths, COLUMN_PAYMENT_TYPE);
+        times = slice(buffer, offsets, lengths, COLUMN_TIME);
+        timeIndex = slice(buffer, offsets, lengths, COLUMN_TIME_INDEX);
+    }
+
+    /**
+     * 開啟檔案(對應後即可關閉 FileChannel，對應區域在 buffer 回收前持續有效)
+     */
+    public static OrderLineColumnReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OrderLineColumnReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public long minTime() {
+        return minTime;
+    }
+
+    public long maxTime() {
+        return maxTime;
+    }
+
+    public int maxPid() {
+        return maxPid;
+    }
+
+    /**
+     * 依商品彙總
+     * @param fromEpochSecond 起(含)
+     * @param toEpochSecond   迄(不含)
+     * @param tradeStatuses   交易狀態篩選，null 表示不篩選
+     */
+    public void sumByProduct(long fromEpochSecond, long toEpochSecond, Collection<String> tradeStatuses, OrderLineTotals into) {
+        if (rowCount > 0) {
+            into.reserve(0, maxPid);
+        }
+        scan(fromEpochSecond, toEpochSecond, tradeStatuses, (row, time) -> into.add(pids.get(row), nums.get(row), amts.get(row)));
+    }
+
+    /**
+     * 依日彙總(key 為 epoch 日)
+     * @param offsetSeconds 時區位移秒數(例如台灣 +8 小時 = 28800)
+     */
+    public void sumByDay(long fromEpochSecond, long toEpochSecond, Collection<String> tradeStatuses,
+                         int offsetSeconds, OrderLineTotals into) {
+        scan(fromEpochSecond, toEpochSecond, tradeStatuses,
+                (row, time) -> into.add((int) Math.floorDiv(time + offsetSeconds, SECONDS_PER_DAY), nums.get(row), amts.get(row)));
+    }
+
+    /**
+     * 讀取一筆(除錯、測試用)
+     */
+    public String tradeStatus(int row) {
+        return decode(statuses, statusCodes.get(row));
+    }
+
+    public String paymentType(int row) {
+        return decode(paymentTypes, paymentTypeCodes.get(row));
+    }
+
+    public int pid(int row) {
+        return pids.get(row);
+    }
+
+    public int num(int row) {
+        return nums.get(row);
+    }
+
+    public int amt(int row) {
+        return amts.get(row);
+    }
+
+    /**
+     * 所有列的時間(依列順序)
+     */
+    public long[] times() {
+        long[] result = new long[rowCount];
+        scan(Long.MIN_VALUE, Long.MAX_VALUE, null, (row, time) -> result[row] = time);
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface RowVisitor {
+        void visit(int row, long epochSecond);
+    }
+
+    //依時間範圍與交易狀態掃描
+    private void scan(long from, long to, Collection<String> tradeStatuses, RowVisitor visitor) {
+        if (rowCount == 0 || from > maxTime || to <= minTime) {
+            return;
+        }
+        boolean[] accepted = acceptedCodes(tradeStatuses);
+        ByteBuffer timeBytes = times.duplicate();
+        ByteBuffer index = timeIndex.duplicate();
+
+        //找到最後一個起始時間 < from 的區塊(同一秒可能跨區塊，必須從更早的區塊開始)
+        int blocks = index.capacity() / TIME_INDEX_ENTRY_SIZE;
+        int low = 0;
+        int high = blocks - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (index.getLong(mid * TIME_INDEX_ENTRY_SIZE) < from) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int row = low * TIME_BLOCK;
+        long time = index.getLong(low * TIME_INDEX_ENTRY_SIZE);
+        timeBytes.position(index.getInt(low * TIME_INDEX_ENTRY_SIZE + Long.BYTES));
+
+        ByteBuffer codes = statusCodes.duplicate();
+        while (true) {
+            if (time >= to) {
+                break;
+            }
+            if (time >= from && (accepted == null || accepted[codes.get(row) & 0xFF])) {
+                visitor.visit(row, time);
+            }
+            if (++row >= rowCount) {
+                break;
+            }
+            time += readVarint(timeBytes);
+        }
+    }
+
+    //交易狀態 -> 字典代碼布林表；null 表示全部接受
+    private boolean[] acceptedCodes(Collection<String> tradeStatuses) {
+        if (tradeStatuses == null) {
+            return null;
+        }
+        boolean[] accepted = new boolean[MAX_DICTIONARY_SIZE];
+        for (int code = 0; code < statuses.length; code++) {
+            accepted[code] = tradeStatuses.contains(decode(statuses, (byte) code));
+        }
+        return accepted;
+    }
+
+    private static String decode(String[] dictionary, byte code) {
+        String value = dictionary[code & 0xFF];
+        return value.isEmpty() ? null : value;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static String[] readDictionary(ByteBuffer buffer) {
+        int size = buffer.getShort() & 0xFFFF;
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long[] offsets, int[] lengths, int column) {
+        return buffer.slice((int) offsets[column], lengths[column]);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.util;
+
+import static com.example.demo.util.OrderLineColumnFormat.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 訂單明細欄式檔案寫入
+ * 逐筆加入明細，寫檔時依時間排序並編碼成 OrderLineColumnFormat 格式
+ *
+ * 功能包括：
+ * - 以基本型別陣列累積資料(不建立每筆物件)
+ * - 交易狀態、付款方式字典編碼；時間差值 + varint 編碼
+ * - 先寫入暫存檔再以 ATOMIC_MOVE 取代，讀取端不會看到寫到一半的檔案
+ */
+public class OrderLineColumnWriter {
+
+    private int size;
+    private int[] pids = new int[1024];
+    private int[] nums = new int[1024];
+    private int[] amts = new int[1024];
+    private long[] times = new long[1024];
+    private byte[] statusCodes = new byte[1024];
+    private byte[] paymentTypeCodes = new byte[1024];
+
+    private final Map<String, Integer> statusDictionary = new LinkedHashMap<>();
+    private final Map<String, Integer> paymentTypeDictionary = new LinkedHashMap<>();
+
+    /**
+     * 加入一筆明細
+     * @param epochSecond 付款(或建立)時間，epoch 秒
+     */
+    public void add(int pid, int num, int amt, String tradeStatus, String paymentType, long epochSecond) {
+        if (size == pids.length) {
+            grow();
+        }
+        pids[size] = pid;
+        nums[size] = num;
+        amts[size] = amt;
+        times[size] = epochSecond;
+        statusCodes[size] = encode(statusDictionary, tradeStatus);
+        paymentTypeCodes[size] = encode(paymentTypeDictionary, paymentType);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 寫入檔案(覆蓋既有檔案)
+     * @return 檔案大小(bytes)
+     */
+    public long writeTo(Path path) throws IOException {
+        int[] order = sortByTime();
+        long minTime = size > 0 ? times[order[0]] : 0;
+        long maxTime = size > 0 ? times[order[size - 1]] : 0;
+        int maxPid = 0;
+        for (int i = 0; i < size; i++) {
+            maxPid = Math.max(maxPid, pids[i]);
+        }
+
+        byte[][] columns = new byte[COLUMN_COUNT][];
+        columns[COLUMN_PID] = intColumn(pids, order);
+        columns[COLUMN_NUM] = intColumn(nums, order);
+        columns[COLUMN_AMT] = intColumn(amts, order);
+        columns[COLUMN_STATUS] = byteColumn(statusCodes, order);
+        columns[COLUMN_PAYMENT_TYPE] = byteColumn(paymentTypeCodes, order);
+        encodeTimes(order, minTime, columns);
+
+        byte[] dictionaries = dictionaries();
+        long position = align(FIXED_HEADER_SIZE + (long) COLUMN_COUNT * DIRECTORY_ENTRY_SIZE + dictionaries.length);
+
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE + COLUMN_COUNT * DIRECTORY_ENTRY_SIZE);
+        header.put(MAGIC).putInt(size).putLong(minTime).putLong(maxTime).putInt(maxPid).putInt(COLUMN_COUNT);
+        long[] offsets = new long[COLUMN_COUNT];
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            offsets[c] = position;
+            header.putLong(position).putInt(columns[c].length);
+            position = align(position + columns[c].length);
+        }
+        header.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header);
+            channel.write(ByteBuffer.wrap(dictionaries));
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                ByteBuffer column = ByteBuffer.wrap(columns[c]);
+                long at = offsets[c];
+                while (column.hasRemaining()) {
+                    at += channel.write(column, at);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(path);
+    }
+
+    //依時間排序後的列順序(時間與原始位置合併成 long 排序，避免裝箱)
+    private int[] sortByTime() {
+        long minTime = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            minTime = Math.min(minTime, times[i]);
+        }
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((times[i] - minTime) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private byte[] intColumn(int[] values, int[] order) {
+        ByteBuffer buffer = ByteBuffer.allocate(size * Integer.BYTES);
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(values[order[i]]);
+        }
+        return buffer.array();
+    }
+
+    private byte[] byteColumn(byte[] values, int[] order) {
+        byte[] column = new byte[size];
+        for (int i = 0; i < size; i++) {
+            column[i] = values[order[i]];
+        }
+        return column;
+    }
+
+    //時間差值 varint，並每 TIME_BLOCK 筆記錄一個索引
+    private void encodeTimes(int[] order, long minTime, byte[][] columns) {
+        ByteArrayOutputStream deltas = new ByteArrayOutputStream(size * 2);
+        ByteBuffer index = ByteBuffer.allocate(((size + TIME_BLOCK - 1) / TIME_BLOCK) * TIME_INDEX_ENTRY_SIZE);
+        long previous = minTime;
+        for (int i = 0; i < size; i++) {
+            long time = times[order[i]];
+            writeVarint(deltas, time - previous);
+            previous = time;
+            if (i % TIME_BLOCK == 0) {
+                //區塊第一筆的絕對時間，以及下一筆差值開始的位置
+                index.putLong(time).putInt(deltas.size());
+            }
+        }
+        columns[COLUMN_TIME] = deltas.toByteArray();
+        columns[COLUMN_TIME_INDEX] = index.array();
+    }
+
+    private byte[] dictionaries() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeDictionary(out, statusDictionary);
+        writeDictionary(out, paymentTypeDictionary);
+        return out.toByteArray();
+    }
+
+    private static void writeDictionary(ByteArrayOutputStream out, Map<String, Integer> dictionary) {
+        writeShort(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeShort(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+    }
+
+    private static byte encode(Map<String, Integer> dictionary, String value) {
+        String key = value != null ? value : "";
+        Integer code = dictionary.get(key);
+        if (code == null) {
+            if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+                throw new IllegalArgumentException("字典值超過 " + MAX_DICTIONARY_SIZE + " 種：" + key);
+            }
+            code = dictionary.size();
+            dictionary.put(key, code);
+        }
+        return (byte) code.intValue();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private void grow() {
+        int capacity = pids.length * 2;
+        pids = Arrays.copyOf(pids, capacity);
+        nums = Arrays.copyOf(nums, capacity);
+        amts = Arrays.copyOf(amts, capacity);
+        times = Arrays.copyOf(times, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        paymentTypeCodes = Arrays.copyOf(paymentTypeCodes, capacity);
+    }
+}
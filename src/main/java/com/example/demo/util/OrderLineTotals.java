@@ -0,0 +1,94 @@
+package com.example.demo.util;
+
+import java.util.Arrays;
+
+/**
+ * 訂單明細彙總(筆數、數量、營收)
+ * 以整數 key(商品id 或 epoch 日)為陣列索引累加，掃描時不建立物件、不查雜湊表
+ */
+public class OrderLineTotals {
+
+    /**
+     * 逐一讀取彙總結果
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(int key, long lines, long quantity, long revenue);
+    }
+
+    private int base = Integer.MAX_VALUE; //陣列索引 0 對應的 key
+    private long[] lines = new long[0];
+    private long[] quantity = new long[0];
+    private long[] revenue = new long[0];
+
+    /**
+     * 累加一筆明細
+     * @param amt 單價(營收 = 單價 × 數量)
+     */
+    public void add(int key, int num, int amt) {
+        int i = indexOf(key);
+        lines[i]++;
+        quantity[i] += num;
+        revenue[i] += (long) amt * num;
+    }
+
+    /**
+     * 合併另一份彙總(多個檔案的結果)
+     */
+    public void merge(OrderLineTotals other) {
+        other.forEach((key, l, q, r) -> {
+            int i = indexOf(key);
+            lines[i] += l;
+            quantity[i] += q;
+            revenue[i] += r;
+        });
+    }
+
+    /**
+     * 依 key 由小到大讀取(略過沒有資料的 key)
+     */
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] > 0) {
+                visitor.visit(base + i, lines[i], quantity[i], revenue[i]);
+            }
+        }
+    }
+
+    /**
+     * 預先配置 key 範圍，避免掃描途中擴充陣列
+     */
+    public void reserve(int minKey, int maxKey) {
+        indexOf(minKey);
+        indexOf(maxKey);
+    }
+
+    private int indexOf(int key) {
+        if (lines.length == 0) {
+            base = key;
+            resize(0, 16);
+        } else if (key < base) {
+            resize(base - key, lines.length + (base - key));
+            base = key;
+        } else if (key - base >= lines.length) {
+            resize(0, Math.max(key - base + 1, lines.length * 2));
+        }
+        return key - base;
+    }
+
+    //擴充陣列；shift 為既有資料往後移動的格數(key 小於 base 時)
+    private void resize(int shift, int capacity) {
+        lines = shifted(lines, shift, capacity);
+        quantity = shifted(quantity, shift, capacity);
+        revenue = shifted(revenue, shift, capacity);
+    }
+
+    private static long[] shifted(long[] values, int shift, int capacity) {
+        if (shift == 0) {
+            return Arrays.copyOf(values, capacity);
+        }
+        long[] copy = new long[capacity];
+        System.arraycopy(values, 0, copy, shift, values.length);
+        return copy;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.demo;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+/**
+ * 記憶體版 Redis：只實作測試用到的指令，Pub/Sub 同步送達所有節點
+ * 多個節點(Spring Context)共用同一個實例即可模擬叢集
+ *
+ * 功能包括：
+ * - 字串(SET / GET / EXISTS)、集合(SADD / SMEMBERS)、Hash(HMSET / HDEL / HGETALL，經 RedisCallback)
+ * - DEL(單一或多個 Key)、RENAME、PEXPIRE / PERSIST / PTTL(只記錄 TTL，不會自動過期)、SCAN(MATCH 前綴)
+ * - Lua 腳本(EVALSHA)：由測試以 onScript 註冊等效的 Java 實作，依腳本內容片段比對
+ * - Hash 寫入指令記錄在 commands(例如：HSET session:1 a:cart,#accessed)，供測試檢查實際寫入的欄位
+ */
+@SuppressWarnings("unchecked")
+public class FakeRedis {
+
+    public final Map<String, String> values = new ConcurrentHashMap<>();
+    public final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+    public final Map<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>();
+    public final Map<String, Long> ttlMillis = new ConcurrentHashMap<>();
+    public final Map<String, List<MessageListener>> listeners = new ConcurrentHashMap<>();
+    public final List<String> commands = new CopyOnWriteArrayList<>();
+    public final AtomicInteger hasKeyCalls = new AtomicInteger();
+    public volatile boolean scanFails;
+    private final Map<String, BiFunction<List<String>, List<String>, Object>> scripts = new ConcurrentHashMap<>();
+
+    public final StringRedisTemplate template = mock(StringRedisTemplate.class);
+    public final RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+
+    public FakeRedis() {
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        SetOperations<String, String> setOps = mock(SetOperations.class);
+        when(template.opsForValue()).thenReturn(valueOps);
+        when(template.opsForSet()).thenReturn(setOps);
+
+        doAnswer(inv -> values.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(valueOps).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        doAnswer(inv -> values.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(valueOps).set(anyString(), anyString(), any(Duration.class));
+        when(valueOps.get(anyString())).thenAnswer(inv -> values.get(inv.<String>getArgument(0)));
+        when(template.hasKey(anyString())).thenAnswer(inv -> {
+            hasKeyCalls.incrementAndGet();
+            String key = inv.getArgument(0);
+            return values.containsKey(key) || sets.containsKey(key) || hashes.containsKey(key);
+        });
+        when(setOps.add(anyString(), any(String[].class))).thenAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            Set<String> set = sets.computeIfAbsent((String) args[0], k -> ConcurrentHashMap.newKeySet());
+            for (int i = 1; i < args.length; i++) {
+                set.add((String) args[i]);
+            }
+            return 1L;
+        });
+        when(setOps.members(anyString())).thenAnswer(inv -> sets.get(inv.<String>getArgument(0)));
+        when(template.delete(anyString())).thenAnswer(inv -> delete(inv.getArgument(0)));
+        when(template.delete(anyCollection())).thenAnswer(inv ->
+                inv.<Collection<String>>getArgument(0).stream().filter(this::delete).count());
+        //-2：Key 不存在；-1：沒有 TTL
+        when(template.getExpire(anyString(), any(TimeUnit.class))).thenAnswer(inv -> {
+            String key = inv.getArgument(0);
+            if (!values.containsKey(key) && !sets.containsKey(key) && !hashes.containsKey(key)) {
+                return -2L;
+            }
+            Long ttl = ttlMillis.get(key);
+            return ttl == null ? -1L : inv.<TimeUnit>getArgument(1).convert(ttl, TimeUnit.MILLISECONDS);
+        });
+        doAnswer(inv -> {
+            String from = inv.getArgument(0);
+            String to = inv.getArgument(1);
+            Map<String, byte[]> hash = hashes.remove(from);
+            if (hash == null) {
+                throw new IllegalStateException("ERR no such key");
+            }
+            commands.add("RENAME " + from + " " + to);
+            hashes.put(to, hash);
+            Long ttl = ttlMillis.remove(from);
+            if (ttl != null) {
+                ttlMillis.put(to, ttl);
+            }
+            return null;
+        }).when(template).rename(anyString(), anyString());
+
+        doAnswer(inv -> {
+            DefaultMessage message = new DefaultMessage(inv.<String>getArgument(0).getBytes(StandardCharsets.UTF_8),
+                    inv.<String>getArgument(1).getBytes(StandardCharsets.UTF_8));
+            listeners.getOrDefault(inv.<String>getArgument(0), List.of()).forEach(l -> l.onMessage(message, null));
+            return 1L;
+        }).when(template).convertAndSend(anyString(), anyString());
+        doAnswer(inv -> listeners.computeIfAbsent(inv.<Topic>getArgument(1).getTopic(), k -> new CopyOnWriteArrayList<>())
+                .add(inv.getArgument(0)))
+                .when(container).addMessageListener(any(MessageListener.class), any(Topic.class));
+
+        when(template.scan(any(ScanOptions.class))).thenAnswer(inv -> {
+            if (scanFails) {
+                throw new IllegalStateException("Redis unavailable");
+            }
+            String pattern = inv.<ScanOptions>getArgument(0).getPattern();
+            String prefix = pattern == null ? "" : pattern.substring(0, pattern.length() - (pattern.endsWith("*") ? 1 : 0));
+            return cursor(values.keySet().stream().filter(k -> k.startsWith(prefix)).toList().iterator());
+        });
+
+        stubConnection();
+        when(template.execute(any(RedisCallback.class)))
+                .thenAnswer(inv -> inv.<RedisCallback<Object>>getArgument(0).doInRedis(connection));
+        when(template.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            inv.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+        when(template.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            String source = inv.<RedisScript<?>>getArgument(0).getScriptAsString();
+            List<String> argv = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                argv.add(String.valueOf(args[i]));
+            }
+            return scripts.entrySet().stream()
+                    .filter(e -> source.contains(e.getKey()))
+                    .findFirst()
+                    .orElseThrow(() -> new UnsupportedOperationException("未註冊的 Lua 腳本：" + source))
+                    .getValue().apply(inv.getArgument(1), argv);
+        });
+    }
+
+    private boolean delete(String key) {
+        commands.add("DEL " + key);
+        ttlMillis.remove(key);
+        boolean removed = values.remove(key) != null;
+        removed |= sets.remove(key) != null;
+        removed |= hashes.remove(key) != null;
+        return removed;
+    }
+
+    /**
+     * 註冊 Lua 腳本的等效實作：腳本內容包含 fragment 時改呼叫 handler(KEYS, ARGV)
+     */
+    public void onScript(String fragment, BiFunction<List<String>, List<String>, Object> handler) {
+        scripts.put(fragment, handler);
+    }
+
+    /**
+     * Hash 欄位(以字串表示，依欄位名稱排序)
+     */
+    public Set<String> hashFields(String key) {
+        Map<String, byte[]> hash = hashes.get(key);
+        return hash == null ? Set.of() : new TreeSet<>(hash.keySet());
+    }
+
+    /**
+     * 清除指令紀錄
+     */
+    public List<String> drainCommands() {
+        List<String> drained = new ArrayList<>(commands);
+        commands.clear();
+        return drained;
+    }
+
+    private void stubConnection() {
+        RedisHashCommands hashCommands = mock(RedisHashCommands.class);
+        RedisKeyCommands keyCommands = mock(RedisKeyCommands.class);
+        when(connection.hashCommands()).thenReturn(hashCommands);
+        when(connection.keyCommands()).thenReturn(keyCommands);
+
+        doAnswer(inv -> {
+            String key = string(inv.getArgument(0));
+            Map<byte[], byte[]> fields = inv.getArgument(1);
+            Map<String, byte[]> hash = hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+            Set<String> names = new TreeSet<>();
+            fields.forEach((field, value) -> {
+                hash.put(string(field), value);
+                names.add(string(field));
+            });
+            commands.add("HSET " + key + " " + String.join(",", names));
+            return null;
+        }).when(hashCommands).hMSet(any(byte[].class), any(Map.class));
+        when(hashCommands.hDel(any(byte[].class), any(byte[][].class))).thenAnswer(inv -> {
+            Object[] args = inv.getArguments();
+            String key = string((byte[]) args[0]);
+            Map<String, byte[]> hash = hashes.getOrDefault(key, Map.of());
+            Set<String> names = new TreeSet<>();
+            long removed = 0;
+            for (int i = 1; i < args.length; i++) {
+                String field = string((byte[]) args[i]);
+                names.add(field);
+                removed += hash.remove(field) != null ? 1 : 0;
+            }
+            commands.add("HDEL " + key + " " + String.join(",", names));
+            return removed;
+        });
+        when(hashCommands.hGetAll(any(byte[].class))).thenAnswer(inv -> {
+            Map<String, byte[]> hash = hashes.get(string(inv.getArgument(0)));
+            Map<byte[], byte[]> result = new LinkedHashMap<>();
+            if (hash != null) {
+                hash.forEach((field, value) -> result.put(field.getBytes(StandardCharsets.UTF_8), value));
+            }
+            return result;
+        });
+        when(keyCommands.pExpire(any(byte[].class), anyLong())).thenAnswer(inv -> {
+            ttlMillis.put(string(inv.getArgument(0)), inv.<Long>getArgument(1));
+            return true;
+        });
+        when(keyCommands.persist(any(byte[].class))).thenAnswer(inv -> ttlMillis.remove(string(inv.getArgument(0))) != null);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Cursor<String> cursor(Iterator<String> keys) {
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(inv -> keys.hasNext());
+        when(cursor.next()).thenAnswer(inv -> keys.next());
+        return cursor;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import com.example.demo.security.EnhancedJwtAuthenticationFilter;
+import com.example.demo.security.JwtAuthenticationEntryPoint;
+import com.example.demo.security.JwtAuthenticationFilter;
+import com.example.demo.security.JwtService;
+import com.example.demo.security.PasswordHashingPool;
+import com.example.demo.security.PublicRouteMatcher;
+import com.example.demo.security.SessionAuthenticationFilter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 管理 API（/api/admin/**）在每個 profile 的安全鏈都只限 ADMIN
+ * 預設（Basic）與 Improved profile 沒有啟用方法層級安全，@PreAuthorize 不會生效，必須由 URL 規則擋下
+ */
+class AdminEndpointAccessTest {
+
+    private static final List<String> ADMIN_PATHS = List.of(
+            "/api/admin/orders", "/api/admin/orders/export", "/api/admin/reports/products", "/api/admin/reports/daily");
+
+    @ParameterizedTest
+    @ValueSource(strings = {"default", "enhanced", "improved", "hybrid"})
+    void plainUserIsForbidden(String profile) throws Exception {
+        try (AnnotationConfigWebApplicationContext context = start(profile)) {
+            for (String path : ADMIN_PATHS) {
+                assertEquals(403, dispatch(context, "GET", path, "ROLE_USER"), path);
+                assertEquals(200, dispatch(context, "GET", path, "ROLE_ADMIN"), path);
+            }
+        }
+    }
+
+    //重新匯出報表會寫入檔案：一般使用者一律 403（improved profile 的 /api/admin/** 還需要 CSRF Token，這裡只驗證角色）
+    @ParameterizedTest
+    @CsvSource({"default,true", "enhanced,true", "improved,false", "hybrid,true"})
+    void reportExportRequiresAdmin(String profile, boolean csrfExempt) throws Exception {
+        try (AnnotationConfigWebApplicationContext context = start(profile)) {
+            String path = "/api/admin/reports/order-lines/2025-01";
+            assertEquals(403, dispatch(context, "POST", path, "ROLE_USER"));
+            if (csrfExempt) {
+                assertEquals(200, dispatch(context, "POST", path, "ROLE_ADMIN"));
+            }
+        }
+    }
+
+    private static int dispatch(AnnotationConfigWebApplicationContext context, String method, String path, String role)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(context.getServletContext(), method, path);
+        request.setServletPath(path);
+        MockHttpSession session = new MockHttpSession(context.getServletContext());
+        session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, new SecurityContextImpl(
+                UsernamePasswordAuthenticationToken.authenticated("someone", null, List.of(new SimpleGrantedAuthority(role)))));
+        request.setSession(session);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet controller = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getWriter().write("[]");
+            }
+        };
+        new MockFilterChain(controller, context.getBean("springSecurityFilterChain", FilterChainProxy.class))
+                .doFilter(request, response);
+        return response.getStatus();
+    }
+
+    private static AnnotationConfigWebApplicationContext start(String profile) {
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().setActiveProfiles(profile);
+        context.register(TestBeans.class, PublicRouteMatcher.class, JwtService.class, JwtAuthenticationFilter.class,
+                EnhancedJwtAuthenticationFilter.class, JwtAuthenticationEntryPoint.class, SessionAuthenticationFilter.class,
+                PasswordHashingPool.class, BasicSecurityConfig.class, EnhancedSecurityConfig.class,
+                ImprovedSecurityConfig.class, HybridSecurityConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class TestBeans {
+
+        @Bean
+        static ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+
+        @Bean
+        JwtProperties jwtProperties() {
+            return new JwtProperties();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        UserDetailsService userDetailsService() {
+            return username -> {
+                throw new UsernameNotFoundException(username);
+            };
+        }
+    }
+}
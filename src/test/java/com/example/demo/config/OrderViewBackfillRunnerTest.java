@@ -0,0 +1,78 @@
+package com.example.demo.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.entity.Order;
+import com.example.demo.repository.OrderViewRepository;
+import com.example.demo.service.OrderViewProjector;
+
+/**
+ * 訂單讀取模型補建：熱資料表與歸檔資料表全部掃描，已有文件的訂單略過
+ */
+class OrderViewBackfillRunnerTest {
+
+    private final OrderArchiveDao orderArchiveDao = mock(OrderArchiveDao.class);
+    private final OrderViewRepository orderViewRepository = mock(OrderViewRepository.class);
+    private final OrderViewProjector orderViewProjector = mock(OrderViewProjector.class);
+    private final OrderViewBackfillRunner runner = new OrderViewBackfillRunner(orderArchiveDao, orderViewRepository, orderViewProjector);
+
+    @Test
+    void rebuildsEveryMissingOrderAcrossPagesAndArchive() {
+        ReflectionTestUtils.setField(runner, "batchSize", 2);
+        when(orderArchiveDao.IsReady()).thenReturn(true);
+        //熱資料表 id 1~5(3 頁)，歸檔資料表 id 10
+        when(orderArchiveDao.ScanOrderNos(anyBoolean(), anyInt(), anyInt())).thenReturn(List.of());
+        when(orderArchiveDao.ScanOrderNos(false, 0, 2)).thenReturn(orders(1, 2));
+        when(orderArchiveDao.ScanOrderNos(false, 2, 2)).thenReturn(orders(3, 4));
+        when(orderArchiveDao.ScanOrderNos(false, 4, 2)).thenReturn(orders(5, 5));
+        when(orderArchiveDao.ScanOrderNos(true, 0, 2)).thenReturn(orders(10, 10));
+        //第 2 筆已有文件
+        when(orderViewRepository.findExistingIds(any())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream().filter("M2"::equals).toList());
+
+        assertEquals(5, runner.backfill());
+
+        for (String merchantOrderNo : List.of("M1", "M3", "M4", "M5", "M10")) {
+            verify(orderViewProjector).rebuild(merchantOrderNo);
+        }
+        verify(orderViewProjector, never()).rebuild("M2");
+    }
+
+    @Test
+    void rebuildAllIgnoresExistingDocuments() {
+        ReflectionTestUtils.setField(runner, "batchSize", 10);
+        ReflectionTestUtils.setField(runner, "rebuildAll", true);
+        when(orderArchiveDao.ScanOrderNos(anyBoolean(), anyInt(), anyInt())).thenReturn(List.of());
+        when(orderArchiveDao.ScanOrderNos(eq(false), eq(0), anyInt())).thenReturn(orders(1, 3));
+
+        assertEquals(3, runner.backfill());
+        verify(orderViewRepository, never()).findExistingIds(any());
+        //歸檔資料表未建立時不掃描
+        verify(orderArchiveDao, never()).ScanOrderNos(eq(true), anyInt(), anyInt());
+    }
+
+    private static List<Order> orders(int fromId, int toId) {
+        return IntStream.rangeClosed(fromId, toId).mapToObj(id -> {
+            Order order = new Order();
+            order.setOid(id);
+            order.setMerchantorderno("M" + id);
+            return order;
+        }).toList();
+    }
+}
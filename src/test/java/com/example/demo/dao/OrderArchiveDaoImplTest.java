@@ -0,0 +1,57 @@
+package com.example.demo.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.entity.Order;
+
+/**
+ * 歸檔掃描 SQL：依 (Created_time, id) 分頁，Created_time 為 NULL 的資料列不會拋出例外
+ */
+class OrderArchiveDaoImplTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private final OrderArchiveDaoImpl dao = new OrderArchiveDaoImpl();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scanOrdersPagesOnCreatedTimeAndToleratesNullCreatedTime() throws Exception {
+        ReflectionTestUtils.setField(dao, "namedParameterJdbcTemplate", jdbcTemplate);
+        LocalDateTime cutoff = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        dao.ScanOrders(cutoff, null, 0, 100);
+        dao.ScanOrders(cutoff, cutoff.minusDays(1), 42, 100);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<RowMapper<Order>> mapper = ArgumentCaptor.forClass(RowMapper.class);
+        verify(jdbcTemplate, times(2)).query(sql.capture(), any(MapSqlParameterSource.class), mapper.capture());
+        assertFalse(sql.getAllValues().get(0).contains(":afterCreated"));
+        assertTrue(sql.getAllValues().get(1).contains("Created_time = :afterCreated AND id > :afterId"));
+        assertTrue(sql.getAllValues().get(1).endsWith("ORDER BY Created_time, id LIMIT :limit"));
+
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getInt("id")).thenReturn(7);
+        when(resultSet.getString(anyString())).thenReturn("1");
+        Order order = mapper.getValue().mapRow(resultSet, 0);
+        assertEquals(7, order.getOid());
+        assertNull(order.getCreatedTime());
+    }
+}
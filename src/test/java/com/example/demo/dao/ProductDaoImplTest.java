@@ -0,0 +1,45 @@
+package com.example.demo.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 預留庫存 SQL：條件式扣除(num >= :num，庫存不足時該筆更新 0 筆)、依商品id排序、整批一次送出
+ */
+class ProductDaoImplTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private final ProductDaoImpl dao = new ProductDaoImpl();
+
+    @Test
+    void reserveIsOneConditionalBatchOrderedById() {
+        ReflectionTestUtils.setField(dao, "namedParameterJdbcTemplate", jdbcTemplate);
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenReturn(new int[] {1, 0, 1});
+
+        int[] rows = dao.ReserveNums(Map.of(30, 1, 10, 2, 20, 5));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SqlParameterSource[]> batch = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate, times(1)).batchUpdate(sql.capture(), batch.capture());
+        assertEquals("UPDATE productdata SET num = num - :num WHERE id = :id AND num >= :num", sql.getValue());
+        assertEquals(List.of(10, 20, 30), Arrays.stream(batch.getValue()).map(p -> p.getValue("id")).toList());
+        assertEquals(List.of(2, 5, 1), Arrays.stream(batch.getValue()).map(p -> p.getValue("num")).toList());
+        assertArrayEquals(new int[] {1, 0, 1}, rows);
+    }
+}
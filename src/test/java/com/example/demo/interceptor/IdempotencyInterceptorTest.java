@@ -0,0 +1,157 @@
+package com.example.demo.interceptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 冪等請求攔截器(idempotency.store=memory)：重播、並行重送等待、422、409、處理超過 in-flight-ttl
+ */
+class IdempotencyInterceptorTest {
+
+    private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore();
+    private final IdempotencyInterceptor interceptor = new IdempotencyInterceptor(store);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(interceptor, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(interceptor, "inFlightTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(interceptor, "waitTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(interceptor, "pollInterval", Duration.ofMillis(10));
+    }
+
+    @Test
+    void completedResponseIsReplayed() throws Exception {
+        MockHttpServletRequest first = request("/api/pay", "k1");
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), null));
+        finish(first, 200, Map.of("merchantOrderNo", "M1"));
+
+        MockHttpServletRequest retry = request("/api/pay", "k1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(retry, response, null));
+        assertEquals(200, response.getStatus());
+        assertEquals("true", response.getHeader(IdempotencyInterceptor.REPLAYED_HEADER));
+        assertEquals("application/json", response.getContentType());
+        assertEquals("{\"merchantOrderNo\":\"M1\"}", response.getContentAsString());
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheFirstResponse() throws Exception {
+        MockHttpServletRequest first = request("/api/pay", "k2");
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), null));
+
+        MockHttpServletResponse duplicateResponse = new MockHttpServletResponse();
+        CompletableFuture<Boolean> duplicate = CompletableFuture.supplyAsync(() -> {
+            try {
+                return interceptor.preHandle(request("/api/pay", "k2"), duplicateResponse, null);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone());
+
+        finish(first, 200, Map.of("merchantOrderNo", "M2"));
+
+        assertFalse(duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals("{\"merchantOrderNo\":\"M2\"}", duplicateResponse.getContentAsString());
+        assertEquals("true", duplicateResponse.getHeader(IdempotencyInterceptor.REPLAYED_HEADER));
+    }
+
+    @Test
+    void sameKeyForDifferentRequestIsRejected() throws Exception {
+        MockHttpServletRequest first = request("/api/pay", "k3");
+        interceptor.preHandle(first, new MockHttpServletResponse(), null);
+        finish(first, 200, Map.of("merchantOrderNo", "M3"));
+
+        MockHttpServletRequest other = request("/api/pay", "k3");
+        other.setParameter("amount", "999");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(other, response, null));
+        assertEquals(422, response.getStatus());
+    }
+
+    @Test
+    void waitTimeoutReturnsConflict() throws Exception {
+        ReflectionTestUtils.setField(interceptor, "waitTimeout", Duration.ofMillis(100));
+        assertTrue(interceptor.preHandle(request("/api/pay", "k4"), new MockHttpServletResponse(), null));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("/api/pay", "k4"), response, null));
+        assertEquals(409, response.getStatus());
+    }
+
+    @Test
+    void failedRequestReleasesTheKey() throws Exception {
+        MockHttpServletRequest first = request("/api/pay", "k5");
+        interceptor.preHandle(first, new MockHttpServletResponse(), null);
+        finish(first, 500, Map.of("error", "gateway"));
+
+        assertTrue(interceptor.preHandle(request("/api/pay", "k5"), new MockHttpServletResponse(), null));
+    }
+
+    @Test
+    void lateCompletionDoesNotOverwriteTheNewHolder() throws Exception {
+        ReflectionTestUtils.setField(interceptor, "inFlightTtl", Duration.ofMillis(50));
+        MockHttpServletRequest slow = request("/api/pay", "k6");
+        assertTrue(interceptor.preHandle(slow, new MockHttpServletResponse(), null));
+        Thread.sleep(100);
+
+        //處理中紀錄已過期，重送取得執行權
+        MockHttpServletRequest retry = request("/api/pay", "k6");
+        assertTrue(interceptor.preHandle(retry, new MockHttpServletResponse(), null));
+        ReflectionTestUtils.setField(interceptor, "inFlightTtl", Duration.ofMinutes(1));
+        String key = (String) retry.getAttribute(IdempotencyInterceptor.KEY_ATTRIBUTE);
+        String retryOwner = (String) retry.getAttribute(IdempotencyInterceptor.OWNER_ATTRIBUTE);
+
+        //較慢的第一個請求完成或失敗，都不能覆寫或刪除重送的紀錄
+        finish(slow, 200, Map.of("merchantOrderNo", "SLOW"));
+        assertEquals(retryOwner, store.find(key).owner());
+        assertFalse(store.find(key).isCompleted());
+        store.remove(key, (String) slow.getAttribute(IdempotencyInterceptor.OWNER_ATTRIBUTE));
+        assertEquals(retryOwner, store.find(key).owner());
+
+        finish(retry, 200, Map.of("merchantOrderNo", "RETRY"));
+        assertTrue(store.find(key).isCompleted());
+        MockHttpServletResponse replayed = new MockHttpServletResponse();
+        interceptor.preHandle(request("/api/pay", "k6"), replayed, null);
+        assertEquals("{\"merchantOrderNo\":\"RETRY\"}", replayed.getContentAsString());
+    }
+
+    @Test
+    void requestsWithoutKeyAreNotTracked() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/pay");
+
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), null));
+        assertNull(request.getAttribute(IdempotencyInterceptor.KEY_ATTRIBUTE));
+    }
+
+    private static MockHttpServletRequest request(String uri, String idempotencyKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.addHeader(IdempotencyInterceptor.HEADER, idempotencyKey);
+        return request;
+    }
+
+    //模擬控制器回應(IdempotencyResponseBodyAdvice 寫入的屬性)後請求結束
+    private void finish(MockHttpServletRequest request, int status, Object body) {
+        request.setAttribute(IdempotencyInterceptor.BODY_ATTRIBUTE, body);
+        request.setAttribute(IdempotencyInterceptor.CONTENT_TYPE_ATTRIBUTE, "application/json");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(status);
+        interceptor.afterCompletion(request, response, null, null);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.demo.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.example.demo.service.CartService;
+import com.example.demo.service.CheckoutSnapshot;
+import com.example.demo.service.OrderListService;
+import com.example.demo.service.OrderService;
+import com.example.demo.service.OutboxService;
+import com.example.demo.service.ProductService;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * 建立訂單(總訂單 + N 筆明細)的批次寫入基準測試
+ * 經由結帳寫入階段使用的 OrderService.createOrder 與 OrderListService.createOrderLists 建立，
+ * 預留庫存與外寄箱以 mock 取代，只量測訂單與明細的寫入
+ * 需要 Docker，沒有 Docker 時自動略過；計時的部分標記為 benchmark，只在 -Pbenchmark 時執行
+ */
+@DataJpaTest
+@Import({OrderService.class, OrderListService.class})
+@Testcontainers(disabledWithoutDocker = true)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderBatchInsertBenchmarkTest {
+
+    private static final int[] LINE_COUNTS = {1, 5, 20, 50, 100};
+    private static final int ROUNDS = 20;
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> MYSQL.getJdbcUrl() + "?rewriteBatchedStatements=true");
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+        registry.add("spring.jpa.properties.hibernate.show_sql", () -> "false");
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderListService orderListService;
+
+    @Autowired
+    private OrderListRepository orderListRepository;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @MockitoBean
+    private ProductService productService;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void orderLinesAreWrittenInBatches() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (int lines : LINE_COUNTS) {
+            String no = "batch" + lines;
+            statistics.clear();
+            tx.executeWithoutResult(status -> createOrder(no, lines));
+
+            assertEquals(lines, orderListRepository.findAllByMerchantorderno(no).size());
+            //明細以批次寫入，語句數不隨明細筆數線性成長
+            long statements = statistics.getPrepareStatementCount();
+            assertTrue(statements < 10, "prepared statements per order: " + statements);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void checkoutLatencyByLineCount() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        //暖機
+        for (int i = 0; i < ROUNDS; i++) {
+            String no = "warmup" + i;
+            tx.executeWithoutResult(status -> createOrder(no, 10));
+        }
+
+        System.out.println("lines | avg ms | JDBC batches per order");
+        for (int lines : LINE_COUNTS) {
+            statistics.clear();
+            long begin = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                String no = "bench" + lines + "x" + i;
+                tx.executeWithoutResult(status -> createOrder(no, lines));
+            }
+            double avgMillis = (System.nanoTime() - begin) / 1e6 / ROUNDS;
+            double batches = (double) statistics.getPrepareStatementCount() / ROUNDS;
+            System.out.printf("%5d | %6.2f | %.1f%n", lines, avgMillis, batches);
+        }
+    }
+
+    //與 CheckoutService 寫入階段相同的呼叫(總訂單、批次明細)
+    private void createOrder(String merchantOrderNo, int lines) {
+        List<CheckoutSnapshot.Line> snapshotLines = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            snapshotLines.add(new CheckoutSnapshot.Line(i + 1, "benchmark", 100, 1));
+        }
+        orderService.createOrder(merchantOrderNo, 100 * lines, "benchmark", 1);
+        orderListService.createOrderLists(merchantOrderNo, 1, snapshotLines);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.FakeRedis;
+import com.example.demo.entity.SecureUser;
+import com.example.demo.repository.SecureUserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 使用者詳細資訊快取：命中時不查詢資料庫、回傳複本、密碼或角色異動後清除本機與其他節點的快取
+ * 兩個節點共用同一個 FakeRedis，Pub/Sub 廣播同步送達
+ */
+class CustomUserDetailsServiceTest {
+
+    private final FakeRedis redis = new FakeRedis();
+    private final SecureUserRepository repository = mock(SecureUserRepository.class);
+    private final CustomUserDetailsService node1 = node();
+    private final CustomUserDetailsService node2 = node();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void cacheHitDoesNotQueryTheDatabase() {
+        user("{bcrypt}old", SecureUser.UserRole.USER);
+
+        UserDetails first = node1.loadUserByUsername("alice");
+        UserDetails second = node1.loadUserByUsername("alice");
+
+        verify(repository, times(1)).findByUsername("alice");
+        assertNotSame(first, second);
+        //清除回傳複本的密碼不影響快取
+        ((CredentialsContainer) first).eraseCredentials();
+        assertNull(first.getPassword());
+        assertEquals("{bcrypt}old", node1.loadUserByUsername("alice").getPassword());
+    }
+
+    @Test
+    void passwordChangeEvictsEveryNode() {
+        user("{bcrypt}old", SecureUser.UserRole.USER);
+        node1.loadUserByUsername("alice");
+        node2.loadUserByUsername("alice");
+
+        SecureUser changed = user("{bcrypt}new", SecureUser.UserRole.USER);
+        listener(node1).onChange(changed);
+
+        assertEquals("{bcrypt}new", node1.loadUserByUsername("alice").getPassword());
+        assertEquals("{bcrypt}new", node2.loadUserByUsername("alice").getPassword());
+    }
+
+    @Test
+    void roleChangeIsEvictedOnlyAfterCommit() {
+        user("{bcrypt}pw", SecureUser.UserRole.USER);
+        node2.loadUserByUsername("alice");
+        TransactionSynchronizationManager.initSynchronization();
+
+        SecureUser promoted = user("{bcrypt}pw", SecureUser.UserRole.ADMIN);
+        listener(node1).onChange(promoted);
+
+        //提交前其他節點仍使用舊快照，不會提早讀到尚未提交的資料
+        assertEquals(Set.of("ROLE_USER"), roles(node2.loadUserByUsername("alice")));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(Set.of("ROLE_ADMIN"), roles(node2.loadUserByUsername("alice")));
+    }
+
+    @Test
+    void unknownUserIsNotCached() {
+        when(repository.findByUsername("bob")).thenReturn(Optional.empty());
+        assertThrows(UsernameNotFoundException.class, () -> node1.loadUserByUsername("bob"));
+
+        SecureUser registered = new SecureUser();
+        registered.setUsername("bob");
+        registered.setPasswordHash("{bcrypt}pw");
+        when(repository.findByUsername("bob")).thenReturn(Optional.of(registered));
+
+        assertEquals("bob", node1.loadUserByUsername("bob").getUsername());
+    }
+
+    private CustomUserDetailsService node() {
+        CustomUserDetailsService service = new CustomUserDetailsService(repository, redis.template, redis.container,
+                new SimpleMeterRegistry(), 100, Duration.ofMinutes(5), false);
+        service.listen();
+        return service;
+    }
+
+    private SecureUser user(String passwordHash, SecureUser.UserRole role) {
+        SecureUser user = new SecureUser();
+        user.setUsername("alice");
+        user.setPasswordHash(passwordHash);
+        user.setRole(role);
+        when(repository.findByUsername("alice")).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SecureUserChangeListener listener(CustomUserDetailsService service) {
+        ObjectProvider<CustomUserDetailsService> provider = mock(ObjectProvider.class);
+        doAnswer(inv -> {
+            inv.<Consumer<CustomUserDetailsService>>getArgument(0).accept(service);
+            return null;
+        }).when(provider).ifAvailable(any());
+        return new SecureUserChangeListener(provider);
+    }
+
+    private static Set<String> roles(UserDetails user) {
+        return AuthorityUtils.authorityListToSet(user.getAuthorities());
+    }
+}
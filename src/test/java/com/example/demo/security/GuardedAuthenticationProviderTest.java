@@ -0,0 +1,51 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 登入失敗次數以連線位址(remoteAddr)計算，不採用用戶端自行帶入的 X-Forwarded-For
+ */
+class GuardedAuthenticationProviderTest {
+
+    private final LoginAttemptGuard loginAttemptGuard = mock(LoginAttemptGuard.class);
+    private final LoginLockoutService loginLockoutService = mock(LoginLockoutService.class);
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void spoofedForwardedForIsIgnored() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setRemoteAddr("203.0.113.7");
+        request.addHeader("X-Forwarded-For", "198.51.100.1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        when(loginLockoutService.lockedFor("alice")).thenReturn(Duration.ZERO);
+        GuardedAuthenticationProvider provider = new GuardedAuthenticationProvider(
+                username -> User.withUsername(username).password("secret").roles("USER").build(),
+                NoOpPasswordEncoder.getInstance(), loginAttemptGuard, loginLockoutService);
+
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "wrong")));
+
+        verify(loginAttemptGuard).check("203.0.113.7");
+        verify(loginAttemptGuard).recordFailure("203.0.113.7");
+    }
+}
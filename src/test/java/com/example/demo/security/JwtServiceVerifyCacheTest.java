@@ -0,0 +1,88 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.example.demo.config.JwtProperties;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 已驗證 Token 快取：同一個 Token 只驗證一次簽章、過期的 Token 即使在快取中也不會回傳、快取項目依 TTL 失效
+ */
+class JwtServiceVerifyCacheTest {
+
+    private static final UserDetails ALICE = User.withUsername("alice@example.com").password("x").roles("USER").build();
+
+    private final JwtProperties jwtProperties = new JwtProperties();
+
+    @Test
+    void repeatedVerifyHitsTheCache() {
+        JwtService jwtService = jwtService(Duration.ofMinutes(10));
+        String token = jwtService.generateToken(Map.of("userId", 7), ALICE);
+
+        VerifiedToken first = jwtService.verify(token);
+
+        assertSame(first, jwtService.verify(token));
+        assertEquals("alice@example.com", first.subject());
+        assertEquals(7L, first.userId());
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        JwtService jwtService = jwtService(Duration.ofMinutes(10));
+        String token = jwtService.generateToken(ALICE);
+        String other = jwtService.generateToken(User.withUsername("mallory@example.com").password("x").roles("ADMIN").build());
+        jwtService.verify(token);
+        //換成另一個 Token 的內容但保留原簽章：摘要不同，不會命中快取
+        String[] parts = token.split("\\.");
+        String tampered = parts[0] + "." + other.split("\\.")[1] + "." + parts[2];
+
+        assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+    }
+
+    @Test
+    void expiredTokenIsNotServedFromTheCache() throws InterruptedException {
+        jwtProperties.setExpiration(1500L);
+        JwtService jwtService = jwtService(Duration.ofMinutes(10));
+        String token = jwtService.generateToken(ALICE);
+        VerifiedToken verified = jwtService.verify(token);
+
+        //JWT 的 exp 只到秒，等到確定過期
+        Thread.sleep(Math.max(0, verified.expiration().toEpochMilli() - Instant.now().toEpochMilli()) + 50);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtService.verify(token));
+        //快取項目已移除，之後由解析器判定過期
+        assertThrows(ExpiredJwtException.class, () -> jwtService.verify(token));
+    }
+
+    @Test
+    void cacheEntriesExpireAfterTtl() throws InterruptedException {
+        JwtService jwtService = jwtService(Duration.ofMillis(50));
+        String token = jwtService.generateToken(ALICE);
+        VerifiedToken first = jwtService.verify(token);
+
+        Thread.sleep(100);
+
+        VerifiedToken again = jwtService.verify(token);
+        assertNotSame(first, again);
+        assertEquals(first.jwtId(), again.jwtId());
+        assertEquals(first.expiration(), again.expiration());
+    }
+
+    private JwtService jwtService(Duration cacheTtl) {
+        return new JwtService(jwtProperties, new SimpleMeterRegistry(), 100, cacheTtl);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import com.example.demo.FakeRedis;
+import com.example.demo.repository.SecureUserRepository;
+
+/**
+ * 帳號登入失敗計數與鎖定：時間窗內失敗次數達上限時鎖定、lockedFor 回傳剩餘鎖定時間、
+ * 登入成功清除計數與鎖定、Redis 無法使用時不鎖定
+ * 計數的 Lua 腳本以 FakeRedis.onScript 的等效實作執行
+ */
+class LoginLockoutServiceTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(30);
+    private static final Duration LOCK = Duration.ofMinutes(15);
+
+    private final FakeRedis redis = new FakeRedis();
+    private final LoginLockoutService service = new LoginLockoutService(redis.template, mock(SecureUserRepository.class),
+            WINDOW, 3, LOCK);
+
+    @BeforeEach
+    void setUp() {
+        //KEYS[1]=失敗計數、KEYS[2]=鎖定；ARGV[1]=時間窗、ARGV[2]=上限、ARGV[3]=鎖定時間
+        redis.onScript("INCR", (keys, argv) -> {
+            long count = Long.parseLong(redis.values.merge(keys.get(0), "1", (a, b) -> Long.toString(Long.parseLong(a) + 1)));
+            if (count == 1) {
+                redis.ttlMillis.put(keys.get(0), Long.parseLong(argv.get(0)));
+            }
+            if (count >= Long.parseLong(argv.get(1))) {
+                redis.values.put(keys.get(1), Long.toString(count));
+                redis.ttlMillis.put(keys.get(1), Long.parseLong(argv.get(2)));
+            }
+            return count;
+        });
+    }
+
+    @Test
+    void accountIsLockedWhenFailuresReachTheLimit() {
+        assertEquals(1, service.recordFailure("alice@example.com"));
+        assertEquals(2, service.recordFailure("alice@example.com"));
+        assertEquals(Duration.ZERO, service.lockedFor("alice@example.com"));
+        assertFalse(service.reachesLock(2));
+
+        long failures = service.recordFailure("alice@example.com");
+
+        assertEquals(3, failures);
+        assertTrue(service.reachesLock(failures));
+        assertEquals(LOCK, service.lockedFor("alice@example.com"));
+        //第一次失敗時開始計算時間窗
+        assertEquals(WINDOW.toMillis(), redis.ttlMillis.get("auth:fail:alice@example.com"));
+    }
+
+    @Test
+    void usernamesAreCountedCaseInsensitively() {
+        service.recordFailure("Alice@Example.com");
+        service.recordFailure(" alice@example.com ");
+        service.recordFailure("ALICE@EXAMPLE.COM");
+
+        assertEquals(LOCK, service.lockedFor("alice@example.com"));
+    }
+
+    @Test
+    void successClearsFailuresAndLock() {
+        for (int i = 0; i < 3; i++) {
+            service.recordFailure("alice@example.com");
+        }
+
+        service.recordSuccess("alice@example.com");
+
+        assertEquals(Duration.ZERO, service.lockedFor("alice@example.com"));
+        assertEquals(1, service.recordFailure("alice@example.com"));
+    }
+
+    @Test
+    void lockWithoutTtlCountsAsTheFullLockDuration() {
+        redis.values.put("auth:lock:bob@example.com", "3");
+
+        assertEquals(LOCK, service.lockedFor("bob@example.com"));
+    }
+
+    @Test
+    void redisFailureNeverLocks() {
+        when(redis.template.getExpire(anyString(), any(TimeUnit.class)))
+                .thenThrow(new RedisConnectionFailureException("Redis unavailable"));
+        redis.onScript("INCR", (keys, argv) -> {
+            throw new RedisConnectionFailureException("Redis unavailable");
+        });
+
+        assertEquals(0, service.recordFailure("alice@example.com"));
+        assertEquals(Duration.ZERO, service.lockedFor("alice@example.com"));
+    }
+}
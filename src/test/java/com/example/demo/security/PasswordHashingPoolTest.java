@@ -0,0 +1,115 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 密碼雜湊執行緒池：執行緒與佇列都滿時立即拒絕、等待超過 max-wait 時逾時拒絕(HTTP 503)，
+ * 兩種拒絕都計入 password.hash.rejected
+ */
+class PasswordHashingPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    //讓佔住執行緒的雜湊工作結束
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHashingPool pool;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        pool.shutdown();
+    }
+
+    @Test
+    void resultIsReturnedFromTheHashingThread() {
+        pool = new PasswordHashingPool(meterRegistry, 1, 1, Duration.ofSeconds(5));
+
+        String thread = pool.execute(() -> Thread.currentThread().getName());
+
+        assertTrue(thread.startsWith("password-hash-"), thread);
+        assertEquals(1, meterRegistry.get("password.hash").timer().count());
+        assertEquals(0, rejected());
+    }
+
+    @Test
+    void fullPoolAndQueueAreRejectedImmediately() throws Exception {
+        pool = new PasswordHashingPool(meterRegistry, 1, 1, Duration.ofSeconds(5));
+        CountDownLatch running = new CountDownLatch(1);
+        //一個佔住唯一的執行緒、一個在佇列中等待
+        CompletableFuture<String> active = CompletableFuture.supplyAsync(() -> pool.execute(() -> {
+            running.countDown();
+            return block();
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> pool.execute(this::block));
+        awaitQueueDepth(1);
+
+        long begin = System.nanoTime();
+        LoginRejectedException rejected = assertThrows(LoginRejectedException.class, () -> pool.execute(() -> "hash"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatus());
+        assertTrue(rejected.getRetryAfterSeconds() > 0);
+        //不等待 max-wait
+        assertTrue(System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, rejected());
+
+        release.countDown();
+        assertEquals("done", active.get(5, TimeUnit.SECONDS));
+        assertEquals("done", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void waitLongerThanMaxWaitIsRejected() {
+        pool = new PasswordHashingPool(meterRegistry, 1, 1, Duration.ofMillis(100));
+
+        LoginRejectedException rejected = assertThrows(LoginRejectedException.class, () -> pool.execute(this::block));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatus());
+        assertEquals(1, rejected());
+    }
+
+    @Test
+    void taskFailureIsNotCountedAsRejection() {
+        pool = new PasswordHashingPool(meterRegistry, 1, 1, Duration.ofSeconds(5));
+
+        assertThrows(IllegalArgumentException.class, () -> pool.execute(() -> {
+            throw new IllegalArgumentException("bad hash");
+        }));
+
+        assertEquals(0, rejected());
+    }
+
+    //模擬耗時的雜湊運算(逾時取消時以中斷結束)
+    private String block() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("password.hash.queue.depth").gauge().value() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(depth, meterRegistry.get("password.hash.queue.depth").gauge().value());
+    }
+
+    private double rejected() {
+        return meterRegistry.counter("password.hash.rejected").count();
+    }
+}
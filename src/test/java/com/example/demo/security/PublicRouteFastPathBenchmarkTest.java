@@ -0,0 +1,189 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import com.example.demo.config.BasicSecurityConfig;
+import com.example.demo.config.JwtProperties;
+import com.example.demo.config.PublicRouteSecurityConfig;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 匿名瀏覽首頁、商品目錄、靜態資源的每請求安全處理成本：一般安全鏈 vs 公開路由輕量安全鏈
+ * 過濾器順序與實際部署相同：Servlet 層的 Session / JWT 認證過濾器 → springSecurityFilterChain → 控制器
+ * 計時的部分標記為 benchmark，只在 -Pbenchmark 時執行
+ */
+class PublicRouteFastPathBenchmarkTest {
+
+    private static final String[] PATHS = {"/", "/products/list/hot", "/products/image/3", "/css/site.css"};
+    private static final int WARMUP = 20_000;
+    private static final int ROUNDS = 100_000;
+
+    @Test
+    void anonymousCatalogSkipsTheFullChain() throws Exception {
+        try (AnnotationConfigWebApplicationContext before = start(false);
+             AnnotationConfigWebApplicationContext after = start(true)) {
+
+            for (String path : PATHS) {
+                AtomicReference<Authentication> seen = new AtomicReference<>();
+                MockHttpServletRequest request = dispatch(after, "GET", path, seen);
+                assertEquals(200, ((MockHttpServletResponse) request.getAttribute("response")).getStatus(), path);
+                //不建立 Session、不設定 SecurityContext（連匿名身分都沒有）
+                assertNull(request.getSession(false), path);
+                assertNull(seen.get(), path);
+                assertTrue(filterCount(after, path) < filterCount(before, path), path);
+
+                //原本的安全鏈會設定匿名身分
+                dispatch(before, "GET", path, seen);
+                assertNotNull(seen.get(), path);
+            }
+            //其他路由與寫入方法仍然走一般安全鏈
+            assertNotEquals(200, status(dispatch(after, "GET", "/api/orders", new AtomicReference<>())));
+            AtomicReference<Authentication> post = new AtomicReference<>();
+            dispatch(after, "POST", "/products/list/hot", post);
+            assertNotNull(post.get());
+            assertNotEquals(200, status(dispatch(after, "GET", "/static/../api/orders", new AtomicReference<>())));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void anonymousCatalogOverhead() throws Exception {
+        try (AnnotationConfigWebApplicationContext before = start(false);
+             AnnotationConfigWebApplicationContext after = start(true)) {
+            System.out.println("path                 | before ns/req | after ns/req | filters before -> after");
+            for (String path : PATHS) {
+                double beforeNanos = measure(before, path);
+                double afterNanos = measure(after, path);
+                System.out.printf("%-20s | %13.0f | %12.0f | %d -> %d%n", path, beforeNanos, afterNanos,
+                        filterCount(before, path), filterCount(after, path));
+            }
+        }
+    }
+
+    private static double measure(AnnotationConfigWebApplicationContext context, String path) throws Exception {
+        AtomicReference<Authentication> seen = new AtomicReference<>();
+        for (int i = 0; i < WARMUP; i++) {
+            dispatch(context, "GET", path, seen);
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            dispatch(context, "GET", path, seen);
+        }
+        return (double) (System.nanoTime() - begin) / ROUNDS;
+    }
+
+    private static MockHttpServletRequest dispatch(AnnotationConfigWebApplicationContext context, String method, String path,
+                                                   AtomicReference<Authentication> seen) throws Exception {
+        MockHttpServletRequest request = request(context, method, path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        request.setAttribute("response", response);
+        //控制器：記錄看到的認證資訊
+        HttpServlet controller = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                seen.set(SecurityContextHolder.getContext().getAuthentication());
+                resp.getWriter().write("[]");
+            }
+        };
+        new MockFilterChain(controller,
+                context.getBean(SessionAuthenticationFilter.class),
+                context.getBean(JwtAuthenticationFilter.class),
+                context.getBean("springSecurityFilterChain", FilterChainProxy.class))
+                .doFilter(request, response);
+        return request;
+    }
+
+    //DispatcherServlet 對應 "/"，servletPath 即為完整路徑
+    private static MockHttpServletRequest request(AnnotationConfigWebApplicationContext context, String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(context.getServletContext(), method, path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    private static int status(MockHttpServletRequest request) {
+        return ((MockHttpServletResponse) request.getAttribute("response")).getStatus();
+    }
+
+    private static int filterCount(AnnotationConfigWebApplicationContext context, String path) {
+        MockHttpServletRequest request = request(context, "GET", path);
+        return context.getBean("springSecurityFilterChain", FilterChainProxy.class).getFilterChains().stream()
+                .filter(chain -> chain.matches(request))
+                .findFirst()
+                .orElseThrow()
+                .getFilters()
+                .size();
+    }
+
+    private static AnnotationConfigWebApplicationContext start(boolean fastPath) {
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Map.of("security.public-routes", fastPath ? "/,/index,/product,/products/**,/static/**,/css/**,/js/**,/images/**,/favicon.ico" : "")));
+        context.register(TestBeans.class, PublicRouteMatcher.class, JwtService.class, JwtAuthenticationFilter.class,
+                SessionAuthenticationFilter.class, PasswordHashingPool.class, BasicSecurityConfig.class);
+        if (fastPath) {
+            context.register(PublicRouteSecurityConfig.class);
+        }
+        context.refresh();
+        return context;
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class TestBeans {
+
+        @Bean
+        static ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+
+        @Bean
+        JwtProperties jwtProperties() {
+            return new JwtProperties();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        UserDetailsService userDetailsService() {
+            return username -> {
+                throw new UsernameNotFoundException(username);
+            };
+        }
+    }
+}
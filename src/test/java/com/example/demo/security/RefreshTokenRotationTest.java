@@ -0,0 +1,150 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.example.demo.FakeRedis;
+import com.example.demo.config.JwtProperties;
+import com.example.demo.security.JwtRedisTokenService.RefreshRotation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Refresh Token 輪替與重放偵測
+ * 記憶體版 Redis 以 Java 模擬輪替腳本：摘要相同則換成新摘要，不同則刪除整個家族
+ */
+class RefreshTokenRotationTest {
+
+    private static final UserDetails ALICE = User.withUsername("alice@example.com").password("x").roles("USER").build();
+
+    private final FakeRedis redis = new FakeRedis();
+    private AnnotationConfigApplicationContext node;
+    private JwtService jwtService;
+    private JwtRedisTokenService tokens;
+
+    @BeforeEach
+    void setUp() {
+        redis.onScript("redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])", (keys, argv) -> {
+            String current = redis.values.get(keys.get(0));
+            if (current == null) {
+                return 0L;
+            }
+            if (!current.equals(argv.get(0))) {
+                redis.values.remove(keys.get(0));
+                return -1L;
+            }
+            redis.values.put(keys.get(0), argv.get(1));
+            redis.ttlMillis.put(keys.get(0), Long.parseLong(argv.get(2)));
+            return 1L;
+        });
+        node = new AnnotationConfigApplicationContext();
+        node.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        node.registerBean(JwtProperties.class);
+        node.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        node.registerBean(StringRedisTemplate.class, () -> redis.template);
+        node.registerBean(RedisMessageListenerContainer.class, () -> redis.container);
+        node.register(JwtService.class, TokenBlacklistNearCache.class, TokenRevocationEpochService.class,
+                JwtRedisTokenService.class);
+        node.refresh();
+        jwtService = node.getBean(JwtService.class);
+        tokens = node.getBean(JwtRedisTokenService.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        node.close();
+    }
+
+    @Test
+    void rotationReplacesTheCurrentToken() {
+        String family = JwtService.newRefreshFamily();
+        String first = issue(family);
+        String second = jwtService.generateRefreshToken(ALICE, family);
+
+        assertEquals(RefreshRotation.ROTATED, tokens.rotateRefreshToken(first, second));
+
+        assertEquals(ALICE.getUsername(), tokens.validateRefreshToken(second));
+        assertNull(tokens.validateRefreshToken(first));
+        //只保存固定長度的摘要，不保存 JWT 本身
+        assertEquals(22, redis.values.get("jwt:rfam:" + family).length());
+    }
+
+    @Test
+    void replayedTokenRevokesTheWholeFamily() {
+        String family = JwtService.newRefreshFamily();
+        String stolen = issue(family);
+        String legitimate = jwtService.generateRefreshToken(ALICE, family);
+        assertEquals(RefreshRotation.ROTATED, tokens.rotateRefreshToken(stolen, legitimate));
+
+        //已輪替掉的舊 Token 再次出現
+        assertEquals(RefreshRotation.REUSED,
+                tokens.rotateRefreshToken(stolen, jwtService.generateRefreshToken(ALICE, family)));
+
+        assertFalse(redis.values.containsKey("jwt:rfam:" + family));
+        assertNull(tokens.validateRefreshToken(legitimate));
+        assertEquals(RefreshRotation.INVALID,
+                tokens.rotateRefreshToken(legitimate, jwtService.generateRefreshToken(ALICE, family)));
+    }
+
+    @Test
+    void sameTokenRotatesOnlyOnce() {
+        String family = JwtService.newRefreshFamily();
+        String current = issue(family);
+
+        RefreshRotation first = tokens.rotateRefreshToken(current, jwtService.generateRefreshToken(ALICE, family));
+        RefreshRotation second = tokens.rotateRefreshToken(current, jwtService.generateRefreshToken(ALICE, family));
+
+        assertEquals(RefreshRotation.ROTATED, first);
+        assertEquals(RefreshRotation.REUSED, second);
+        assertTrue(redis.values.isEmpty());
+    }
+
+    @Test
+    void expiredOrLoggedOutFamilyIsInvalid() {
+        String family = JwtService.newRefreshFamily();
+        String current = issue(family);
+        tokens.removeRefreshToken(current);
+
+        assertEquals(RefreshRotation.INVALID,
+                tokens.rotateRefreshToken(current, jwtService.generateRefreshToken(ALICE, family)));
+    }
+
+    @Test
+    void revokedUserCannotRotate() {
+        String family = JwtService.newRefreshFamily();
+        String current = issue(family);
+        node.getBean(TokenRevocationEpochService.class).revokeAll(ALICE.getUsername());
+
+        assertEquals(RefreshRotation.INVALID,
+                tokens.rotateRefreshToken(current, jwtService.generateRefreshToken(ALICE, family)));
+        assertNull(tokens.validateRefreshToken(current));
+    }
+
+    @Test
+    void replacementFromAnotherFamilyIsRejected() {
+        String current = issue(JwtService.newRefreshFamily());
+        String foreign = jwtService.generateRefreshToken(ALICE, JwtService.newRefreshFamily());
+
+        assertThrows(IllegalArgumentException.class, () -> tokens.rotateRefreshToken(current, foreign));
+    }
+
+    private String issue(String family) {
+        String refreshToken = jwtService.generateRefreshToken(ALICE, family);
+        tokens.storeRefreshToken(refreshToken, ALICE.getUsername(), jwtService.verify(refreshToken).expirationMillis());
+        return refreshToken;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.core.userdetails.User;
+
+import com.example.demo.FakeRedis;
+import com.example.demo.config.JwtProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * JWT 黑名單與撤銷紀元跨節點傳播
+ * 兩個獨立的 Spring Context 模擬兩台節點，共用同一個記憶體版 Redis（含 Pub/Sub）
+ */
+class TokenBlacklistPropagationTest {
+
+    private final FakeRedis redis = new FakeRedis();
+    private AnnotationConfigApplicationContext nodeA;
+    private AnnotationConfigApplicationContext nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void blacklistOnOneNodeIsSeenByTheOther() {
+        String token = issueToken(nodeA, "alice@example.com");
+        assertFalse(tokens(nodeB).isTokenBlacklisted(token));
+
+        tokens(nodeA).blacklistToken(token);
+
+        assertTrue(tokens(nodeB).isTokenBlacklisted(token));
+        assertTrue(tokens(nodeA).isTokenBlacklisted(token));
+    }
+
+    @Test
+    void revokeAllIsSeenByTheOther() {
+        String first = issueToken(nodeA, "bob@example.com");
+        String second = issueToken(nodeB, "bob@example.com");
+        String other = issueToken(nodeA, "ben@example.com");
+        //節點 B 先快取「沒有撤銷紀元」
+        assertFalse(tokens(nodeB).isTokenBlacklisted(first));
+
+        tokens(nodeA).revokeAllUserTokens("bob@example.com");
+
+        assertTrue(tokens(nodeB).isTokenBlacklisted(first));
+        assertTrue(tokens(nodeB).isTokenBlacklisted(second));
+        assertFalse(tokens(nodeB).isTokenBlacklisted(other));
+        //只寫入一個紀元，不逐一寫入 JTI 黑名單
+        assertTrue(redis.values.keySet().stream().noneMatch(k -> k.startsWith(JwtRedisTokenService.TOKEN_BLACKLIST_PREFIX)));
+    }
+
+    @Test
+    void tokensIssuedAfterEpochStayValid() {
+        long earlier = Instant.now().minusSeconds(10).getEpochSecond();
+        redis.values.put(TokenRevocationEpochService.EPOCH_PREFIX + "grace@example.com", Long.toString(earlier));
+
+        assertFalse(tokens(nodeB).isTokenBlacklisted(issueToken(nodeA, "grace@example.com")));
+    }
+
+    @Test
+    void tokenIssuedInTheEpochSecondIsRevoked() {
+        String sameSecond = issueToken(nodeA, "heidi@example.com");
+        String nextSecond = issueToken(nodeA, "ivan@example.com");
+        long heidiIssued = nodeA.getBean(JwtService.class).verify(sameSecond).issuedAt().getEpochSecond();
+        long ivanIssued = nodeA.getBean(JwtService.class).verify(nextSecond).issuedAt().getEpochSecond();
+        redis.values.put(TokenRevocationEpochService.EPOCH_PREFIX + "heidi@example.com", Long.toString(heidiIssued));
+        redis.values.put(TokenRevocationEpochService.EPOCH_PREFIX + "ivan@example.com", Long.toString(ivanIssued - 1));
+
+        //iat 只到秒：與紀元同一秒簽發的 Token 視為撤銷前簽發
+        assertTrue(tokens(nodeB).isTokenBlacklisted(sameSecond));
+        assertFalse(tokens(nodeB).isTokenBlacklisted(nextSecond));
+    }
+
+    @Test
+    void validTokensDoNotReachRedis() {
+        tokens(nodeA).blacklistToken(issueToken(nodeA, "carol@example.com"));
+        redis.hasKeyCalls.set(0);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(tokens(nodeB).isTokenBlacklisted(issueToken(nodeB, "dave@example.com")));
+        }
+
+        //Bloom Filter 誤判率 0.1%，100 次幾乎不會回 Redis
+        assertTrue(redis.hasKeyCalls.get() <= 1, "Redis 查詢次數：" + redis.hasKeyCalls.get());
+    }
+
+    @Test
+    void lostBroadcastIsRecoveredByResync() {
+        String token = issueToken(nodeA, "erin@example.com");
+        String jti = nodeA.getBean(JwtService.class).getJwtId(token);
+        //直接寫入 Redis，不經過廣播（模擬 Pub/Sub 訊息遺失）
+        redis.values.put(JwtRedisTokenService.TOKEN_BLACKLIST_PREFIX + jti, "blacklisted");
+
+        nodeB.getBean(TokenBlacklistNearCache.class).resync();
+
+        assertTrue(tokens(nodeB).isTokenBlacklisted(token));
+    }
+
+    @Test
+    void fallsBackToRedisWhenNeverSynced() {
+        String token = issueToken(nodeA, "frank@example.com");
+        String jti = nodeA.getBean(JwtService.class).getJwtId(token);
+        redis.scanFails = true;
+        AnnotationConfigApplicationContext nodeC = startNode();
+        try {
+            redis.values.put(JwtRedisTokenService.TOKEN_BLACKLIST_PREFIX + jti, "blacklisted");
+            assertFalse(nodeC.getBean(TokenBlacklistNearCache.class).isFresh());
+            assertTrue(tokens(nodeC).isTokenBlacklisted(token));
+        } finally {
+            nodeC.close();
+        }
+    }
+
+    private AnnotationConfigApplicationContext startNode() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.registerBean(JwtProperties.class);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.registerBean(StringRedisTemplate.class, () -> redis.template);
+        context.registerBean(RedisMessageListenerContainer.class, () -> redis.container);
+        context.register(JwtService.class, TokenBlacklistNearCache.class, TokenRevocationEpochService.class,
+                JwtRedisTokenService.class);
+        context.refresh();
+        return context;
+    }
+
+    private static JwtRedisTokenService tokens(AnnotationConfigApplicationContext node) {
+        return node.getBean(JwtRedisTokenService.class);
+    }
+
+    private static String issueToken(AnnotationConfigApplicationContext node, String username) {
+        return node.getBean(JwtService.class).generateTokenWithJti(Map.of(),
+                User.withUsername(username).password("x").roles("USER").build(), UUID.randomUUID().toString());
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import com.example.demo.security.JwtRedisTokenService.ActiveToken;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 使用者活動記錄緩衝：min-interval 內不重複記錄、分批寫入、寫入失敗放回緩衝、超過上限丟棄
+ */
+class UserActivityRecorderTest {
+
+    private final JwtRedisTokenService jwtRedisTokenService = mock(JwtRedisTokenService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void sameTokenIsRecordedOncePerInterval() {
+        UserActivityRecorder recorder = recorder(100, 500);
+
+        recorder.record("alice", "jti-1", 1000L);
+        recorder.record("alice", "jti-1", 1000L);
+        recorder.flush();
+        recorder.record("alice", "jti-1", 1000L);
+        recorder.flush();
+
+        verify(jwtRedisTokenService, times(1)).storeUserTokens(List.of(new ActiveToken("alice", "jti-1", 1000L)));
+        assertEquals(1, count("buffered"));
+        assertEquals(2, count("skipped"));
+    }
+
+    @Test
+    void flushWritesInBatches() {
+        UserActivityRecorder recorder = recorder(100, 2);
+        for (int i = 0; i < 5; i++) {
+            recorder.record("user" + i, "jti-" + i, 1000L);
+        }
+
+        recorder.flush();
+
+        ArgumentCaptor<Collection<ActiveToken>> batches = batches();
+        verify(jwtRedisTokenService, times(3)).storeUserTokens(batches.capture());
+        assertEquals(List.of(2, 2, 1), batches.getAllValues().stream().map(Collection::size).toList());
+        assertEquals(Set.of("jti-0", "jti-1", "jti-2", "jti-3", "jti-4"),
+                batches.getAllValues().stream().flatMap(Collection::stream).map(ActiveToken::jti).collect(Collectors.toSet()));
+        assertEquals(0, pending());
+    }
+
+    @Test
+    void failedBatchIsRequeuedForTheNextFlush() {
+        UserActivityRecorder recorder = recorder(100, 500);
+        recorder.record("alice", "jti-1", 1000L);
+        recorder.record("bob", "jti-2", 1000L);
+        doThrow(new RedisConnectionFailureException("Redis unavailable"))
+                .doNothing()
+                .when(jwtRedisTokenService).storeUserTokens(anyCollection());
+
+        recorder.flush();
+        assertEquals(2, pending());
+
+        recorder.flush();
+        assertEquals(0, pending());
+        ArgumentCaptor<Collection<ActiveToken>> batches = batches();
+        verify(jwtRedisTokenService, times(2)).storeUserTokens(batches.capture());
+        assertEquals(2, batches.getAllValues().get(1).size());
+    }
+
+    @Test
+    void overflowIsDroppedAndCounted() {
+        UserActivityRecorder recorder = recorder(2, 500);
+
+        recorder.record("alice", "jti-1", 1000L);
+        recorder.record("bob", "jti-2", 1000L);
+        recorder.record("carol", "jti-3", 1000L);
+
+        assertEquals(1, count("dropped"));
+        assertEquals(2, pending());
+    }
+
+    @Test
+    void emptyBufferDoesNotReachRedis() {
+        recorder(100, 500).flush();
+
+        verify(jwtRedisTokenService, never()).storeUserTokens(anyCollection());
+    }
+
+    private UserActivityRecorder recorder(int maxPending, int flushBatchSize) {
+        return new UserActivityRecorder(jwtRedisTokenService, meterRegistry, Duration.ofMinutes(1), maxPending, flushBatchSize);
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("jwt.activity.records", "result", result).count();
+    }
+
+    private double pending() {
+        return meterRegistry.get("jwt.activity.pending").gauge().value();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Collection<ActiveToken>> batches() {
+        return ArgumentCaptor.forClass(Collection.class);
+    }
+}
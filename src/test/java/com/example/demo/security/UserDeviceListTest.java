@@ -0,0 +1,168 @@
+package com.example.demo.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.config.JwtProperties;
+import com.example.demo.security.JwtRedisTokenService.ActiveToken;
+
+/**
+ * 使用者裝置清單(Sorted Set，score 為過期時間)：寫入時移除已過期的 JTI 並只保留最晚過期的 max-per-user 個、
+ * 計數不含已過期的 JTI、定期清理掃描所有使用者
+ * 記憶體版 Sorted Set 依 Redis 的排名語意實作 ZREMRANGEBYRANK(負數索引由尾端起算)
+ */
+@SuppressWarnings("unchecked")
+class UserDeviceListTest {
+
+    private static final int MAX_DEVICES = 3;
+
+    private final Map<String, Map<String, Double>> zsets = new ConcurrentHashMap<>();
+    private final Map<String, Duration> ttls = new HashMap<>();
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+    private final JwtRedisTokenService tokens = new JwtRedisTokenService();
+    private List<Object> pipelineResults;
+
+    @BeforeEach
+    void setUp() {
+        RedisOperations<String, String> ops = mock(RedisOperations.class);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(ops.opsForZSet()).thenReturn(zSetOps);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+
+        when(zSetOps.add(anyString(), anyString(), anyDouble())).thenAnswer(inv -> reply(
+                zset(inv.getArgument(0)).put(inv.getArgument(1), inv.<Double>getArgument(2)) == null));
+        when(zSetOps.removeRangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(inv -> {
+            double min = inv.getArgument(1);
+            double max = inv.getArgument(2);
+            Map<String, Double> zset = zset(inv.getArgument(0));
+            long before = zset.size();
+            zset.values().removeIf(score -> score >= min && score <= max);
+            return reply(before - zset.size());
+        });
+        when(zSetOps.removeRange(anyString(), anyLong(), anyLong())).thenAnswer(inv -> {
+            Map<String, Double> zset = zset(inv.getArgument(0));
+            List<String> ranked = zset.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            int size = ranked.size();
+            long start = index(inv.getArgument(1), size);
+            long end = Math.min(index(inv.getArgument(2), size), size - 1);
+            for (long i = Math.max(0, start); i <= end; i++) {
+                zset.remove(ranked.get((int) i));
+            }
+            return reply(Math.max(0, end - Math.max(0, start) + 1));
+        });
+        when(zSetOps.zCard(anyString())).thenAnswer(inv -> reply((long) zset(inv.getArgument(0)).size()));
+        when(ops.expire(anyString(), any(Duration.class))).thenAnswer(inv -> {
+            ttls.put(inv.getArgument(0), inv.getArgument(1));
+            return reply(true);
+        });
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(inv -> {
+            pipelineResults = new ArrayList<>();
+            inv.<SessionCallback<Object>>getArgument(0).execute(ops);
+            List<Object> results = pipelineResults;
+            pipelineResults = null;
+            return results;
+        });
+        when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(inv -> {
+            Iterator<String> keys = List.copyOf(zsets.keySet()).iterator();
+            Cursor<String> cursor = mock(Cursor.class);
+            when(cursor.hasNext()).thenAnswer(i -> keys.hasNext());
+            when(cursor.next()).thenAnswer(i -> keys.next());
+            return cursor;
+        });
+
+        ReflectionTestUtils.setField(tokens, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(tokens, "jwtProperties", new JwtProperties());
+        ReflectionTestUtils.setField(tokens, "maxDevicesPerUser", MAX_DEVICES);
+        ReflectionTestUtils.setField(tokens, "cleanupBatchSize", 2);
+    }
+
+    @Test
+    void onlyTheLatestExpiringTokensAreKept() {
+        long now = System.currentTimeMillis();
+        List<ActiveToken> logins = IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> new ActiveToken("alice", "jti-" + i, now + Duration.ofMinutes(i).toMillis()))
+                .toList();
+
+        tokens.storeUserTokens(logins);
+
+        assertEquals(Set.of("jti-3", "jti-4", "jti-5"), zset("jwt:devices:alice").keySet());
+        assertEquals(Duration.ofMillis(new JwtProperties().getExpiration()), ttls.get("jwt:devices:alice"));
+    }
+
+    @Test
+    void expiredTokensAreDroppedOnWrite() {
+        long now = System.currentTimeMillis();
+        zset("jwt:devices:bob").put("old", (double) (now - 1000));
+
+        tokens.storeUserToken("bob", "new", now + 60_000);
+
+        assertEquals(Set.of("new"), zset("jwt:devices:bob").keySet());
+    }
+
+    @Test
+    void activeCountExcludesExpiredTokens() {
+        long now = System.currentTimeMillis();
+        zset("jwt:devices:carol").putAll(Map.of("a", (double) (now - 1000), "b", (double) (now + 60_000), "c", (double) (now + 120_000)));
+
+        assertEquals(2L, tokens.getUserActiveTokenCount("carol"));
+        assertFalse(zset("jwt:devices:carol").containsKey("a"));
+    }
+
+    @Test
+    void cleanupRemovesExpiredTokensForEveryUser() {
+        long now = System.currentTimeMillis();
+        for (String user : List.of("u1", "u2", "u3")) {
+            zset("jwt:devices:" + user).putAll(Map.of("expired", (double) (now - 1000), "valid", (double) (now + 60_000)));
+        }
+
+        tokens.cleanupExpiredTokens();
+
+        zsets.values().forEach(zset -> assertEquals(Set.of("valid"), zset.keySet()));
+    }
+
+    private Map<String, Double> zset(String key) {
+        return zsets.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+
+    //pipeline 中的指令回傳 null，結果由 executePipelined 依序回傳
+    private Object reply(Object result) {
+        if (pipelineResults == null) {
+            return result;
+        }
+        pipelineResults.add(result);
+        return null;
+    }
+
+    private static long index(long index, int size) {
+        return index < 0 ? size + index : index;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.dao.UserDao;
+import com.example.demo.entity.CartVO;
+import com.example.demo.entity.Product;
+import com.example.demo.entity.User;
+import com.example.demo.event.OrderCreatedEvent;
+import com.example.demo.event.StockAdjustedEvent;
+import com.example.demo.util.MerchantOrderNoGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 結帳：總訂單、明細、預留庫存與外寄箱事件在同一個交易內完成，
+ * 任一商品預留失敗整筆回滾，驗證失敗不會開始交易
+ */
+class CheckoutServiceTest {
+
+    private final CartService cartService = mock(CartService.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final OrderListService orderListService = mock(OrderListService.class);
+    private final ProductService productService = mock(ProductService.class);
+    private final PayService payService = mock(PayService.class);
+    private final UserDao userDao = mock(UserDao.class);
+    private final MerchantOrderNoGenerator merchantOrderNoGenerator = mock(MerchantOrderNoGenerator.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CheckoutService service = new CheckoutService(cartService, orderService, orderListService,
+            productService, payService, userDao, mock(AnomalyDetectionService.class), merchantOrderNoGenerator,
+            transactionManager, eventPublisher, outboxService, meterRegistry);
+
+    //預留庫存時是否在交易內
+    private final List<Boolean> reservedInTransaction = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "loadTimeout", Duration.ofSeconds(3));
+        ReflectionTestUtils.setField(service, "anomalyCheckEnabled", false);
+        User user = new User();
+        user.setIsDelete(0);
+        when(userDao.ReadByUid(7)).thenReturn(List.of(user));
+        when(merchantOrderNoGenerator.nextId()).thenReturn("M1");
+        //同一商品兩筆明細
+        when(cartService.GetByUid(7)).thenReturn(List.of(cart(10, 2), cart(11, 1), cart(10, 1)));
+        when(productService.GetStatesByCartUid(7)).thenReturn(Map.of(10, product(100, 5), 11, product(50, 5)));
+        when(productService.ReserveNums(anyMap())).thenAnswer(inv -> {
+            reservedInTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return List.of();
+        });
+    }
+
+    @Test
+    void orderLinesStockAndOutboxAreWrittenInOneTransaction() {
+        service.checkout(7, "alice", "127.0.0.1", 350);
+
+        InOrder order = inOrder(orderService, orderListService, productService, outboxService, payService);
+        order.verify(orderService).createOrder(eq("M1"), eq(350), anyString(), eq(7));
+        order.verify(orderListService).createOrderLists(eq("M1"), eq(7), any());
+        //同一商品合併為一次條件式扣除
+        order.verify(productService).ReserveNums(Map.of(10, 3, 11, 1));
+        ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+        order.verify(outboxService).append(eq(OutboxService.AGGREGATE_ORDER), eq("M1"), eq(OutboxService.ORDER_CREATED), any());
+        order.verify(outboxService).append(eq(OutboxService.AGGREGATE_ORDER), eq("M1"), eq(OutboxService.STOCK_ADJUSTED), payloads.capture());
+        order.verify(payService).buildPayResponse(eq("M1"), eq(350), anyString());
+
+        assertEquals(Map.of(10, -3, 11, -1), ((StockAdjustedEvent) payloads.getValue()).deltas());
+        verify(eventPublisher).publishEvent(new OrderCreatedEvent("M1", 7));
+        assertEquals(List.of(true), reservedInTransaction);
+        assertEquals(1, transactionManager.begins);
+        assertEquals(1, transactionManager.commits);
+        assertEquals(0, transactionManager.rollbacks);
+    }
+
+    @Test
+    void insufficientStockRollsBackTheWholeOrder() {
+        when(productService.ReserveNums(anyMap())).thenReturn(List.of(11));
+
+        assertThrows(IllegalArgumentException.class, () -> service.checkout(7, "alice", "127.0.0.1", 350));
+
+        assertEquals(1, transactionManager.rollbacks);
+        assertEquals(0, transactionManager.commits);
+        verify(outboxService, never()).append(anyString(), anyString(), anyString(), any());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(payService, never()).buildPayResponse(anyString(), anyInt(), anyString());
+        assertEquals(1, rejected("insufficient_stock"));
+    }
+
+    @Test
+    void amountMismatchIsRejectedBeforeAnyWrite() {
+        assertThrows(IllegalArgumentException.class, () -> service.checkout(7, "alice", "127.0.0.1", 1));
+
+        assertEquals(0, transactionManager.begins);
+        verify(productService, never()).ReserveNums(anyMap());
+        assertEquals(1, rejected("amount_mismatch"));
+    }
+
+    @Test
+    void unavailableProductIsRejected() {
+        Product offShelf = product(50, 5);
+        offShelf.setStatus(0);
+        when(productService.GetStatesByCartUid(7)).thenReturn(Map.of(10, product(100, 5), 11, offShelf));
+
+        assertThrows(IllegalArgumentException.class, () -> service.checkout(7, "alice", "127.0.0.1", 350));
+
+        assertEquals(0, transactionManager.begins);
+        assertEquals(1, rejected("product_unavailable"));
+    }
+
+    @Test
+    void emptyCartIsRejected() {
+        when(cartService.GetByUid(7)).thenReturn(List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> service.checkout(7, "alice", "127.0.0.1", 0));
+
+        assertEquals(0, transactionManager.begins);
+        assertTrue(rejected("empty_cart") > 0);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.counter("checkout.rejected", "reason", reason).count();
+    }
+
+    private static CartVO cart(int pid, int num) {
+        CartVO item = new CartVO();
+        item.setUid(7);
+        item.setPid(pid);
+        item.setNum(num);
+        item.setTitle("商品" + pid);
+        return item;
+    }
+
+    private static Product product(int price, int num) {
+        Product product = new Product();
+        product.setPrice(price);
+        product.setNum(num);
+        product.setStatus(1);
+        return product;
+    }
+
+    /**
+     * 記錄開始、提交與回滾次數的交易管理器(交易同步狀態由 AbstractPlatformTransactionManager 設定)
+     */
+    private static final class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private int begins;
+        private int commits;
+        private int rollbacks;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            begins++;
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks++;
+        }
+    }
+}
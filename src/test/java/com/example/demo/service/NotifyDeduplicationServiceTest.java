@@ -0,0 +1,66 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 付款通知去重：以完整通知內容判斷重複，同一訂單的不同通知(例如付款失敗後再付款成功)都會處理
+ */
+class NotifyDeduplicationServiceTest {
+
+    private static final String FAILED = "{\"Status\":\"SUCCESS\",\"Result\":{\"MerchantOrderNo\":\"M1\",\"TradeNo\":\"T1\",\"PayTime\":\"\"},\"Message\":\"授權失敗\"}";
+    private static final String PAID = "{\"Status\":\"SUCCESS\",\"Result\":{\"MerchantOrderNo\":\"M1\",\"TradeNo\":\"T1\",\"PayTime\":\"2025-01-01 10:00:00\"},\"Message\":\"授權成功\"}";
+
+    //兩個節點共用的 Redis(SET NX)
+    private final Set<String> redisKeys = new HashSet<>();
+
+    @Test
+    void sameEnvelopeStatusWithDifferentPayloadIsNotADuplicate() {
+        NotifyDeduplicationService service = service();
+
+        assertNotNull(service.acquire("M1", FAILED));
+        //外層 Status 同為 SUCCESS，但通知內容不同
+        assertNotNull(service.acquire("M1", PAID));
+        assertNull(service.acquire("M1", PAID));
+    }
+
+    @Test
+    void redeliveryToAnotherNodeIsDropped() {
+        assertNotNull(service().acquire("M1", PAID));
+        assertNull(service().acquire("M1", PAID));
+    }
+
+    @Test
+    void releasedKeyCanBeProcessedAgain() {
+        NotifyDeduplicationService service = service();
+        String key = service.acquire("M1", PAID);
+        service.release(key);
+        assertNotNull(service.acquire("M1", PAID));
+    }
+
+    @SuppressWarnings("unchecked")
+    private NotifyDeduplicationService service() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), eq("1"), any(Duration.class)))
+                .thenAnswer(invocation -> redisKeys.add(invocation.getArgument(0)));
+        when(redis.delete(anyString())).thenAnswer(invocation -> redisKeys.remove(invocation.<String>getArgument(0)));
+        return new NotifyDeduplicationService(redis, new SimpleMeterRegistry(), Duration.ofDays(1), 100);
+    }
+}
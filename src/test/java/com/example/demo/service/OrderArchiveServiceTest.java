@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.entity.Order;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 歸檔掃描依 (建立時間, 主鍵) 分頁：主鍵與建立時間不同向(序列分段配發)時，仍會掃完所有早於截止時間的訂單
+ */
+class OrderArchiveServiceTest {
+
+    private final OrderArchiveDao orderArchiveDao = mock(OrderArchiveDao.class);
+
+    @Test
+    void pagesOnCreatedTimeAndId() {
+        LocalDateTime base = LocalDateTime.now().minusDays(200);
+        //節點 A 取得 id 1~50、節點 B 取得 51~100：較新的訂單可能有較小的 id
+        Order first = order(51, base, "1");
+        Order second = order(2, base.plusMinutes(1), "0");
+        Order third = order(3, base.plusMinutes(1), "6");
+        Order fourth = order(52, base.plusMinutes(2), "2");
+        when(orderArchiveDao.ScanOrders(any(), isNull(), anyInt(), eq(2))).thenReturn(List.of(first, second));
+        when(orderArchiveDao.ScanOrders(any(), eq(second.getCreatedTime()), eq(2), eq(2))).thenReturn(List.of(third, fourth));
+        when(orderArchiveDao.ScanOrders(any(), eq(fourth.getCreatedTime()), eq(52), eq(2))).thenReturn(List.of());
+        when(orderArchiveDao.ArchiveOrders(any(), any())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        assertEquals(3, service().archiveOnce());
+
+        verify(orderArchiveDao).ArchiveOrders(eq(List.of(51)), any());
+        verify(orderArchiveDao).ArchiveOrders(eq(List.of(3, 52)), any());
+        verify(orderArchiveDao).ScanOrders(any(), eq(fourth.getCreatedTime()), eq(52), eq(2));
+    }
+
+    @Test
+    void shortPageEndsTheRun() {
+        when(orderArchiveDao.ScanOrders(any(), isNull(), anyInt(), eq(2)))
+                .thenReturn(List.of(order(7, LocalDateTime.now().minusDays(200), "3")));
+        when(orderArchiveDao.ArchiveOrders(any(), any())).thenReturn(1);
+
+        assertEquals(1, service().archiveOnce());
+
+        verify(orderArchiveDao).ScanOrders(any(), isNull(), anyInt(), eq(2));
+        verify(orderArchiveDao, never()).ScanOrders(any(), any(LocalDateTime.class), anyInt(), anyInt());
+    }
+
+    private OrderArchiveService service() {
+        OrderArchiveService service = new OrderArchiveService(orderArchiveDao, new NoopTransactionManager(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "minAge", Duration.ofDays(90));
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "batchPause", Duration.ZERO);
+        ReflectionTestUtils.setField(service, "maxDuration", Duration.ofMinutes(1));
+        return service;
+    }
+
+    private static Order order(int id, LocalDateTime createdTime, String tradeStatus) {
+        Order order = new Order();
+        order.setOid(id);
+        order.setMerchantorderno("M" + id);
+        order.setTradestatus(tradeStatus);
+        order.setCreatedTime(createdTime);
+        return order;
+    }
+
+    //不連資料庫的交易管理器
+    private static final class NoopTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
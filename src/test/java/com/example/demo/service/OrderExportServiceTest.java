@@ -0,0 +1,193 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+
+import com.example.demo.dao.OrderArchiveDao;
+import com.example.demo.dao.OrderExportDao;
+import com.example.demo.interceptor.AsyncTimeoutInterceptor;
+
+/**
+ * 訂單匯出：輸出格式、熱資料表 + 歸檔資料表共用同一個快照、下載的非同步逾時
+ */
+class OrderExportServiceTest {
+
+    private static final String[] COLUMNS = {"order_id", "merchant_order_no", "total_amt", "item_description", "created_time"};
+
+    private final OrderArchiveDao orderArchiveDao = mock(OrderArchiveDao.class);
+    private final RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+    private final FakeExportDao exportDao = new FakeExportDao();
+    private final OrderExportService service = new OrderExportService(exportDao, orderArchiveDao, transactionManager);
+
+    @Test
+    void hotAndArchivePassesShareOneRepeatableReadSnapshot() throws IOException {
+        when(orderArchiveDao.IsReady()).thenReturn(true);
+        exportDao.hot.add(new Object[] {1L, "A001", 100, "Pen", Timestamp.valueOf(LocalDateTime.of(2025, 1, 2, 3, 4, 5))});
+        exportDao.archived.add(new Object[] {2L, "A000", 50, "Ink", null});
+
+        long rows = service.export(request(OrderExportRequest.Format.CSV, true, false), new ByteArrayOutputStream());
+
+        assertEquals(2, rows);
+        //兩段查詢都在同一個交易內執行(MySQL 在第一次讀取時建立快照，之後的查詢看到同一份資料)
+        assertEquals(1, transactionManager.begins);
+        assertEquals(List.of("hot:true:true:" + TransactionDefinition.ISOLATION_REPEATABLE_READ,
+                "archived:true:true:" + TransactionDefinition.ISOLATION_REPEATABLE_READ), exportDao.passes);
+    }
+
+    @Test
+    void archivePassSkippedWhenArchiveTablesAreNotReady() throws IOException {
+        when(orderArchiveDao.IsReady()).thenReturn(false);
+        exportDao.hot.add(new Object[] {1L, "A001", 100, "Pen", null});
+
+        assertEquals(1, service.export(request(OrderExportRequest.Format.CSV, true, false), new ByteArrayOutputStream()));
+        assertEquals(1, exportDao.passes.size());
+    }
+
+    @Test
+    void csvEscapesSeparatorsAndFormulas() throws IOException {
+        exportDao.hot.add(new Object[] {1L, "A001", 100, "Pen, \"blue\"", Timestamp.valueOf(LocalDateTime.of(2025, 1, 2, 3, 4, 5))});
+        exportDao.hot.add(new Object[] {2L, "A002", 20, "=SUM(A1)", null});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.export(request(OrderExportRequest.Format.CSV, false, false), out);
+
+        assertEquals("order_id,merchant_order_no,total_amt,item_description,created_time\r\n"
+                + "1,A001,100,\"Pen, \"\"blue\"\"\",2025-01-02T03:04:05\r\n"
+                + "2,A002,20,'=SUM(A1),\r\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void ndjsonWithGzip() throws IOException {
+        exportDao.hot.add(new Object[] {1L, "A001", 100, "Pen", null});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.export(request(OrderExportRequest.Format.NDJSON, false, true), out);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("{\"order_id\":1,\"merchant_order_no\":\"A001\",\"total_amt\":100,\"item_description\":\"Pen\",\"created_time\":null}\n",
+                    new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void downloadUsesItsOwnAsyncTimeout() {
+        AsyncTimeoutInterceptor interceptor = new AsyncTimeoutInterceptor();
+        AsyncWebRequest request = mock(AsyncWebRequest.class);
+        when(request.getAttribute(AsyncTimeoutInterceptor.TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST))
+                .thenReturn(Duration.ofHours(1));
+        interceptor.beforeConcurrentHandling(request, () -> null);
+        verify(request).setTimeout(3_600_000L);
+
+        //0 表示不逾時
+        AsyncWebRequest unlimited = mock(AsyncWebRequest.class);
+        when(unlimited.getAttribute(AsyncTimeoutInterceptor.TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST))
+                .thenReturn(Duration.ZERO);
+        interceptor.beforeConcurrentHandling(unlimited, () -> null);
+        verify(unlimited).setTimeout(-1L);
+
+        //沒有設定時維持全域預設
+        AsyncWebRequest other = mock(AsyncWebRequest.class);
+        interceptor.beforeConcurrentHandling(other, () -> null);
+        verify(other, never()).setTimeout(any());
+    }
+
+    private static OrderExportRequest request(OrderExportRequest.Format format, boolean archived, boolean gzip) {
+        return new OrderExportRequest(format, OrderExportRequest.Content.ORDERS, null, null, null, archived, gzip);
+    }
+
+    /**
+     * 以記憶體中的資料列模擬串流查詢，並記錄每段查詢當下的交易狀態
+     */
+    private static final class FakeExportDao implements OrderExportDao {
+
+        private final List<Object[]> hot = new ArrayList<>();
+        private final List<Object[]> archived = new ArrayList<>();
+        private final List<String> passes = new ArrayList<>();
+
+        @Override
+        public void StreamOrders(LocalDateTime from, LocalDateTime to, String tradeStatus, boolean archive,
+                                 RowCallbackHandler handler) {
+            passes.add((archive ? "archived" : "hot") + ":" + TransactionSynchronizationManager.isActualTransactionActive()
+                    + ":" + TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                    + ":" + TransactionSynchronizationManager.getCurrentTransactionIsolationLevel());
+            try {
+                for (Object[] row : archive ? archived : hot) {
+                    handler.processRow(resultSet(row));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void StreamOrderLines(LocalDateTime from, LocalDateTime to, String tradeStatus, boolean archive,
+                                     RowCallbackHandler handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        private static ResultSet resultSet(Object[] row) throws SQLException {
+            ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+            when(metaData.getColumnCount()).thenReturn(COLUMNS.length);
+            ResultSet resultSet = mock(ResultSet.class);
+            when(resultSet.getMetaData()).thenReturn(metaData);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                when(metaData.getColumnLabel(i + 1)).thenReturn(COLUMNS[i]);
+                when(resultSet.getObject(i + 1)).thenReturn(row[i]);
+            }
+            return resultSet;
+        }
+    }
+
+    /**
+     * 只記錄開始次數的交易管理器(交易同步狀態由 AbstractPlatformTransactionManager 設定)
+     */
+    private static final class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private int begins;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            begins++;
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
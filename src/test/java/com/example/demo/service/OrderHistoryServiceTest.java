@@ -0,0 +1,109 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import com.example.demo.entity.OrderView;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderSummary;
+import com.example.demo.repository.OrderViewRepository;
+
+/**
+ * 訂單歷史：(created_time, merchant_order_no) 游標編碼與解碼、多取一筆判斷下一頁、讀取模型為空時同步重建
+ */
+class OrderHistoryServiceTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2026, 3, 1, 12, 30, 15, 123_000_000);
+
+    private final OrderViewRepository orderViewRepository = mock(OrderViewRepository.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderViewProjector orderViewProjector = mock(OrderViewProjector.class);
+    private final OrderHistoryService service = new OrderHistoryService(orderViewRepository, orderRepository, orderViewProjector);
+
+    @Test
+    void cursorRoundTrips() {
+        OrderHistoryService.Cursor cursor = new OrderHistoryService.Cursor(T, "M|20260301");
+
+        String encoded = cursor.encode();
+
+        //Base64URL 不含需要跳脫的字元，可直接放在查詢參數
+        assertEquals(encoded, encoded.replaceAll("[^A-Za-z0-9_-]", ""));
+        assertEquals(cursor, OrderHistoryService.Cursor.decode(encoded));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> OrderHistoryService.Cursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> OrderHistoryService.Cursor.decode("bm8tc2VwYXJhdG9y"));
+    }
+
+    @Test
+    void extraRowMeansAnotherPage() {
+        when(orderViewRepository.findHistory(eq(7), any())).thenReturn(List.of(view("M3", T), view("M2", T), view("M1", T)));
+
+        OrderHistoryPage page = service.getHistory(7, null, 2);
+
+        assertEquals(List.of("M3", "M2"), page.orders().stream().map(OrderHistoryPage.Entry::merchantOrderNo).toList());
+        assertEquals(new OrderHistoryService.Cursor(T, "M2"), OrderHistoryService.Cursor.decode(page.nextCursor()));
+        ArgumentCaptor<Pageable> limit = ArgumentCaptor.forClass(Pageable.class);
+        verify(orderViewRepository).findHistory(eq(7), limit.capture());
+        assertEquals(3, limit.getValue().getPageSize());
+    }
+
+    @Test
+    void nextPageStartsAfterTheCursor() {
+        String cursor = new OrderHistoryService.Cursor(T, "M2").encode();
+        when(orderViewRepository.findHistoryAfter(eq(7), eq(T), eq("M2"), any())).thenReturn(List.of(view("M1", T)));
+
+        OrderHistoryPage page = service.getHistory(7, cursor, 2);
+
+        assertEquals(1, page.orders().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void pageSizeIsClamped() {
+        when(orderViewRepository.findByStatus(eq("1"), any())).thenReturn(List.of());
+
+        service.getByStatus("1", null, 10_000);
+
+        verify(orderViewRepository).findByStatus("1", PageRequest.of(0, OrderHistoryService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void emptyReadModelIsRebuiltFromOrders() {
+        OrderView rebuilt = view("M1", T);
+        when(orderViewRepository.findHistory(eq(7), any())).thenReturn(List.of()).thenReturn(List.of(rebuilt));
+        when(orderRepository.findHistory(eq(7), any()))
+                .thenReturn(List.of(new OrderSummary(1, "M1", 100, "1", null, null, T)));
+        when(orderViewProjector.rebuild("M1")).thenReturn(Optional.of(rebuilt));
+
+        OrderHistoryPage page = service.getHistory(7, null, 20);
+
+        verify(orderViewProjector).rebuild("M1");
+        assertEquals("M1", page.orders().get(0).merchantOrderNo());
+    }
+
+    private static OrderView view(String merchantOrderNo, LocalDateTime createdTime) {
+        OrderView view = new OrderView();
+        view.setMerchantOrderNo(merchantOrderNo);
+        view.setUid(7);
+        view.setCreatedTime(createdTime);
+        return view;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.example.demo.dao.OrderArchiveDao;
+
+/**
+ * 訂單明細報表：Created_time 為 NULL 的明細不中斷匯出、結果標示各月份匯出時間與收錄狀態、每天重新匯出最近幾個月
+ */
+class OrderLineReportServiceTest {
+
+    private final OrderArchiveDao orderArchiveDao = mock(OrderArchiveDao.class);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exportToleratesNullCreatedTimeAndReportsSnapshot() throws Exception {
+        ResultSet withoutTimes = line(null, null);
+        ResultSet paid = line("2025-01-10 12:00:00", Timestamp.valueOf(LocalDateTime.of(2025, 1, 10, 11, 0)));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(3);
+            handler.processRow(withoutTimes);
+            handler.processRow(paid);
+            return null;
+        }).when(orderArchiveDao).StreamOrderLines(any(), any(), any(), any());
+        OrderLineReportService service = new OrderLineReportService(orderArchiveDao, dir.toString(), "Asia/Taipei", 3);
+
+        assertEquals(2, service.export(YearMonth.of(2025, 1)).rows());
+
+        OrderLineReport report = service.productTotals(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1), List.of("1"));
+        assertEquals(List.of(new OrderLineReport.Row("5", 2, 4, 200)), report.rows());
+        assertNotNull(report.snapshotTimes().get("2025-01"));
+        assertEquals(List.of("1", "2", "3", "6"), report.snapshotStatuses());
+    }
+
+    @Test
+    void scheduledExportRefreshesTrailingMonths() {
+        OrderLineReportService service = new OrderLineReportService(orderArchiveDao, dir.toString(), "Asia/Taipei", 3);
+
+        service.scheduledExport();
+
+        YearMonth current = YearMonth.now(ZoneId.of("Asia/Taipei"));
+        for (int i = 1; i <= 3; i++) {
+            YearMonth month = current.minusMonths(i);
+            verify(orderArchiveDao).StreamOrderLines(eq(month.atDay(1).atStartOfDay()),
+                    eq(month.plusMonths(1).atDay(1).atStartOfDay()), eq(OrderArchiveService.TERMINAL_STATUSES), any());
+        }
+    }
+
+    private static ResultSet line(String payTime, Timestamp createdTime) throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getInt("Pid")).thenReturn(5);
+        when(resultSet.getInt("Num")).thenReturn(2);
+        when(resultSet.getInt("Amt")).thenReturn(50);
+        when(resultSet.getString("Tradestatus")).thenReturn("1");
+        when(resultSet.getString("Paymenttype")).thenReturn("CREDIT");
+        when(resultSet.getString("Paytime")).thenReturn(payTime);
+        when(resultSet.getTimestamp("Created_time")).thenReturn(createdTime);
+        return resultSet;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.event.StockAdjustedEvent;
+import com.example.demo.newwebpay.bean.PaymentResponse;
+import com.example.demo.repository.OrderListRepository;
+
+/**
+ * 付款結果的庫存異動：0/1 持有庫存、2/3/6 釋放庫存，只有狀態跨越兩者時才調整，同一商品先彙總
+ * 沒有預留標記的舊訂單不調整庫存
+ */
+class OrderListServiceTest {
+
+    private final OrderListRepository orderListRepository = mock(OrderListRepository.class);
+    private final ProductService productService = mock(ProductService.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final OrderListService service = new OrderListService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "orderListRepository", orderListRepository);
+        ReflectionTestUtils.setField(service, "productService", productService);
+        ReflectionTestUtils.setField(service, "outboxService", outboxService);
+        when(orderListRepository.updateTradeResult(eq("M1"), anyString(), any(), any(), any())).thenReturn(3);
+        when(orderListRepository.sumNumByPid("M1")).thenReturn(List.of(quantity(10, 3L), quantity(20, 1L)));
+    }
+
+    @ParameterizedTest(name = "{0} -> {1}")
+    @CsvSource({
+        "0, 2, 1",   //付款失敗：補回
+        "0, 3, 1",   //取消(含逾期未付款)：補回
+        "1, 6, 1",   //退款：補回
+        "2, 1, -1",  //失敗後重新付款成功：再次扣除
+        "3, 0, -1",
+        "0, 1, 0",   //付款成功：結帳時已預留
+        "1, 1, 0",   //重複通知
+        "2, 3, 0",
+        "6, 2, 0",
+    })
+    void stockDeltaFollowsHoldingTransition(String previous, String next, int sign) {
+        service.updateOrderListFromNotify(previous, true, result("M1", next));
+
+        if (sign == 0) {
+            verify(productService, never()).AdjustNums(anyMap());
+            verify(outboxService, never()).append(anyString(), anyString(), anyString(), any());
+            return;
+        }
+        Map<Integer, Integer> expected = Map.of(10, sign * 3, 20, sign);
+        verify(productService).AdjustNums(expected);
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(outboxService).append(eq(OutboxService.AGGREGATE_ORDER), eq("M1"), eq(OutboxService.STOCK_ADJUSTED), event.capture());
+        assertEquals(new StockAdjustedEvent("M1", next, expected), event.getValue());
+    }
+
+    @ParameterizedTest(name = "{0} -> {1}")
+    @CsvSource({"0, 3", "0, 2", "1, 6", "2, 1"})
+    void ordersWithoutReservationNeverAdjustStock(String previous, String next) {
+        //上線前建立的舊訂單：結帳時沒有預留庫存
+        service.updateOrderListFromNotify(previous, false, result("M1", next));
+
+        verify(orderListRepository).updateTradeResult(eq("M1"), eq(next), any(), any(), any());
+        verify(orderListRepository, never()).sumNumByPid(anyString());
+        verify(productService, never()).AdjustNums(anyMap());
+        verify(outboxService, never()).append(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void missingOrderLinesLeaveStockUntouched() {
+        when(orderListRepository.updateTradeResult(eq("M404"), anyString(), any(), any(), any())).thenReturn(0);
+
+        service.updateOrderListFromNotify("0", true, result("M404", "3"));
+
+        verify(orderListRepository, never()).sumNumByPid(anyString());
+        verify(productService, never()).AdjustNums(anyMap());
+    }
+
+    @Test
+    void nullResultIsIgnored() {
+        service.updateOrderListFromNotify("0", true, null);
+
+        verifyNoInteractions(orderListRepository, productService, outboxService);
+    }
+
+    private static PaymentResponse.QueryTradeInfoResponse.Result result(String merchantOrderNo, String tradeStatus) {
+        PaymentResponse.QueryTradeInfoResponse.Result result = new PaymentResponse.QueryTradeInfoResponse.Result();
+        result.setMerchantOrderNo(merchantOrderNo);
+        result.setTradeStatus(tradeStatus);
+        return result;
+    }
+
+    private static OrderListRepository.ProductQuantity quantity(int pid, long num) {
+        return new OrderListRepository.ProductQuantity() {
+            @Override
+            public Integer getPid() {
+                return pid;
+            }
+
+            @Override
+            public Long getNum() {
+                return num;
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.entity.Order;
+import com.example.demo.repository.OrderListRepository;
+import com.example.demo.repository.OrderRepository;
+
+/**
+ * 逾期未付款取消：結帳時預留庫存的訂單補回庫存，上線前沒有預留標記的舊訂單只取消、不補回
+ */
+class OrderServiceTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderListRepository orderListRepository = mock(OrderListRepository.class);
+    private final ProductService productService = mock(ProductService.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final OrderListService orderListService = new OrderListService();
+    private final OrderService service = new OrderService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderListService, "orderListRepository", orderListRepository);
+        ReflectionTestUtils.setField(orderListService, "productService", productService);
+        ReflectionTestUtils.setField(orderListService, "outboxService", outboxService);
+        ReflectionTestUtils.setField(service, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(service, "cartService", mock(CartService.class));
+        ReflectionTestUtils.setField(service, "orderListService", orderListService);
+        ReflectionTestUtils.setField(service, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(service, "outboxService", outboxService);
+        when(orderListRepository.updateTradeResult(anyString(), anyString(), any(), any(), any())).thenReturn(1);
+        when(orderListRepository.sumNumByPid(anyString())).thenReturn(List.of(quantity(10, 2L)));
+    }
+
+    @Test
+    void newOrdersAreMarkedReserved() {
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Order order = service.createOrder("M1", 100, "item", 7);
+
+        assertTrue(order.getStockReserved());
+    }
+
+    @Test
+    void expiringReservedOrderReleasesStock() {
+        Order order = pending("M1", true);
+
+        assertTrue(service.expirePendingOrder("M1"));
+
+        assertEquals("3", order.getTradestatus());
+        verify(productService).AdjustNums(Map.of(10, 2));
+    }
+
+    @Test
+    void expiringLegacyOrderDoesNotAddStockBack() {
+        //上線前建立：結帳時沒有預留庫存(Stock_reserved 為 NULL)
+        Order order = pending("M0", null);
+
+        assertTrue(service.expirePendingOrder("M0"));
+
+        assertEquals("3", order.getTradestatus());
+        verify(orderListRepository).updateTradeResult(eq("M0"), eq("3"), any(), any(), any());
+        verify(productService, never()).AdjustNums(anyMap());
+        ArgumentCaptor<String> types = ArgumentCaptor.forClass(String.class);
+        verify(outboxService).append(eq(OutboxService.AGGREGATE_ORDER), eq("M0"), types.capture(), any());
+        assertEquals(List.of(OutboxService.PAYMENT_STATUS_CHANGED), types.getAllValues());
+    }
+
+    @Test
+    void alreadyPaidOrderIsNotExpired() {
+        Order order = pending("M2", true);
+        order.setTradestatus("1");
+
+        assertFalse(service.expirePendingOrder("M2"));
+
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    private Order pending(String merchantOrderNo, Boolean stockReserved) {
+        Order order = new Order();
+        order.setOid(1);
+        order.setUid(7);
+        order.setMerchantorderno(merchantOrderNo);
+        order.setTotalamt(200);
+        order.setTradestatus("0");
+        order.setStockReserved(stockReserved);
+        when(orderRepository.findForUpdate(merchantOrderNo)).thenReturn(Optional.of(order));
+        return order;
+    }
+
+    private static OrderListRepository.ProductQuantity quantity(int pid, long num) {
+        return new OrderListRepository.ProductQuantity() {
+            @Override
+            public Integer getPid() {
+                return pid;
+            }
+
+            @Override
+            public Long getNum() {
+                return num;
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderList;
+import com.example.demo.entity.OrderView;
+import com.example.demo.event.OrderCreatedEvent;
+import com.example.demo.event.PaymentStatusChangedEvent;
+import com.example.demo.repository.OrderListRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderViewRepository;
+
+/**
+ * 訂單讀取模型投影：建立時寫入整份文件、付款狀態變更只更新狀態欄位、
+ * 非同步投影順序顛倒時較舊的訂單狀態不覆蓋較新的文件
+ */
+class OrderViewProjectorTest {
+
+    private static final LocalDateTime T1 = LocalDateTime.of(2026, 3, 1, 12, 0);
+    private static final LocalDateTime T2 = T1.plusSeconds(30);
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderListRepository orderListRepository = mock(OrderListRepository.class);
+    private final OrderViewRepository orderViewRepository = mock(OrderViewRepository.class);
+    private final ProductService productService = mock(ProductService.class);
+    private final OrderViewProjector projector = new OrderViewProjector(orderRepository, orderListRepository,
+            orderViewRepository, productService, mock(PlatformTransactionManager.class));
+
+    //記憶體版 order_view
+    private final Map<String, OrderView> views = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        when(orderViewRepository.findForUpdate(anyString())).thenAnswer(inv -> Optional.ofNullable(views.get(inv.<String>getArgument(0))));
+        when(orderViewRepository.save(any(OrderView.class))).thenAnswer(inv -> {
+            OrderView view = inv.getArgument(0);
+            views.put(view.getMerchantOrderNo(), view);
+            return view;
+        });
+        OrderList line = new OrderList();
+        line.setPid(10);
+        line.setMerchantorderno("M1");
+        line.setAmt(200);
+        line.setNum(2);
+        when(orderListRepository.findAllByMerchantorderno("M1")).thenReturn(List.of(line));
+        when(productService.GetTitlesByIds(anyCollection())).thenReturn(Map.of(10, "筆記本"));
+    }
+
+    @Test
+    void orderCreatedBuildsTheWholeDocument() {
+        order("0", T1);
+
+        projector.onOrderCreated(new OrderCreatedEvent("M1", 7));
+
+        OrderView view = views.get("M1");
+        assertEquals("0", view.getTradeStatus());
+        assertEquals(T1, view.getSourceUpdatedTime());
+        assertEquals(List.of(new OrderHistoryPage.Item(10, "筆記本", 200, 2)), projector.readItems(view));
+    }
+
+    @Test
+    void statusChangeRefreshesStatusAndKeepsItems() {
+        order("0", T1);
+        projector.onOrderCreated(new OrderCreatedEvent("M1", 7));
+        order("1", T2);
+
+        projector.onPaymentStatusChanged(statusChanged("0", "1"));
+
+        OrderView view = views.get("M1");
+        assertEquals("1", view.getTradeStatus());
+        assertEquals(T2, view.getSourceUpdatedTime());
+        assertEquals(1, projector.readItems(view).size());
+        //明細只在建立時讀取一次
+        verify(orderListRepository).findAllByMerchantorderno("M1");
+    }
+
+    @Test
+    void olderOrderStateDoesNotOverwriteNewerDocument() {
+        //付款成功的投影先完成
+        order("1", T2);
+        projector.onOrderCreated(new OrderCreatedEvent("M1", 7));
+        //較晚執行的投影讀到的是付款前的訂單
+        order("0", T1);
+
+        projector.onPaymentStatusChanged(statusChanged("", "0"));
+        projector.rebuild("M1");
+
+        OrderView view = views.get("M1");
+        assertEquals("1", view.getTradeStatus());
+        assertEquals(T2, view.getSourceUpdatedTime());
+    }
+
+    @Test
+    void missingDocumentIsRebuiltOnStatusChange() {
+        order("1", T2);
+
+        projector.onPaymentStatusChanged(statusChanged("0", "1"));
+
+        assertEquals("1", views.get("M1").getTradeStatus());
+        assertEquals(1, projector.readItems(views.get("M1")).size());
+    }
+
+    @Test
+    void unknownOrderIsNotProjected() {
+        when(orderRepository.findByMerchantorderno("M1")).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), projector.rebuild("M1"));
+
+        verify(orderViewRepository, never()).save(any(OrderView.class));
+    }
+
+    private void order(String tradeStatus, LocalDateTime updatedTime) {
+        Order order = new Order();
+        order.setMerchantorderno("M1");
+        order.setUid(7);
+        order.setTotalamt(200);
+        order.setTradestatus(tradeStatus);
+        order.setCreatedTime(T1);
+        order.setUpdatedTime(updatedTime);
+        when(orderRepository.findByMerchantorderno("M1")).thenReturn(Optional.of(order));
+    }
+
+    private static PaymentStatusChangedEvent statusChanged(String previous, String current) {
+        return new PaymentStatusChangedEvent("M1", 7, previous, current, null, null, null);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.entity.OutboxEvent;
+import com.example.demo.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 外寄箱轉送 + Kafka(內嵌 Broker)
+ * 驗證同一聚合的事件依 id 順序送達，且前一筆失敗時該聚合後續事件不會先送出
+ */
+@EmbeddedKafka(partitions = 3, topics = OutboxRelayKafkaTest.TOPIC)
+class OutboxRelayKafkaTest {
+
+    static final String TOPIC = "demo.order";
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private DefaultKafkaProducerFactory<String, String> producerFactory;
+    private KafkaOutboxPublisher kafkaPublisher;
+
+    @BeforeEach
+    void setUp(EmbeddedKafkaBroker broker) {
+        Map<String, Object> props = KafkaTestUtils.producerProps(broker);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        producerFactory = new DefaultKafkaProducerFactory<>(props);
+        kafkaPublisher = new KafkaOutboxPublisher(new KafkaTemplate<>(producerFactory), "demo.");
+    }
+
+    @AfterEach
+    void tearDown() {
+        producerFactory.destroy();
+    }
+
+    @Test
+    void eventsOfSameAggregateArriveInOrder(EmbeddedKafkaBroker broker) {
+        List<OutboxEvent> batch = interleavedBatch(1, 30, 3);
+        Set<Long> published = relay(kafkaPublisher).publishBatch(batch);
+        assertEquals(30, published.size());
+
+        Map<String, List<Long>> received = consume(broker, "ordering", 30);
+        assertEquals(3, received.size());
+        received.forEach((key, ids) -> {
+            assertEquals(10, ids.size());
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue(ids.get(i) > ids.get(i - 1), key + " 順序錯誤：" + ids);
+            }
+        });
+    }
+
+    @Test
+    void failedEventHoldsBackRestOfAggregate(EmbeddedKafkaBroker broker) {
+        List<OutboxEvent> batch = interleavedBatch(101, 9, 3);
+        //M101 的第二筆事件(id 104)發佈失敗
+        OutboxPublisher flaky = event -> event.getId() == 104L
+                ? CompletableFuture.failedFuture(new IllegalStateException("broker unavailable"))
+                : kafkaPublisher.publish(event);
+
+        Set<Long> published = relay(flaky).publishBatch(batch);
+
+        //M101：101 成功、104 失敗、107 保留到下次；M102、M103 不受影響
+        assertEquals(Set.of(101L, 102L, 103L, 105L, 106L, 108L, 109L), published);
+        verify(repository).markFailed(eq(104L), anyString());
+
+        Map<String, List<Long>> received = consume(broker, "failure", 7);
+        assertEquals(List.of(101L), received.get("M101"));
+    }
+
+    private OutboxRelay relay(OutboxPublisher publisher) {
+        OutboxRelay relay = new OutboxRelay(repository, publisher, mock(StringRedisTemplate.class),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "sendTimeout", Duration.ofSeconds(30));
+        return relay;
+    }
+
+    //count 筆事件輪流分配給 aggregates 張訂單(聚合id 為 M + 該訂單第一筆事件 id)
+    private static List<OutboxEvent> interleavedBatch(long firstId, int count, int aggregates) {
+        List<OutboxEvent> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = firstId + i;
+            OutboxEvent event = new OutboxEvent();
+            event.setId(id);
+            event.setAggregateType(OutboxService.AGGREGATE_ORDER);
+            event.setAggregateId("M" + (firstId + i % aggregates));
+            event.setEventType(OutboxService.PAYMENT_STATUS_CHANGED);
+            event.setPayload("{\"seq\":" + id + "}");
+            event.setCreatedTime(LocalDateTime.now());
+            batch.add(event);
+        }
+        return batch;
+    }
+
+    //讀取指定筆數，依 key 分組並依讀到的順序列出外寄箱 id
+    private static Map<String, List<Long>> consume(EmbeddedKafkaBroker broker, String group, int expected) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps(group, "false", broker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        Map<String, List<Long>> received = new HashMap<>();
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+            int total = 0;
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (total < expected && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(5))) {
+                    long id = Long.parseLong(new String(
+                            record.headers().lastHeader(KafkaOutboxPublisher.HEADER_EVENT_ID).value(), StandardCharsets.UTF_8));
+                    received.computeIfAbsent(record.key(), k -> new ArrayList<>()).add(id);
+                    total++;
+                }
+            }
+        }
+        return received;
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.demo.entity.OutboxEvent;
+import com.example.demo.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 外寄箱轉送：發佈失敗次數上限(未達上限下次重送，達上限停止重送)、
+ * 認領 -> 交易外發佈 -> 標記分為兩個短交易、租約以 Lua 原子續約且 Redis 無法使用時不轉送
+ */
+@SuppressWarnings("unchecked")
+class OutboxRelayTest {
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void failureBelowLimitIsRetried() {
+        OutboxRelay relay = relay(3);
+
+        Set<Long> published = relay.publishBatch(List.of(event(1L, 0), event(2L, 1)));
+
+        assertEquals(Set.of(), published);
+        verify(repository).markFailed(eq(1L), anyString());
+        verify(repository).markFailed(eq(2L), anyString());
+        verify(repository, never()).markParked(any(), anyString(), any());
+        assertEquals(2, meterRegistry.counter("outbox.events", "result", "failed").count());
+    }
+
+    @Test
+    void failureReachingLimitIsParked() {
+        OutboxRelay relay = relay(3);
+
+        relay.publishBatch(List.of(event(1L, 2)));
+
+        verify(repository).markParked(eq(1L), eq("broker unavailable"), any(LocalDateTime.class));
+        verify(repository, never()).markFailed(any(), anyString());
+        assertEquals(1, meterRegistry.counter("outbox.events", "result", "parked").count());
+        assertEquals(0, meterRegistry.counter("outbox.events", "result", "failed").count());
+        assertEquals(1, meterRegistry.get("outbox.parked").gauge().value());
+    }
+
+    @Test
+    void zeroMeansUnlimited() {
+        OutboxRelay relay = relay(0);
+
+        relay.publishBatch(List.of(event(1L, 1000)));
+
+        verify(repository).markFailed(eq(1L), anyString());
+        verify(repository, never()).markParked(any(), anyString(), any());
+    }
+
+    @Test
+    void publishingHappensOutsideAnyTransaction() {
+        RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+        List<Boolean> publishedInTransaction = new ArrayList<>();
+        OutboxPublisher publisher = event -> {
+            publishedInTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return CompletableFuture.completedFuture(null);
+        };
+        OutboxRelay relay = new OutboxRelay(repository, publisher, mock(StringRedisTemplate.class), transactionManager, meterRegistry);
+        configure(relay, 3);
+        when(repository.lockClaimable(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(event(1L, 0), event(2L, 0)));
+
+        assertFalse(relay.relayOnce());
+
+        assertEquals(List.of(false, false), publishedInTransaction);
+        //認領一次交易、標記一次交易
+        assertEquals(2, transactionManager.commits);
+        InOrder order = inOrder(repository);
+        order.verify(repository).claim(eq(List.of(1L, 2L)), anyString(), any(LocalDateTime.class));
+        order.verify(repository).markPublished(eq(Set.of(1L, 2L)), any(LocalDateTime.class));
+        verify(repository, never()).releaseClaims(anyList(), anyString());
+    }
+
+    @Test
+    void failedEventsReleaseTheirClaims() {
+        OutboxRelay relay = relay(3);
+
+        relay.publishBatch(List.of(event(2L, 0), event(1L, 0)));
+
+        verify(repository).releaseClaims(eq(List.of(1L, 2L)), anyString());
+        verify(repository, never()).markPublished(any(), any());
+    }
+
+    @Test
+    void leaseIsRenewedOnlyWhileStillOwned() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(1L, 0L);
+        OutboxRelay relay = new OutboxRelay(repository, event -> CompletableFuture.completedFuture(null), redis,
+                mock(PlatformTransactionManager.class), meterRegistry);
+        configure(relay, 3);
+
+        assertTrue(relay.holdLease());
+        assertFalse(relay.holdLease());
+        //比對與延長在同一個 Lua 腳本內完成，不會先 GET 再 EXPIRE
+        verify(valueOps, never()).get(anyString());
+        verify(redis, never()).expire(anyString(), any(Duration.class));
+    }
+
+    @Test
+    void redisFailureStopsTheRelay() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("Redis unavailable"));
+        OutboxRelay relay = new OutboxRelay(repository, event -> CompletableFuture.completedFuture(null), redis,
+                mock(PlatformTransactionManager.class), meterRegistry);
+        configure(relay, 3);
+
+        relay.scheduledRelay();
+
+        verify(repository, never()).lockClaimable(any(), any());
+    }
+
+    private OutboxRelay relay(int maxAttempts) {
+        OutboxPublisher failing = event -> CompletableFuture.failedFuture(new IllegalStateException("broker unavailable"));
+        OutboxRelay relay = new OutboxRelay(repository, failing, mock(StringRedisTemplate.class),
+                mock(PlatformTransactionManager.class), meterRegistry);
+        configure(relay, maxAttempts);
+        return relay;
+    }
+
+    private static void configure(OutboxRelay relay, int maxAttempts) {
+        ReflectionTestUtils.setField(relay, "enabled", true);
+        ReflectionTestUtils.setField(relay, "batchSize", 200);
+        ReflectionTestUtils.setField(relay, "maxBatchesPerRun", 20);
+        ReflectionTestUtils.setField(relay, "sendTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(relay, "leaseTtl", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(relay, "maxAttempts", maxAttempts);
+    }
+
+    private static OutboxEvent event(long id, int attempts) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setAggregateType(OutboxService.AGGREGATE_ORDER);
+        event.setAggregateId("M" + id);
+        event.setEventType("OrderCreated");
+        event.setPayload("{}");
+        event.setCreatedTime(LocalDateTime.now());
+        event.setAttempts(attempts);
+        return event;
+    }
+
+    /**
+     * 記錄提交次數的交易管理器(交易同步狀態由 AbstractPlatformTransactionManager 設定)
+     */
+    private static final class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private int commits;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
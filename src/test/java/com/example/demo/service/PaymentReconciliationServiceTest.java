@@ -0,0 +1,160 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import com.example.demo.entity.Order;
+import com.example.demo.newwebpay.bean.PaymentResponse;
+import com.example.demo.repository.OrderRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 付款對帳：keyset 游標跨排程延續、只套用狀態有變動的訂單、批次失敗時退回逐筆處理
+ */
+class PaymentReconciliationServiceTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final PayService payService = mock(PayService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PaymentReconciliationService service = new PaymentReconciliationService(orderRepository, orderService,
+            payService, new NoopTransactionManager(), meterRegistry, 4);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "staleAfter", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(service, "maxAge", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+        ReflectionTestUtils.setField(service, "applyBatchSize", 10);
+        ReflectionTestUtils.setField(service, "maxOrdersPerRun", 100);
+        when(orderRepository.findStalePage(eq("0"), any(LocalDateTime.class), any(LocalDateTime.class), anyInt(), any()))
+                .thenReturn(List.of());
+        when(orderRepository.findStalePage(eq("0"), any(LocalDateTime.class), any(LocalDateTime.class), eq(0), any()))
+                .thenReturn(List.of(order(1, "M1"), order(2, "M2")));
+        when(orderRepository.findStalePage(eq("0"), any(LocalDateTime.class), any(LocalDateTime.class), eq(2), any()))
+                .thenReturn(List.of(order(3, "M3")));
+    }
+
+    @Test
+    void appliesOnlyChangedOrdersAndRestartsAtTheEnd() {
+        //M1：已付款；M2：仍未付款；M3：查詢失敗
+        PaymentResponse.QueryTradeInfoResponse paid = response("1");
+        when(payService.queryTradeInfo(eq("M1"), any())).thenReturn(paid);
+        when(payService.queryTradeInfo(eq("M2"), any())).thenReturn(response("0"));
+        when(payService.queryTradeInfo(eq("M3"), any())).thenReturn(null);
+
+        assertEquals(3, service.reconcileOnce());
+
+        verify(orderService).applyTradeResult("M1", "SUCCESS", paid.getResult());
+        verify(orderService, times(1)).applyTradeResult(anyString(), any(), any());
+        assertEquals(3, count("scanned"));
+        assertEquals(1, count("updated"));
+        assertEquals(1, count("unchanged"));
+        assertEquals(1, count("failed"));
+        //已掃到尾端，下次從頭開始
+        assertEquals(0, meterRegistry.get("payment.reconcile.cursor").gauge().value());
+    }
+
+    @Test
+    void cursorCarriesOverToTheNextRun() {
+        ReflectionTestUtils.setField(service, "maxOrdersPerRun", 2);
+        when(payService.queryTradeInfo(anyString(), any())).thenReturn(response("0"));
+
+        assertEquals(2, service.reconcileOnce());
+        assertEquals(2, meterRegistry.get("payment.reconcile.cursor").gauge().value());
+
+        assertEquals(1, service.reconcileOnce());
+        verify(payService, times(1)).queryTradeInfo(eq("M3"), any());
+        verify(payService, times(1)).queryTradeInfo(eq("M1"), any());
+    }
+
+    @Test
+    void failedBatchFallsBackToSingleOrders() {
+        when(payService.queryTradeInfo(anyString(), any())).thenReturn(response("1"));
+        doThrow(new IllegalStateException("deadlock")).when(orderService).applyTradeResult(eq("M2"), any(), any());
+
+        service.reconcileOnce();
+
+        //第一頁整批失敗後逐筆重試：M1 成功、M2 失敗；第二頁 M3 成功
+        verify(orderService, times(2)).applyTradeResult(eq("M1"), any(), any());
+        verify(orderService, times(1)).applyTradeResult(eq("M3"), any(), any());
+        assertEquals(2, count("updated"));
+        assertEquals(1, count("failed"));
+    }
+
+    @Test
+    void nothingStaleDoesNotQueryTheGateway() {
+        when(orderRepository.findStalePage(eq("0"), any(LocalDateTime.class), any(LocalDateTime.class), eq(0), any()))
+                .thenReturn(List.of());
+
+        assertEquals(0, service.reconcileOnce());
+
+        verify(payService, never()).queryTradeInfo(anyString(), any());
+        assertEquals(0, meterRegistry.get("payment.reconcile.lag.seconds").gauge().value());
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("payment.reconcile.orders", "result", result).count();
+    }
+
+    private static Order order(int id, String merchantOrderNo) {
+        Order order = new Order();
+        order.setOid(id);
+        order.setMerchantorderno(merchantOrderNo);
+        order.setTotalamt(100);
+        order.setTradestatus("0");
+        order.setCreatedTime(LocalDateTime.now().minusHours(1));
+        return order;
+    }
+
+    private static PaymentResponse.QueryTradeInfoResponse response(String tradeStatus) {
+        PaymentResponse.QueryTradeInfoResponse response = new PaymentResponse.QueryTradeInfoResponse();
+        response.setStatus("SUCCESS");
+        PaymentResponse.QueryTradeInfoResponse.Result result = new PaymentResponse.QueryTradeInfoResponse.Result();
+        result.setTradeStatus(tradeStatus);
+        response.setResult(result);
+        return response;
+    }
+
+    //不連資料庫的交易管理器
+    private static final class NoopTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.event.PaymentStatusChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 付款狀態推播：先登記訂閱再讀取目前狀態，讀取期間的狀態變更不會遺漏
+ */
+class PaymentStatusStreamServiceTest {
+
+    private final PayService payService = mock(PayService.class);
+    private final PaymentStatusStreamService service = new PaymentStatusStreamService(mock(StringRedisTemplate.class),
+            mock(RedisMessageListenerContainer.class), payService, Duration.ofMinutes(10));
+
+    @Test
+    void changeBroadcastWhileReadingCurrentStateIsDelivered() throws Exception {
+        DefaultMessage paid = message(event("1"));
+
+        //讀取目前狀態時(仍為未付款的舊資料)，付款通知的廣播剛好送達
+        SseEmitter emitter = service.subscribe("M1", () -> {
+            service.onMessage(paid, null);
+            return event("0");
+        });
+
+        verify(payService).evictTradeInfo("M1");
+        //已收到付款成功並結束連線，不會一直停在未付款
+        assertTrue(completed(emitter));
+        assertEquals(0, service.getSubscriberCount());
+    }
+
+    @Test
+    void pendingOrderStaysSubscribedUntilFinished() throws Exception {
+        SseEmitter emitter = service.subscribe("M1", () -> event("0"));
+        assertEquals(1, service.getSubscriberCount());
+
+        service.onMessage(message(event("1")), null);
+        assertTrue(completed(emitter));
+        assertEquals(0, service.getSubscriberCount());
+    }
+
+    @Test
+    void finishedOrderCompletesImmediately() {
+        SseEmitter emitter = service.subscribe("M1", () -> event("3"));
+        assertTrue(completed(emitter));
+        assertEquals(0, service.getSubscriberCount());
+    }
+
+    @Test
+    void failedReadDoesNotLeaveSubscription() {
+        assertThrows(IllegalArgumentException.class, () -> service.subscribe("M1", () -> {
+            throw new IllegalArgumentException("找不到訂單：M1");
+        }));
+        assertEquals(0, service.getSubscriberCount());
+    }
+
+    private static boolean completed(SseEmitter emitter) {
+        return (boolean) ReflectionTestUtils.getField(emitter, "complete");
+    }
+
+    private static PaymentStatusChangedEvent event(String tradeStatus) {
+        return new PaymentStatusChangedEvent("M1", 7, null, tradeStatus, "CREDIT", "T1", null);
+    }
+
+    private static DefaultMessage message(PaymentStatusChangedEvent event) throws Exception {
+        return new DefaultMessage(PaymentStatusStreamService.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                new ObjectMapper().writeValueAsBytes(event));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.entity.Order;
+import com.example.demo.newwebpay.bean.PaymentResponse;
+import com.example.demo.repository.OrderRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 逾期未付款訂單：仍未付款時取消(補回庫存)，藍新已有結果時套用藍新狀態，查詢失敗時不取消
+ */
+class PendingOrderExpiryServiceTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final PayService payService = mock(PayService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PendingOrderExpiryService service = new PendingOrderExpiryService(orderRepository, orderService, payService, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "expireAfter", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "pageSize", 2);
+        ReflectionTestUtils.setField(service, "maxOrdersPerRun", 100);
+        when(orderRepository.findExpiredPage(eq("0"), any(LocalDateTime.class), anyInt(), any())).thenReturn(List.of());
+        when(orderRepository.findExpiredPage(eq("0"), any(LocalDateTime.class), eq(0), any()))
+                .thenReturn(List.of(order(1, "M1"), order(2, "M2")));
+        when(orderRepository.findExpiredPage(eq("0"), any(LocalDateTime.class), eq(2), any()))
+                .thenReturn(List.of(order(3, "M3")));
+        when(orderService.expirePendingOrder(anyString())).thenReturn(true);
+    }
+
+    @Test
+    void expiresOrdersStillPendingAtTheGateway() {
+        //M1：藍新仍為未付款；M2：藍新查無交易(使用者沒有進入付款頁)；M3：藍新查詢失敗
+        when(payService.queryTradeInfo(eq("M1"), any())).thenReturn(response("SUCCESS", "0"));
+        when(payService.queryTradeInfo(eq("M2"), any())).thenReturn(response("TRA10021", null));
+        when(payService.queryTradeInfo(eq("M3"), any())).thenReturn(null);
+
+        assertEquals(3, service.expireOnce());
+
+        verify(orderService).expirePendingOrder("M1");
+        verify(orderService).expirePendingOrder("M2");
+        verify(orderService, never()).expirePendingOrder("M3");
+        assertEquals(2, meterRegistry.counter("orders.pending.expiry", "result", "expired").count());
+        assertEquals(1, meterRegistry.counter("orders.pending.expiry", "result", "skipped").count());
+    }
+
+    @Test
+    void paidAtTheGatewayIsAppliedInsteadOfCancelled() {
+        PaymentResponse.QueryTradeInfoResponse paid = response("SUCCESS", "1");
+        when(payService.queryTradeInfo(anyString(), any())).thenReturn(response("SUCCESS", "0"));
+        when(payService.queryTradeInfo(eq("M2"), any())).thenReturn(paid);
+
+        service.expireOnce();
+
+        verify(orderService).applyTradeResult("M2", "SUCCESS", paid.getResult());
+        verify(orderService, never()).expirePendingOrder("M2");
+    }
+
+    private static Order order(int id, String merchantOrderNo) {
+        Order order = new Order();
+        order.setOid(id);
+        order.setMerchantorderno(merchantOrderNo);
+        order.setTotalamt(100);
+        order.setTradestatus("0");
+        return order;
+    }
+
+    private static PaymentResponse.QueryTradeInfoResponse response(String status, String tradeStatus) {
+        PaymentResponse.QueryTradeInfoResponse response = new PaymentResponse.QueryTradeInfoResponse();
+        response.setStatus(status);
+        if (tradeStatus != null) {
+            PaymentResponse.QueryTradeInfoResponse.Result result = new PaymentResponse.QueryTradeInfoResponse.Result();
+            result.setTradeStatus(tradeStatus);
+            response.setResult(result);
+        }
+        return response;
+    }
+}
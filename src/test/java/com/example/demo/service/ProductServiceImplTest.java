@@ -0,0 +1,56 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dao.ProductDao;
+
+/**
+ * 預留庫存結果對應：更新 0 筆的商品視為庫存不足(超賣)，SUCCESS_NO_INFO 視為成功
+ */
+class ProductServiceImplTest {
+
+    private final ProductDao productDao = mock(ProductDao.class);
+    private final ProductServiceImpl service = new ProductServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "productDao", productDao);
+    }
+
+    @Test
+    void zeroRowUpdatesAreReportedAsInsufficient() {
+        Map<Integer, Integer> quantities = Map.of(30, 1, 10, 2, 20, 5);
+        //DAO 依商品id排序執行：10、20、30
+        when(productDao.ReserveNums(quantities)).thenReturn(new int[] {0, Statement.SUCCESS_NO_INFO, 0});
+
+        assertEquals(List.of(10, 30), service.ReserveNums(quantities));
+    }
+
+    @Test
+    void fullyReservedOrderHasNoInsufficientProducts() {
+        Map<Integer, Integer> quantities = Map.of(10, 2, 20, 5);
+        when(productDao.ReserveNums(quantities)).thenReturn(new int[] {1, 1});
+
+        assertEquals(List.of(), service.ReserveNums(quantities));
+    }
+
+    @Test
+    void emptyOrderDoesNotReachTheDatabase() {
+        assertEquals(List.of(), service.ReserveNums(Map.of()));
+
+        verify(productDao, never()).ReserveNums(anyMap());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.web.authentication.session.ChangeSessionIdAuthenticationStrategy;
+
+import com.example.demo.FakeRedis;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.Servlet;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Redis Session 過濾器：登入時更換 Session ID 並更新 Cookie、登出時刪除 Session 並清除 Cookie
+ */
+class RedisSessionFilterTest {
+
+    private final FakeRedis redis = new FakeRedis();
+    private final RedisSessionRepository repository = new RedisSessionRepository(redis.template, redis.container,
+            new SimpleMeterRegistry(), Duration.ofMinutes(30), Duration.ofMinutes(1), 100, Duration.ofMinutes(5));
+    private final RedisSessionFilter filter = new RedisSessionFilter(repository, "JSESSIONID", "/", -1);
+
+    @Test
+    void firstSessionSetsCookieAndIsSavedAtTheEnd() throws Exception {
+        MockHttpServletResponse response = dispatch(null, (request, resp) -> request.getSession().setAttribute("uid", 7));
+
+        String id = cookieValue(response);
+        assertNotNull(id);
+        assertEquals(7, repository.findById(id).getAttribute("uid"));
+    }
+
+    @Test
+    void loginChangesSessionIdAndCookie() throws Exception {
+        String oldId = existingSession();
+
+        MockHttpServletResponse response = dispatch(oldId, (request, resp) -> {
+            //表單登入成功時 Spring Security 的 Session Fixation 防護
+            new ChangeSessionIdAuthenticationStrategy().onAuthentication(
+                    UsernamePasswordAuthenticationToken.authenticated("alice", null, List.of()), request, resp);
+            request.getSession().setAttribute("username", "alice");
+        });
+
+        String newId = cookieValue(response);
+        assertNotEquals(oldId, newId);
+        assertNull(repository.findById(oldId));
+        assertEquals("alice", repository.findById(newId).getAttribute("username"));
+        assertEquals("guest-cart", repository.findById(newId).getAttribute("cart"));
+    }
+
+    @Test
+    void invalidateDeletesSessionAndClearsCookie() throws Exception {
+        String id = existingSession();
+
+        MockHttpServletResponse response = dispatch(id, (request, resp) -> request.getSession().invalidate());
+
+        assertFalse(redis.hashes.containsKey(RedisSessionRepository.SESSION_PREFIX + id));
+        assertTrue(redis.commands.contains("DEL " + RedisSessionRepository.SESSION_PREFIX + id));
+        String cookie = response.getHeader(HttpHeaders.SET_COOKIE);
+        assertTrue(cookie.startsWith("JSESSIONID=;"), cookie);
+        assertTrue(cookie.contains("Max-Age=0"), cookie);
+        assertNull(repository.findById(id));
+    }
+
+    @Test
+    void unknownCookieIsTreatedAsNoSession() throws Exception {
+        HttpSession[] seen = new HttpSession[1];
+
+        dispatch("expired-id", (request, resp) -> seen[0] = request.getSession(false));
+
+        assertNull(seen[0]);
+    }
+
+    private String existingSession() throws Exception {
+        return cookieValue(dispatch(null, (request, resp) -> request.getSession().setAttribute("cart", "guest-cart")));
+    }
+
+    private MockHttpServletResponse dispatch(String sessionId, Handler handler) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        if (sessionId != null) {
+            request.setCookies(new Cookie("JSESSIONID", sessionId));
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Servlet servlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                handler.handle(req, resp);
+            }
+        };
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+
+    //回應中最後一個 Session Cookie 的值
+    private static String cookieValue(MockHttpServletResponse response) {
+        List<String> cookies = response.getHeaders(HttpHeaders.SET_COOKIE);
+        String last = cookies.get(cookies.size() - 1);
+        return last.substring("JSESSIONID=".length(), last.indexOf(';'));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response);
+    }
+}
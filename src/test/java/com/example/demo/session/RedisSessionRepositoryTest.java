@@ -0,0 +1,151 @@
+package com.example.demo.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.FakeRedis;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Redis Session 儲存：只寫入變更的屬性、存取時間節流、更換 Session ID、跨節點清除本機快取
+ * 兩個 RedisSessionRepository 共用同一個記憶體版 Redis，模擬兩台節點
+ */
+class RedisSessionRepositoryTest {
+
+    private static final Duration TOUCH_INTERVAL = Duration.ofMinutes(1);
+
+    private final FakeRedis redis = new FakeRedis();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RedisSessionRepository nodeA = node(meterRegistry);
+    private final RedisSessionRepository nodeB = node(new SimpleMeterRegistry());
+
+    @Test
+    void newSessionWritesAllFieldsOnce() {
+        RedisSession session = nodeA.createSession();
+        session.setAttribute("uid", 7);
+        session.setAttribute("username", "alice");
+
+        nodeA.save(session);
+
+        String key = RedisSessionRepository.SESSION_PREFIX + session.getId();
+        assertEquals(List.of("HSET " + key + " #accessed,#created,#maxInactive,a:uid,a:username"), redis.drainCommands());
+        assertEquals(1800 * 1000L + TOUCH_INTERVAL.toMillis(), redis.ttlMillis.get(key));
+    }
+
+    @Test
+    void saveWritesOnlyChangedAttributes() {
+        String id = persisted("uid", 7, "username", "alice", "cart", "3");
+        String key = RedisSessionRepository.SESSION_PREFIX + id;
+
+        RedisSession session = nodeA.findById(id);
+        assertEquals("alice", session.getAttribute("username"));
+        session.setAttribute("cart", "4");
+        session.removeAttribute("uid");
+        nodeA.save(session);
+
+        assertEquals(List.of("HSET " + key + " #accessed,a:cart", "HDEL " + key + " a:uid"), redis.drainCommands());
+        assertEquals(Set.of("#accessed", "#created", "#maxInactive", "a:cart", "a:username"), redis.hashFields(key));
+        assertEquals("4", nodeB.findById(id).getAttribute("cart"));
+    }
+
+    @Test
+    void lastAccessedTimeWritesAreThrottled() {
+        String id = persisted("uid", 7);
+        String key = RedisSessionRepository.SESSION_PREFIX + id;
+
+        //剛寫入過存取時間：只讀取的請求不寫入
+        nodeA.save(nodeA.findById(id));
+        assertEquals(List.of(), redis.drainCommands());
+        assertEquals(1, meterRegistry.counter("http.sessions.writes", "kind", "skipped").count());
+
+        //存取時間超過 touch-interval：只寫入存取時間並延長 TTL
+        redis.hashes.get(key).put("#accessed", SessionAttributeCodec.encodeLong(System.currentTimeMillis() - TOUCH_INTERVAL.toMillis() - 1));
+        redis.ttlMillis.remove(key);
+        RedisSessionRepository nodeC = node(new SimpleMeterRegistry());
+        nodeC.save(nodeC.findById(id));
+        assertEquals(List.of("HSET " + key + " #accessed"), redis.drainCommands());
+        assertTrue(redis.ttlMillis.containsKey(key));
+    }
+
+    @Test
+    void changeSessionIdMovesTheHash() {
+        String oldId = persisted("username", "alice");
+        RedisSession session = nodeA.findById(oldId);
+        //節點 B 也快取了舊的 Session
+        assertEquals("alice", nodeB.findById(oldId).getAttribute("username"));
+
+        String newId = nodeA.changeSessionId(session);
+        session.setAttribute("uid", 7);
+        nodeA.save(session);
+
+        assertNotEquals(oldId, newId);
+        assertEquals(newId, session.getId());
+        assertFalse(redis.hashes.containsKey(RedisSessionRepository.SESSION_PREFIX + oldId));
+        assertNull(nodeB.findById(oldId));
+        assertEquals(7, nodeB.findById(newId).getAttribute("uid"));
+        assertEquals("alice", nodeB.findById(newId).getAttribute("username"));
+    }
+
+    @Test
+    void changeSessionIdOfNewSessionDoesNotTouchRedis() {
+        RedisSession session = nodeA.createSession();
+
+        String newId = nodeA.changeSessionId(session);
+
+        assertEquals(newId, session.getId());
+        assertEquals(List.of(), redis.drainCommands());
+    }
+
+    @Test
+    void attributeChangeOnOneNodeInvalidatesTheOthersNearCache() {
+        String id = persisted("cart", "1");
+        //兩台節點都已快取
+        assertEquals("1", nodeA.findById(id).getAttribute("cart"));
+        assertEquals("1", nodeB.findById(id).getAttribute("cart"));
+
+        RedisSession onB = nodeB.findById(id);
+        onB.setAttribute("cart", "2");
+        nodeB.save(onB);
+
+        assertEquals("2", nodeA.findById(id).getAttribute("cart"));
+    }
+
+    @Test
+    void deleteOnOneNodeIsSeenByTheOther() {
+        String id = persisted("uid", 7);
+        assertEquals(7, nodeB.findById(id).getAttribute("uid"));
+
+        nodeA.deleteById(id);
+
+        assertFalse(redis.hashes.containsKey(RedisSessionRepository.SESSION_PREFIX + id));
+        assertNull(nodeB.findById(id));
+    }
+
+    //在節點 A 建立並儲存 Session(屬性為名稱、值交錯)，回傳 Session ID
+    private String persisted(Object... attributes) {
+        RedisSession session = nodeA.createSession();
+        for (int i = 0; i < attributes.length; i += 2) {
+            session.setAttribute((String) attributes[i], attributes[i + 1]);
+        }
+        nodeA.save(session);
+        redis.drainCommands();
+        return session.getId();
+    }
+
+    private RedisSessionRepository node(SimpleMeterRegistry registry) {
+        RedisSessionRepository repository = new RedisSessionRepository(redis.template, redis.container, registry,
+                Duration.ofMinutes(30), TOUCH_INTERVAL, 100, Duration.ofMinutes(5));
+        repository.listen();
+        return repository;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.session;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+/**
+ * Session 屬性編碼：常用型別使用型別標記，其他物件使用 Java 序列化，解碼後與原值相同
+ */
+class SessionAttributeCodecTest {
+
+    static List<Object> values() {
+        return List.of("", "alice@example.com", "購物車", 0, -42, Integer.MAX_VALUE, 7L, Long.MIN_VALUE, true, false,
+                new ArrayList<>(List.of("a", "b")));
+    }
+
+    @ParameterizedTest
+    @MethodSource("values")
+    void roundTrip(Object value) {
+        assertEquals(value, SessionAttributeCodec.decode(SessionAttributeCodec.encode(value)));
+    }
+
+    @Test
+    void commonTypesSkipJavaSerialization() {
+        assertArrayEquals(new byte[] {'S', 'u', 'i'}, SessionAttributeCodec.encode("ui"));
+        assertArrayEquals(new byte[] {'I', 0, 0, 0, 5}, SessionAttributeCodec.encode(5));
+        assertArrayEquals(new byte[] {'B', 1}, SessionAttributeCodec.encode(true));
+        assertEquals(9, SessionAttributeCodec.encode(1L).length);
+    }
+
+    @Test
+    void securityContextRoundTrip() {
+        SecurityContext context = new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(
+                "alice", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        Object decoded = SessionAttributeCodec.decode(SessionAttributeCodec.encode(context));
+
+        SecurityContext restored = assertInstanceOf(SecurityContext.class, decoded);
+        assertEquals("alice", restored.getAuthentication().getName());
+        assertEquals(context.getAuthentication().getAuthorities(), restored.getAuthentication().getAuthorities());
+    }
+
+    @Test
+    void rejectsNonSerializableAndUnknownTags() {
+        assertThrows(IllegalArgumentException.class, () -> SessionAttributeCodec.encode(new Object()));
+        assertThrows(IllegalStateException.class, () -> SessionAttributeCodec.decode(new byte[] {'X', 1}));
+    }
+
+    @Test
+    void longFieldsRoundTrip() {
+        assertEquals(1_735_660_800_000L, SessionAttributeCodec.decodeLong(SessionAttributeCodec.encodeLong(1_735_660_800_000L)));
+    }
+}
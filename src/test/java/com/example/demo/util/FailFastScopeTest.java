@@ -0,0 +1,82 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 平行任務範圍：全部成功、任一失敗立即取消其餘、超過期限取消全部、離開範圍時子任務都已結束
+ */
+class FailFastScopeTest {
+
+    @Test
+    void resultsAreAvailableAfterJoin() throws Exception {
+        try (FailFastScope scope = new FailFastScope(Duration.ofSeconds(5))) {
+            Supplier<String> cart = scope.fork(() -> "cart");
+            Supplier<Integer> products = scope.fork(() -> 3);
+
+            assertThrows(IllegalStateException.class, cart::get);
+            scope.join();
+
+            assertEquals("cart", cart.get());
+            assertEquals(3, products.get());
+            assertThrows(IllegalStateException.class, () -> scope.fork(() -> "late"));
+        }
+    }
+
+    @Test
+    void firstFailureCancelsTheSlowSibling() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        IllegalArgumentException failure = new IllegalArgumentException("用戶不存在或已停用");
+        long begin = System.nanoTime();
+
+        try (FailFastScope scope = new FailFastScope(Duration.ofSeconds(30))) {
+            scope.fork(() -> sleepUntilInterrupted(interrupted));
+            scope.fork(() -> {
+                throw failure;
+            });
+
+            ExecutionException e = assertThrows(ExecutionException.class, scope::join);
+            assertSame(failure, e.getCause());
+        }
+
+        //不必等較慢的子任務，且離開範圍時它已被中斷
+        assertTrue(interrupted.await(0, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test
+    void deadlineCancelsEverything() {
+        CountDownLatch interrupted = new CountDownLatch(2);
+
+        try (FailFastScope scope = new FailFastScope(Duration.ofMillis(100))) {
+            Supplier<Object> first = scope.fork(() -> sleepUntilInterrupted(interrupted));
+            scope.fork(() -> sleepUntilInterrupted(interrupted));
+
+            assertThrows(TimeoutException.class, scope::join);
+            assertThrows(IllegalStateException.class, first::get);
+        }
+
+        assertEquals(0, interrupted.getCount());
+    }
+
+    //一直等待直到被取消(中斷)
+    private static Object sleepUntilInterrupted(CountDownLatch interrupted) {
+        try {
+            Thread.sleep(Duration.ofMinutes(1));
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+        }
+        return null;
+    }
+}
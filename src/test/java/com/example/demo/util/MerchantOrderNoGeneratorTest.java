@@ -0,0 +1,177 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+class MerchantOrderNoGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 100_000;
+
+    @Test
+    void idsAreUniqueAndOrderedAcrossThreads() throws Exception {
+        Set<String> ids = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD);
+
+        generate(new MerchantOrderNoGenerator(7), ids);
+
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    //-Pbenchmark 時執行：多執行緒取號的吞吐量
+    @Test
+    @Tag("benchmark")
+    void throughputAcrossThreads() throws Exception {
+        MerchantOrderNoGenerator generator = new MerchantOrderNoGenerator(7);
+        //暖機
+        generate(generator, ConcurrentHashMap.newKeySet());
+
+        Set<String> ids = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD);
+        long elapsed = generate(generator, ids);
+
+        int total = THREADS * IDS_PER_THREAD;
+        assertEquals(total, ids.size());
+        System.out.printf("MerchantOrderNoGenerator: %d ids / %d threads in %d ms (%.0f ids/s)%n",
+                total, THREADS, elapsed / 1_000_000, total * 1e9 / elapsed);
+    }
+
+    //THREADS 個執行緒同時各取 IDS_PER_THREAD 個編號，回傳耗時(奈秒)
+    private static long generate(MerchantOrderNoGenerator generator, Set<String> ids) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                String previous = "";
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    String id = generator.nextId();
+                    assertEquals(MerchantOrderNoGenerator.LENGTH, id.length());
+                    //同一執行緒取得的編號必須遞增
+                    assertTrue(id.compareTo(previous) > 0, id + " <= " + previous);
+                    ids.add(id);
+                    previous = id;
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return elapsed;
+    }
+
+    @Test
+    void differentNodesNeverCollide() {
+        MerchantOrderNoGenerator node1 = new MerchantOrderNoGenerator(1);
+        MerchantOrderNoGenerator node2 = new MerchantOrderNoGenerator(2);
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(ids.add(node1.nextId()));
+            assertTrue(ids.add(node2.nextId()));
+        }
+    }
+
+    @Test
+    void encodingIsFixedWidthAndSortable() {
+        assertEquals("0000000000000", MerchantOrderNoGenerator.encode(0));
+        assertEquals(MerchantOrderNoGenerator.LENGTH, MerchantOrderNoGenerator.encode(Long.MAX_VALUE).length());
+        assertTrue(MerchantOrderNoGenerator.encode(35).compareTo(MerchantOrderNoGenerator.encode(36)) < 0);
+    }
+
+    @Test
+    void leasesAFreeNodeIdFromRedisWhenNotConfigured() {
+        StringRedisTemplate redis = redis("order-no:node:42");
+
+        MerchantOrderNoGenerator generator = new MerchantOrderNoGenerator(-1, provider(redis), Duration.ofSeconds(30));
+
+        assertEquals(42, generator.getNodeId());
+        assertEquals(MerchantOrderNoGenerator.LENGTH, generator.nextId().length());
+    }
+
+    @Test
+    void failsAtStartupWithoutNodeIdOrRedis() {
+        assertThrows(IllegalStateException.class, () -> new MerchantOrderNoGenerator(-1, provider(null), Duration.ofSeconds(30)));
+        //全部代號都被使用
+        assertThrows(IllegalStateException.class, () -> new MerchantOrderNoGenerator(-1, provider(redis()), Duration.ofSeconds(30)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void stopsGeneratingOnceTheLeaseExpires() throws InterruptedException {
+        StringRedisTemplate redis = redis("order-no:node:5");
+        MerchantOrderNoGenerator generator = new MerchantOrderNoGenerator(-1, provider(redis), Duration.ofMillis(20));
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("Redis 無法連線"));
+
+        Thread.sleep(50);
+        generator.renewLease();
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void leaseTakenOverByAnotherNodeSwitchesToAFreeNodeId() {
+        StringRedisTemplate redis = redis("order-no:node:5");
+        MerchantOrderNoGenerator generator = new MerchantOrderNoGenerator(-1, provider(redis), Duration.ofSeconds(30));
+        //續約時發現代號 5 已屬於其他節點，只剩代號 9 可用
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+        ValueOperations<String, String> values = redis.opsForValue();
+        when(values.setIfAbsent(eq("order-no:node:5"), anyString(), any(Duration.class))).thenReturn(false);
+        when(values.setIfAbsent(eq("order-no:node:9"), anyString(), any(Duration.class))).thenReturn(true);
+
+        generator.renewLease();
+
+        assertEquals(9, generator.getNodeId());
+        assertEquals(MerchantOrderNoGenerator.LENGTH, generator.nextId().length());
+    }
+
+    //只有指定的 Key 可以取得(SET NX 成功)
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate redis(String... freeKeys) {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        for (String key : freeKeys) {
+            when(values.setIfAbsent(eq(key), anyString(), any(Duration.class))).thenReturn(true);
+        }
+        return redis;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<StringRedisTemplate> provider(StringRedisTemplate redis) {
+        ObjectProvider<StringRedisTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(redis);
+        return provider;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OrderLineColumnFileTest {
+
+    private static final String[] STATUSES = {"1", "1", "1", "2", "3", "6"};
+    private static final String[] PAYMENT_TYPES = {"CREDIT", "VACC", "WEBATM", null};
+    private static final long START = 1_735_660_800L; // 2025-01-01T00:00:00+08:00
+    private static final int OFFSET = 8 * 3600;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripPreservesValuesInTimeOrder() throws Exception {
+        OrderLineColumnWriter writer = new OrderLineColumnWriter();
+        writer.add(7, 2, 100, "1", "CREDIT", START + 300);
+        writer.add(3, 1, 250, "6", null, START + 10);
+        writer.add(7, 5, 100, "2", "VACC", START + 10_000_000);
+        Path file = dir.resolve("lines.olc");
+        writer.writeTo(file);
+
+        OrderLineColumnReader reader = OrderLineColumnReader.open(file);
+        assertEquals(3, reader.rowCount());
+        assertEquals(7, reader.maxPid());
+        assertArrayEquals(new long[] {START + 10, START + 300, START + 10_000_000}, reader.times());
+        assertEquals(3, reader.pid(0));
+        assertEquals("6", reader.tradeStatus(0));
+        assertNull(reader.paymentType(0));
+        assertEquals(2, reader.num(1));
+        assertEquals("CREDIT", reader.paymentType(1));
+        assertEquals("VACC", reader.paymentType(2));
+    }
+
+    @Test
+    void aggregatesMatchRowByRowComputation() throws Exception {
+        int rows = 200_000;
+        Random random = new Random(42);
+        int[] pids = new int[rows];
+        int[] nums = new int[rows];
+        int[] amts = new int[rows];
+        String[] statuses = new String[rows];
+        long[] times = new long[rows];
+
+        OrderLineColumnWriter writer = new OrderLineColumnWriter();
+        for (int i = 0; i < rows; i++) {
+            pids[i] = 1 + random.nextInt(500);
+            nums[i] = 1 + random.nextInt(5);
+            amts[i] = 10 + random.nextInt(1000);
+            statuses[i] = STATUSES[random.nextInt(STATUSES.length)];
+            times[i] = START + random.nextInt(31 * 86_400);
+            writer.add(pids[i], nums[i], amts[i], statuses[i], PAYMENT_TYPES[random.nextInt(PAYMENT_TYPES.length)], times[i]);
+        }
+        Path file = dir.resolve("month.olc");
+        long bytes = writer.writeTo(file);
+        //欄式編碼後每筆約 14 bytes
+        assertTrue(bytes < rows * 16L, "檔案過大：" + bytes);
+
+        //查詢第 3 天中午到第 20 天(不從區塊邊界開始)
+        long from = START + 2 * 86_400 + 43_200;
+        long to = START + 20 * 86_400;
+        Set<String> paid = Set.of("1", "6");
+
+        Map<Integer, List<Long>> expectedByProduct = new TreeMap<>();
+        Map<Integer, List<Long>> expectedByDay = new TreeMap<>();
+        for (int i = 0; i < rows; i++) {
+            if (times[i] >= from && times[i] < to && paid.contains(statuses[i])) {
+                accumulate(expectedByProduct, pids[i], nums[i], amts[i]);
+                accumulate(expectedByDay, (int) Math.floorDiv(times[i] + OFFSET, 86_400), nums[i], amts[i]);
+            }
+        }
+
+        OrderLineColumnReader reader = OrderLineColumnReader.open(file);
+        OrderLineTotals byProduct = new OrderLineTotals();
+        reader.sumByProduct(from, to, paid, byProduct);
+        assertEquals(expectedByProduct, toMap(byProduct));
+
+        OrderLineTotals byDay = new OrderLineTotals();
+        reader.sumByDay(from, to, paid, OFFSET, byDay);
+        assertEquals(expectedByDay, toMap(byDay));
+    }
+
+    @Test
+    void unboundedScanCountsEveryMatchingRow() throws Exception {
+        int rows = 500_000;
+        Random random = new Random(7);
+        long expectedLines = 0;
+        OrderLineColumnWriter writer = new OrderLineColumnWriter();
+        for (int i = 0; i < rows; i++) {
+            String status = STATUSES[random.nextInt(STATUSES.length)];
+            expectedLines += "1".equals(status) ? 1 : 0;
+            writer.add(1 + random.nextInt(2000), 1 + random.nextInt(3), 100 + random.nextInt(900),
+                    status, PAYMENT_TYPES[random.nextInt(PAYMENT_TYPES.length)], START + random.nextInt(90 * 86_400));
+        }
+        Path file = dir.resolve("quarter.olc");
+        writer.writeTo(file);
+        OrderLineColumnReader reader = OrderLineColumnReader.open(file);
+
+        OrderLineTotals totals = new OrderLineTotals();
+        reader.sumByProduct(Long.MIN_VALUE, Long.MAX_VALUE, List.of("1"), totals);
+        long[] lines = {0};
+        totals.forEach((key, count, quantity, revenue) -> lines[0] += count);
+        assertEquals(rows, reader.rowCount());
+        assertEquals(expectedLines, lines[0]);
+    }
+
+    private static void accumulate(Map<Integer, List<Long>> totals, int key, int num, int amt) {
+        List<Long> t = totals.getOrDefault(key, List.of(0L, 0L, 0L));
+        totals.put(key, List.of(t.get(0) + 1, t.get(1) + num, t.get(2) + (long) amt * num));
+    }
+
+    private static Map<Integer, List<Long>> toMap(OrderLineTotals totals) {
+        Map<Integer, List<Long>> map = new TreeMap<>();
+        totals.forEach((key, lines, quantity, revenue) -> map.put(key, List.of(lines, quantity, revenue)));
+        return map;
+    }
+}